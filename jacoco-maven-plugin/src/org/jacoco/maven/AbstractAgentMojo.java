@@ -114,6 +114,9 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 * Output method to use for writing coverage data. Valid options are:
 	 * <ul>
 	 * <li>file: At VM termination execution data is written to a file.</li>
+	 * <li>shards: Every VM writes execution data to a shard file of its own in
+	 * the directory <code>destFile.shards</code>, which can be merged with the
+	 * <code>merge</code> command of the command line interface.</li>
 	 * <li>tcpserver: The agent listens for incoming connections on the TCP port
 	 * specified by the {@link #address} and {@link #port}. Execution data is
 	 * written to this TCP connection.</li>
@@ -140,6 +143,24 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.port")
 	Integer port;
+	/**
+	 * If set to true dumps over connections of the output methods tcpserver
+	 * and tcpclient only contain the probes executed since the previous dump
+	 * of the same connection.
+	 *
+	 * @since 0.8.9
+	 */
+	@Parameter(property = "jacoco.delta")
+	Boolean delta;
+	/**
+	 * File with a code diff in JSON format, optionally gzip compressed. If
+	 * specified only the classes and methods contained in the diff are
+	 * instrumented, all other classes are loaded without modification.
+	 *
+	 * @since 0.8.9
+	 */
+	@Parameter(property = "jacoco.diffFile")
+	File diffFile;
 	/**
 	 * If a directory is specified for this parameter the JaCoCo agent dumps all
 	 * class files it processes to the given location. This can be useful for
@@ -153,6 +174,15 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 	 */
 	@Parameter(property = "jacoco.jmx")
 	Boolean jmx;
+	/**
+	 * If set to true the execution data file is written with compressed
+	 * blocks. Such files are read transparently by all JaCoCo tools of the
+	 * same or a later version.
+	 *
+	 * @since 0.8.9
+	 */
+	@Parameter(property = "jacoco.compress")
+	Boolean compress;
 
 	@Override
 	public void executeMojo() {
@@ -225,9 +255,18 @@ public abstract class AbstractAgentMojo extends AbstractJacocoMojo {
 		if (classDumpDir != null) {
 			agentOptions.setClassDumpDir(classDumpDir.getAbsolutePath());
 		}
+		if (delta != null) {
+			agentOptions.setDelta(delta.booleanValue());
+		}
+		if (diffFile != null) {
+			agentOptions.setDiffFile(diffFile.getAbsolutePath());
+		}
 		if (jmx != null) {
 			agentOptions.setJmx(jmx.booleanValue());
 		}
+		if (compress != null) {
+			agentOptions.setCompress(compress.booleanValue());
+		}
 		return agentOptions;
 	}
 
@@ -86,6 +86,15 @@ public abstract class AbstractReportMojo extends AbstractMojo
 	@Parameter
 	List<String> excludes;
 
+	/**
+	 * Number of threads used to analyze class files. With more than one thread
+	 * classes are analyzed in parallel, the resulting report is the same.
+	 *
+	 * @since 0.8.9
+	 */
+	@Parameter(property = "jacoco.report.threads", defaultValue = "1")
+	int threads;
+
 	/**
 	 * Flag used to suppress execution.
 	 */
@@ -187,7 +196,8 @@ public abstract class AbstractReportMojo extends AbstractMojo
 	private void executeReport(final Locale locale)
 			throws MavenReportException {
 		try {
-			final ReportSupport support = new ReportSupport(getLog());
+			final ReportSupport support = new ReportSupport(getLog(),
+					threads);
 			loadExecutionData(support);
 			addFormatters(support, locale);
 			final IReportVisitor visitor = support.initRootVisitor();
@@ -30,6 +30,7 @@ import org.jacoco.core.analysis.Analyzer;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ParallelAnalyzer;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.jacoco.report.IReportGroupVisitor;
 import org.jacoco.report.IReportVisitor;
@@ -57,6 +58,7 @@ final class ReportSupport {
 	private final Log log;
 	private final ExecFileLoader loader;
 	private final List<IReportVisitor> formatters;
+	private final int threads;
 
 	/**
 	 * Construct a new instance with the given log output.
@@ -65,9 +67,23 @@ final class ReportSupport {
 	 *            for log output
 	 */
 	public ReportSupport(final Log log) {
+		this(log, 1);
+	}
+
+	/**
+	 * Construct a new instance with the given log output that analyzes class
+	 * files with the given number of threads.
+	 *
+	 * @param log
+	 *            for log output
+	 * @param threads
+	 *            number of threads used to analyze class files
+	 */
+	public ReportSupport(final Log log, final int threads) {
 		this.log = log;
 		this.loader = new ExecFileLoader();
 		this.formatters = new ArrayList<IReportVisitor>();
+		this.threads = threads;
 	}
 
 	/**
@@ -159,11 +175,21 @@ final class ReportSupport {
 				project.getBuild().getOutputDirectory());
 
 		if (classesDir.isDirectory()) {
-			final Analyzer analyzer = new Analyzer(
-					loader.getExecutionDataStore(), builder);
 			final FileFilter filter = new FileFilter(includes, excludes);
-			for (final File file : filter.getFiles(classesDir)) {
-				analyzer.analyzeAll(file);
+			final List<File> files = filter.getFiles(classesDir);
+			if (threads > 1) {
+				final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+						loader.getExecutionDataStore(), builder, null,
+						threads);
+				try {
+					analyzeAll(analyzer, files);
+					analyzer.finish();
+				} finally {
+					analyzer.close();
+				}
+			} else {
+				analyzeAll(new Analyzer(loader.getExecutionDataStore(),
+						builder), files);
 			}
 		}
 
@@ -173,6 +199,13 @@ final class ReportSupport {
 		visitor.visitBundle(bundle, locator);
 	}
 
+	private static void analyzeAll(final Analyzer analyzer,
+			final List<File> files) throws IOException {
+		for (final File file : files) {
+			analyzer.analyzeAll(file);
+		}
+	}
+
 	private void logBundleInfo(final IBundleCoverage bundle,
 			final Collection<IClassCoverage> nomatch) {
 		log.info(format("Analyzed bundle '%s' with %s classes",
@@ -29,6 +29,7 @@ import javax.management.ObjectName;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
+import org.jacoco.agent.rt.internal.output.ShardedFileOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
@@ -66,6 +67,10 @@ public class AgentTest implements IExceptionLogger, IAgentOutput {
 		options.setOutput(OutputMode.file);
 		assertEquals(FileOutput.class, agent.createAgentOutput().getClass());
 
+		options.setOutput(OutputMode.shards);
+		assertEquals(ShardedFileOutput.class,
+				agent.createAgentOutput().getClass());
+
 		options.setOutput(OutputMode.tcpserver);
 		assertEquals(TcpServerOutput.class,
 				agent.createAgentOutput().getClass());
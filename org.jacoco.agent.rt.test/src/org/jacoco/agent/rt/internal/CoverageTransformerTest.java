@@ -12,26 +12,35 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.cert.Certificate;
+import java.util.Arrays;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.runtime.AbstractRuntime;
 import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.objectweb.asm.MethodVisitor;
 
 /**
@@ -39,6 +48,9 @@ import org.objectweb.asm.MethodVisitor;
  */
 public class CoverageTransformerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private ExceptionRecorder recorder;
 
 	private AgentOptions options;
@@ -228,6 +240,130 @@ public class CoverageTransformerTest {
 		recorder.clear();
 	}
 
+	@Test
+	public void testTransformOutsideDiff() throws Exception {
+		options.setDiffCode("[{\"classFile\":\"org/jacoco/Other\","
+				+ "\"methodInfos\":[],\"type\":\"ADD\"}]");
+		CoverageTransformer t = createTransformer();
+		assertNull(t.transform(classLoader, "org.jacoco.core.JaCoCo", null,
+				protectionDomain, getClassData(JaCoCo.class)));
+	}
+
+	@Test
+	public void testTransformInsideDiff() throws Exception {
+		options.setDiffCode("[{\"classFile\":\"org/jacoco/core/JaCoCo\","
+				+ "\"methodInfos\":[],\"type\":\"ADD\"}]");
+		CoverageTransformer t = createTransformer();
+		assertNotNull(t.transform(classLoader, "org.jacoco.core.JaCoCo", null,
+				protectionDomain, getClassData(JaCoCo.class)));
+	}
+
+	@Test
+	public void testEmptyDiff() throws Exception {
+		options.setDiffCode("[]");
+		CoverageTransformer t = createTransformer();
+		assertNotNull(t.transform(classLoader, "org.jacoco.core.JaCoCo", null,
+				protectionDomain, getClassData(JaCoCo.class)));
+	}
+
+	@Test
+	public void testCountersNotSupported() {
+		options.setCounters(true);
+		try {
+			createTransformer();
+			fail("IllegalArgumentException expected.");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Counting probes are not supported by the runtime.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTransformWithCounters() throws Exception {
+		options.setCounters(true);
+		CoverageTransformer t = new CoverageTransformer(
+				new SystemPropertiesRuntime(), options, recorder);
+		assertNotNull(t.transform(classLoader, "org.jacoco.core.JaCoCo", null,
+				protectionDomain, getClassData(JaCoCo.class)));
+	}
+
+	@Test
+	public void testInvalidDiffFile() {
+		options.setDiffFile("does/not/exist.json");
+		try {
+			createTransformer();
+			fail("IllegalArgumentException expected.");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Invalid code diff for instrumentation.",
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTransformWithCache() throws Exception {
+		options.setInstrCache(folder.getRoot().toString());
+		final byte[] expected = createTransformer().transform(classLoader,
+				"org.jacoco.core.JaCoCo", null, protectionDomain,
+				getClassData(JaCoCo.class));
+		final File[] dirs = folder.getRoot().listFiles();
+		assertEquals(1, dirs.length);
+		assertEquals(1, dirs[0].list().length);
+
+		final byte[] actual = createTransformer().transform(classLoader,
+				"org.jacoco.core.JaCoCo", null, protectionDomain,
+				getClassData(JaCoCo.class));
+		assertArrayEquals(expected, actual);
+		assertEquals(1, dirs[0].list().length);
+	}
+
+	@Test
+	public void testTransformOutsideDiffWithCache() throws Exception {
+		options.setInstrCache(folder.getRoot().toString());
+		options.setDiffCode("[{\"classFile\":\"org/jacoco/Other\","
+				+ "\"methodInfos\":[],\"type\":\"ADD\"}]");
+		createTransformer().transform(classLoader, "org.jacoco.core.JaCoCo",
+				null, protectionDomain, getClassData(JaCoCo.class));
+
+		assertNull(createTransformer().transform(classLoader,
+				"org.jacoco.core.JaCoCo", null, protectionDomain,
+				getClassData(JaCoCo.class)));
+	}
+
+	@Test
+	public void testTransformLazy() throws Exception {
+		final byte[] source = getClassData(JaCoCo.class);
+		final byte[] full = createTransformer().transform(classLoader,
+				"org.jacoco.core.JaCoCo", null, protectionDomain, source);
+		final LazyRetransformer retransformer = new LazyRetransformer(null,
+				recorder);
+		CoverageTransformer t = new CoverageTransformer(runtime, options,
+				retransformer, recorder);
+
+		final byte[] touch = t.transform(classLoader,
+				"org.jacoco.core.JaCoCo", null, protectionDomain, source);
+		assertNotNull(touch);
+		assertFalse(Arrays.equals(full, touch));
+		final long classId = CRC64.classId(source);
+		assertTrue(retransformer.isPending(classId));
+		assertArrayEquals(touch, t.transform(classLoader,
+				"org.jacoco.core.JaCoCo", JaCoCo.class, protectionDomain,
+				source));
+
+		retransformer.visitClassExecution(
+				new ExecutionData(classId, "org/jacoco/core/JaCoCo", 1));
+		assertArrayEquals(full, t.transform(classLoader,
+				"org.jacoco.core.JaCoCo", JaCoCo.class, protectionDomain,
+				source));
+	}
+
+	@Test
+	public void testRedefinedClassLazy() throws Exception {
+		CoverageTransformer t = new CoverageTransformer(runtime, options,
+				new LazyRetransformer(null, recorder), recorder);
+		assertNull(t.transform(classLoader, "org.jacoco.core.JaCoCo",
+				JaCoCo.class, protectionDomain, getClassData(JaCoCo.class)));
+	}
+
 	@Test
 	public void testRedefinedClass() throws Exception {
 		CoverageTransformer t = createTransformer();
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link InstrumentedClassCache}.
+ */
+public class InstrumentedClassCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExceptionRecorder recorder;
+
+	private String location;
+
+	private byte[] source;
+
+	private byte[] instrumented;
+
+	@Before
+	public void setup() throws IOException {
+		recorder = new ExceptionRecorder();
+		location = new File(folder.getRoot(), "cache").toString();
+		source = "original class".getBytes("UTF-8");
+		instrumented = "instrumented class".getBytes("UTF-8");
+	}
+
+	@After
+	public void teardown() {
+		recorder.assertNoException();
+	}
+
+	@Test
+	public void get_should_return_null_for_missing_entry() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		assertNull(cache.get(42, source));
+	}
+
+	@Test
+	public void get_should_return_entries_stored_by_other_instances() {
+		createCache("a", 1000).put(42, source, instrumented);
+
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		assertArrayEquals(instrumented, cache.get(42, source));
+		assertNull(cache.get(43, source));
+	}
+
+	@Test
+	public void get_should_return_source_for_unchanged_classes() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(42, source, source);
+		assertSame(source, cache.get(42, source));
+	}
+
+	@Test
+	public void get_should_not_return_entries_of_other_options() {
+		createCache("a", 1000).put(42, source, instrumented);
+
+		final InstrumentedClassCache cache = createCache("b", 1000);
+		assertNull(cache.get(42, source));
+	}
+
+	@Test
+	public void get_should_ignore_entries_of_other_class_sizes() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(42, source, instrumented);
+		assertNull(cache.get(42, new byte[3]));
+	}
+
+	@Test
+	public void get_should_ignore_damaged_entries() throws IOException {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.getDirectory().mkdirs();
+		final FileOutputStream out = new FileOutputStream(
+				new File(cache.getDirectory(), "000000000000002a.instr"));
+		out.write("damaged entry".getBytes("UTF-8"));
+		out.close();
+		assertNull(cache.get(42, source));
+	}
+
+	@Test
+	public void get_should_mark_entries_as_used() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(42, source, instrumented);
+		final File entry = new File(cache.getDirectory(),
+				"000000000000002a.instr");
+		entry.setLastModified(1000);
+
+		cache.get(42, source);
+		assertTrue(entry.lastModified() > 1000);
+	}
+
+	@Test
+	public void put_should_not_leave_temporary_files() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(42, source, instrumented);
+		cache.put(42, source, instrumented);
+		assertArrayEquals(new String[] { "000000000000002a.instr" },
+				cache.getDirectory().list());
+	}
+
+	@Test
+	public void put_should_report_first_write_failure_only()
+			throws IOException {
+		location = folder.newFile("file").toString();
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(42, source, instrumented);
+		cache.put(43, source, instrumented);
+		recorder.assertException(IOException.class, String.format(
+				"Unable to write instrumented class to cache %s.",
+				cache.getDirectory()), IOException.class);
+		recorder.clear();
+		assertNull(cache.get(42, source));
+	}
+
+	@Test
+	public void evict_should_remove_least_recently_used_entries() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(1, source, instrumented);
+		cache.put(2, source, instrumented);
+		cache.put(3, source, instrumented);
+		final InstrumentedClassCache other = createCache("b", 1000);
+		other.put(4, source, instrumented);
+		setLastUse(cache, 1, 4000);
+		setLastUse(cache, 2, 2000);
+		setLastUse(cache, 3, 3000);
+		setLastUse(other, 4, 1000);
+
+		// Every entry has 16 bytes header and 18 bytes content:
+		createCache("a", 100).evict();
+
+		assertFalse(entry(other, 4).exists());
+		assertFalse(entry(cache, 2).exists());
+		assertTrue(entry(cache, 3).exists());
+		assertTrue(entry(cache, 1).exists());
+	}
+
+	@Test
+	public void evict_should_keep_entries_within_maximum_size() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.put(1, source, instrumented);
+		cache.put(2, source, instrumented);
+
+		cache.evict();
+
+		assertTrue(entry(cache, 1).exists());
+		assertTrue(entry(cache, 2).exists());
+	}
+
+	@Test
+	public void evict_should_accept_missing_cache_directory() {
+		final InstrumentedClassCache cache = createCache("a", 1000);
+		cache.evict();
+		assertFalse(new File(location).exists());
+	}
+
+	@Test
+	public void startEviction_should_remove_entries_in_background()
+			throws InterruptedException {
+		final InstrumentedClassCache cache = createCache("a", 60);
+		cache.put(1, source, instrumented);
+		setLastUse(cache, 1, 1000);
+		cache.put(2, source, instrumented);
+
+		for (int i = 0; i < 100 && entry(cache, 1).exists(); i++) {
+			Thread.sleep(10);
+		}
+		assertFalse(entry(cache, 1).exists());
+		assertEquals(1, cache.getDirectory().list().length);
+	}
+
+	private InstrumentedClassCache createCache(final String options,
+			final long maxSize) {
+		return new InstrumentedClassCache(location, options, maxSize,
+				recorder);
+	}
+
+	private static File entry(final InstrumentedClassCache cache,
+			final long classId) {
+		return new File(cache.getDirectory(),
+				String.format("%016x.instr", Long.valueOf(classId)));
+	}
+
+	private static void setLastUse(final InstrumentedClassCache cache,
+			final long classId, final long time) {
+		assertTrue(entry(cache, classId).setLastModified(time));
+	}
+
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.instrument.UnmodifiableClassException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jacoco.agent.rt.internal.LazyRetransformer.LoadedClass;
+import org.jacoco.core.data.ExecutionData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LazyRetransformer}.
+ */
+public class LazyRetransformerTest implements InvocationHandler {
+
+	private ExceptionRecorder recorder;
+
+	private List<List<Class<?>>> retransformed;
+
+	private Class<?> unmodifiable;
+
+	private Class<?>[] allLoaded;
+
+	private LazyRetransformer retransformer;
+
+	@Before
+	public void setup() {
+		recorder = new ExceptionRecorder();
+		allLoaded = new Class<?>[0];
+		retransformed = Collections
+				.synchronizedList(new ArrayList<List<Class<?>>>());
+		final Instrumentation inst = (Instrumentation) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class<?>[] { Instrumentation.class }, this);
+		retransformer = new LazyRetransformer(inst, recorder);
+	}
+
+	@After
+	public void teardown() {
+		recorder.assertNoException();
+	}
+
+	@Test
+	public void should_track_registered_classes_until_execution()
+			throws InterruptedException {
+		retransformer.register(42, getClass().getClassLoader(),
+				"org/jacoco/agent/rt/internal/LazyRetransformerTest");
+		assertTrue(retransformer.isPending(42));
+		assertFalse(retransformer.isTouched(42));
+
+		retransformer.visitClassExecution(new ExecutionData(42, "Foo", 1));
+
+		assertFalse(retransformer.isPending(42));
+		assertTrue(retransformer.isTouched(42));
+		final List<LoadedClass> batch = retransformer.take();
+		assertEquals(1, batch.size());
+		assertEquals(LazyRetransformerTest.class, batch.get(0).resolve());
+	}
+
+	@Test
+	public void should_schedule_all_copies_of_a_class()
+			throws InterruptedException {
+		retransformer.register(42, getClass().getClassLoader(), "Foo");
+		retransformer.register(42, null, "Foo");
+
+		retransformer.visitClassExecution(new ExecutionData(42, "Foo", 1));
+
+		assertEquals(2, retransformer.take().size());
+	}
+
+	@Test
+	public void should_schedule_copies_registered_after_execution()
+			throws InterruptedException {
+		retransformer.register(42, null, "Foo");
+		retransformer.visitClassExecution(new ExecutionData(42, "Foo", 1));
+		retransformer.take();
+
+		retransformer.register(42, getClass().getClassLoader(), "Foo");
+
+		assertFalse(retransformer.isPending(42));
+		assertEquals(1, retransformer.take().size());
+	}
+
+	@Test
+	public void should_ignore_classes_which_are_not_pending() {
+		retransformer.visitClassExecution(new ExecutionData(42, "Foo", 1));
+		assertFalse(retransformer.isTouched(42));
+	}
+
+	@Test
+	public void should_resolve_bootstrap_classes() {
+		assertEquals(String.class,
+				new LoadedClass(null, "java/lang/String").resolve());
+	}
+
+	@Test
+	public void should_not_resolve_unknown_classes() {
+		assertEquals(null, new LoadedClass(getClass().getClassLoader(),
+				"does/not/Exist").resolve());
+		assertEquals(null,
+				new LoadedClass(null, "org/jacoco/agent/rt/internal/"
+						+ "LazyRetransformerTest").resolve());
+	}
+
+	@Test
+	public void retransform_should_retransform_classes_at_once() {
+		retransformer.retransform(Arrays.asList(
+				loaded(LazyRetransformerTest.class), loaded(String.class),
+				new LoadedClass(null, "does/not/Exist")));
+
+		assertEquals(1, retransformed.size());
+		assertEquals(Arrays.asList(LazyRetransformerTest.class, String.class),
+				retransformed.get(0));
+		recorder.assertException(IllegalStateException.class,
+				"Unable to find class does.not.Exist for retransformation.");
+		recorder.clear();
+	}
+
+	@Test
+	public void retransform_should_report_unknown_classes() {
+		allLoaded = new Class<?>[] { LazyRetransformerTest.class };
+
+		retransformer.retransform(Arrays.asList(new LoadedClass(null,
+				"org/jacoco/agent/rt/internal/LazyRetransformerTest")));
+
+		assertTrue(retransformed.isEmpty());
+		recorder.assertException(IllegalStateException.class,
+				"Unable to find class org.jacoco.agent.rt.internal."
+						+ "LazyRetransformerTest for retransformation.");
+		recorder.clear();
+	}
+
+	@Test
+	public void retransform_should_find_classes_not_accessible_by_name()
+			throws IOException {
+		final ParentFirstLoader loader = new ParentFirstLoader();
+		final Class<?> target = loader.define(Target.class);
+		allLoaded = new Class<?>[] { String.class, Target.class, target };
+
+		retransformer.retransform(
+				Arrays.asList(new LoadedClass(loader, Target.class.getName())));
+
+		assertEquals(1, retransformed.size());
+		assertEquals(Arrays.asList(target), retransformed.get(0));
+	}
+
+	@Test
+	public void retransform_should_skip_unloaded_classes() {
+		final LoadedClass unloaded = new LoadedClass(new ParentFirstLoader(),
+				"does/not/Exist");
+		for (int i = 0; i < 100 && !unloaded.isUnloaded(); i++) {
+			System.gc();
+		}
+		assertTrue(unloaded.isUnloaded());
+
+		retransformer.retransform(Arrays.asList(unloaded));
+
+		assertTrue(retransformed.isEmpty());
+	}
+
+	@Test
+	public void retransform_should_report_failing_classes() {
+		unmodifiable = String.class;
+
+		retransformer.retransform(Arrays.asList(
+				loaded(LazyRetransformerTest.class), loaded(String.class)));
+
+		assertEquals(3, retransformed.size());
+		assertEquals(Arrays.asList(LazyRetransformerTest.class),
+				retransformed.get(1));
+		assertEquals(Arrays.asList(String.class), retransformed.get(2));
+		recorder.assertException(IllegalStateException.class,
+				"Unable to retransform class java.lang.String.",
+				UnmodifiableClassException.class);
+		recorder.clear();
+	}
+
+	@Test
+	public void startup_should_retransform_executed_classes_in_background()
+			throws InterruptedException {
+		retransformer.startup();
+		retransformer.register(42, getClass().getClassLoader(),
+				"org/jacoco/agent/rt/internal/LazyRetransformerTest");
+
+		retransformer.visitClassExecution(new ExecutionData(42, "Foo", 1));
+
+		for (int i = 0; i < 100 && retransformed.isEmpty(); i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(Arrays.asList(LazyRetransformerTest.class),
+				retransformed.get(0));
+	}
+
+	private static LoadedClass loaded(final Class<?> clazz) {
+		return new LoadedClass(clazz.getClassLoader(), clazz.getName());
+	}
+
+	public static class Target {
+	}
+
+	/**
+	 * Class loader which always delegates to its parent, so classes defined by
+	 * this loader can't be found by name.
+	 */
+	private static class ParentFirstLoader extends ClassLoader {
+
+		ParentFirstLoader() {
+			super(LazyRetransformerTest.class.getClassLoader());
+		}
+
+		Class<?> define(final Class<?> clazz) throws IOException {
+			final String resource = "/" + clazz.getName().replace('.', '/')
+					+ ".class";
+			final InputStream in = clazz.getResourceAsStream(resource);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1024];
+			int len;
+			while ((len = in.read(buffer)) != -1) {
+				out.write(buffer, 0, len);
+			}
+			in.close();
+			final byte[] bytes = out.toByteArray();
+			return defineClass(clazz.getName(), bytes, 0, bytes.length);
+		}
+
+		@Override
+		protected Class<?> loadClass(final String name, final boolean resolve)
+				throws ClassNotFoundException {
+			return getParent().loadClass(name);
+		}
+
+	}
+
+	// === InvocationHandler ===
+
+	public Object invoke(final Object proxy, final Method method,
+			final Object[] args) throws Throwable {
+		if ("getAllLoadedClasses".equals(method.getName())) {
+			return allLoaded;
+		}
+		if (!"retransformClasses".equals(method.getName())) {
+			throw new UnsupportedOperationException(method.getName());
+		}
+		final List<Class<?>> classes = Arrays.asList((Class<?>[]) args[0]);
+		retransformed.add(classes);
+		if (classes.contains(unmodifiable)) {
+			throw new UnmodifiableClassException();
+		}
+		return null;
+	}
+
+}
@@ -25,6 +25,7 @@ import java.nio.channels.OverlappingFileLockException;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.RuntimeData;
 import org.jacoco.core.test.validation.JavaVersion;
+import org.jacoco.core.tools.ExecFileLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Rule;
 import org.junit.Test;
@@ -68,6 +69,29 @@ public class FileOutputTest {
 				destFile.length() > 0);
 	}
 
+	@Test
+	public void writeExecutionData_should_write_compressed_execdata()
+			throws Exception {
+		File destFile = folder.newFile("jacoco.exec");
+		AgentOptions options = new AgentOptions();
+		options.setDestfile(destFile.getAbsolutePath());
+		options.setCompress(true);
+		RuntimeData data = new RuntimeData();
+		data.setSessionId("session");
+		data.getExecutionData(Long.valueOf(42), "Foo", 3).getProbes()[1] = true;
+
+		FileOutput controller = new FileOutput();
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(destFile);
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+		assertTrue(loader.getExecutionDataStore().get(42).getProbes()[1]);
+	}
+
 	@Test
 	public void startup_should_throw_IOException_when_execfile_cannot_be_created()
 			throws Exception {
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.jacoco.agent.rt.internal.ExceptionRecorder;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecShardManifest;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ShardedFileOutput}.
+ */
+public class ShardedFileOutputTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ExceptionRecorder logger;
+
+	private AgentOptions options;
+
+	private File directory;
+
+	private RuntimeData data;
+
+	@Before
+	public void setup() {
+		logger = new ExceptionRecorder();
+		options = new AgentOptions();
+		final File destFile = new File(folder.getRoot(), "jacoco.exec");
+		options.setDestfile(destFile.getAbsolutePath());
+		directory = ExecShardManifest.getDirectory(destFile);
+		data = new RuntimeData();
+		data.setSessionId("host/1");
+	}
+
+	@Test
+	public void startup_should_create_and_register_shard() throws Exception {
+		ShardedFileOutput controller = new ShardedFileOutput(logger);
+		controller.startup(options, data);
+
+		assertTrue(controller.getShard().isFile());
+		assertTrue(controller.getShard().getName().startsWith("host_1-"));
+		List<File> shards = ExecShardManifest.read(directory);
+		assertEquals(1, shards.size());
+		assertEquals(controller.getShard(), shards.get(0));
+		controller.shutdown();
+		logger.assertNoException();
+	}
+
+	@Test
+	public void writeExecutionData_should_write_to_own_shard()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(42), "Foo", 3).getProbes()[1] = true;
+		ShardedFileOutput first = new ShardedFileOutput(logger);
+		first.startup(options, data);
+		ShardedFileOutput second = new ShardedFileOutput(logger);
+		second.startup(options, new RuntimeData());
+
+		for (int i = 0; i < 2 * ShardedFileOutput.QUEUE_CAPACITY; i++) {
+			first.writeExecutionData(false);
+		}
+		first.shutdown();
+		second.shutdown();
+
+		assertFalse(first.getShard().equals(second.getShard()));
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(first.getShard());
+		assertEquals(2 * ShardedFileOutput.QUEUE_CAPACITY,
+				loader.getSessionInfoStore().getInfos().size());
+		assertTrue(loader.getExecutionDataStore().get(42).getProbes()[1]);
+		assertEquals(0, second.getShard().length());
+		assertEquals(2, ExecShardManifest.read(directory).size());
+		logger.assertNoException();
+	}
+
+	@Test
+	public void writeExecutionData_should_write_compressed_shard()
+			throws Exception {
+		options.setCompress(true);
+		data.getExecutionData(Long.valueOf(42), "Foo", 3).getProbes()[2] = true;
+		ShardedFileOutput controller = new ShardedFileOutput(logger);
+		controller.startup(options, data);
+		controller.writeExecutionData(false);
+		controller.shutdown();
+
+		ExecFileLoader loader = new ExecFileLoader();
+		loader.load(controller.getShard());
+		assertTrue(loader.getExecutionDataStore().get(42).getProbes()[2]);
+	}
+
+}
@@ -29,6 +29,7 @@ import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
 import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecDeltaCombiner;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -256,4 +257,48 @@ public class TcpConnectionTest extends ExecutorTestBase {
 		f.get();
 	}
 
+	@Test
+	public void testRemoteDeltaDump() throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 2).getProbes();
+		probes[0] = true;
+
+		final RemoteControlWriter remoteWriter = new RemoteControlWriter(
+				mockConnection.getSocketB().getOutputStream());
+
+		final TcpConnection con = new TcpConnection(mockConnection.getSocketA(),
+				data, true);
+		con.init();
+
+		final Future<Void> f = executor.submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				con.run();
+				return null;
+			}
+		});
+
+		assertBlocks(f);
+
+		final RemoteControlReader remoteReader = new RemoteControlReader(
+				mockConnection.getSocketB().getInputStream());
+		final ExecDeltaCombiner combiner = new ExecDeltaCombiner();
+		remoteReader.setExecutionDataVisitor(combiner);
+		remoteReader.setSessionInfoVisitor(combiner);
+		remoteReader.setDeltaVisitor(combiner);
+
+		remoteWriter.visitDumpCommand(true, false);
+		assertTrue(remoteReader.read());
+		assertEquals(0, combiner.getSequence());
+
+		probes[1] = true;
+		remoteWriter.visitDumpCommand(true, false);
+		assertTrue(remoteReader.read());
+		assertEquals(1, combiner.getSequence());
+		assertEquals("[11]", combiner.getExecutionDataStore().get(123)
+				.getProbeBits().toString());
+
+		con.close();
+		f.get();
+	}
+
 }
@@ -21,6 +21,7 @@ import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.internal.output.FileOutput;
 import org.jacoco.agent.rt.internal.output.IAgentOutput;
 import org.jacoco.agent.rt.internal.output.NoneOutput;
+import org.jacoco.agent.rt.internal.output.ShardedFileOutput;
 import org.jacoco.agent.rt.internal.output.TcpClientOutput;
 import org.jacoco.agent.rt.internal.output.TcpServerOutput;
 import org.jacoco.core.JaCoCo;
@@ -163,6 +164,8 @@ public class Agent implements IAgent {
 		switch (controllerType) {
 		case file:
 			return new FileOutput();
+		case shards:
+			return new ShardedFileOutput(logger);
 		case tcpserver:
 			return new TcpServerOutput(logger);
 		case tcpclient:
@@ -208,7 +211,7 @@ public class Agent implements IAgent {
 		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		try {
 			final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
-			data.collect(writer, writer, reset);
+			data.collectSnapshot(writer, writer, reset);
 		} catch (final IOException e) {
 			// Must not happen with ByteArrayOutputStream
 			throw new AssertionError(e);
@@ -12,12 +12,21 @@
  *******************************************************************************/
 package org.jacoco.agent.rt.internal;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.lang.instrument.ClassFileTransformer;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 
 import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.internal.InputStreams;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.DiffReader;
 import org.jacoco.core.runtime.AgentOptions;
 import org.jacoco.core.runtime.IRuntime;
 import org.jacoco.core.runtime.WildcardMatcher;
@@ -36,6 +45,10 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final Instrumenter instrumenter;
 
+	private final Instrumenter touchInstrumenter;
+
+	private final LazyRetransformer retransformer;
+
 	private final IExceptionLogger logger;
 
 	private final WildcardMatcher includes;
@@ -46,6 +59,10 @@ public class CoverageTransformer implements ClassFileTransformer {
 
 	private final ClassFileDumper classFileDumper;
 
+	private final InstrumentedClassCache cache;
+
+	private final InstrumentedClassCache touchCache;
+
 	private final boolean inclBootstrapClasses;
 
 	private final boolean inclNoLocationClasses;
@@ -59,16 +76,61 @@ public class CoverageTransformer implements ClassFileTransformer {
 	 *            configuration options for the generator
 	 * @param logger
 	 *            logger for exceptions during instrumentation
+	 * @throws IllegalArgumentException
+	 *             if the code diff to instrument can't be read or counting
+	 *             probes are not supported by the runtime
 	 */
 	public CoverageTransformer(final IRuntime runtime,
 			final AgentOptions options, final IExceptionLogger logger) {
+		this(runtime, options, null, logger);
+	}
+
+	/**
+	 * New transformer which optionally instruments classes in two steps. The
+	 * transformer has to be registered for retransformation in this case.
+	 *
+	 * @param runtime
+	 *            coverage runtime
+	 * @param options
+	 *            configuration options for the generator
+	 * @param retransformer
+	 *            retransformer for classes loaded with touch only
+	 *            instrumentation or <code>null</code> if classes should be
+	 *            fully instrumented when they are loaded
+	 * @param logger
+	 *            logger for exceptions during instrumentation
+	 * @throws IllegalArgumentException
+	 *             if the code diff to instrument can't be read or counting
+	 *             probes are not supported by the runtime
+	 */
+	CoverageTransformer(final IRuntime runtime, final AgentOptions options,
+			final LazyRetransformer retransformer,
+			final IExceptionLogger logger) {
+		final DiffIndex diff = readDiff(options);
 		this.instrumenter = new Instrumenter(runtime);
+		this.instrumenter.setDiffFilter(diff);
+		this.instrumenter.setCounting(options.getCounters());
+		this.retransformer = retransformer;
+		if (retransformer == null) {
+			touchInstrumenter = null;
+		} else {
+			touchInstrumenter = new Instrumenter(runtime);
+			touchInstrumenter.setDiffFilter(diff);
+			touchInstrumenter.setTouchOnly(true);
+			touchInstrumenter.setCounting(options.getCounters());
+		}
 		this.logger = logger;
 		// Class names will be reported in VM notation:
 		includes = new WildcardMatcher(toVMName(options.getIncludes()));
 		excludes = new WildcardMatcher(toVMName(options.getExcludes()));
 		exclClassloader = new WildcardMatcher(options.getExclClassloader());
 		classFileDumper = new ClassFileDumper(options.getClassDumpDir());
+		cache = createCache(runtime, options, "full", logger);
+		touchCache = retransformer == null ? null
+				: createCache(runtime, options, "touch", logger);
+		if (cache != null) {
+			cache.startEviction();
+		}
 		inclBootstrapClasses = options.getInclBootstrapClasses();
 		inclNoLocationClasses = options.getInclNoLocationClasses();
 	}
@@ -78,8 +140,9 @@ public class CoverageTransformer implements ClassFileTransformer {
 			final ProtectionDomain protectionDomain,
 			final byte[] classfileBuffer) throws IllegalClassFormatException {
 
-		// We do not support class retransformation:
-		if (classBeingRedefined != null) {
+		// We only support retransformation of classes instrumented in two
+		// steps:
+		if (classBeingRedefined != null && retransformer == null) {
 			return null;
 		}
 
@@ -88,8 +151,16 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 
 		try {
-			classFileDumper.dump(classname, classfileBuffer);
-			return instrumenter.instrument(classfileBuffer, classname);
+			if (classBeingRedefined == null) {
+				classFileDumper.dump(classname, classfileBuffer);
+			}
+			final byte[] instrumented = retransformer == null
+					? instrument(instrumenter, cache, classfileBuffer,
+							classname)
+					: instrumentLazy(loader, classname, classBeingRedefined,
+							classfileBuffer);
+			// Classes outside of the diff are left untouched:
+			return instrumented == classfileBuffer ? null : instrumented;
 		} catch (final Exception ex) {
 			final IllegalClassFormatException wrapper = new IllegalClassFormatException(
 					ex.getMessage());
@@ -100,6 +171,116 @@ public class CoverageTransformer implements ClassFileTransformer {
 		}
 	}
 
+	/**
+	 * Classes are loaded with touch only instrumentation first. Once a class
+	 * has been executed it is retransformed with full instrumentation, which
+	 * is also used for subsequent loads of the same class.
+	 */
+	private byte[] instrumentLazy(final ClassLoader loader,
+			final String classname, final Class<?> classBeingRedefined,
+			final byte[] source) throws IOException {
+		final long classId = CRC64.classId(source);
+		if (retransformer.isTouched(classId)) {
+			return instrument(instrumenter, cache, source, classname);
+		}
+		if (classBeingRedefined != null
+				&& !retransformer.isPending(classId)) {
+			// Redefinition with a new class definition is not supported
+			return source;
+		}
+		final byte[] instrumented = instrument(touchInstrumenter, touchCache,
+				source, classname);
+		if (classBeingRedefined == null && instrumented != source) {
+			retransformer.register(classId, loader, classname);
+		}
+		return instrumented;
+	}
+
+	private static byte[] instrument(final Instrumenter instrumenter,
+			final InstrumentedClassCache cache, final byte[] source,
+			final String classname) throws IOException {
+		if (cache == null) {
+			return instrumenter.instrument(source, classname);
+		}
+		final long classId = CRC64.classId(source);
+		byte[] instrumented = cache.get(classId, source);
+		if (instrumented == null) {
+			instrumented = instrumenter.instrument(source, classname);
+			cache.put(classId, source, instrumented);
+		}
+		return instrumented;
+	}
+
+	/**
+	 * Creates the cache for instrumented classes if configured. The cache is
+	 * specific for the runtime, which determines the generated code, the kind
+	 * of instrumentation and the code diff.
+	 *
+	 * @return cache or <code>null</code> if classes should not be cached
+	 */
+	private static InstrumentedClassCache createCache(final IRuntime runtime,
+			final AgentOptions options, final String kind,
+			final IExceptionLogger logger) {
+		if (options.getInstrCache() == null) {
+			return null;
+		}
+		final StringBuilder config = new StringBuilder(
+				runtime.getClass().getName()).append('\n').append(kind)
+						.append('\n').append(options.getCounters())
+						.append('\n');
+		if (options.getDiffFile() != null) {
+			config.append(Long.toHexString(diffFileId(options.getDiffFile())));
+		} else if (options.getDiffCode() != null) {
+			config.append(options.getDiffCode());
+		}
+		return new InstrumentedClassCache(options.getInstrCache(),
+				config.toString(), options.getInstrCacheSize() * 1024L * 1024L,
+				logger);
+	}
+
+	private static long diffFileId(final String location) {
+		try {
+			final InputStream in = new FileInputStream(location);
+			try {
+				return CRC64.classId(InputStreams.readFully(in));
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			final IllegalArgumentException ex = new IllegalArgumentException(
+					"Invalid code diff for instrumentation.");
+			ex.initCause(e);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the code diff which restricts instrumentation, a diff file takes
+	 * precedence over a diff string.
+	 *
+	 * @return diff or <code>null</code> if all classes should be instrumented
+	 */
+	private static DiffIndex readDiff(final AgentOptions options) {
+		final DiffIndex diff;
+		try {
+			if (options.getDiffFile() != null) {
+				diff = DiffReader.read(new File(options.getDiffFile()));
+			} else if (options.getDiffCode() != null) {
+				diff = DiffReader
+						.read(new StringReader(options.getDiffCode()));
+			} else {
+				return null;
+			}
+		} catch (final IOException e) {
+			final IllegalArgumentException ex = new IllegalArgumentException(
+					"Invalid code diff for instrumentation.");
+			ex.initCause(e);
+			throw ex;
+		}
+		// An empty diff means full instrumentation like for reports:
+		return diff.isEmpty() ? null : diff;
+	}
+
 	/**
 	 * Checks whether this class should be instrumented.
 	 *
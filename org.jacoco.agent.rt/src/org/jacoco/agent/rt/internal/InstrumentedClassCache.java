@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.internal.data.CRC64;
+
+/**
+ * Persistent cache of instrumented classes which can be shared by concurrent
+ * JVMs. Every entry is a separate file named by the class id of the original
+ * class. The entries are stored in a sub-directory which is specific for the
+ * agent version and the instrumentation options, so entries of other
+ * configurations are never used. Entries are written to temporary files which
+ * are renamed afterwards, so other JVMs never see incomplete entries. Entries
+ * are read through a memory mapping.
+ *
+ * The modification time of an entry is updated whenever it is used. If the
+ * cache exceeds its maximum size the least recently used entries of all
+ * configurations are removed.
+ */
+class InstrumentedClassCache {
+
+	private static final int MAGIC = 0xC0C0CAC4;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final byte[] UNCHANGED = new byte[0];
+
+	private final File root;
+
+	private final File directory;
+
+	private final long maxSize;
+
+	private final IExceptionLogger logger;
+
+	private final AtomicLong size;
+
+	private final AtomicBoolean evicting;
+
+	private volatile boolean writeFailed;
+
+	/**
+	 * Creates a new cache at the given location.
+	 *
+	 * @param location
+	 *            cache directory, will be created if required
+	 * @param options
+	 *            description of all options which affect instrumentation
+	 * @param maxSize
+	 *            maximum size of the cache in bytes
+	 * @param logger
+	 *            logger for problems while writing the cache
+	 */
+	InstrumentedClassCache(final String location, final String options,
+			final long maxSize, final IExceptionLogger logger) {
+		this.root = new File(location);
+		this.directory = new File(root, configurationId(options));
+		this.maxSize = maxSize;
+		this.logger = logger;
+		this.size = new AtomicLong();
+		this.evicting = new AtomicBoolean();
+	}
+
+	private static String configurationId(final String options) {
+		final String config = JaCoCo.VERSION + '\n' + JaCoCo.COMMITID + '\n'
+				+ options;
+		try {
+			return String.format("%016x", Long
+					.valueOf(CRC64.classId(config.getBytes("UTF-8"))));
+		} catch (final UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Returns the directory with the entries of this configuration.
+	 *
+	 * @return entry directory
+	 */
+	File getDirectory() {
+		return directory;
+	}
+
+	private File entryFile(final long classId) {
+		return new File(directory,
+				String.format("%016x.instr", Long.valueOf(classId)));
+	}
+
+	/**
+	 * Looks up the instrumented version of the given class.
+	 *
+	 * @param classId
+	 *            class id of the original class
+	 * @param source
+	 *            original class definition
+	 * @return instrumented class, <code>source</code> itself if the class is
+	 *         not modified by instrumentation or <code>null</code> if the class
+	 *         is not cached
+	 */
+	byte[] get(final long classId, final byte[] source) {
+		final File file = entryFile(classId);
+		final byte[] content;
+		try {
+			content = read(file, classId, source.length);
+		} catch (final IOException e) {
+			// Missing, concurrently removed or damaged entry
+			return null;
+		}
+		if (content != null) {
+			file.setLastModified(System.currentTimeMillis());
+		}
+		return content == UNCHANGED ? source : content;
+	}
+
+	private static byte[] read(final File file, final long classId,
+			final int sourceLength) throws IOException {
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel channel = in.getChannel();
+			final long length = channel.size();
+			if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+				return null;
+			}
+			final MappedByteBuffer buffer = channel
+					.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt() != MAGIC || buffer.getLong() != classId
+					|| buffer.getInt() != sourceLength) {
+				return null;
+			}
+			if (length == HEADER_SIZE) {
+				return UNCHANGED;
+			}
+			final byte[] content = new byte[(int) length - HEADER_SIZE];
+			buffer.get(content);
+			return content;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Stores the instrumented version of the given class. Problems while
+	 * writing are reported once, the class is simply not cached then.
+	 *
+	 * @param classId
+	 *            class id of the original class
+	 * @param source
+	 *            original class definition
+	 * @param instrumented
+	 *            instrumented class or <code>source</code> itself if the class
+	 *            is not modified by instrumentation
+	 */
+	void put(final long classId, final byte[] source,
+			final byte[] instrumented) {
+		final byte[] content = instrumented == source ? UNCHANGED
+				: instrumented;
+		try {
+			write(classId, source.length, content);
+		} catch (final IOException e) {
+			if (!writeFailed) {
+				writeFailed = true;
+				final IOException ex = new IOException(String.format(
+						"Unable to write instrumented class to cache %s.",
+						directory));
+				ex.initCause(e);
+				logger.logExeption(ex);
+			}
+			return;
+		}
+		if (size.addAndGet(HEADER_SIZE + content.length) > maxSize) {
+			startEviction();
+		}
+	}
+
+	private void write(final long classId, final int sourceLength,
+			final byte[] content) throws IOException {
+		directory.mkdirs();
+		final File temp = File.createTempFile(
+				String.format("%016x", Long.valueOf(classId)), ".tmp",
+				directory);
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new FileOutputStream(temp));
+			try {
+				out.writeInt(MAGIC);
+				out.writeLong(classId);
+				out.writeInt(sourceLength);
+				out.write(content);
+			} finally {
+				out.close();
+			}
+			// Another JVM might have stored the same entry in the meantime,
+			// which is fine as the content is identical:
+			temp.renameTo(entryFile(classId));
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Determines the size of the cache and removes least recently used
+	 * entries in a background thread. Only one thread runs at a time.
+	 */
+	void startEviction() {
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		final Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					evict();
+				} finally {
+					evicting.set(false);
+				}
+			}
+		});
+		thread.setName(getClass().getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Determines the size of the cache. If it exceeds the maximum size, the
+	 * least recently used entries of all configurations are removed until the
+	 * cache is reduced to three quarters of the maximum size.
+	 */
+	void evict() {
+		final List<Entry> entries = new ArrayList<Entry>();
+		long total = 0;
+		final File[] dirs = root.listFiles();
+		if (dirs != null) {
+			for (final File dir : dirs) {
+				final File[] files = dir.listFiles();
+				if (files != null) {
+					for (final File file : files) {
+						final Entry entry = new Entry(file);
+						entries.add(entry);
+						total += entry.length;
+					}
+				}
+			}
+		}
+		if (total > maxSize) {
+			Collections.sort(entries, Entry.BY_LAST_USE);
+			final long target = maxSize - maxSize / 4;
+			for (final Entry entry : entries) {
+				if (total <= target) {
+					break;
+				}
+				if (entry.file.delete()) {
+					total -= entry.length;
+				}
+			}
+		}
+		size.set(total);
+	}
+
+	private static class Entry {
+
+		static final Comparator<Entry> BY_LAST_USE = new Comparator<Entry>() {
+			public int compare(final Entry e1, final Entry e2) {
+				return e1.lastUse < e2.lastUse ? -1
+						: (e1.lastUse == e2.lastUse ? 0 : 1);
+			}
+		};
+
+		final File file;
+
+		final long length;
+
+		final long lastUse;
+
+		Entry(final File file) {
+			this.file = file;
+			this.length = file.length();
+			this.lastUse = file.lastModified();
+		}
+
+	}
+
+}
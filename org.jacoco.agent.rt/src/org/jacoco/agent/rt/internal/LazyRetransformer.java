@@ -0,0 +1,323 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+
+/**
+ * Tracks classes which have been loaded with touch only instrumentation and
+ * retransforms them with full instrumentation in a background thread as soon
+ * as they register at the runtime. Classes are identified by their class id,
+ * so copies of the same class in different class loaders are upgraded
+ * together.
+ *
+ * The runtime notifies the retransformer for every class registering at the
+ * runtime, therefore classes which are not pending are detected without
+ * locking. Updates of the pending classes are synchronized on this instance.
+ */
+class LazyRetransformer implements IExecutionDataVisitor {
+
+	private final Instrumentation inst;
+
+	private final IExceptionLogger logger;
+
+	/** loaded classes with touch only instrumentation by class id */
+	private final ConcurrentMap<Long, List<LoadedClass>> pending;
+
+	/** ids of classes which have to be fully instrumented */
+	private final ConcurrentMap<Long, Boolean> touched;
+
+	private final BlockingQueue<LoadedClass> queue;
+
+	/**
+	 * Creates a new retransformer.
+	 *
+	 * @param inst
+	 *            instrumentation used for retransformation
+	 * @param logger
+	 *            logger for classes which can't be retransformed
+	 */
+	LazyRetransformer(final Instrumentation inst,
+			final IExceptionLogger logger) {
+		this.inst = inst;
+		this.logger = logger;
+		this.pending = new ConcurrentHashMap<Long, List<LoadedClass>>();
+		this.touched = new ConcurrentHashMap<Long, Boolean>();
+		this.queue = new LinkedBlockingQueue<LoadedClass>();
+	}
+
+	/**
+	 * Starts the background thread which retransforms the classes.
+	 */
+	void startup() {
+		final Thread worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						retransform(take());
+					}
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Records a class which is loaded with touch only instrumentation. If
+	 * another copy of the class has been executed in the meantime the class is
+	 * scheduled for retransformation immediately.
+	 *
+	 * @param classId
+	 *            id of the class
+	 * @param loader
+	 *            defining class loader, <code>null</code> for the bootstrap
+	 *            loader
+	 * @param classname
+	 *            VM name of the class
+	 */
+	synchronized void register(final long classId, final ClassLoader loader,
+			final String classname) {
+		final Long id = Long.valueOf(classId);
+		final LoadedClass loaded = new LoadedClass(loader, classname);
+		if (touched.containsKey(id)) {
+			queue.add(loaded);
+			return;
+		}
+		List<LoadedClass> classes = pending.get(id);
+		if (classes == null) {
+			classes = new ArrayList<LoadedClass>(1);
+			pending.put(id, classes);
+		}
+		classes.add(loaded);
+	}
+
+	/**
+	 * Checks whether a class has been registered with touch only
+	 * instrumentation and has not been executed yet.
+	 *
+	 * @param classId
+	 *            id of the class
+	 * @return <code>true</code> if the class is waiting for execution
+	 */
+	boolean isPending(final long classId) {
+		return pending.containsKey(Long.valueOf(classId));
+	}
+
+	/**
+	 * Checks whether a class has been executed and has to be fully
+	 * instrumented.
+	 *
+	 * @param classId
+	 *            id of the class
+	 * @return <code>true</code> if full instrumentation is required
+	 */
+	boolean isTouched(final long classId) {
+		return touched.containsKey(Long.valueOf(classId));
+	}
+
+	/**
+	 * Called by the runtime when a class registers. Schedules the
+	 * retransformation of all loaded copies of a pending class.
+	 */
+	public void visitClassExecution(final ExecutionData data) {
+		final Long id = Long.valueOf(data.getId());
+		final List<LoadedClass> classes = pending.remove(id);
+		if (classes == null) {
+			return;
+		}
+		synchronized (this) {
+			touched.put(id, Boolean.TRUE);
+			// Copies may have been added to the list until we got the lock:
+			queue.addAll(classes);
+			// Copies registered after the list has been removed:
+			final List<LoadedClass> late = pending.remove(id);
+			if (late != null) {
+				queue.addAll(late);
+			}
+		}
+	}
+
+	/**
+	 * Waits for classes to retransform and returns all classes scheduled so
+	 * far.
+	 */
+	List<LoadedClass> take() throws InterruptedException {
+		final List<LoadedClass> batch = new ArrayList<LoadedClass>();
+		batch.add(queue.take());
+		queue.drainTo(batch);
+		return batch;
+	}
+
+	/**
+	 * Retransforms the given classes. All classes are retransformed at once,
+	 * if this fails every class is retransformed separately to report the
+	 * broken ones. Classes which have been unloaded meanwhile are skipped,
+	 * classes which can't be found are reported.
+	 *
+	 * @param batch
+	 *            classes to retransform
+	 */
+	void retransform(final List<LoadedClass> batch) {
+		final List<Class<?>> classes = new ArrayList<Class<?>>();
+		final List<LoadedClass> unresolved = new ArrayList<LoadedClass>();
+		for (final LoadedClass c : batch) {
+			if (c.isUnloaded()) {
+				continue;
+			}
+			final Class<?> clazz = c.resolve();
+			if (clazz != null) {
+				classes.add(clazz);
+			} else {
+				unresolved.add(c);
+			}
+		}
+		if (!unresolved.isEmpty()) {
+			findLoaded(unresolved, classes);
+		}
+		if (classes.isEmpty()) {
+			return;
+		}
+		try {
+			inst.retransformClasses(
+					classes.toArray(new Class<?>[classes.size()]));
+		} catch (final Throwable t) {
+			if (classes.size() == 1) {
+				logger.logExeption(new IllegalStateException(
+						String.format("Unable to retransform class %s.",
+								classes.get(0).getName()),
+						t));
+				return;
+			}
+			for (final Class<?> clazz : classes) {
+				try {
+					inst.retransformClasses(clazz);
+				} catch (final Throwable e) {
+					logger.logExeption(new IllegalStateException(String
+							.format("Unable to retransform class %s.",
+									clazz.getName()),
+							e));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Looks up classes which can't be resolved by name among all loaded
+	 * classes, e.g. if their loader delegates to another loader first. Classes
+	 * which are not found are reported.
+	 */
+	private void findLoaded(final List<LoadedClass> unresolved,
+			final List<Class<?>> classes) {
+		for (final Class<?> clazz : inst.getAllLoadedClasses()) {
+			for (final Iterator<LoadedClass> i = unresolved.iterator(); i
+					.hasNext();) {
+				if (i.next().matches(clazz)) {
+					classes.add(clazz);
+					i.remove();
+					break;
+				}
+			}
+			if (unresolved.isEmpty()) {
+				return;
+			}
+		}
+		for (final LoadedClass c : unresolved) {
+			if (!c.isUnloaded()) {
+				logger.logExeption(new IllegalStateException(String.format(
+						"Unable to find class %s for retransformation.",
+						c.name)));
+			}
+		}
+	}
+
+	/**
+	 * Reference to a loaded class which does not prevent unloading.
+	 */
+	static class LoadedClass {
+
+		private final WeakReference<ClassLoader> loader;
+
+		private final String name;
+
+		LoadedClass(final ClassLoader loader, final String classname) {
+			this.loader = loader == null ? null
+					: new WeakReference<ClassLoader>(loader);
+			this.name = classname.replace('/', '.');
+		}
+
+		/**
+		 * Checks whether the class loader of the class has been garbage
+		 * collected.
+		 *
+		 * @return <code>true</code> if the class has been unloaded
+		 */
+		boolean isUnloaded() {
+			return loader != null && loader.get() == null;
+		}
+
+		/**
+		 * Checks whether the given class is the loaded class.
+		 *
+		 * @param clazz
+		 *            class to check
+		 * @return <code>true</code> if name and defining loader match
+		 */
+		boolean matches(final Class<?> clazz) {
+			final ClassLoader l = loader == null ? null : loader.get();
+			return (loader == null || l != null)
+					&& clazz.getClassLoader() == l
+					&& name.equals(clazz.getName());
+		}
+
+		/**
+		 * Looks up the loaded class by name through its class loader.
+		 *
+		 * @return class or <code>null</code> if the class has been unloaded
+		 *         or is not accessible by name
+		 */
+		Class<?> resolve() {
+			ClassLoader l = null;
+			if (loader != null) {
+				l = loader.get();
+				if (l == null) {
+					return null;
+				}
+			}
+			try {
+				final Class<?> clazz = Class.forName(name, false, l);
+				return clazz.getClassLoader() == l ? clazz : null;
+			} catch (final ClassNotFoundException e) {
+				return null;
+			} catch (final LinkageError e) {
+				return null;
+			}
+		}
+
+	}
+
+}
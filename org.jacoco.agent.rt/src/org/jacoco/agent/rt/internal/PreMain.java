@@ -51,8 +51,17 @@ public final class PreMain {
 
 		final IRuntime runtime = createRuntime(inst);
 		runtime.startup(agent.getData());
-		inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
-				IExceptionLogger.SYSTEM_ERR));
+		if (agentOptions.getLazy() && inst.isRetransformClassesSupported()) {
+			final LazyRetransformer retransformer = new LazyRetransformer(
+					inst, IExceptionLogger.SYSTEM_ERR);
+			agent.getData().setRegistrationListener(retransformer);
+			retransformer.startup();
+			inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
+					retransformer, IExceptionLogger.SYSTEM_ERR), true);
+		} else {
+			inst.addTransformer(new CoverageTransformer(runtime, agentOptions,
+					IExceptionLogger.SYSTEM_ERR));
+		}
 	}
 
 	private static IRuntime createRuntime(final Instrumentation inst)
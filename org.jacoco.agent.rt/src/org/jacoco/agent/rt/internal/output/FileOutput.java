@@ -30,6 +30,7 @@ import org.jacoco.core.runtime.RuntimeData;
  * <ul>
  * <li>destfile</li>
  * <li>append</li>
+ * <li>compress</li>
  * </ul>
  */
 public class FileOutput implements IAgentOutput {
@@ -44,11 +45,14 @@ public class FileOutput implements IAgentOutput {
 
 	private boolean append;
 
+	private boolean compress;
+
 	public final void startup(final AgentOptions options,
 			final RuntimeData data) throws IOException {
 		this.data = data;
 		this.destFile = new File(options.getDestfile()).getAbsoluteFile();
 		this.append = options.getAppend();
+		this.compress = options.getCompress();
 		final File folder = destFile.getParentFile();
 		if (folder != null) {
 			folder.mkdirs();
@@ -60,8 +64,10 @@ public class FileOutput implements IAgentOutput {
 	public void writeExecutionData(final boolean reset) throws IOException {
 		final OutputStream output = openFile();
 		try {
-			final ExecutionDataWriter writer = new ExecutionDataWriter(output);
-			data.collect(writer, writer, reset);
+			final ExecutionDataWriter writer = new ExecutionDataWriter(output,
+					compress);
+			data.collectSnapshot(writer, writer, reset);
+			writer.flush();
 		} finally {
 			output.close();
 		}
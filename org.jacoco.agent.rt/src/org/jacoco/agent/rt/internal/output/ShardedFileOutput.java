@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.agent.rt.internal.output;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jacoco.agent.rt.internal.IExceptionLogger;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.runtime.AbstractRuntime;
+import org.jacoco.core.runtime.AgentOptions;
+import org.jacoco.core.runtime.RuntimeData;
+import org.jacoco.core.tools.ExecShardManifest;
+
+/**
+ * Output that writes execution data to a shard file of its own. The shard is
+ * created in the directory given by
+ * {@link ExecShardManifest#getDirectory(File)} for the destination file and
+ * registered in the manifest of this directory. Dumps are serialized in the
+ * calling thread and written by a background thread, so callers only wait if
+ * too many dumps are pending.
+ */
+public class ShardedFileOutput implements IAgentOutput {
+
+	/** Maximum number of dumps waiting to be written. */
+	static final int QUEUE_CAPACITY = 4;
+
+	private static final byte[] STOP = new byte[0];
+
+	private final IExceptionLogger logger;
+
+	private RuntimeData data;
+
+	private boolean compress;
+
+	private File shard;
+
+	private BlockingQueue<byte[]> queue;
+
+	private Thread worker;
+
+	/**
+	 * New controller instance.
+	 *
+	 * @param logger
+	 *            logger to use in case of exceptions is spawned threads
+	 */
+	public ShardedFileOutput(final IExceptionLogger logger) {
+		this.logger = logger;
+	}
+
+	public void startup(final AgentOptions options, final RuntimeData data)
+			throws IOException {
+		this.data = data;
+		this.compress = options.getCompress();
+		final File directory = ExecShardManifest.getDirectory(
+				new File(options.getDestfile()).getAbsoluteFile());
+		directory.mkdirs();
+		final String name = ExecShardManifest.createShardName(
+				data.getSessionId(), AbstractRuntime.createRandomId());
+		shard = new File(directory, name);
+		final OutputStream output = new BufferedOutputStream(
+				new FileOutputStream(shard));
+		ExecShardManifest.register(directory, name);
+		queue = new ArrayBlockingQueue<byte[]>(QUEUE_CAPACITY);
+		worker = new Thread(new Runnable() {
+			public void run() {
+				try {
+					write(output);
+				} catch (final IOException e) {
+					logger.logExeption(e);
+				}
+			}
+		});
+		worker.setName(getClass().getName());
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private void write(final OutputStream output) throws IOException {
+		try {
+			while (true) {
+				final byte[] dump;
+				try {
+					dump = queue.take();
+				} catch (final InterruptedException e) {
+					return;
+				}
+				if (dump == STOP) {
+					return;
+				}
+				output.write(dump);
+				output.flush();
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Returns the shard file of this output.
+	 *
+	 * @return shard file
+	 */
+	File getShard() {
+		return shard;
+	}
+
+	public void writeExecutionData(final boolean reset) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer,
+				compress);
+		data.collectSnapshot(writer, writer, reset);
+		writer.flush();
+		enqueue(buffer.toByteArray());
+	}
+
+	private void enqueue(final byte[] dump) throws IOException {
+		if (!worker.isAlive()) {
+			throw new IOException(
+					String.format("Writer for shard %s terminated.", shard));
+		}
+		try {
+			queue.put(dump);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	public void shutdown() throws Exception {
+		enqueue(STOP);
+		worker.join();
+	}
+
+}
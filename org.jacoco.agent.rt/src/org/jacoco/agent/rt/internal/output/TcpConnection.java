@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
 
+import org.jacoco.core.runtime.DeltaTracker;
 import org.jacoco.core.runtime.IRemoteCommandVisitor;
 import org.jacoco.core.runtime.RemoteControlReader;
 import org.jacoco.core.runtime.RemoteControlWriter;
@@ -30,6 +31,8 @@ class TcpConnection implements IRemoteCommandVisitor {
 
 	private final Socket socket;
 
+	private final DeltaTracker deltaTracker;
+
 	private RemoteControlWriter writer;
 
 	private RemoteControlReader reader;
@@ -37,8 +40,14 @@ class TcpConnection implements IRemoteCommandVisitor {
 	private boolean initialized;
 
 	public TcpConnection(final Socket socket, final RuntimeData data) {
+		this(socket, data, false);
+	}
+
+	public TcpConnection(final Socket socket, final RuntimeData data,
+			final boolean delta) {
 		this.socket = socket;
 		this.data = data;
+		this.deltaTracker = delta ? new DeltaTracker() : null;
 		this.initialized = false;
 	}
 
@@ -97,10 +106,16 @@ class TcpConnection implements IRemoteCommandVisitor {
 
 	// === IRemoteCommandVisitor ===
 
-	public void visitDumpCommand(final boolean dump, final boolean reset)
-			throws IOException {
+	public synchronized void visitDumpCommand(final boolean dump,
+			final boolean reset) throws IOException {
+		// Remote and local dumps write to the same stream outside the lock of
+		// the runtime data, hence this method is synchronized.
 		if (dump) {
-			data.collect(writer, writer, reset);
+			if (deltaTracker == null) {
+				data.collectSnapshot(writer, writer, reset);
+			} else {
+				data.collectDelta(deltaTracker, writer, writer, writer, reset);
+			}
 		} else {
 			if (reset) {
 				data.reset();
@@ -190,6 +190,27 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setPort(port);
 	}
 
+	/**
+	 * Sets whether dumps over TCP connections only contain newly executed
+	 * probes.
+	 *
+	 * @param delta
+	 *            <code>true</code> for delta dumps
+	 */
+	public void setDelta(final boolean delta) {
+		agentOptions.setDelta(delta);
+	}
+
+	/**
+	 * Sets the file with the code diff which restricts instrumentation.
+	 *
+	 * @param file
+	 *            diff file in JSON format
+	 */
+	public void setDifffile(final File file) {
+		agentOptions.setDiffFile(file.getAbsolutePath());
+	}
+
 	/**
 	 * Sets the directory where all class files seen by the agent should be
 	 * dumped to.
@@ -201,6 +222,16 @@ public class AbstractCoverageTask extends Task {
 		agentOptions.setClassDumpDir(dir.getAbsolutePath());
 	}
 
+	/**
+	 * Sets whether execution data written to the output file is compressed.
+	 *
+	 * @param compress
+	 *            <code>true</code> if the output should be compressed
+	 */
+	public void setCompress(final boolean compress) {
+		agentOptions.setCompress(compress);
+	}
+
 	/**
 	 * Sets whether the agent should expose functionality via JMX.
 	 *
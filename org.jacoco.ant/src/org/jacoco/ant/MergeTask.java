@@ -24,8 +24,7 @@ import org.apache.tools.ant.Task;
 import org.apache.tools.ant.types.Resource;
 import org.apache.tools.ant.types.ResourceCollection;
 import org.apache.tools.ant.types.resources.Union;
-import org.apache.tools.ant.util.FileUtils;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
 
 /**
  * Task for merging a set of execution data files (*.exec) into a single file
@@ -36,6 +35,8 @@ public class MergeTask extends Task {
 
 	private final Union files = new Union();
 
+	private int threads = 1;
+
 	/**
 	 * Sets the location of the merged data store
 	 *
@@ -46,6 +47,17 @@ public class MergeTask extends Task {
 		this.destfile = destfile;
 	}
 
+	/**
+	 * Sets the number of execution data resources read concurrently. Default
+	 * is 1.
+	 *
+	 * @param threads
+	 *            number of threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * This task accepts any number of execution data resources.
 	 *
@@ -63,13 +75,18 @@ public class MergeTask extends Task {
 					getLocation());
 		}
 
-		final ExecFileLoader loader = new ExecFileLoader();
+		if (threads < 1) {
+			throw new BuildException("Invalid number of threads: " + threads,
+					getLocation());
+		}
+
+		final ExecFileMerger merger = new ExecFileMerger(threads);
 
-		load(loader);
-		save(loader);
+		load(merger);
+		save(merger);
 	}
 
-	private void load(final ExecFileLoader loader) {
+	private void load(final ExecFileMerger merger) {
 		final Iterator<?> resourceIterator = files.iterator();
 		while (resourceIterator.hasNext()) {
 			final Resource resource = (Resource) resourceIterator.next();
@@ -80,24 +97,24 @@ public class MergeTask extends Task {
 
 			log(format("Loading execution data file %s", resource));
 
-			InputStream resourceStream = null;
-			try {
-				resourceStream = resource.getInputStream();
-				loader.load(resourceStream);
-			} catch (final IOException e) {
-				throw new BuildException(format("Unable to read %s", resource),
-						e, getLocation());
-			} finally {
-				FileUtils.close(resourceStream);
-			}
+			merger.add(new ExecFileMerger.Input() {
+				public InputStream open() throws IOException {
+					return resource.getInputStream();
+				}
+			}, resource.toString());
+		}
+		try {
+			merger.finish();
+		} catch (final IOException e) {
+			throw new BuildException(e.getMessage(), e, getLocation());
 		}
 	}
 
-	private void save(final ExecFileLoader loader) {
+	private void save(final ExecFileMerger merger) {
 		log(format("Writing merged execution data to %s",
 				destfile.getAbsolutePath()));
 		try {
-			loader.save(destfile, false);
+			merger.save(destfile, false);
 		} catch (final IOException e) {
 			throw new BuildException(format("Unable to write merged file %s",
 					destfile.getAbsolutePath()), e, getLocation());
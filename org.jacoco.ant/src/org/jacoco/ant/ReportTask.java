@@ -37,6 +37,7 @@ import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.IBundleCoverage;
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ParallelAnalyzer;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfoStore;
 import org.jacoco.core.tools.ExecFileLoader;
@@ -424,6 +425,18 @@ public class ReportTask extends Task {
 
 	private final List<FormatterElement> formatters = new ArrayList<FormatterElement>();
 
+	private int threads = 1;
+
+	/**
+	 * Sets the number of threads used to analyze class files. Default is 1.
+	 *
+	 * @param threads
+	 *            number of analysis threads
+	 */
+	public void setThreads(final int threads) {
+		this.threads = threads;
+	}
+
 	/**
 	 * Returns the nested resource collection for execution data files.
 	 *
@@ -563,7 +576,26 @@ public class ReportTask extends Task {
 	private IBundleCoverage createBundle(final GroupElement group)
 			throws IOException {
 		final CoverageBuilder builder = new CoverageBuilder();
-		final Analyzer analyzer = new Analyzer(executionDataStore, builder);
+		if (threads > 1) {
+			final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+					executionDataStore, builder, null, threads);
+			try {
+				analyzeClassfiles(analyzer, group);
+				analyzer.finish();
+			} finally {
+				analyzer.close();
+			}
+		} else {
+			analyzeClassfiles(new Analyzer(executionDataStore, builder),
+					group);
+		}
+		final IBundleCoverage bundle = builder.getBundle(group.name);
+		logBundleInfo(bundle, builder.getNoMatchClasses());
+		return bundle;
+	}
+
+	private void analyzeClassfiles(final Analyzer analyzer,
+			final GroupElement group) throws IOException {
 		for (final Iterator<?> i = group.classfiles.iterator(); i.hasNext();) {
 			final Resource resource = (Resource) i.next();
 			if (resource.isDirectory() && resource instanceof FileResource) {
@@ -574,9 +606,6 @@ public class ReportTask extends Task {
 				in.close();
 			}
 		}
-		final IBundleCoverage bundle = builder.getBundle(group.name);
-		logBundleInfo(bundle, builder.getNoMatchClasses());
-		return bundle;
 	}
 
 	private void logBundleInfo(final IBundleCoverage bundle,
@@ -13,7 +13,9 @@
 package org.jacoco.cli.internal.commands;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -25,6 +27,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.internal.InputStreams;
@@ -95,6 +100,35 @@ public class InstrumentTest extends CommandTestBase {
 		assertInstrumented(new File(destdir, "InstrumentTest.class"));
 	}
 
+	@Test
+	public void should_instrument_jar_files_concurrently() throws Exception {
+		File jar = new File(tmp.getRoot(), "test.jar");
+		ZipOutputStream zipout = new ZipOutputStream(new FileOutputStream(jar));
+		for (int i = 0; i < 10; i++) {
+			zipout.putNextEntry(new ZipEntry("Test" + i + ".class"));
+			InputStream in = new FileInputStream(new File(getClassPath(),
+					"org/jacoco/cli/internal/commands/InstrumentTest.class"));
+			zipout.write(InputStreams.readFully(in));
+			in.close();
+		}
+		zipout.close();
+		File destdir = new File(tmp.getRoot(), "dest");
+
+		execute("instrument", "--threads", "3", "--dest",
+				destdir.getAbsolutePath(), jar.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] 10 classes instrumented to "
+				+ destdir.getAbsolutePath(), out);
+		ZipInputStream zipin = new ZipInputStream(
+				new FileInputStream(new File(destdir, "test.jar")));
+		for (int i = 0; i < 10; i++) {
+			assertEquals("Test" + i + ".class", zipin.getNextEntry().getName());
+		}
+		assertNull(zipin.getNextEntry());
+		zipin.close();
+	}
+
 	@Test
 	public void should_not_instrument_anything_when_no_source_is_given()
 			throws Exception {
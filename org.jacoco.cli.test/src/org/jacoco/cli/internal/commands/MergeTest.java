@@ -13,6 +13,8 @@
 package org.jacoco.cli.internal.commands;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -25,7 +27,9 @@ import java.util.Set;
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.MappedExecutionData;
 import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecShardManifest;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -75,6 +79,79 @@ public class MergeTest extends CommandTestBase {
 		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
 	}
 
+	@Test
+	public void should_merge_exec_files_into_indexed_format()
+			throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--indexed", "--destfile", dest.getAbsolutePath(),
+				a.getAbsolutePath(), b.getAbsolutePath());
+
+		assertOk();
+		assertTrue(MappedExecutionData.isIndexed(dest));
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), names);
+	}
+
+	@Test
+	public void should_merge_exec_files_concurrently() throws Exception {
+		File a = createExecFile("a");
+		File b = createExecFile("b");
+		File c = createExecFile("c");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--threads", "2", "--destfile",
+				dest.getAbsolutePath(), a.getAbsolutePath(),
+				b.getAbsolutePath(), c.getAbsolutePath(), a.getAbsolutePath());
+
+		assertOk();
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b", "c")), names);
+	}
+
+	@Test
+	public void should_merge_shards() throws Exception {
+		File dir = tmp.newFolder("jacoco.exec.shards");
+		createExecFile("jacoco.exec.shards/a");
+		createExecFile("jacoco.exec.shards/b");
+		ExecShardManifest.register(dir, "a.exec");
+		ExecShardManifest.register(dir, "b.exec");
+		File c = createExecFile("c");
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		execute("merge", "--shards", dir.getAbsolutePath(), "--destfile",
+				dest.getAbsolutePath(), c.getAbsolutePath());
+
+		assertOk();
+		assertContains("[INFO] Found 2 shards in " + dir.getAbsolutePath(),
+				out);
+		Set<String> names = loadExecFile(dest);
+		assertEquals(new HashSet<String>(
+				Arrays.asList("jacoco.exec.shards/a", "jacoco.exec.shards/b",
+						"c")),
+				names);
+	}
+
+	@Test
+	public void should_fail_on_broken_exec_file() throws Exception {
+		File broken = tmp.newFile("broken.exec");
+		FileOutputStream brokenout = new FileOutputStream(broken);
+		brokenout.write("Invalid Content".getBytes());
+		brokenout.close();
+		File dest = new File(tmp.getRoot(), "merged.exec");
+
+		try {
+			execute("merge", "--destfile", dest.getAbsolutePath(),
+					broken.getAbsolutePath());
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unable to read " + broken.getAbsolutePath() + ".",
+					e.getMessage());
+		}
+	}
+
 	@Test
 	public void local_should_merge_exec_files() throws Exception {
 		File dest = new File("D:\\jacoco", "merged.exec");
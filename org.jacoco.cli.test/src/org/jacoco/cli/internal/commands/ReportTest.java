@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.cli.internal.commands;
 
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -20,6 +21,7 @@ import java.io.FileOutputStream;
 import org.jacoco.cli.internal.CommandTestBase;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.internal.diff.ProbeIndex;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -110,6 +112,45 @@ public class ReportTest extends CommandTestBase {
         assertTrue(csv.isFile());
     }
 
+    @Test
+    public void should_write_probe_index_when_probeindex_option_is_provided()
+            throws Exception {
+        File index = new File(tmp.getRoot(), "probes.idx");
+
+        execute("report", "--classfiles", getClassPath(), "--probeindex",
+                index.getAbsolutePath());
+
+        assertOk();
+        assertContains("[INFO] Writing probe index", out);
+        assertNotNull(ProbeIndex.map(index)
+                .getClassRanges("org/jacoco/cli/internal/commands/ReportTest"));
+    }
+
+    @Test
+    public void should_write_diff_summary_when_diffsummaryjson_option_is_provided()
+            throws Exception {
+        File json = new File(tmp.getRoot(), "diff.json");
+
+        execute("report", "--classfiles", getClassPath(), "--diffCode",
+                "[{\"classFile\":\"org/jacoco/cli/internal/commands/ReportTest\",\"type\":\"ADD\"}]",
+                "--diffsummary", "--diffsummaryjson", json.getAbsolutePath());
+
+        assertOk();
+        assertContains("[INFO] Diff selected 1 classes, skipped 13 classes.", out);
+        assertTrue(json.isFile());
+    }
+
+    @Test
+    public void should_fail_when_middle_probe_indexes_do_not_match_middle_diffs()
+            throws Exception {
+        execute("report", "--classfiles", getClassPath(),
+                "--middleprobeindex", "a.idx",
+                "--middleDiffCode", "[]", "--middleDiffCode", "[]");
+
+        assertFailure();
+        assertContains("[ERROR] 1 --middleprobeindex options given for 2 --middleDiffCode options", err);
+    }
+
     @Test
     public void should_create_html_report_when_html_option_is_provided()
             throws Exception {
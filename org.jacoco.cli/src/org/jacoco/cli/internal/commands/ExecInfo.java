@@ -21,10 +21,10 @@ import java.util.Date;
 import java.util.List;
 
 import org.jacoco.cli.internal.Command;
-import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
-import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.IExecutionDataStreamVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.ProbeBuffer;
 import org.jacoco.core.data.SessionInfo;
 import org.kohsuke.args4j.Argument;
 
@@ -68,13 +68,12 @@ public class ExecInfo extends Command {
 						new Date(info.getDumpTimeStamp()));
 			}
 		});
-		reader.setExecutionDataVisitor(new IExecutionDataVisitor() {
-			public void visitClassExecution(final ExecutionData data) {
-				out.printf("%016x  %3d of %3d   %s%n",
-						Long.valueOf(data.getId()),
-						Integer.valueOf(getHitCount(data.getProbes())),
-						Integer.valueOf(data.getProbes().length),
-						data.getName());
+		reader.setExecutionDataStreamVisitor(new IExecutionDataStreamVisitor() {
+			public void visitClassExecution(final long id, final String name,
+					final ProbeBuffer probes) {
+				out.printf("%016x  %3d of %3d   %s%n", Long.valueOf(id),
+						Integer.valueOf(probes.cardinality()),
+						Integer.valueOf(probes.length()), name);
 			}
 		});
 		reader.read();
@@ -82,14 +81,4 @@ public class ExecInfo extends Command {
 		out.println();
 	}
 
-	private int getHitCount(final boolean[] data) {
-		int count = 0;
-		for (final boolean hit : data) {
-			if (hit) {
-				count++;
-			}
-		}
-		return count;
-	}
-
 }
@@ -40,6 +40,9 @@ public class Instrument extends Command {
 	@Argument(usage = "list of folder or files to instrument recusively", metaVar = "<sourcefiles>")
 	List<File> source = new ArrayList<File>();
 
+	@Option(name = "--threads", usage = "number of threads instrumenting the entries of an archive (default 1)", metaVar = "<n>")
+	int threads = 1;
+
 	private Instrumenter instrumenter;
 
 	@Override
@@ -53,6 +56,7 @@ public class Instrument extends Command {
 		final File absoluteDest = dest.getAbsoluteFile();
 		instrumenter = new Instrumenter(
 				new OfflineInstrumentationAccessGenerator());
+		instrumenter.setThreads(threads);
 		int total = 0;
 		for (final File s : source) {
 			if (s.isFile()) {
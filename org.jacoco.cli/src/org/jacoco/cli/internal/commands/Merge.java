@@ -19,7 +19,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jacoco.cli.internal.Command;
-import org.jacoco.core.tools.ExecFileLoader;
+import org.jacoco.core.tools.ExecFileMerger;
+import org.jacoco.core.tools.ExecShardManifest;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -34,6 +35,15 @@ public class Merge extends Command {
 	@Option(name = "--destfile", usage = "file to write merged execution data to", metaVar = "<path>", required = true)
 	File destfile;
 
+	@Option(name = "--shards", usage = "directory with shards written by the agent in 'shards' output mode, may be specified multiple times", metaVar = "<dir>")
+	List<File> shards = new ArrayList<File>();
+
+	@Option(name = "--indexed", usage = "write the indexed format which allows random access by class id")
+	boolean indexed;
+
+	@Option(name = "--threads", usage = "number of exec files read concurrently (default 1)", metaVar = "<n>")
+	int threads = 1;
+
 	@Override
 	public String description() {
 		return "Merges multiple exec files into a new one.";
@@ -42,27 +52,39 @@ public class Merge extends Command {
 	@Override
 	public int execute(final PrintWriter out, final PrintWriter err)
 			throws IOException {
-		final ExecFileLoader loader = loadExecutionData(out);
+		final ExecFileMerger merger = loadExecutionData(out);
 		out.printf("[INFO] Writing execution data to %s.%n",
 				destfile.getAbsolutePath());
-		loader.save(destfile, true);
+		if (indexed) {
+			merger.saveIndexed(destfile);
+		} else {
+			merger.save(destfile, true);
+		}
 		return 0;
 	}
 
-	private ExecFileLoader loadExecutionData(final PrintWriter out)
+	private ExecFileMerger loadExecutionData(final PrintWriter out)
 			throws IOException {
-		final ExecFileLoader loader = new ExecFileLoader();
-		if (execfiles.isEmpty()) {
+		final ExecFileMerger merger = new ExecFileMerger(threads);
+		final List<File> files = new ArrayList<File>(execfiles);
+		for (final File dir : shards) {
+			final List<File> listed = ExecShardManifest.read(dir);
+			out.printf("[INFO] Found %s shards in %s.%n",
+					Integer.valueOf(listed.size()), dir.getAbsolutePath());
+			files.addAll(listed);
+		}
+		if (files.isEmpty()) {
 			out.println("[WARN] No execution data files provided.");
 		} else {
-			for (final File file : execfiles) {
+			for (final File file : files) {
 				out.printf("[INFO] Loading execution data file %s.%n",
 						file.getAbsolutePath());
-				// 开始加载exec文件，遍历多个文件加载
-				loader.load(file);
+				// 多个exec文件并发读取，按类id分区合并
+				merger.add(file);
 			}
 		}
-		return loader;
+		merger.finish();
+		return merger;
 	}
 
 }
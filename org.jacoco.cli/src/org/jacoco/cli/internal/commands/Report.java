@@ -13,28 +13,30 @@
  *******************************************************************************/
 package org.jacoco.cli.internal.commands;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import org.jacoco.cli.internal.Command;
 import org.jacoco.core.analysis.*;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.internal.analysis.ClassAnalyzer;
-import org.jacoco.core.internal.analysis.ClassCoverageImpl;
-import org.jacoco.core.internal.analysis.MethodCoverageImpl;
-import org.jacoco.core.internal.diff.ClassInfoDto;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
-import org.jacoco.core.internal.diff.JsonReadUtil;
-import org.jacoco.core.internal.diff.MethodInfoDto;
+import org.jacoco.core.internal.diff.ClassProbeRanges;
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.DiffReader;
+import org.jacoco.core.internal.diff.ProbeIndex;
+import org.jacoco.core.internal.diff.ProbeMerger;
+import org.jacoco.core.internal.diff.ProbeRangeAnalyzer;
 import org.jacoco.core.tools.ExecFileLoader;
 import org.jacoco.report.DirectorySourceFileLocator;
 import org.jacoco.report.FileMultiReportOutput;
@@ -65,6 +67,12 @@ public class Report extends Command {
     @Option(name = "--middleclassfiles", usage = "location of Java class files", metaVar = "<path>")
     List<File> middleClassfiles = new ArrayList<File>();
 
+    @Option(name = "--middleprobeindex", usage = "probe index files used instead of the middle class files", metaVar = "<file>")
+    List<File> middleProbeIndexes = new ArrayList<File>();
+
+    @Option(name = "--probeindex", usage = "output file for the probe index of the class files", metaVar = "<file>")
+    File probeIndex;
+
     @Option(name = "--sourcefiles", usage = "location of the source files", metaVar = "<path>")
     List<File> sourcefiles = new ArrayList<File>();
 
@@ -74,9 +82,21 @@ public class Report extends Command {
     @Option(name = "--middleDiffCode", usage = "input String for diff", metaVar = "<file>")
     List<String> oldDiffCode = new ArrayList();
 
-    @Option(name = "--diffCodeFiles", usage = "input file for diff", metaVar = "<path>")
+    @Option(name = "--diffCodeFiles", usage = "input file for diff, optionally gzip compressed", metaVar = "<path>")
     String diffCodeFiles;
 
+    @Option(name = "--diffsummary", usage = "print statistics about the classes and methods selected by the diff")
+    boolean diffSummary;
+
+    @Option(name = "--diffsummaryjson", usage = "output file for the diff statistics in JSON format", metaVar = "<file>")
+    File diffSummaryJson;
+
+    @Option(name = "--diffdebug", usage = "print every class and method selected or skipped by the diff")
+    boolean diffDebug;
+
+    @Option(name = "--threads", usage = "number of threads used for class file analysis (default 1)", metaVar = "<n>")
+    int threads = 1;
+
     @Option(name = "--tabwith", usage = "tab stop width for the source pages (default 4)", metaVar = "<n>")
     int tabwidth = 4;
 
@@ -103,45 +123,100 @@ public class Report extends Command {
     @Override
     public int execute(final PrintWriter out, final PrintWriter err)
             throws IOException {
-        final ExecFileLoader oldLoader = loadExecutionData(out, middleExecfiles);// 读取exec
-
+        if (!checkMiddleOptions(err)) {
+            return -1;
+        }
         final ExecFileLoader loader = loadExecutionData(out, execfiles);// 读取exec
-        // 可以在这个阶段手动修改loader的值来合并覆盖率数据。
-        // 在 MethodCoverageImpl 中添加开始行，结束行，probes数组的对象
-        // 在 ClassAnalyzer 中会统计 MethodCoverageImpl ClassCoverageImpl ，在这个环节添加数据
 
+        final DiffIndex finalDiff = getDiffData();
+        Map<String, ClassProbeRanges> finalRanges = null;
+        if (null != probeIndex) {
+            // 保存本次构建所有方法的探针位置，后续合并时无需再读取本次的class文件
+            finalRanges = scanProbeRanges(classfiles, null);
+            writeProbeIndex(finalRanges, out);
+        }
+        final List<DiffIndex> oldDiffData = getOldDiffData();
+        if (null != finalDiff && !oldDiffData.isEmpty()) {
+            // 先把中间commit未变方法的探针映射到最新commit的exec数据中，最后只需解析一次class文件
+            if (null == finalRanges) {
+                finalRanges = scanProbeRanges(classfiles, finalDiff);
+            }
+            final ExecFileLoader oldLoader = loadExecutionData(out, middleExecfiles);
+            mergeMiddleProbes(out, oldLoader.getExecutionDataStore(),
+                    finalRanges, loader.getExecutionDataStore(), finalDiff, oldDiffData);
+        }
 
+        final DiffDiagnostics diagnostics = createDiffDiagnostics(out);
         final IBundleCoverage bundle = analyze(loader.getExecutionDataStore(),
-                out, classfiles);// 读取class文件
-
-        for (int i = 0; i < getOldDiffData().size(); i++) {
-            List<File> tempFiles = new ArrayList<File>();
-            tempFiles.add(middleClassfiles.get(i));
-            final IBundleCoverage oldBundle = analyze(oldLoader.getExecutionDataStore(),
-                    out, tempFiles);// 读取class文件
-            mergeProbes(oldBundle, bundle, getOldDiffData().get(i), CoverageBuilder.classInfos, loader.getExecutionDataStore());
+                out, classfiles, finalDiff, diagnostics);// 读取class文件
+        if (null != diagnostics) {
+            writeDiffSummary(diagnostics, out);
         }
 
-        // 在运行analyze之前修改loader数据是可以，但是之后是无效的，所以目前是先通过mergeprobes修改了loader，再重新analyze
-        final IBundleCoverage bundlenew = analyze(loader.getExecutionDataStore(),
-                out, classfiles);// 读取class文件
-
-        writeReports(bundlenew, loader, out);
+        writeReports(bundle, loader, null != finalDiff, out);
         return 0;
     }
 
-    public List<List<ClassInfoDto>> getOldDiffData() {
-        Gson gson = new Gson();
-        List<List<ClassInfoDto>> results = new ArrayList();
+    /**
+     * 每个中间commit需要一个--middleDiffCode以及一个--middleprobeindex或--middleclassfiles，按位置一一对应
+     *
+     * @return 参数数量一致时返回<code>true</code>
+     */
+    private boolean checkMiddleOptions(final PrintWriter err) {
+        if (oldDiffCode.isEmpty()) {
+            return true;
+        }
+        final String option;
+        final int count;
+        if (middleProbeIndexes.isEmpty()) {
+            option = "--middleclassfiles";
+            count = middleClassfiles.size();
+        } else {
+            option = "--middleprobeindex";
+            count = middleProbeIndexes.size();
+        }
+        if (count == oldDiffCode.size()) {
+            return true;
+        }
+        err.printf("[ERROR] %s %s options given for %s --middleDiffCode options, "
+                        + "both have to be specified once for every middle commit.%n",
+                Integer.valueOf(count), option, Integer.valueOf(oldDiffCode.size()));
+        return false;
+    }
+
+    /**
+     * 解析最新commit的diff数据，只在报告开始时解析一次。diff文件以流的方式直接解析成索引，支持gzip压缩的文件
+     *
+     * @return diff索引，全量覆盖时为<code>null</code>
+     */
+    public DiffIndex getDiffData() throws IOException {
+        // 如果有增量参数将其设置进去
+        final DiffIndex diff;
+        if (null != this.diffCodeFiles) {
+            diff = DiffReader.read(new File(this.diffCodeFiles));
+        } else {
+            diff = parseDiffData(this.diffCode);
+        }
+        // 空的diff按全量覆盖处理
+        return null == diff || diff.isEmpty() ? null : diff;
+    }
+
+    public List<DiffIndex> getOldDiffData() throws IOException {
+        final List<DiffIndex> results = new ArrayList<DiffIndex>();
         for (String diffCode : this.oldDiffCode) {
-            List<ClassInfoDto> classInfos = gson.fromJson(diffCode,
-                    new TypeToken<List<ClassInfoDto>>() {
-                    }.getType());
-            results.add(classInfos);
+            final DiffIndex diff = parseDiffData(diffCode);
+            results.add(null == diff ? new DiffIndex(null) : diff);
         }
         return results;
     }
 
+    private static DiffIndex parseDiffData(final String json) throws IOException {
+        if (null == json || "".equals(json)) {
+            return null;
+        }
+        return DiffReader.read(new StringReader(json));
+    }
+
     private ExecFileLoader loadExecutionData(final PrintWriter out, List<File> execfiles)
             throws IOException {
         final ExecFileLoader loader = new ExecFileLoader();
@@ -151,32 +226,73 @@ public class Report extends Command {
             for (final File file : execfiles) {
                 out.printf("[INFO] Loading execution data file %s.%n",
                         file.getAbsolutePath());
-                loader.load(file);
+                loader.map(file);
             }
         }
         return loader;
     }
 
     private IBundleCoverage analyze(final ExecutionDataStore data,
-                                    final PrintWriter out, List<File> classfiles) throws IOException {
-        CoverageBuilder builder;
-        // 如果有增量参数将其设置进去
-        if (null != this.diffCodeFiles) {
-            builder = new CoverageBuilder(
-                    JsonReadUtil.readJsonToString(this.diffCodeFiles));
-        } else if (null != this.diffCode) {
-            builder = new CoverageBuilder(this.diffCode);
+                                    final PrintWriter out, List<File> classfiles,
+                                    final IDiffFilter diff, final DiffDiagnostics diagnostics)
+            throws IOException {
+        final CoverageBuilder builder = new CoverageBuilder();
+        if (threads > 1) {
+            final ParallelAnalyzer analyzer = new ParallelAnalyzer(data,
+                    builder, diff, threads);
+            try {
+                analyzer.setDiffDiagnostics(diagnostics);
+                for (final File f : classfiles) {
+                    analyzer.analyzeAll(f);
+                }
+                analyzer.finish();
+            } finally {
+                analyzer.close();
+            }
         } else {
-            builder = new CoverageBuilder();
-        }
-        final Analyzer analyzer = new Analyzer(data, builder);
-        for (final File f : classfiles) {
-            analyzer.analyzeAll(f);
+            final Analyzer analyzer = new Analyzer(data, builder, diff);
+            analyzer.setDiffDiagnostics(diagnostics);
+            for (final File f : classfiles) {
+                analyzer.analyzeAll(f);
+            }
         }
         printNoMatchWarning(builder.getNoMatchClasses(), out);
         return builder.getBundle(name);
     }
 
+    private DiffDiagnostics createDiffDiagnostics(final PrintWriter out) {
+        if (diffDebug) {
+            return new DiffDiagnostics(DiffDiagnostics.Level.DEBUG, out);
+        }
+        if (diffSummary || null != diffSummaryJson) {
+            return new DiffDiagnostics();
+        }
+        return null;
+    }
+
+    private void writeDiffSummary(final DiffDiagnostics diagnostics,
+                                  final PrintWriter out) throws IOException {
+        if (diffSummary || diffDebug) {
+            out.printf("[INFO] Diff selected %s classes, skipped %s classes.%n",
+                    Integer.valueOf(diagnostics.getClassesMatched()),
+                    Integer.valueOf(diagnostics.getClassesSkipped()));
+            out.printf("[INFO] Diff selected %s methods with %s probes, skipped %s methods with %s probes.%n",
+                    Integer.valueOf(diagnostics.getMethodsMatched()),
+                    Long.valueOf(diagnostics.getProbesMatched()),
+                    Integer.valueOf(diagnostics.getMethodsSkipped()),
+                    Long.valueOf(diagnostics.getProbesSkipped()));
+        }
+        if (null != diffSummaryJson) {
+            final Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(diffSummaryJson), "UTF-8");
+            try {
+                diagnostics.writeJson(writer);
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
     private void printNoMatchWarning(final Collection<IClassCoverage> nomatch,
                                      final PrintWriter out) {
         if (!nomatch.isEmpty()) {
@@ -192,14 +308,32 @@ public class Report extends Command {
         }
     }
 
+    private static Collection<ExecutionData> getAnalyzedContents(
+            final IBundleCoverage bundle, final ExecutionDataStore store) {
+        final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+        for (final IPackageCoverage p : bundle.getPackages()) {
+            for (final IClassCoverage c : p.getClasses()) {
+                final ExecutionData data = store.get(c.getId());
+                if (null != data) {
+                    contents.add(data);
+                }
+            }
+        }
+        return contents;
+    }
+
     private void writeReports(final IBundleCoverage bundle,
-                              final ExecFileLoader loader, final PrintWriter out)
+                              final ExecFileLoader loader, final boolean incremental,
+                              final PrintWriter out)
             throws IOException {
         out.printf("[INFO] Analyzing %s classes.%n",
                 Integer.valueOf(bundle.getClassCounter().getTotalCount()));
         final IReportVisitor visitor = createReportVisitor();
-        visitor.visitInfo(loader.getSessionInfoStore().getInfos(),
-                loader.getExecutionDataStore().getContents());
+        // 增量报告只列出分析过的类，索引格式的exec文件无需全部加载
+        final Collection<ExecutionData> contents = incremental
+                ? getAnalyzedContents(bundle, loader.getExecutionDataStore())
+                : loader.getExecutionDataStore().getContents();
+        visitor.visitInfo(loader.getSessionInfoStore().getInfos(), contents);
         visitor.visitBundle(bundle, getSourceLocator());
         visitor.visitEnd();
     }
@@ -236,118 +370,64 @@ public class Report extends Command {
     }
 
     /**
-     * 从base commit和最新commit 的diff数据中 剔除变化的数据，获取未变的diff数据，方便后续的探针数据累加
+     * 计算未变的方法，根据各commit中方法的探针开始结束位置，将中间commit的探针数据累加到最新commit的exec数据中。
+     * 每个class文件集合只扫描一次探针位置，不做完整的覆盖率分析
      *
-     * @param finalRes base commit和最新的commit 之间的diff数据
-     * @param temps    base commit之后的commit 和最新的commit 之间的diff数据
-     * @return
+     * @param middleData  base和final中间的commit 的exec数据
+     * @param finalRanges final commit中方法的探针位置
+     * @param finalData   final commit的exec数据，合并结果写入其中
+     * @param finalDiff   final commit生成的diff数据
+     * @param middleDiffs 每个中间commit 和final commit之间的diff数据
      */
-    public List<ClassInfoDto> getNoChangeData(List<ClassInfoDto> finalRes, List<ClassInfoDto> temps) {
-        // 从最终的集合中剔除掉变化的
-        List<ClassInfoDto> result = new ArrayList();
-        for (ClassInfoDto finalClass : finalRes) {
-            ClassInfoDto newClass = new ClassInfoDto();
-            // 有相同的变化的类
-            if (temps.contains(finalClass)) {
-                for (ClassInfoDto temp : temps) {
-                    if (temp.equals(finalClass)) {
-                        newClass.setClassFile(temp.getClassFile());
-                        // 遍历所有方法，保存未变化的方法
-                        for (MethodInfoDto finalMethod : finalClass.getMethodInfos()) {
-                            if (!temp.getMethodInfos().contains(finalMethod)) {
-                                newClass.getMethodInfos().add(finalMethod);
-                            }
-                        }
-                    }
-                }
+    private void mergeMiddleProbes(final PrintWriter out,
+                                   final ExecutionDataStore middleData, final Map<String, ClassProbeRanges> finalRanges,
+                                   final ExecutionDataStore finalData,
+                                   final DiffIndex finalDiff, final List<DiffIndex> middleDiffs)
+            throws IOException {
+        final ProbeMerger merger = new ProbeMerger(finalRanges, finalData);
+        for (int i = 0; i < middleDiffs.size(); i++) {
+            // 从最终的diff中剔除中间commit之后又变化的方法，得到未变的方法
+            final DiffIndex noChangeIndex = finalDiff.without(middleDiffs.get(i));
+            final File source;
+            final int mapped;
+            if (middleProbeIndexes.isEmpty()) {
+                // 没有探针索引时扫描中间commit的class文件
+                source = middleClassfiles.get(i);
+                mapped = merger.merge(scanProbeRanges(middleClassfiles.subList(i, i + 1),
+                        noChangeIndex), middleData, noChangeIndex);
             } else {
-                newClass = finalClass;
-            }
-
-            // 只有类中有未变的方法，才会添加到最终result中
-            if (newClass.getMethodInfos().size() != 0) {
-                result.add(newClass);
+                source = middleProbeIndexes.get(i);
+                mapped = merger.merge(ProbeIndex.map(source), middleData, noChangeIndex);
             }
+            out.printf("[INFO] Merged probes of %s unchanged methods from %s.%n",
+                    Integer.valueOf(mapped), source);
+        }
+        for (final String method : merger.getMismatches()) {
+            out.printf("[WARN] Probes of unchanged method %s do not match.%n",
+                    method);
         }
-        return result;
     }
 
-    /**
-     * 完全没有执行到的类，exec文件中没有类的probe的数据，就没有finalClasses
-     * MethodCoverageImpl 的offset是开始行，LineImpl[] lines是函数具体的行
-     */
-    /**
-     * 计算未变的方法，在根据MethodCoverageImpl中记录的探针数组的开始结束位置，累加相同函数的探针数据
-     *
-     * @param middleBundle base和final中间的commit 生成的bundle
-     * @param finalBundle  final commit生成的bundle
-     * @param middleDiff   base和final中间的commit 生成的diff数据
-     * @param finalDiff    final commit生成的diff数据
-     */
-    public void mergeProbes(IBundleCoverage middleBundle, IBundleCoverage finalBundle, List<ClassInfoDto> middleDiff,
-                            List<ClassInfoDto> finalDiff, final ExecutionDataStore executionDataStore) {
-        List<ClassInfoDto> noChangeList = getNoChangeData(finalDiff, middleDiff);
-
-        //com/lphtsccft/zhangle/foundation/framework/modular/ModularStartupImpl_getDeviceId_()Ljava/lang/String;
-        //com/lphtsccft/zhangle/main/MainActivity$FlipperClickListener_onClick_(Landroid/view/View;)V
-        // 将oldbundle 的数据以key是方法签名，value是MethodCoverageImpl对象来存储
-        final Collection<IPackageCoverage> middlePackages = middleBundle.getPackages();
-        HashMap<String, MethodCoverageImpl> middleMethods = new HashMap();
-        // 构建类名+方法名+方法参数签名作为key，方便后续查找
-        for (IPackageCoverage p : middlePackages) {
-            final Collection<IClassCoverage> middleClasses = p.getClasses();
-            for (IClassCoverage c : middleClasses) {
-                final Collection<IMethodCoverage> methods = c.getMethods();
-                for (IMethodCoverage methodCoverage : methods) {
-                    middleMethods.put(c.getName() + "_" + methodCoverage.getName() + "_" + methodCoverage.getDesc(), (MethodCoverageImpl) methodCoverage);
-                }
-            }
+    private void writeProbeIndex(final Map<String, ClassProbeRanges> ranges,
+                                 final PrintWriter out) throws IOException {
+        out.printf("[INFO] Writing probe index %s.%n",
+                probeIndex.getAbsolutePath());
+        final OutputStream output = new BufferedOutputStream(
+                new FileOutputStream(probeIndex));
+        try {
+            ProbeIndex.write(ranges.values(), output);
+        } finally {
+            output.close();
         }
-        // 遍历新的bundle数据，累加旧的bundle数据，根据类，方法名来判断，loader中是probe原数据，bundle中有每个函数的开始结束位置，根据位置来累加。
-        final Collection<IPackageCoverage> finalPackages = finalBundle.getPackages();
-
-        // 遍历最新commit的包
-        for (IPackageCoverage p : finalPackages) {
-            final Collection<IClassCoverage> finalClasses = p.getClasses();
-            //遍历最新commit的类
-            for (IClassCoverage c : finalClasses) {
-                final Collection<IMethodCoverage> finalMethods = c.getMethods();
-                //遍历最新commit的方法
-                for (IMethodCoverage methodCoverage : finalMethods) {
-                    // commit base 到commit最新 中未变化的方法
-                    if (CodeDiffUtil.checkMethodIn(c.getName(), methodCoverage.getName(), methodCoverage.getDesc(), noChangeList)) {
-                        boolean[] finalProbes = ((ClassCoverageImpl) c).probes;
-                        int finalStart = ((MethodCoverageImpl) methodCoverage).getProbeStart();
-                        int finalEnd = ((MethodCoverageImpl) methodCoverage).getProbeEnd();
-                        MethodCoverageImpl oldMethod = middleMethods.get(c.getName() + "_" + methodCoverage.getName() + "_" + methodCoverage.getDesc());
-                        boolean[] middleProbes = oldMethod.getProbes();
-                        int middleStart = oldMethod.getProbeStart();
-                        int middleEnd = oldMethod.getProbeEnd();
-                        if (middleEnd - middleStart != finalEnd - finalStart || middleProbes == null) {
-                            System.out.println("Error: probes for method start and end is error.");
-                            break;
-                        }
-
-                        /**
-                         * 存在最终的exec中没有执行某个类，则这个类的probes是空，得单独生成一个probes数组对象给到ClassCoverageImpl
-                         */
-                        if (finalProbes == null) {
-                            finalProbes = new boolean[((ClassCoverageImpl) c).getProbesCount()];
-//                            ((MethodCoverageImpl) methodCoverage).probes = finalProbes;
-                            ((ClassCoverageImpl) c).probes = finalProbes;
-                            executionDataStore.getNames().add(c.getName());
-                            executionDataStore.getEntries().put(c.getId(), new ExecutionData(c.getId(), c.getName(), finalProbes));
-                        }
-                        // probe边界是[)
-                        for (int i = finalStart, j = middleStart; i < finalEnd; i++, j++) {
-                            if (middleProbes[j] == true) {
-                                finalProbes[i] = true;
-                            }
-                        }
-                    }
-                }
-            }
+    }
+
+    private static Map<String, ClassProbeRanges> scanProbeRanges(
+            final List<File> classfiles, final IDiffFilter diff) throws IOException {
+        final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(diff);
+        for (final File f : classfiles) {
+            analyzer.analyzeAll(f);
         }
+        return analyzer.getClasses();
     }
 
     /**
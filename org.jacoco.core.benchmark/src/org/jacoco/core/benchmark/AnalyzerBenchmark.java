@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.analysis.ParallelAnalyzer;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.diff.DiffReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analysis of a synthetic archive with full and incremental coverage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+	@Param({ "5000" })
+	public int classes;
+
+	/** Percentage of classes in the diff, 0 for full coverage. */
+	@Param({ "0", "2", "100" })
+	public int diffPercent;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private byte[] jar;
+
+	private ExecutionDataStore executionData;
+
+	private IDiffFilter diff;
+
+	@Setup
+	public void setup() throws IOException {
+		jar = Targets.createJar(classes, 1, 0);
+		executionData = new ExecutionDataStore();
+		if (diffPercent > 0) {
+			diff = DiffReader.read(new StringReader(Targets.createDiff(classes,
+					100 / diffPercent, Targets.METHODS / 2)));
+		}
+	}
+
+	@Benchmark
+	public CoverageBuilder analyzeAll() throws IOException {
+		final CoverageBuilder builder = new CoverageBuilder();
+		if (threads == 1) {
+			new Analyzer(executionData, builder, diff)
+					.analyzeAll(new ByteArrayInputStream(jar), "jar");
+		} else {
+			final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+					executionData, builder, diff, threads);
+			analyzer.analyzeAll(new ByteArrayInputStream(jar), "jar");
+			analyzer.finish();
+		}
+		return builder;
+	}
+
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.internal.diff.DiffIndex;
+import org.jacoco.core.internal.diff.DiffReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading diffs of various sizes and matching methods against them, which is
+ * done for every class and method during incremental analysis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffIndexBenchmark {
+
+	/** Number of classes in the diff, each with half of its methods. */
+	@Param({ "10", "1000", "100000" })
+	public int diffClasses;
+
+	private static final int QUERIES = 10000;
+
+	private String json;
+
+	private DiffIndex index;
+
+	private String[] classNames;
+
+	private String[] methodNames;
+
+	@Setup
+	public void setup() throws IOException {
+		json = Targets.createDiff(diffClasses, 1, Targets.METHODS / 2);
+		index = DiffReader.read(new StringReader(json));
+		// Half of the queried classes are not part of the diff:
+		classNames = new String[QUERIES];
+		methodNames = new String[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			classNames[i] = Targets.className(i % (2 * diffClasses));
+			methodNames[i] = "m" + (i % Targets.METHODS);
+		}
+	}
+
+	@Benchmark
+	public DiffIndex read() throws IOException {
+		return DiffReader.read(new StringReader(json));
+	}
+
+	@Benchmark
+	public int containsMethod() {
+		int matches = 0;
+		for (int i = 0; i < QUERIES; i++) {
+			if (index.containsClass(classNames[i]) && index
+					.containsMethod(classNames[i], methodNames[i], "(I)I")) {
+				matches++;
+			}
+		}
+		return matches;
+	}
+
+}
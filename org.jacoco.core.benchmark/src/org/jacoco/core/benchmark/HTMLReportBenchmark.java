@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.report.IMultiReportOutput;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.ISourceFileLocator;
+import org.jacoco.report.html.HTMLFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generation of an HTML report for an analyzed bundle. The report is rendered
+ * completely but not stored, so only the formatter is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HTMLReportBenchmark {
+
+	@Param({ "1000" })
+	public int classes;
+
+	private IBundleCoverage bundle;
+
+	@Setup
+	public void setup() throws IOException {
+		final CoverageBuilder builder = new CoverageBuilder();
+		new Analyzer(new ExecutionDataStore(), builder).analyzeAll(
+				new ByteArrayInputStream(Targets.createJar(classes, 1, 0)),
+				"jar");
+		bundle = builder.getBundle("benchmark");
+	}
+
+	@Benchmark
+	public void html() throws IOException {
+		final IReportVisitor visitor = new HTMLFormatter()
+				.createVisitor(new NullReportOutput());
+		visitor.visitInfo(Collections.<SessionInfo> emptyList(),
+				Collections.<ExecutionData> emptyList());
+		visitor.visitBundle(bundle, new NoSourceFileLocator());
+		visitor.visitEnd();
+	}
+
+	private static class NullReportOutput implements IMultiReportOutput {
+
+		public OutputStream createFile(final String path) {
+			return new OutputStream() {
+				@Override
+				public void write(final int b) {
+				}
+
+				@Override
+				public void write(final byte[] b, final int off,
+						final int len) {
+				}
+			};
+		}
+
+		public void close() {
+		}
+
+	}
+
+	private static class NoSourceFileLocator implements ISourceFileLocator {
+
+		public Reader getSourceFile(final String packageName,
+				final String fileName) {
+			return null;
+		}
+
+		public int getTabWidth() {
+			return 4;
+		}
+
+	}
+
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.diff.ClassProbeRanges;
+import org.jacoco.core.internal.diff.ProbeIndex;
+import org.jacoco.core.internal.diff.ProbeMerger;
+import org.jacoco.core.internal.diff.ProbeRangeAnalyzer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merges the probes of unchanged methods from an older build into the
+ * execution data of the current build, like the report command does for
+ * middle commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProbeMergerBenchmark {
+
+	@Param({ "5000" })
+	public int classes;
+
+	/** Number of changed methods per class between the builds. */
+	private static final int CHANGED_METHODS = 2;
+
+	private byte[] currentJar;
+
+	private Map<String, ClassProbeRanges> currentLayout;
+
+	private Map<String, ClassProbeRanges> olderLayout;
+
+	private ProbeIndex olderIndex;
+
+	private ExecutionDataStore olderData;
+
+	private final IDiffFilter unchanged = new IDiffFilter() {
+		public boolean containsClass(final String className) {
+			return true;
+		}
+
+		public boolean containsMethod(final String className,
+				final String methodName, final String desc) {
+			return Integer.parseInt(methodName.substring(1)) >= CHANGED_METHODS;
+		}
+	};
+
+	@Setup
+	public void setup() throws IOException {
+		currentJar = Targets.createJar(classes, 2, CHANGED_METHODS);
+		currentLayout = scan(currentJar);
+		olderLayout = scan(Targets.createJar(classes, 1, CHANGED_METHODS));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ProbeIndex.write(olderLayout.values(), buffer);
+		olderIndex = new ProbeIndex(ByteBuffer.wrap(buffer.toByteArray()));
+		olderData = new ExecutionDataStore();
+		for (final ClassProbeRanges c : olderLayout.values()) {
+			final boolean[] probes = olderData.get(Long.valueOf(c.getId()),
+					c.getName(), c.getProbeCount()).getProbes();
+			for (int i = 0; i < probes.length; i += 2) {
+				probes[i] = true;
+			}
+		}
+	}
+
+	private static Map<String, ClassProbeRanges> scan(final byte[] jar)
+			throws IOException {
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(null);
+		analyzer.analyzeAll(new ByteArrayInputStream(jar), "jar");
+		return analyzer.getClasses();
+	}
+
+	@Benchmark
+	public Map<String, ClassProbeRanges> scanRanges() throws IOException {
+		return scan(currentJar);
+	}
+
+	@Benchmark
+	public ExecutionDataStore merge() {
+		final ExecutionDataStore target = new ExecutionDataStore();
+		new ProbeMerger(currentLayout, target).merge(olderLayout, olderData,
+				unchanged);
+		return target;
+	}
+
+	@Benchmark
+	public ExecutionDataStore mergeFromIndex() throws IOException {
+		final ExecutionDataStore target = new ExecutionDataStore();
+		new ProbeMerger(currentLayout, target).merge(olderIndex, olderData,
+				unchanged);
+		return target;
+	}
+
+}
@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates synthetic classes, archives and diffs of a given size for the
+ * benchmarks. All content is derived from the parameters only, so runs with
+ * the same parameters work on identical input.
+ */
+final class Targets {
+
+	/** Number of methods of every generated class. */
+	static final int METHODS = 10;
+
+	private Targets() {
+	}
+
+	/**
+	 * Returns the VM name of the generated class with the given number.
+	 * Classes are spread over 50 packages.
+	 */
+	static String className(final int index) {
+		return "org/example/p" + (index % 50) + "/Target" + index;
+	}
+
+	/**
+	 * Creates a class with {@link #METHODS} methods containing a branch each.
+	 * The given version is compiled into the method bodies, so different
+	 * versions of a class have different probes layouts in every method with
+	 * an index less than <code>changedMethods</code>.
+	 */
+	static byte[] createClass(final String name, final int version,
+			final int changedMethods) {
+		final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, name, null,
+				"java/lang/Object", null);
+		cw.visitSource(name.substring(name.lastIndexOf('/') + 1) + ".java",
+				null);
+		for (int m = 0; m < METHODS; m++) {
+			final MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC,
+					"m" + m, "(I)I", null, null);
+			mv.visitCode();
+			final Label start = new Label();
+			mv.visitLabel(start);
+			mv.visitLineNumber(10 * m + 1, start);
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitLdcInsn(Integer.valueOf(m < changedMethods ? version : m));
+			final Label negative = new Label();
+			mv.visitJumpInsn(Opcodes.IF_ICMPLE, negative);
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitLabel(negative);
+			mv.visitLineNumber(10 * m + 2, negative);
+			mv.visitVarInsn(Opcodes.ILOAD, 1);
+			mv.visitInsn(Opcodes.INEG);
+			mv.visitInsn(Opcodes.IRETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Creates a ZIP archive with the given number of generated classes.
+	 */
+	static byte[] createJar(final int classes, final int version,
+			final int changedMethods) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		for (int i = 0; i < classes; i++) {
+			final String name = className(i);
+			zip.putNextEntry(new ZipEntry(name + ".class"));
+			zip.write(createClass(name, version, changedMethods));
+		}
+		zip.close();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Creates a diff in the JSON format of the report command which contains
+	 * the first <code>methods</code> methods of every <code>step</code>-th
+	 * class.
+	 */
+	static String createDiff(final int classes, final int step,
+			final int methods) {
+		final StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < classes; i += step) {
+			if (json.length() > 1) {
+				json.append(',');
+			}
+			json.append("{\"classFile\":\"").append(className(i))
+					.append("\",\"type\":\"MODIFY\",\"methodInfos\":[");
+			for (int m = 0; m < methods; m++) {
+				if (m > 0) {
+					json.append(',');
+				}
+				json.append("{\"methodName\":\"m").append(m)
+						.append("\",\"parameters\":[\"int x\"]}");
+			}
+			json.append("]}");
+		}
+		return json.append(']').toString();
+	}
+
+}
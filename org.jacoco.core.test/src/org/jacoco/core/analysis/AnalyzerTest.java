@@ -180,6 +180,134 @@ public class AnalyzerTest {
 				.isNoMatch());
 	}
 
+	@Test
+	public void should_skip_classes_not_contained_in_diff() throws IOException {
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("Other", "setup"));
+
+		analyzer.analyzeClass(
+				TargetLoader.getClassDataAsBytes(AnalyzerTest.class), "Test");
+
+		assertTrue(classes.isEmpty());
+	}
+
+	@Test
+	public void should_only_analyze_methods_contained_in_diff()
+			throws IOException {
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("org/jacoco/core/analysis/AnalyzerTest",
+						"setup"));
+
+		analyzer.analyzeClass(
+				TargetLoader.getClassDataAsBytes(AnalyzerTest.class), "Test");
+
+		final IClassCoverage coverage = classes
+				.get("org/jacoco/core/analysis/AnalyzerTest");
+		assertEquals(1, coverage.getMethods().size());
+		assertEquals("setup",
+				coverage.getMethods().iterator().next().getName());
+	}
+
+	@Test
+	public void should_use_diff_filter_of_each_analyzer() throws IOException {
+		final Map<String, IClassCoverage> otherClasses = new HashMap<String, IClassCoverage>();
+		final Analyzer other = new Analyzer(executionData,
+				new ICoverageVisitor() {
+					public void visitCoverage(final IClassCoverage coverage) {
+						otherClasses.put(coverage.getName(), coverage);
+					}
+				}, new MethodDiffFilter("org/jacoco/core/analysis/AnalyzerTest",
+						"createClass"));
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("org/jacoco/core/analysis/AnalyzerTest",
+						"setup"));
+
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(AnalyzerTest.class);
+		analyzer.analyzeClass(bytes, "Test");
+		other.analyzeClass(bytes, "Test");
+
+		assertEquals("setup",
+				classes.get("org/jacoco/core/analysis/AnalyzerTest")
+						.getMethods().iterator().next().getName());
+		assertEquals("createClass",
+				otherClasses.get("org/jacoco/core/analysis/AnalyzerTest")
+						.getMethods().iterator().next().getName());
+	}
+
+	@Test
+	public void should_report_diff_decisions_to_diagnostics()
+			throws IOException {
+		final DiffDiagnostics diagnostics = new DiffDiagnostics();
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("Foo", "a"));
+		analyzer.setDiffDiagnostics(diagnostics);
+
+		analyzer.analyzeClass(createClass(Opcodes.V1_5), "Foo");
+		analyzer.analyzeClass(
+				TargetLoader.getClassDataAsBytes(AnalyzerTest.class), "Test");
+
+		assertEquals(1, diagnostics.getClassesMatched());
+		assertEquals(1, diagnostics.getClassesSkipped());
+		assertEquals(0, diagnostics.getMethodsMatched());
+	}
+
+	@Test
+	public void should_skip_classes_not_contained_in_diff_without_parsing()
+			throws IOException {
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("Other", "a"));
+
+		// Would fail if parsed by ASM:
+		analyzer.analyzeClass(createClass(Opcodes.V19 + 2), "Foo");
+
+		assertTrue(classes.isEmpty());
+	}
+
+	@Test
+	public void should_skip_zip_entries_not_contained_in_diff()
+			throws IOException {
+		final DiffDiagnostics diagnostics = new DiffDiagnostics();
+		analyzer = new Analyzer(executionData, new EmptyStructureVisitor(),
+				new MethodDiffFilter("Foo", "a"));
+		analyzer.setDiffDiagnostics(diagnostics);
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		zip.putNextEntry(new ZipEntry("BOOT-INF/classes/Foo.class"));
+		zip.write(createClass(Opcodes.V1_5));
+		zip.putNextEntry(new ZipEntry("a/Bar.class"));
+		zip.write(new byte[] { 1, 2, 3 });
+		zip.finish();
+
+		final int count = analyzer.analyzeAll(
+				new ByteArrayInputStream(buffer.toByteArray()), "Test");
+
+		assertEquals(2, count);
+		assertClasses("Foo");
+		assertEquals(1, diagnostics.getClassesMatched());
+		assertEquals(1, diagnostics.getClassesSkipped());
+	}
+
+	private static class MethodDiffFilter implements IDiffFilter {
+
+		private final String className;
+		private final String methodName;
+
+		MethodDiffFilter(final String className, final String methodName) {
+			this.className = className;
+			this.methodName = methodName;
+		}
+
+		public boolean containsClass(final String name) {
+			return className.equals(name);
+		}
+
+		public boolean containsMethod(final String name,
+				final String method, final String desc) {
+			return className.equals(name) && methodName.equals(method);
+		}
+	}
+
 	@Test
 	public void testAnalyzeClass_Broken() throws IOException {
 		final byte[] brokenclass = TargetLoader
@@ -13,7 +13,10 @@
 package org.jacoco.core.analysis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -244,6 +247,26 @@ public class CoverageBuilderTest {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void getDiffFilter_should_return_null_for_full_coverage() {
+		assertNull(coverageBuilder.getDiffFilter());
+		assertNull(new CoverageBuilder("").getDiffFilter());
+	}
+
+	@Test
+	public void getDiffFilter_should_return_filter_for_diff() {
+		coverageBuilder = new CoverageBuilder(
+				"[{\"classFile\":\"a/Foo\",\"methodInfos\":[{\"methodName\":\"run\",\"parameters\":[\"String s\"]}],\"type\":\"MODIFY\"}]");
+
+		final IDiffFilter filter = coverageBuilder.getDiffFilter();
+		assertEquals(1, coverageBuilder.getClassInfos().size());
+		assertTrue(filter.containsClass("a/Foo"));
+		assertFalse(filter.containsClass("a/Bar"));
+		assertTrue(filter.containsMethod("a/Foo", "run",
+				"(Ljava/lang/String;)V"));
+		assertNull(new CoverageBuilder().getDiffFilter());
+	}
+
 	private Set<String> getNames(Collection<? extends ICoverageNode> nodes) {
 		Set<String> result = new HashSet<String>();
 		for (ICoverageNode n : nodes) {
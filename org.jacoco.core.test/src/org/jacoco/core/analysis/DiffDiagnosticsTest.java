@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DiffDiagnostics}.
+ */
+public class DiffDiagnosticsTest {
+
+	@Test
+	public void should_count_classes_methods_and_probes() {
+		final DiffDiagnostics diagnostics = new DiffDiagnostics();
+
+		diagnostics.classMatched("Foo");
+		diagnostics.classSkipped("Bar");
+		diagnostics.classSkipped("Baz");
+		diagnostics.method("Foo", "a", "()V", 0, 3, true);
+		diagnostics.method("Foo", "b", "()V", 3, 4, true);
+		diagnostics.method("Foo", "c", "()V", 4, 9, false);
+
+		assertEquals(1, diagnostics.getClassesMatched());
+		assertEquals(2, diagnostics.getClassesSkipped());
+		assertEquals(2, diagnostics.getMethodsMatched());
+		assertEquals(1, diagnostics.getMethodsSkipped());
+		assertEquals(4, diagnostics.getProbesMatched());
+		assertEquals(5, diagnostics.getProbesSkipped());
+		assertEquals(3, diagnostics.getMaxMethodProbes());
+	}
+
+	@Test
+	public void should_not_collect_anything_when_off() {
+		final DiffDiagnostics diagnostics = new DiffDiagnostics(
+				DiffDiagnostics.Level.OFF, null);
+
+		diagnostics.classMatched("Foo");
+		diagnostics.method("Foo", "a", "()V", 0, 3, true);
+
+		assertEquals(0, diagnostics.getClassesMatched());
+		assertEquals(0, diagnostics.getMethodsMatched());
+	}
+
+	@Test
+	public void should_write_decisions_in_debug_level() {
+		final StringWriter out = new StringWriter();
+		final DiffDiagnostics diagnostics = new DiffDiagnostics(
+				DiffDiagnostics.Level.DEBUG, new PrintWriter(out));
+
+		diagnostics.classSkipped("Bar");
+		diagnostics.method("Foo", "a", "()V", 2, 5, true);
+
+		final String nl = System.getProperty("line.separator");
+		assertEquals("[DEBUG] Skipping class Bar." + nl
+				+ "[DEBUG] Analyzing method Foo.a()V, probes [2, 5)." + nl,
+				out.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_require_output_for_debug_level() {
+		new DiffDiagnostics(DiffDiagnostics.Level.DEBUG, null);
+	}
+
+	@Test
+	public void should_write_json_summary() throws IOException {
+		final DiffDiagnostics diagnostics = new DiffDiagnostics();
+		diagnostics.classMatched("Foo");
+		diagnostics.method("Foo", "a", "()V", 0, 3, true);
+		final StringWriter out = new StringWriter();
+
+		diagnostics.writeJson(out);
+
+		assertEquals("{\"classesMatched\":1,\"classesSkipped\":0,"
+				+ "\"methodsMatched\":1,\"methodsSkipped\":0,"
+				+ "\"probesMatched\":3,\"probesSkipped\":0,"
+				+ "\"maxMethodProbes\":3}", out.toString());
+	}
+
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.jacoco.core.JaCoCo;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link ParallelAnalyzer}.
+ */
+public class ParallelAnalyzerTest {
+
+	private List<String> classes;
+
+	private ICoverageVisitor visitor;
+
+	@Before
+	public void setup() {
+		classes = new ArrayList<String>();
+		visitor = new ICoverageVisitor() {
+			public void visitCoverage(final IClassCoverage coverage) {
+				classes.add(coverage.getName());
+			}
+		};
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_invalid_number_of_threads() {
+		new ParallelAnalyzer(new ExecutionDataStore(), visitor, null, 0);
+	}
+
+	@Test
+	public void should_emit_classes_in_order_of_input() throws IOException {
+		final byte[] zip = createZip(100);
+
+		final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+				new ExecutionDataStore(), visitor, null, 4);
+		assertEquals(100, analyzer.analyzeAll(
+				new ByteArrayInputStream(zip), "test.zip"));
+		analyzer.finish();
+
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			expected.add("Class" + i);
+		}
+		assertEquals(expected, classes);
+	}
+
+	@Test
+	public void close_should_discard_scheduled_classes() throws IOException {
+		final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+				new ExecutionDataStore(), visitor, null, 2);
+		analyzer.analyzeAll(new ByteArrayInputStream(createZip(10)),
+				"test.zip");
+
+		analyzer.close();
+		analyzer.finish();
+
+		assertTrue(classes.isEmpty());
+	}
+
+	@Test
+	public void should_calculate_same_coverage_as_sequential_analyzer()
+			throws IOException {
+		final byte[] bytes = TargetLoader
+				.getClassDataAsBytes(ParallelAnalyzerTest.class);
+		final CoverageBuilder sequential = new CoverageBuilder();
+		new Analyzer(new ExecutionDataStore(), sequential).analyzeClass(bytes,
+				"Test");
+		final CoverageBuilder parallel = new CoverageBuilder();
+		final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+				new ExecutionDataStore(), parallel, null, 2);
+
+		analyzer.analyzeClass(bytes, "Test");
+		analyzer.finish();
+
+		final IClassCoverage expected = sequential.getClasses().iterator()
+				.next();
+		final IClassCoverage actual = parallel.getClasses().iterator().next();
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getMethodCounter(), actual.getMethodCounter());
+		assertEquals(expected.getInstructionCounter(),
+				actual.getInstructionCounter());
+		assertEquals(expected.getLineCounter(), actual.getLineCounter());
+	}
+
+	@Test
+	public void should_detect_duplicate_classes() throws IOException {
+		final byte[] bytes = createClass("Foo", 0);
+		final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+				new ExecutionDataStore(), new CoverageBuilder(), null, 2);
+		analyzer.analyzeClass(bytes, "a");
+		analyzer.analyzeClass(createClass("Foo", Opcodes.ACC_FINAL), "b");
+		try {
+			analyzer.finish();
+			fail("exception expected");
+		} catch (IOException e) {
+			assertExceptionMessage("b", e);
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void should_report_location_of_broken_class() throws IOException {
+		final ParallelAnalyzer analyzer = new ParallelAnalyzer(
+				new ExecutionDataStore(), visitor, null, 2);
+		analyzer.analyzeClass(createClass("Foo", 0), "good");
+		analyzer.analyzeClass(new byte[] { 1, 2, 3 }, "broken");
+		try {
+			analyzer.finish();
+			fail("exception expected");
+		} catch (IOException e) {
+			assertExceptionMessage("broken", e);
+		}
+		assertEquals(1, classes.size());
+	}
+
+	private static byte[] createClass(final String name, final int access) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_5, access, name, null, "java/lang/Object", null);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static byte[] createZip(final int count) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ZipOutputStream zip = new ZipOutputStream(buffer);
+		for (int i = 0; i < count; i++) {
+			zip.putNextEntry(new ZipEntry("Class" + i + ".class"));
+			zip.write(createClass("Class" + i, 0));
+		}
+		zip.finish();
+		return buffer.toByteArray();
+	}
+
+	private void assertExceptionMessage(final String name, final Exception ex) {
+		final String expected = "Error while analyzing " + name
+				+ " with JaCoCo " + JaCoCo.VERSION + "/" + JaCoCo.COMMITID_SHORT
+				+ ".";
+		assertEquals(expected, ex.getMessage());
+	}
+
+}
@@ -15,6 +15,8 @@ package org.jacoco.core.data;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -23,7 +25,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import org.junit.Before;
@@ -299,6 +303,236 @@ public class ExecutionDataReaderWriterTest {
 				new ExecutionData(3, "Sample", createData(1)));
 	}
 
+	// === Compression ===
+
+	@Test
+	public void testCompressedHeader() throws IOException {
+		buffer.reset();
+		new ExecutionDataWriter(buffer, true);
+		final byte[] header = buffer.toByteArray();
+		assertEquals(5, header.length);
+		final char version = ExecutionDataWriter.COMPRESSED_FORMAT_VERSION;
+		assertEquals(version >> 8, 0xFF & header[3]);
+		assertEquals(version & 0xFF, 0xFF & header[4]);
+		assertFalse(createReader().read());
+	}
+
+	@Test
+	public void testCompressed() throws IOException {
+		buffer.reset();
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		final boolean[] data = createData(3599);
+		compressed.visitSessionInfo(new SessionInfo("TestSession", 1, 2));
+		compressed.visitClassExecution(new ExecutionData(123, "Sample", data));
+		compressed.flush();
+
+		assertFalse(createReaderWithVisitors().read());
+		assertEquals("TestSession", sessionInfo.getId());
+		assertArrayEquals(data, store.get(123).getProbes());
+	}
+
+	@Test
+	public void testCompressedMultipleBlocks() throws IOException {
+		buffer.reset();
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		final boolean[] data = createData(8000);
+		for (int i = 0; i < 500; i++) {
+			compressed.visitClassExecution(
+					new ExecutionData(i, "Sample" + i, data));
+		}
+		compressed.flush();
+
+		assertFalse(createReaderWithVisitors().read());
+		assertEquals(500, store.getContents().size());
+		assertArrayEquals(data, store.get(499).getProbes());
+	}
+
+	@Test
+	public void testCompressedAppendedToUncompressed() throws IOException {
+		writer.visitClassExecution(new ExecutionData(1, "A", createData(8)));
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		compressed.visitClassExecution(
+				new ExecutionData(2, "B", createData(8)));
+		compressed.flush();
+		new ExecutionDataWriter(buffer)
+				.visitClassExecution(new ExecutionData(3, "C", createData(8)));
+
+		assertFalse(createReaderWithVisitors().read());
+		assertEquals(3, store.getContents().size());
+	}
+
+	@Test(expected = EOFException.class)
+	public void testCompressedTruncated() throws IOException {
+		buffer.reset();
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		compressed.visitClassExecution(
+				new ExecutionData(1, "A", createData(100)));
+		compressed.flush();
+		final byte[] content = buffer.toByteArray();
+		buffer.reset();
+		buffer.write(content, 0, content.length - 1);
+		createReaderWithVisitors().read();
+	}
+
+	// === Streaming ===
+
+	@Test
+	public void testStreamVisitor() throws IOException {
+		final boolean[] data1 = createData(70);
+		final boolean[] data2 = createData(3);
+		writer.visitClassExecution(new ExecutionData(1, "Sample", data1));
+		writer.visitClassExecution(new ExecutionData(2, "Sample", data2));
+		writer.visitClassExecution(new ExecutionData(3, "Other", data2));
+		final List<String> names = new ArrayList<String>();
+		final List<ProbeBuffer> buffers = new ArrayList<ProbeBuffer>();
+		final List<ProbeBits> probes = new ArrayList<ProbeBits>();
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataStreamVisitor(
+				new IExecutionDataStreamVisitor() {
+					public void visitClassExecution(final long id,
+							final String name, final ProbeBuffer buffer) {
+						names.add(name);
+						buffers.add(buffer);
+						probes.add(buffer.toProbeBits());
+					}
+				});
+
+		assertFalse(reader.read());
+		assertEquals(Arrays.asList("Sample", "Sample", "Other"), names);
+		assertSame(names.get(0), names.get(1));
+		assertSame(buffers.get(0), buffers.get(2));
+		assertArrayEquals(data1, probes.get(0).toBooleanArray());
+		assertArrayEquals(data2, probes.get(1).toBooleanArray());
+	}
+
+	@Test
+	public void testStreamVisitorWithExecutionDataVisitor()
+			throws IOException {
+		final boolean[] data = createData(10);
+		writer.visitClassExecution(new ExecutionData(1, "Sample", data));
+		final List<String> names = new ArrayList<String>();
+		final ExecutionDataReader reader = createReaderWithVisitors();
+		reader.setExecutionDataStreamVisitor(
+				new IExecutionDataStreamVisitor() {
+					public void visitClassExecution(final long id,
+							final String name, final ProbeBuffer buffer) {
+						names.add(name);
+					}
+				});
+
+		assertFalse(reader.read());
+		assertEquals(Arrays.asList("Sample"), names);
+		assertArrayEquals(data, store.get(1).getProbes());
+	}
+
+	@Test
+	public void testStreamVisitorCompressed() throws IOException {
+		buffer.reset();
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		compressed.visitClassExecution(
+				new ExecutionData(1, "Sample", createData(10)));
+		compressed.flush();
+		final List<Long> ids = new ArrayList<Long>();
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataStreamVisitor(
+				new IExecutionDataStreamVisitor() {
+					public void visitClassExecution(final long id,
+							final String name, final ProbeBuffer buffer) {
+						ids.add(Long.valueOf(id));
+					}
+				});
+
+		assertFalse(reader.read());
+		assertEquals(Arrays.asList(Long.valueOf(1)), ids);
+	}
+
+	@Test
+	public void testCounters() throws IOException {
+		final int[] counters = new int[] { 0, 1, 127, 128, Integer.MAX_VALUE };
+		writer.visitClassExecution(new ExecutionData(3, "Sample", counters));
+		assertFalse(createReaderWithVisitors().read());
+
+		final ExecutionData data = store.get(3);
+		assertEquals("Sample", data.getName());
+		assertTrue(Arrays.equals(counters, data.getCounters()));
+	}
+
+	@Test
+	public void testCountersStreamVisitor() throws IOException {
+		writer.visitClassExecution(
+				new ExecutionData(1, "Sample", new int[] { 4, 0 }));
+		writer.visitClassExecution(
+				new ExecutionData(2, "Other", new boolean[] { true }));
+		final List<int[]> counters = new ArrayList<int[]>();
+		final ExecutionDataReader reader = createReader();
+		reader.setExecutionDataStreamVisitor(
+				new IExecutionDataStreamVisitor() {
+					public void visitClassExecution(final long id,
+							final String name, final ProbeBuffer buffer) {
+						counters.add(buffer.toCounters());
+					}
+				});
+
+		assertFalse(reader.read());
+		assertTrue(Arrays.equals(new int[] { 4, 0 }, counters.get(0)));
+		assertNull(counters.get(1));
+	}
+
+	// === Delta dumps ===
+
+	@Test
+	public void testDelta() throws IOException {
+		writer.visitDelta(0);
+		writer.visitClassExecution(new ExecutionData(1, "A", createData(8)));
+		writer.visitDelta(Long.MAX_VALUE);
+		final List<Long> sequences = new ArrayList<Long>();
+		final ExecutionDataReader reader = createReaderWithVisitors();
+		reader.setDeltaVisitor(new IDeltaVisitor() {
+			public void visitDelta(final long sequence) {
+				sequences.add(Long.valueOf(sequence));
+			}
+		});
+
+		assertFalse(reader.read());
+		assertEquals(Arrays.asList(Long.valueOf(0),
+				Long.valueOf(Long.MAX_VALUE)), sequences);
+		assertNotNull(store.get(1));
+	}
+
+	@Test
+	public void testDeltaWithoutVisitor() throws IOException {
+		final boolean[] data = createData(8);
+		writer.visitDelta(3);
+		writer.visitClassExecution(new ExecutionData(1, "A", data));
+
+		assertFalse(createReaderWithVisitors().read());
+		assertArrayEquals(data, store.get(1).getProbes());
+	}
+
+	@Test
+	public void testDeltaCompressed() throws IOException {
+		buffer.reset();
+		final ExecutionDataWriter compressed = new ExecutionDataWriter(buffer,
+				true);
+		compressed.visitDelta(7);
+		compressed.flush();
+		final List<Long> sequences = new ArrayList<Long>();
+		final ExecutionDataReader reader = createReaderWithVisitors();
+		reader.setDeltaVisitor(new IDeltaVisitor() {
+			public void visitDelta(final long sequence) {
+				sequences.add(Long.valueOf(sequence));
+			}
+		});
+
+		assertFalse(reader.read());
+		assertEquals(Arrays.asList(Long.valueOf(7)), sequences);
+	}
+
 	private ExecutionDataReader createReaderWithVisitors() throws IOException {
 		final ExecutionDataReader reader = createReader();
 		reader.setExecutionDataVisitor(store);
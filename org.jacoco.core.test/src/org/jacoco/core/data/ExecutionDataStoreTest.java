@@ -19,12 +19,21 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -64,6 +73,84 @@ public class ExecutionDataStoreTest implements IExecutionDataVisitor {
 				dataOutput);
 	}
 
+	@Test
+	public void testLazyFile() throws IOException {
+		final ExecutionDataStore content = new ExecutionDataStore();
+		content.put(new ExecutionData(1000, "Sample0",
+				new boolean[] { true, false }));
+		content.put(new ExecutionData(1001, "Sample1",
+				new boolean[] { false, true }));
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		MappedExecutionData.write(Collections.<SessionInfo> emptyList(),
+				content.getContents(), buffer);
+		store = new ExecutionDataStore(new MappedExecutionData(
+				ByteBuffer.wrap(buffer.toByteArray())));
+
+		assertTrue(store.contains("Sample1"));
+		assertFalse(store.contains("Sample2"));
+		assertNull(store.get(1002));
+		final ExecutionData data = store.get(1000);
+		assertTrue(data.getProbes()[0]);
+		assertSame(data, store.get(1000));
+
+		store.put(new ExecutionData(1000, "Sample0",
+				new boolean[] { false, true }));
+		store.subtract(new ExecutionData(1001, "Sample1",
+				new boolean[] { false, true }));
+		store.accept(this);
+
+		assertEquals(2, dataOutput.size());
+		assertSame(data, dataOutput.get(Long.valueOf(1000)));
+		assertTrue(data.getProbes()[1]);
+		assertFalse(dataOutput.get(Long.valueOf(1001)).getProbes()[1]);
+	}
+
+	@Test
+	public void testLazyFileConcurrentAccess() throws Exception {
+		final ExecutionDataStore content = new ExecutionDataStore();
+		for (int i = 0; i < 2000; i++) {
+			content.put(new ExecutionData(i, "Sample" + i,
+					new boolean[] { true }));
+		}
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		MappedExecutionData.write(Collections.<SessionInfo> emptyList(),
+				content.getContents(), buffer);
+		store = new ExecutionDataStore(new MappedExecutionData(
+				ByteBuffer.wrap(buffer.toByteArray())));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < 4; t++) {
+			final int offset = t;
+			results.add(executor.submit(new Callable<Integer>() {
+				public Integer call() {
+					if (offset == 0) {
+						return Integer.valueOf(store.getContents().size());
+					}
+					int found = 0;
+					for (int i = offset - 1; i < 2000; i += 3) {
+						if (store.get(i) != null
+								&& store.contains("Sample" + i)) {
+							found++;
+						}
+						store.put(new ExecutionData(10000 + i, "New" + i,
+								new boolean[] { true }));
+					}
+					return Integer.valueOf(found);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		int found = 0;
+		for (int t = 1; t < 4; t++) {
+			found += results.get(t).get().intValue();
+		}
+		assertTrue(results.get(0).get().intValue() >= 2000);
+		assertEquals(2000, found);
+		assertEquals(4000, store.size());
+	}
+
 	@Test
 	public void testReentrantAccept() {
 		final boolean[] probes = new boolean[] { false, false, true };
@@ -94,6 +181,56 @@ public class ExecutionDataStoreTest implements IExecutionDataVisitor {
 		assertEquals(expected, actual);
 	}
 
+	@Test
+	public void testReplace() {
+		final ExecutionData a = new ExecutionData(1000, "Sample",
+				new boolean[] { true });
+		final ExecutionData b = new ExecutionData(1000, "Other",
+				new boolean[] { false, true });
+		store.put(a);
+
+		assertSame(a, store.replace(b));
+		assertSame(b, store.get(1000));
+		assertFalse(store.contains("Sample"));
+		assertTrue(store.contains("Other"));
+		assertEquals(1, store.size());
+		assertNull(store.replace(new ExecutionData(1001, "Other",
+				new boolean[] {})));
+		assertEquals(2, store.size());
+	}
+
+	@Test
+	public void testRemove() {
+		final ExecutionData a = new ExecutionData(1000, "Sample",
+				new boolean[] {});
+		store.put(a);
+		store.put(new ExecutionData(1001, "Sample", new boolean[] {}));
+
+		assertSame(a, store.remove(1000));
+		assertNull(store.remove(1000));
+		assertNull(store.get(1000));
+		assertTrue(store.contains("Sample"));
+		assertNotNull(store.remove(1001));
+		assertFalse(store.contains("Sample"));
+		assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testManyEntries() {
+		for (long id = -5000; id < 5000; id++) {
+			store.put(new ExecutionData(id * 31, "C" + id, new boolean[1]));
+		}
+		for (long id = -5000; id < 5000; id += 2) {
+			store.remove(id * 31);
+		}
+
+		assertEquals(5000, store.size());
+		for (long id = -5000; id < 5000; id++) {
+			assertEquals(id % 2 != 0, store.get(id * 31) != null);
+			assertEquals(id % 2 != 0, store.contains("C" + id));
+		}
+	}
+
 	@Test
 	public void testGetWithoutCreate() {
 		final ExecutionData data = new ExecutionData(1000, "Sample",
@@ -12,8 +12,10 @@
  *******************************************************************************/
 package org.jacoco.core.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -112,6 +114,245 @@ public class ExecutionDataTest {
 		assertTrue(b.getProbes()[3]);
 	}
 
+	@Test
+	public void testPackedGetters() {
+		final ProbeBits bits = ProbeBits.valueOf(new boolean[] { true, false });
+		final ExecutionData e = new ExecutionData(5, "Example", bits);
+		assertSame(bits, e.getProbeBits());
+		assertEquals(2, e.getProbeCount());
+		assertTrue(e.hasHits());
+	}
+
+	@Test
+	public void testPackedGetProbes() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, true, true }));
+		final boolean[] probes = e.getProbes();
+		assertArrayEquals(new boolean[] { false, true, true }, probes);
+
+		// the unpacked array is used from now on:
+		assertSame(probes, e.getProbes());
+		probes[0] = true;
+		assertEquals(3, e.getProbeBits().cardinality());
+	}
+
+	@Test
+	public void testPackedConcurrentGetProbes() throws Exception {
+		for (int run = 0; run < 100; run++) {
+			final ExecutionData e = new ExecutionData(5, "Example",
+					ProbeBits.valueOf(new boolean[] { false, true, true }));
+			final boolean[][] results = new boolean[4][];
+			final Thread[] threads = new Thread[results.length];
+			for (int i = 0; i < threads.length; i++) {
+				final int index = i;
+				threads[i] = new Thread() {
+					@Override
+					public void run() {
+						assertEquals(3, e.getProbeCount());
+						assertEquals(2, e.getProbeBits().cardinality());
+						results[index] = e.getProbes();
+					}
+				};
+				threads[i].start();
+			}
+			for (final Thread t : threads) {
+				t.join();
+			}
+			for (final boolean[] r : results) {
+				assertSame(e.getProbes(), r);
+			}
+		}
+	}
+
+	@Test
+	public void testPackedReset() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { true, false, true }));
+		e.reset();
+		assertFalse(e.hasHits());
+		assertEquals(3, e.getProbeCount());
+	}
+
+	@Test
+	public void testPackedMerge() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, true, false, true }));
+		final ProbeBits b = ProbeBits
+				.valueOf(new boolean[] { false, false, true, true });
+		a.merge(new ExecutionData(5, "Example", b));
+
+		assertEquals(
+				ProbeBits.valueOf(new boolean[] { false, true, true, true }),
+				a.getProbeBits());
+		assertEquals(
+				ProbeBits.valueOf(new boolean[] { false, false, true, true }),
+				b);
+	}
+
+	@Test
+	public void testPackedMergeSubtract() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, true, false, true }));
+		a.merge(new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, false, true, true })),
+				false);
+
+		assertEquals(
+				ProbeBits.valueOf(new boolean[] { false, true, false, false }),
+				a.getProbeBits());
+	}
+
+	@Test
+	public void testMergePackedIntoArray() {
+		final boolean[] probes = new boolean[] { false, true, false, true };
+		final ExecutionData a = new ExecutionData(5, "Example", probes);
+		a.merge(new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, false, true, true })));
+
+		assertSame(probes, a.getProbes());
+		assertArrayEquals(new boolean[] { false, true, true, true }, probes);
+	}
+
+	@Test
+	public void testMergeArrayIntoPacked() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, true, false, true }));
+		a.merge(new ExecutionData(5, "Example",
+				new boolean[] { true, false, false, true }), false);
+
+		assertEquals(
+				ProbeBits.valueOf(new boolean[] { false, true, false, false }),
+				a.getProbeBits());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testPackedMergeIncompatible() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new ProbeBits(3));
+		a.merge(new ExecutionData(5, "Example", new ProbeBits(4)));
+	}
+
+	@Test
+	public void testMergeStreamedIntoPacked() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { false, true, false, true }));
+		final ProbeBuffer b = new ProbeBuffer();
+		b.load(ProbeBits.valueOf(new boolean[] { true, false, false, true }));
+		a.merge(5, "Example", b);
+
+		assertEquals(
+				ProbeBits.valueOf(new boolean[] { true, true, false, true }),
+				a.getProbeBits());
+	}
+
+	@Test
+	public void testMergeStreamedIntoArray() {
+		final boolean[] probes = new boolean[] { false, true, false };
+		final ExecutionData a = new ExecutionData(5, "Example", probes);
+		final ProbeBuffer b = new ProbeBuffer();
+		b.load(ProbeBits.valueOf(new boolean[] { false, false, true }));
+		a.merge(5, "Example", b);
+
+		assertArrayEquals(new boolean[] { false, true, true }, probes);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMergeStreamedIncompatible() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new ProbeBits(3));
+		final ProbeBuffer b = new ProbeBuffer();
+		b.load(new ProbeBits(3));
+		a.merge(5, "Other", b);
+	}
+
+	@Test
+	public void testCounters() {
+		final int[] counters = new int[] { 0, 3, 1 };
+		final ExecutionData e = new ExecutionData(5, "Example", counters);
+		assertSame(counters, e.getCounters());
+		assertEquals(3, e.getProbeCount());
+		assertEquals(3, e.getCount(1));
+		assertArrayEquals(new boolean[] { false, true, true }, e.getProbes());
+		assertEquals(ProbeBits.valueOf(new boolean[] { false, true, true }),
+				e.getProbeBits());
+		assertTrue(e.hasHits());
+
+		e.reset();
+		assertArrayEquals(new int[3], counters);
+		assertFalse(e.hasHits());
+	}
+
+	@Test
+	public void testCountersNotAvailable() {
+		final ExecutionData e = new ExecutionData(5, "Example",
+				new boolean[] { false, true });
+		assertNull(e.getCounters());
+		assertEquals(0, e.getCount(0));
+		assertEquals(1, e.getCount(1));
+	}
+
+	@Test
+	public void testMergeCounters() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { 0, 2, 5, Integer.MAX_VALUE - 1 });
+		final ExecutionData b = new ExecutionData(5, "Example",
+				new int[] { 1, 0, 3, 7 });
+		a.merge(b);
+
+		assertArrayEquals(new int[] { 1, 2, 8, Integer.MAX_VALUE },
+				a.getCounters());
+		assertArrayEquals(new int[] { 1, 0, 3, 7 }, b.getCounters());
+	}
+
+	@Test
+	public void testMergeCountersOverflowed() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { Integer.MIN_VALUE });
+		a.merge(new ExecutionData(5, "Example", new int[] { 1 }));
+
+		assertArrayEquals(new int[] { Integer.MAX_VALUE }, a.getCounters());
+	}
+
+	@Test
+	public void testMergeCountersIntoProbes() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new boolean[] { true, false, true });
+		a.merge(new ExecutionData(5, "Example", new int[] { 4, 0, 0 }));
+
+		assertArrayEquals(new int[] { 5, 0, 1 }, a.getCounters());
+	}
+
+	@Test
+	public void testMergeProbesIntoCounters() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { 4, 0, 0 });
+		a.merge(new ExecutionData(5, "Example",
+				ProbeBits.valueOf(new boolean[] { true, true, false })));
+
+		assertArrayEquals(new int[] { 5, 1, 0 }, a.getCounters());
+	}
+
+	@Test
+	public void testSubtractCounters() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new int[] { 4, 2, 0 });
+		a.merge(new ExecutionData(5, "Example", new int[] { 1, 0, 3 }),
+				false);
+
+		assertArrayEquals(new int[] { 0, 2, 0 }, a.getCounters());
+	}
+
+	@Test
+	public void testMergeStreamedCounters() {
+		final ExecutionData a = new ExecutionData(5, "Example",
+				new boolean[] { true, false });
+		final ProbeBuffer b = new ProbeBuffer();
+		b.load(new int[] { 2, 3 });
+		a.merge(5, "Example", b);
+
+		assertArrayEquals(new int[] { 3, 3 }, a.getCounters());
+	}
+
 	@Test
 	public void testAssertCompatibility() {
 		final ExecutionData a = new ExecutionData(5, "Example",
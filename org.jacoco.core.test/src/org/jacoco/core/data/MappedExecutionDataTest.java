@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link MappedExecutionData}.
+ */
+public class MappedExecutionDataTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<SessionInfo> sessions;
+
+	private List<ExecutionData> contents;
+
+	@Before
+	public void setup() {
+		sessions = Arrays.asList(new SessionInfo("s1", 1, 2),
+				new SessionInfo("s2", 3, 4));
+		contents = new ArrayList<ExecutionData>();
+		contents.add(new ExecutionData(42, "Sample42", new boolean[] { true,
+				false, false, false, false, false, false, false, true }));
+		contents.add(new ExecutionData(-7, "Sample-7", new boolean[0]));
+		contents.add(new ExecutionData(Long.MAX_VALUE, "Sämäple",
+				new boolean[] { false, true, true }));
+	}
+
+	@Test
+	public void should_lookup_entries_by_id() throws IOException {
+		final MappedExecutionData data = new MappedExecutionData(write());
+
+		assertEquals(3, data.getClassCount());
+		assertEntry(contents.get(0), data.get(42));
+		assertEntry(contents.get(1), data.get(-7));
+		assertEntry(contents.get(2), data.get(Long.MAX_VALUE));
+		assertNull(data.get(0));
+		assertNull(data.get(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void should_provide_session_infos() throws IOException {
+		final MappedExecutionData data = new MappedExecutionData(write());
+
+		assertEquals(2, data.getSessionInfos().size());
+		assertEquals("s2", data.getSessionInfos().get(1).getId());
+		assertEquals(3, data.getSessionInfos().get(1).getStartTimeStamp());
+		assertEquals(4, data.getSessionInfos().get(1).getDumpTimeStamp());
+	}
+
+	@Test
+	public void should_check_names() throws IOException {
+		final MappedExecutionData data = new MappedExecutionData(write());
+
+		assertTrue(data.contains("Sämäple"));
+		assertFalse(data.contains("Sample"));
+	}
+
+	@Test
+	public void should_visit_entries_in_id_order() throws IOException {
+		final List<ExecutionData> visited = new ArrayList<ExecutionData>();
+		new MappedExecutionData(write()).accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				visited.add(data);
+			}
+		});
+
+		assertEquals(3, visited.size());
+		assertEntry(contents.get(1), visited.get(0));
+		assertEntry(contents.get(0), visited.get(1));
+		assertEntry(contents.get(2), visited.get(2));
+	}
+
+	@Test
+	public void should_be_readable_by_ExecutionDataReader()
+			throws IOException {
+		final ExecutionDataStore store = new ExecutionDataStore();
+		final SessionInfoStore sessionStore = new SessionInfoStore();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(write().array()));
+		reader.setExecutionDataVisitor(store);
+		reader.setSessionInfoVisitor(sessionStore);
+
+		assertFalse(reader.read());
+
+		assertEquals(2, sessionStore.getInfos().size());
+		assertEquals(3, store.getContents().size());
+		assertEntry(contents.get(2), store.get(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void should_be_streamed_by_ExecutionDataReader()
+			throws IOException {
+		final List<String> names = new ArrayList<String>();
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(write().array()));
+		reader.setSessionInfoVisitor(new SessionInfoStore());
+		reader.setExecutionDataStreamVisitor(
+				new IExecutionDataStreamVisitor() {
+					public void visitClassExecution(final long id,
+							final String name, final ProbeBuffer probes) {
+						names.add(name + ":" + probes.toProbeBits());
+					}
+				});
+
+		assertFalse(reader.read());
+
+		assertEquals(Arrays.asList("Sample-7:[]", "Sample42:[100000001]",
+				"Sämäple:[011]"), names);
+	}
+
+	@Test
+	public void should_map_file() throws IOException {
+		final File file = folder.newFile("indexed.exec");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(write().array());
+		out.close();
+
+		assertTrue(MappedExecutionData.isIndexed(file));
+		assertEntry(contents.get(0), MappedExecutionData.map(file).get(42));
+	}
+
+	@Test
+	public void should_not_detect_block_format() throws IOException {
+		final File file = folder.newFile("block.exec");
+		final OutputStream out = new FileOutputStream(file);
+		new ExecutionDataWriter(out).visitClassExecution(contents.get(0));
+		out.close();
+
+		assertFalse(MappedExecutionData.isIndexed(file));
+		try {
+			MappedExecutionData.map(file);
+			fail("exception expected");
+		} catch (final IOException e) {
+			assertEquals("Invalid indexed execution data file.",
+					e.getMessage());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void should_reject_truncated_file() throws IOException {
+		final ByteBuffer buffer = write();
+		buffer.limit(60);
+		new MappedExecutionData(buffer.slice());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_duplicate_ids() throws IOException {
+		contents.add(new ExecutionData(42, "Other", new boolean[1]));
+		write();
+	}
+
+	private ByteBuffer write() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		MappedExecutionData.write(sessions, contents, buffer);
+		return ByteBuffer.wrap(buffer.toByteArray());
+	}
+
+	private static void assertEntry(final ExecutionData expected,
+			final ExecutionData actual) {
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getName(), actual.getName());
+		assertArrayEquals(expected.getProbes(), actual.getProbes());
+	}
+
+}
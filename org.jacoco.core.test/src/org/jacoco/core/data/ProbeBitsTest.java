@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ProbeBits}.
+ */
+public class ProbeBitsTest {
+
+	@Test
+	public void should_create_empty_instance() {
+		final ProbeBits bits = new ProbeBits(70);
+		assertEquals(70, bits.length());
+		assertTrue(bits.isEmpty());
+		assertEquals(0, bits.cardinality());
+		assertArrayEquals(new boolean[70], bits.toBooleanArray());
+	}
+
+	@Test
+	public void should_set_and_get_probes_across_words() {
+		final ProbeBits bits = new ProbeBits(130);
+		bits.set(0);
+		bits.set(63);
+		bits.set(64);
+		bits.set(129);
+
+		assertTrue(bits.get(0));
+		assertFalse(bits.get(1));
+		assertTrue(bits.get(63));
+		assertTrue(bits.get(64));
+		assertFalse(bits.get(128));
+		assertTrue(bits.get(129));
+		assertEquals(4, bits.cardinality());
+		assertFalse(bits.isEmpty());
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void get_should_reject_index_beyond_length() {
+		new ProbeBits(3).get(3);
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void set_should_reject_negative_index() {
+		new ProbeBits(3).set(-1);
+	}
+
+	@Test
+	public void should_convert_boolean_arrays() {
+		final boolean[] probes = new boolean[100];
+		probes[1] = true;
+		probes[64] = true;
+		probes[99] = true;
+		assertArrayEquals(probes, ProbeBits.valueOf(probes).toBooleanArray());
+	}
+
+	@Test
+	public void should_convert_byte_arrays_lsb_first() {
+		final ProbeBits bits = ProbeBits
+				.valueOf(new byte[] { 0x05, (byte) 0x80, 0x01 }, 17);
+		assertEquals(ProbeBits.valueOf(new boolean[] { true, false, true,
+				false, false, false, false, false, false, false, false, false,
+				false, false, false, true, true }), bits);
+		assertArrayEquals(new byte[] { 0x05, (byte) 0x80, 0x01 },
+				bits.toByteArray());
+	}
+
+	@Test
+	public void should_ignore_padding_bits_of_byte_arrays() {
+		final ProbeBits bits = ProbeBits.valueOf(new byte[] { (byte) 0xFF }, 3);
+		assertEquals(3, bits.cardinality());
+		assertEquals(new ProbeBits(3), new ProbeBits(3));
+		assertArrayEquals(new byte[] { 0x07 }, bits.toByteArray());
+	}
+
+	@Test
+	public void should_round_trip_byte_arrays_of_multiple_words() {
+		final boolean[] probes = new boolean[200];
+		for (int i = 0; i < probes.length; i += 7) {
+			probes[i] = true;
+		}
+		final ProbeBits bits = ProbeBits.valueOf(probes);
+		assertEquals(bits, ProbeBits.valueOf(bits.toByteArray(), 200));
+	}
+
+	@Test
+	public void or_should_merge_word_wise() {
+		final ProbeBits a = ProbeBits.valueOf(new boolean[] { true, false,
+				false });
+		a.or(ProbeBits.valueOf(new boolean[] { false, false, true }));
+		assertEquals(ProbeBits.valueOf(new boolean[] { true, false, true }),
+				a);
+	}
+
+	@Test
+	public void andNot_should_subtract_word_wise() {
+		final ProbeBits a = ProbeBits.valueOf(new boolean[] { true, true,
+				false });
+		a.andNot(ProbeBits.valueOf(new boolean[] { false, true, true }));
+		assertEquals(ProbeBits.valueOf(new boolean[] { true, false, false }),
+				a);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void or_should_reject_different_length() {
+		new ProbeBits(3).or(new ProbeBits(4));
+	}
+
+	@Test
+	public void clear_should_reset_all_probes() {
+		final ProbeBits bits = ProbeBits.valueOf(new boolean[] { true, true });
+		bits.clear();
+		assertTrue(bits.isEmpty());
+	}
+
+	@Test
+	public void copy_should_be_independent() {
+		final ProbeBits bits = new ProbeBits(2);
+		final ProbeBits copy = bits.copy();
+		copy.set(1);
+		assertNotSame(bits, copy);
+		assertFalse(bits.get(1));
+		assertTrue(copy.get(1));
+	}
+
+	@Test
+	public void equals_should_consider_length() {
+		assertFalse(new ProbeBits(2).equals(new ProbeBits(3)));
+		assertFalse(new ProbeBits(2).equals("[00]"));
+		assertEquals(new ProbeBits(2).hashCode(), new ProbeBits(2).hashCode());
+	}
+
+	@Test
+	public void toString_should_list_probes() {
+		assertEquals("[101]",
+				ProbeBits.valueOf(new boolean[] { true, false, true })
+						.toString());
+	}
+
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.CompactDataOutput;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ProbeBuffer}.
+ */
+public class ProbeBufferTest {
+
+	private ProbeBuffer buffer;
+
+	@Before
+	public void setup() {
+		buffer = new ProbeBuffer();
+	}
+
+	@Test
+	public void should_be_empty_initially() {
+		assertEquals(0, buffer.length());
+		assertEquals(0, buffer.cardinality());
+	}
+
+	@Test
+	public void read_should_replace_content() throws IOException {
+		final CompactDataInput in = input(
+				new boolean[] { true, false, true, true },
+				new boolean[] { false, true });
+
+		buffer.read(in);
+		assertEquals(4, buffer.length());
+		assertEquals(3, buffer.cardinality());
+		assertTrue(buffer.get(0));
+		assertFalse(buffer.get(1));
+
+		buffer.read(in);
+		assertEquals(2, buffer.length());
+		assertEquals(1, buffer.cardinality());
+		assertFalse(buffer.get(0));
+		assertTrue(buffer.get(1));
+	}
+
+	@Test
+	public void read_should_grow_buffer() throws IOException {
+		final boolean[] large = new boolean[5000];
+		large[0] = true;
+		large[4999] = true;
+		buffer.read(input(new boolean[] { true }, large));
+		buffer.read(input(large));
+
+		assertEquals(5000, buffer.length());
+		assertEquals(2, buffer.cardinality());
+		assertEquals(ProbeBits.valueOf(large), buffer.toProbeBits());
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void get_should_reject_index_beyond_length() throws IOException {
+		buffer.read(input(new boolean[3]));
+		buffer.get(3);
+	}
+
+	@Test
+	public void toProbeBits_should_create_independent_copy()
+			throws IOException {
+		final CompactDataInput in = input(new boolean[] { true, false },
+				new boolean[] { false, true });
+		buffer.read(in);
+		final ProbeBits copy = buffer.toProbeBits();
+		buffer.read(in);
+
+		assertEquals("[10]", copy.toString());
+		assertEquals("[01]", buffer.toProbeBits().toString());
+	}
+
+	@Test
+	public void load_should_copy_probe_bits() {
+		buffer.load(ProbeBits.valueOf(new boolean[] { false, false, true }));
+
+		assertEquals(3, buffer.length());
+		assertTrue(buffer.get(2));
+	}
+
+	@Test
+	public void readCounts_should_replace_content() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(bytes);
+		out.writeVarInt(3);
+		out.writeVarInt(0);
+		out.writeVarInt(300);
+		out.writeVarInt(1);
+		out.writeBooleanArray(new boolean[] { true });
+		final CompactDataInput in = new CompactDataInput(
+				new ByteArrayInputStream(bytes.toByteArray()));
+
+		buffer.readCounts(in);
+		assertTrue(buffer.hasCounts());
+		assertEquals(3, buffer.length());
+		assertEquals(2, buffer.cardinality());
+		assertEquals(0, buffer.getCount(0));
+		assertEquals(300, buffer.getCount(1));
+		assertArrayEquals(new int[] { 0, 300, 1 }, buffer.toCounters());
+
+		buffer.read(in);
+		assertFalse(buffer.hasCounts());
+		assertEquals(1, buffer.getCount(0));
+		assertNull(buffer.toCounters());
+	}
+
+	@Test
+	public void load_should_copy_counters() {
+		final int[] counters = new int[] { 5, 0 };
+		buffer.load(counters);
+		counters[0] = 0;
+
+		assertTrue(buffer.hasCounts());
+		assertTrue(buffer.get(0));
+		assertArrayEquals(new int[] { 5, 0 }, buffer.toCounters());
+	}
+
+	private static CompactDataInput input(final boolean[]... arrays)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final CompactDataOutput out = new CompactDataOutput(bytes);
+		for (final boolean[] array : arrays) {
+			out.writeBooleanArray(array);
+		}
+		return new CompactDataInput(
+				new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+}
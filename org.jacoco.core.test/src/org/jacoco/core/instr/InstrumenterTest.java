@@ -14,7 +14,10 @@ package org.jacoco.core.instr;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
@@ -24,8 +27,13 @@ import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -35,17 +43,27 @@ import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.analysis.AnalyzerTest;
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.core.internal.data.CRC64;
 import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.core.runtime.ICounterAccessorGenerator;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IInitializerAccessorGenerator;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.AssumptionViolatedException;
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceMethodVisitor;
 
 /**
  * Unit tests for {@link Instrumenter}.
@@ -72,15 +90,40 @@ public class InstrumenterTest {
 
 	}
 
+	public static class DiffTarget {
+
+		public static int changed(final int i) {
+			return i > 0 ? 1 : -1;
+		}
+
+		public static int unchanged(final int i) {
+			return i > 0 ? 2 : -2;
+		}
+
+	}
+
+	public static class ClinitTarget {
+
+		static final int VALUE = Integer.parseInt("5");
+
+		public static int get() {
+			return VALUE;
+		}
+
+	}
+
 	private static final class AccessorGenerator
 			implements IExecutionDataAccessorGenerator {
 
 		long classId;
 
+		int probeCount;
+
 		public int generateDataAccessor(final long classId,
 				final String classname, final int probeCount,
 				final MethodVisitor mv) {
 			this.classId = classId;
+			this.probeCount = probeCount;
 			InstrSupport.push(mv, probeCount);
 			mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_BOOLEAN);
 			return 1;
@@ -88,6 +131,82 @@ public class InstrumenterTest {
 
 	}
 
+	private static final class CounterAccessorGenerator
+			implements IExecutionDataAccessorGenerator,
+			ICounterAccessorGenerator {
+
+		public int generateDataAccessor(final long classId,
+				final String classname, final int probeCount,
+				final MethodVisitor mv) {
+			throw new AssertionError();
+		}
+
+		public int generateCounterAccessor(final long classId,
+				final String classname, final int probeCount,
+				final MethodVisitor mv) {
+			InstrSupport.push(mv, probeCount);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+					"org/jacoco/core/instr/InstrumenterTest", "createCounters",
+					"(I)[I", false);
+			return 1;
+		}
+
+	}
+
+	private static final class FetchCountingAccessorGenerator
+			implements IExecutionDataAccessorGenerator,
+			IInitializerAccessorGenerator {
+
+		public int generateDataAccessor(final long classId,
+				final String classname, final int probeCount,
+				final MethodVisitor mv) {
+			InstrSupport.push(mv, probeCount);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+					"org/jacoco/core/instr/InstrumenterTest", "fetchProbes",
+					"(I)[Z", false);
+			return 1;
+		}
+
+		public int generateInitializerAccessor(final long classId,
+				final String classname, final int probeCount,
+				final boolean counting, final MethodVisitor mv) {
+			InstrSupport.push(mv, probeCount);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+					"org/jacoco/core/instr/InstrumenterTest",
+					"fetchInitializerProbes", "(I)[Z", false);
+			return 1;
+		}
+
+	}
+
+	private static boolean[] probes;
+
+	private static int fetches;
+
+	private static int initializerFetches;
+
+	public static boolean[] fetchProbes(final int probeCount) {
+		fetches++;
+		return fetchInitializerProbes(probeCount);
+	}
+
+	public static boolean[] fetchInitializerProbes(final int probeCount) {
+		if (probes == null) {
+			probes = new boolean[probeCount];
+		}
+		initializerFetches++;
+		return probes;
+	}
+
+	private static int[] counters;
+
+	public static int[] createCounters(final int probeCount) {
+		if (counters == null) {
+			counters = new int[probeCount];
+		}
+		return counters;
+	}
+
 	private AccessorGenerator accessorGenerator;
 	private Instrumenter instrumenter;
 
@@ -144,6 +263,196 @@ public class InstrumenterTest {
 		assertEquals("org.jacoco.core.instr.InstrumenterTest", clazz.getName());
 	}
 
+	@Test
+	public void instrument_should_not_modify_classes_outside_of_diff()
+			throws Exception {
+		instrumenter.setDiffFilter(new MethodDiff("Other", "changed"));
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(DiffTarget.class);
+
+		assertSame(original, instrumenter.instrument(original, "Test"));
+	}
+
+	@Test
+	public void instrument_should_only_add_probes_to_methods_of_diff()
+			throws Exception {
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(DiffTarget.class);
+		instrumenter.instrument(original, "Test");
+		final int probeCount = accessorGenerator.probeCount;
+		instrumenter.setDiffFilter(new MethodDiff(
+				"org/jacoco/core/instr/InstrumenterTest$DiffTarget",
+				"changed"));
+
+		final byte[] bytes = instrumenter.instrument(original, "Test");
+
+		assertEquals(probeCount, accessorGenerator.probeCount);
+		assertEquals(instructions(original, "unchanged"),
+				instructions(bytes, "unchanged"));
+		assertFalse(instructions(original, "changed")
+				.equals(instructions(bytes, "changed")));
+		final Class<?> clazz = new TargetLoader().add(DiffTarget.class, bytes);
+		assertEquals(Integer.valueOf(1), clazz.getMethod("changed", int.class)
+				.invoke(null, Integer.valueOf(5)));
+		assertEquals(Integer.valueOf(-2),
+				clazz.getMethod("unchanged", int.class).invoke(null,
+						Integer.valueOf(-5)));
+	}
+
+	@Test
+	public void instrument_should_only_fetch_probe_array_in_touch_only_mode()
+			throws Exception {
+		final byte[] original = TargetLoader
+				.getClassDataAsBytes(DiffTarget.class);
+		final byte[] full = instrumenter.instrument(original, "Test");
+		final int probeCount = accessorGenerator.probeCount;
+		instrumenter.setTouchOnly(true);
+
+		final byte[] bytes = instrumenter.instrument(original, "Test");
+
+		assertEquals(probeCount, accessorGenerator.probeCount);
+		assertEquals(members(full), members(bytes));
+		assertTrue(instructions(bytes, "changed")
+				.contains(InstrSupport.INITMETHOD_NAME));
+		assertFalse(instructions(bytes, "changed").contains("BASTORE"));
+		final Class<?> clazz = new TargetLoader().add(DiffTarget.class, bytes);
+		assertEquals(Integer.valueOf(-1), clazz.getMethod("changed", int.class)
+				.invoke(null, Integer.valueOf(-5)));
+	}
+
+	@Test
+	public void instrument_should_record_class_initialization_without_registration_in_touch_only_mode()
+			throws Exception {
+		probes = null;
+		fetches = 0;
+		initializerFetches = 0;
+		instrumenter = new Instrumenter(new FetchCountingAccessorGenerator());
+		instrumenter.setTouchOnly(true);
+		final byte[] bytes = instrumenter.instrument(
+				TargetLoader.getClassDataAsBytes(ClinitTarget.class), "Test");
+		final TargetLoader loader = new TargetLoader();
+		final Class<?> clazz = loader.add(ClinitTarget.class, bytes);
+
+		Class.forName(clazz.getName(), true, loader);
+		assertEquals(0, fetches);
+		assertEquals(1, initializerFetches);
+		assertTrue(probes[probes.length - 1]);
+
+		assertEquals(Integer.valueOf(5), clazz.getMethod("get").invoke(null));
+		assertEquals(1, fetches);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void setCounting_should_reject_runtime_without_counter_support() {
+		instrumenter.setCounting(true);
+	}
+
+	@Test
+	public void instrument_should_count_probe_executions_in_counting_mode()
+			throws Exception {
+		counters = null;
+		instrumenter = new Instrumenter(new CounterAccessorGenerator());
+		instrumenter.setCounting(true);
+		final byte[] bytes = instrumenter.instrument(
+				TargetLoader.getClassDataAsBytes(DiffTarget.class), "Test");
+		final Class<?> clazz = new TargetLoader().add(DiffTarget.class, bytes);
+		final Method changed = clazz.getMethod("changed", int.class);
+
+		for (int i = 0; i < 3; i++) {
+			changed.invoke(null, Integer.valueOf(5));
+		}
+		changed.invoke(null, Integer.valueOf(-5));
+
+		int max = 0;
+		for (final int c : counters) {
+			max = Math.max(max, c);
+		}
+		assertEquals(4, max);
+		assertTrue(instructions(bytes, "changed").contains("IASTORE"));
+	}
+
+	/**
+	 * Compares the entries of two archives. Nested archives are compared
+	 * entry by entry as their entries are written with the current time.
+	 *
+	 * @return number of compared top level entries
+	 */
+	private static int assertZipEquals(final byte[] expectedZip,
+			final byte[] actualZip) throws IOException {
+		final ZipInputStream expected = new ZipInputStream(
+				new ByteArrayInputStream(expectedZip));
+		final ZipInputStream actual = new ZipInputStream(
+				new ByteArrayInputStream(actualZip));
+		ZipEntry entry;
+		int entries = 0;
+		while ((entry = expected.getNextEntry()) != null) {
+			final ZipEntry actualEntry = actual.getNextEntry();
+			assertEquals(entry.getName(), actualEntry.getName());
+			assertEquals(entry.getMethod(), actualEntry.getMethod());
+			final byte[] expectedContent = InputStreams.readFully(expected);
+			final byte[] actualContent = InputStreams.readFully(actual);
+			if (entry.getName().endsWith(".jar")) {
+				assertZipEquals(expectedContent, actualContent);
+			} else {
+				assertArrayEquals(expectedContent, actualContent);
+			}
+			entries++;
+		}
+		assertNull(actual.getNextEntry());
+		return entries;
+	}
+
+	private static Set<String> members(final byte[] bytes) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, ClassReader.SKIP_CODE);
+		final Set<String> members = new HashSet<String>();
+		for (final FieldNode field : node.fields) {
+			members.add(field.name + field.desc);
+		}
+		for (final MethodNode method : node.methods) {
+			members.add(method.name + method.desc);
+		}
+		return members;
+	}
+
+	private static final class MethodDiff implements IDiffFilter {
+
+		private final String className;
+
+		private final String methodName;
+
+		MethodDiff(final String className, final String methodName) {
+			this.className = className;
+			this.methodName = methodName;
+		}
+
+		public boolean containsClass(final String name) {
+			return className.equals(name);
+		}
+
+		public boolean containsMethod(final String name, final String method,
+				final String desc) {
+			return className.equals(name) && methodName.equals(method);
+		}
+
+	}
+
+	private static String instructions(final byte[] bytes,
+			final String methodName) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, ClassReader.SKIP_FRAMES);
+		for (final MethodNode method : node.methods) {
+			if (method.name.equals(methodName)) {
+				final Textifier textifier = new Textifier();
+				method.accept(new TraceMethodVisitor(textifier));
+				final StringWriter writer = new StringWriter();
+				textifier.print(new PrintWriter(writer));
+				return writer.toString();
+			}
+		}
+		throw new AssertionError(methodName);
+	}
+
 	/**
 	 * Triggers exception in {@link Instrumenter#instrument(byte[], String)}.
 	 */
@@ -394,7 +703,7 @@ public class InstrumenterTest {
 
 	/**
 	 * Triggers exception in
-	 * {@link Instrumenter#instrumentGzip(InputStream, OutputStream, String)}.
+	 * {@link Instrumenter#instrumentGzip(InputStream, OutputStream, String, boolean)}.
 	 */
 	@Test
 	public void testInstrumentAll_BrokenGZ() {
@@ -444,7 +753,7 @@ public class InstrumenterTest {
 
 	/**
 	 * Triggers exception in
-	 * {@link Instrumenter#instrumentPack200(InputStream, OutputStream, String)}.
+	 * {@link Instrumenter#instrumentPack200(InputStream, OutputStream, String, boolean)}.
 	 */
 	@Test
 	public void testInstrumentAll_BrokenPack200() {
@@ -508,6 +817,85 @@ public class InstrumenterTest {
 		assertNull(zipin.getNextEntry());
 	}
 
+	@Test(expected = IllegalArgumentException.class)
+	public void setThreads_should_reject_invalid_thread_count() {
+		instrumenter.setThreads(0);
+	}
+
+	@Test
+	public void instrumentAll_should_process_zip_entries_concurrently()
+			throws IOException {
+		final byte[] clazz = TargetLoader.getClassDataAsBytes(getClass());
+		ByteArrayOutputStream nested = new ByteArrayOutputStream();
+		ZipOutputStream nestedout = new ZipOutputStream(nested);
+		nestedout.putNextEntry(new ZipEntry("Nested.class"));
+		nestedout.write(clazz);
+		nestedout.finish();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ZipOutputStream zipout = new ZipOutputStream(buffer);
+		zipout.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		zipout.write("Manifest-Version: 1.0\r\n\r\nName: Test0.class\r\n"
+				.getBytes());
+		zipout.write("SHA1-Digest: AAAA\r\n\r\n".getBytes());
+		zipout.putNextEntry(new ZipEntry("META-INF/ALIAS.SF"));
+		for (int i = 0; i < 50; i++) {
+			zipout.putNextEntry(new ZipEntry("Test" + i + ".class"));
+			zipout.write(clazz);
+			zipout.putNextEntry(new ZipEntry("text" + i + ".txt"));
+			zipout.write(("text" + i).getBytes());
+		}
+		ZipEntry stored = new ZipEntry("nested.jar");
+		stored.setMethod(ZipEntry.STORED);
+		stored.setSize(nested.size());
+		CRC32 crc = new CRC32();
+		crc.update(nested.toByteArray());
+		stored.setCrc(crc.getValue());
+		zipout.putNextEntry(stored);
+		zipout.write(nested.toByteArray());
+		zipout.finish();
+
+		ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+		int sequentialCount = instrumenter.instrumentAll(
+				new ByteArrayInputStream(buffer.toByteArray()), sequential,
+				"Test");
+		instrumenter.setThreads(4);
+		ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+		int parallelCount = instrumenter.instrumentAll(
+				new ByteArrayInputStream(buffer.toByteArray()), parallel,
+				"Test");
+
+		assertEquals(51, sequentialCount);
+		assertEquals(51, parallelCount);
+		assertEquals(102, assertZipEquals(sequential.toByteArray(),
+				parallel.toByteArray()));
+	}
+
+	@Test
+	public void instrumentAll_should_report_broken_entry_when_concurrent()
+			throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ZipOutputStream zipout = new ZipOutputStream(buffer);
+		for (int i = 0; i < 20; i++) {
+			zipout.putNextEntry(new ZipEntry("Test" + i + ".class"));
+			final byte[] clazz = TargetLoader.getClassDataAsBytes(getClass());
+			if (i == 7) {
+				clazz[10] = 0x23;
+			}
+			zipout.write(clazz);
+		}
+		zipout.finish();
+		instrumenter.setThreads(2);
+
+		try {
+			instrumenter.instrumentAll(
+					new ByteArrayInputStream(buffer.toByteArray()),
+					new ByteArrayOutputStream(), "test.zip");
+			fail("exception expected");
+		} catch (IOException e) {
+			assertExceptionMessage("test.zip@Test7.class", e);
+		}
+	}
+
 	private void assertExceptionMessage(String name, Exception ex) {
 		String expected = "Error while instrumenting " + name + " with JaCoCo "
 				+ JaCoCo.VERSION + "/" + JaCoCo.COMMITID_SHORT + ".";
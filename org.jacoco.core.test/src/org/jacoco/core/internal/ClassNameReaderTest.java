@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.jacoco.core.test.TargetLoader;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link ClassNameReader}.
+ */
+public class ClassNameReaderTest {
+
+	@Test
+	public void should_read_name_of_compiled_class() throws IOException {
+		assertEquals("org/jacoco/core/internal/ClassNameReaderTest",
+				ClassNameReader.read(TargetLoader
+						.getClassDataAsBytes(ClassNameReaderTest.class)));
+	}
+
+	@Test
+	public void should_read_name_after_all_constant_types() {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, 0, "a/ä/Foo", null, "java/lang/Object",
+				null);
+		cw.newConst(Integer.valueOf(1));
+		cw.newConst(Float.valueOf(1));
+		cw.newConst(Long.valueOf(1));
+		cw.newConst(Double.valueOf(1));
+		cw.newConst("s");
+		cw.newField("a/Foo", "f", "I");
+		cw.newMethod("a/Foo", "m", "()V", false);
+		cw.newMethod("a/Foo", "m", "()V", true);
+		cw.newMethodType("()V");
+		cw.newHandle(Opcodes.H_INVOKESTATIC, "a/Foo", "m", "()V", false);
+		cw.newInvokeDynamic("m", "()V", new Handle(
+				Opcodes.H_INVOKESTATIC, "a/Foo", "m", "()V", false));
+		cw.newConstantDynamic("d", "I", new Handle(
+				Opcodes.H_INVOKESTATIC, "a/Foo", "m", "()V", false));
+		cw.newModule("m");
+		cw.newPackage("p");
+		final MethodVisitor mv = cw.visitMethod(0, "m", "()V", null, null);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 1);
+		mv.visitEnd();
+		cw.visitEnd();
+
+		assertEquals("a/ä/Foo", ClassNameReader.read(cw.toByteArray()));
+	}
+
+	@Test
+	public void should_return_null_for_invalid_content() {
+		assertNull(ClassNameReader.read(new byte[0]));
+		assertNull(ClassNameReader.read(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8,
+				9, 10 }));
+	}
+
+	@Test
+	public void should_return_null_for_truncated_class() {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_8, 0, "Foo", null, "java/lang/Object", null);
+		cw.visitEnd();
+		final byte[] bytes = cw.toByteArray();
+
+		for (int length = 0; length < 24; length++) {
+			final byte[] truncated = new byte[length];
+			System.arraycopy(bytes, 0, truncated, 0, length);
+			assertNull(ClassNameReader.read(truncated));
+		}
+	}
+
+}
@@ -159,6 +159,45 @@ public class InstructionTest {
 				instruction.getBranchCounter());
 	}
 
+	@Test
+	public void addCountedBranch_should_propagate_maximum_hits() {
+		final Instruction predecessor = new Instruction(122);
+		predecessor.addBranch(instruction, 0);
+		instruction.addCountedBranch(3, 0);
+		instruction.addCountedBranch(0, 1);
+		instruction.addCountedBranch(5, 2);
+
+		assertEquals(5, instruction.getHits());
+		assertEquals(5, predecessor.getHits());
+		assertEquals(CounterImpl.getInstance(1, 2),
+				instruction.getBranchCounter());
+		assertEquals(CounterImpl.COUNTER_0_1,
+				predecessor.getInstructionCounter());
+	}
+
+	@Test
+	public void addBranchWithInstruction_should_propagate_existing_hits() {
+		final Instruction target = new Instruction(122);
+		target.addCountedBranch(4, 0);
+
+		instruction.addBranch(target, 0);
+
+		assertEquals(4, instruction.getHits());
+	}
+
+	@Test
+	public void merge_should_sum_up_hits() {
+		final Instruction i1 = new Instruction(124);
+		i1.addCountedBranch(Integer.MAX_VALUE - 1, 0);
+		final Instruction i2 = new Instruction(124);
+		i2.addCountedBranch(2, 0);
+		final Instruction i3 = new Instruction(124);
+		i3.addCountedBranch(3, 0);
+
+		assertEquals(5, i2.merge(i3).getHits());
+		assertEquals(Integer.MAX_VALUE, i1.merge(i2).getHits());
+	}
+
 	@Test
 	public void replaceBranches_should_calculate_coverage_on_new_branches() {
 		Instruction i1 = new Instruction(1);
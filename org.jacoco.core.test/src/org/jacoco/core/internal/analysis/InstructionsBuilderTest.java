@@ -17,6 +17,7 @@ import static org.junit.Assert.assertEquals;
 import java.util.Map;
 
 import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ProbeBits;
 import org.jacoco.core.internal.flow.LabelInfo;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,7 +35,8 @@ public class InstructionsBuilderTest {
 
 	@Before
 	public void setup() {
-		builder = new InstructionsBuilder(new boolean[] { false, true });
+		builder = new InstructionsBuilder(
+				ProbeBits.valueOf(new boolean[] { false, true }));
 	}
 
 	@Test
@@ -72,6 +74,29 @@ public class InstructionsBuilderTest {
 				map.get(i1).getInstructionCounter());
 	}
 
+	@Test
+	public void counted_probe_should_set_hits() {
+		builder = new InstructionsBuilder(null,
+				new int[] { 0, 7, Integer.MIN_VALUE });
+
+		InsnNode i1 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i1);
+		builder.addProbe(2, 0);
+		InsnNode i2 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i2);
+		builder.addProbe(1, 0);
+		InsnNode i3 = new InsnNode(Opcodes.NOP);
+		builder.addInstruction(i3);
+		builder.addProbe(0, 0);
+
+		Map<AbstractInsnNode, Instruction> map = builder.getInstructions();
+		assertEquals(Integer.MAX_VALUE, map.get(i1).getHits());
+		assertEquals(7, map.get(i2).getHits());
+		assertEquals(CounterImpl.COUNTER_1_0,
+				map.get(i3).getInstructionCounter());
+		assertEquals(0, map.get(i3).getHits());
+	}
+
 	@Test
 	public void unexecuted_probe_should_not_mark_instruction_as_covered() {
 		InsnNode i1 = new InsnNode(Opcodes.NOP);
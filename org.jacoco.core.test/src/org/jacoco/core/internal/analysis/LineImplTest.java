@@ -14,6 +14,7 @@ package org.jacoco.core.internal.analysis;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 
 import org.jacoco.core.analysis.ICounter;
 import org.junit.Before;
@@ -138,6 +139,27 @@ public class LineImplTest {
 		assertEquals(line.hashCode(), line2.hashCode());
 	}
 
+	@Test
+	public void testMergeHits() {
+		line = line.increment(CounterImpl.getInstance(1, 2),
+				CounterImpl.COUNTER_0_0);
+		assertSame(line, line.mergeHits(0));
+
+		line = line.mergeHits(5);
+		assertEquals(5, line.getHits());
+		assertSame(line, line.mergeHits(3));
+		assertEquals(5, line.getHits());
+		assertEquals(0, LineImpl.EMPTY.getHits());
+	}
+
+	@Test
+	public void testEqualsHits() {
+		line = line.increment(CounterImpl.getInstance(1, 2),
+				CounterImpl.COUNTER_0_0);
+		assertFalse(line.equals(line.increment(CounterImpl.COUNTER_0_0,
+				CounterImpl.COUNTER_0_0).mergeHits(5)));
+	}
+
 	@Test
 	public void testEquals1() {
 		line = line.increment(CounterImpl.getInstance(111, 222),
@@ -20,6 +20,7 @@ import java.util.Set;
 
 import org.jacoco.core.analysis.ILine;
 import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ProbeBits;
 import org.jacoco.core.internal.analysis.filter.FilterContextMock;
 import org.jacoco.core.internal.analysis.filter.Filters;
 import org.jacoco.core.internal.analysis.filter.IFilter;
@@ -889,7 +890,8 @@ public class MethodAnalyzerTest implements IProbeIdGenerator {
 
 	private void runMethodAnalzer(IFilter filter) {
 		LabelFlowAnalyzer.markLabels(method);
-		InstructionsBuilder builder = new InstructionsBuilder(probes);
+		InstructionsBuilder builder = new InstructionsBuilder(
+				probes == null ? null : ProbeBits.valueOf(probes));
 		final MethodAnalyzer analyzer = new MethodAnalyzer(builder);
 
 		final MethodProbesAdapter probesAdapter = new MethodProbesAdapter(
@@ -223,4 +223,35 @@ public class SourceNodeImplTest {
 		assertEquals(CounterImpl.getInstance(0, 1), node.getLineCounter());
 	}
 
+	@Test
+	public void testMergeHits() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		node.increment(CounterImpl.getInstance(0, 1), CounterImpl.COUNTER_0_0,
+				10);
+		node.mergeHits(3, 10);
+		node.mergeHits(7, 10);
+		node.mergeHits(5, 10);
+		node.mergeHits(9, ISourceNode.UNKNOWN_LINE);
+
+		assertEquals(7, node.getLine(10).getHits());
+		assertEquals(CounterImpl.COUNTER_0_1,
+				node.getLine(10).getInstructionCounter());
+	}
+
+	@Test
+	public void testIncrementChildWithHits() {
+		final SourceNodeImpl node = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		final SourceNodeImpl child = new SourceNodeImpl(ElementType.CLASS,
+				"Foo");
+		child.increment(CounterImpl.getInstance(0, 1), CounterImpl.COUNTER_0_0,
+				5);
+		child.mergeHits(4, 5);
+
+		node.increment(child);
+
+		assertEquals(4, node.getLine(5).getHits());
+	}
+
 }
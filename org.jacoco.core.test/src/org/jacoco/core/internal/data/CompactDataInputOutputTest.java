@@ -12,12 +12,15 @@
  *******************************************************************************/
 package org.jacoco.core.internal.data;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 
+import org.jacoco.core.data.ProbeBits;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -106,6 +109,19 @@ public class CompactDataInputOutputTest {
 				true);
 	}
 
+	@Test
+	public void testProbeBits() throws IOException {
+		final boolean[] values = new boolean[131];
+		for (int i = 0; i < values.length; i += 3) {
+			values[i] = true;
+		}
+		out.writeBooleanArray(values);
+		out.writeProbeBits(ProbeBits.valueOf(values));
+		out.close();
+		assertEquals(ProbeBits.valueOf(values), in.readProbeBits());
+		assertArrayEquals(values, in.readBooleanArray());
+	}
+
 	private void testPackedBoolean(boolean... values) throws IOException {
 		out.writeBooleanArray(values);
 		out.close();
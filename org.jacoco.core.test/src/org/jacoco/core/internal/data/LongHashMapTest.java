@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LongHashMap}.
+ */
+public class LongHashMapTest {
+
+	private LongHashMap<String> map;
+
+	@Before
+	public void setup() {
+		map = new LongHashMap<String>();
+	}
+
+	@Test
+	public void should_put_and_get_values() {
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(-1, "minus"));
+		assertNull(map.put(Long.MIN_VALUE, "min"));
+
+		assertEquals("zero", map.get(0));
+		assertEquals("minus", map.get(-1));
+		assertEquals("min", map.get(Long.MIN_VALUE));
+		assertNull(map.get(1));
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void put_should_replace_existing_value() {
+		map.put(42, "a");
+
+		assertEquals("a", map.put(42, "b"));
+		assertEquals("b", map.get(42));
+		assertEquals(1, map.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void put_should_reject_null() {
+		map.put(1, null);
+	}
+
+	@Test
+	public void should_grow() {
+		for (long i = 0; i < 10000; i++) {
+			map.put(i << 32, "v" + i);
+		}
+
+		assertEquals(10000, map.size());
+		for (long i = 0; i < 10000; i++) {
+			assertEquals("v" + i, map.get(i << 32));
+		}
+	}
+
+	@Test
+	public void remove_should_keep_colliding_keys() {
+		for (long i = 0; i < 1000; i++) {
+			map.put(i * 16, "v" + i);
+		}
+		for (long i = 0; i < 1000; i += 3) {
+			assertEquals("v" + i, map.remove(i * 16));
+		}
+
+		assertNull(map.remove(0));
+		assertEquals(666, map.size());
+		for (long i = 0; i < 1000; i++) {
+			assertEquals(i % 3 == 0 ? null : "v" + i, map.get(i * 16));
+		}
+	}
+
+	@Test
+	public void values_should_add_all_values() {
+		map.put(1, "a");
+		map.put(2, "b");
+		map.put(3, "c");
+		map.remove(2);
+		final List<String> values = new ArrayList<String>();
+
+		map.values(values);
+
+		Collections.sort(values);
+		assertEquals(Arrays.asList("a", "c"), values);
+	}
+
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link NameIndex}.
+ */
+public class NameIndexTest {
+
+	@Test
+	public void add_should_return_held_instance() {
+		final NameIndex index = new NameIndex();
+		final String name = "org/Foo";
+
+		assertSame(name, index.add(name));
+		assertSame(name, index.add(new String("org/Foo")));
+		assertEquals(1, index.size());
+		assertTrue(index.contains("org/Foo"));
+		assertFalse(index.contains("org/Bar"));
+	}
+
+	@Test
+	public void remove_should_drop_name_with_last_reference() {
+		final NameIndex index = new NameIndex();
+		index.add("org/Foo");
+		index.add("org/Foo");
+
+		index.remove("org/Foo");
+		assertTrue(index.contains("org/Foo"));
+		index.remove("org/Foo");
+		assertFalse(index.contains("org/Foo"));
+		index.remove("org/Foo");
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void should_grow_and_remove() {
+		final NameIndex index = new NameIndex();
+		for (int i = 0; i < 5000; i++) {
+			index.add("C" + i);
+		}
+		for (int i = 0; i < 5000; i += 2) {
+			index.remove("C" + i);
+		}
+
+		assertEquals(2500, index.size());
+		for (int i = 0; i < 5000; i++) {
+			assertEquals(i % 2 != 0, index.contains("C" + i));
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link NameTable}.
+ */
+public class NameTableTest {
+
+	@Test
+	public void should_return_same_instance_for_equal_strings()
+			throws IOException {
+		final DataInputStream in = input("org/Foo", "org/Bar", "org/Foo");
+		final NameTable table = new NameTable();
+
+		final String foo = table.read(in);
+		final String bar = table.read(in);
+		assertEquals("org/Foo", foo);
+		assertEquals("org/Bar", bar);
+		assertSame(foo, table.read(in));
+		assertEquals(2, table.size());
+	}
+
+	@Test
+	public void should_decode_modified_utf8() throws IOException {
+		final String name = "p\u00E4ckage/Cl\u0000ss\uD83D\uDE00";
+		final NameTable table = new NameTable();
+
+		assertEquals(name, table.read(input(name)));
+	}
+
+	@Test
+	public void should_grow() throws IOException {
+		final String[] names = new String[1000];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = "C" + i;
+		}
+		final DataInputStream in = input(names);
+		final NameTable table = new NameTable();
+		final String[] read = new String[names.length];
+		for (int i = 0; i < names.length; i++) {
+			read[i] = table.read(in);
+		}
+
+		assertEquals(1000, table.size());
+		final DataInputStream again = input(names);
+		for (int i = 0; i < names.length; i++) {
+			assertSame(read[i], table.read(again));
+		}
+	}
+
+	@Test
+	public void should_read_long_strings() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append("segment/");
+		}
+		final String name = sb.toString();
+
+		assertEquals(name, new NameTable().read(input(name)));
+	}
+
+	private static DataInputStream input(final String... strings)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		for (final String s : strings) {
+			out.writeUTF(s);
+		}
+		return new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+}
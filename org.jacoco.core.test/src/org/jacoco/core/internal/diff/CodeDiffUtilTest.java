@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CodeDiffUtil}.
+ */
+public class CodeDiffUtilTest {
+
+	@Test
+	public void descriptorParametersKey_should_return_empty_key_for_no_arguments() {
+		assertEquals("", CodeDiffUtil.descriptorParametersKey("()V"));
+	}
+
+	@Test
+	public void descriptorParametersKey_should_use_simple_names() {
+		assertEquals("int,String,Entry,long[][],boolean",
+				CodeDiffUtil.descriptorParametersKey(
+						"(ILjava/lang/String;Ljava/util/Map$Entry;[[JZ)V"));
+	}
+
+	@Test
+	public void sourceParametersKey_should_return_empty_key_for_null() {
+		assertEquals("", CodeDiffUtil.sourceParametersKey(null));
+		assertEquals("", CodeDiffUtil.sourceParametersKey(
+				Collections.<String> emptyList()));
+	}
+
+	@Test
+	public void sourceParametersKey_should_join_normalized_parameters() {
+		assertEquals("String,int[]", CodeDiffUtil.sourceParametersKey(
+				Arrays.asList("String a", "int... b")));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_keep_plain_type() {
+		assertEquals("View", CodeDiffUtil.normalizeSourceParameter("View"));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_remove_name_and_modifiers() {
+		assertEquals("String",
+				CodeDiffUtil.normalizeSourceParameter("final String gitUrl"));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_remove_qualifiers() {
+		assertEquals("Entry", CodeDiffUtil
+				.normalizeSourceParameter("java.util.Map.Entry e"));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_remove_generics() {
+		assertEquals("Map", CodeDiffUtil.normalizeSourceParameter(
+				"Map<String, List<Object>> map"));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_remove_annotations() {
+		assertEquals("String", CodeDiffUtil.normalizeSourceParameter(
+				"@ApiParam(required = true, value = \"a (b)\") @RequestParam(value = \"gitUrl\") String gitUrl"));
+		assertEquals("String",
+				CodeDiffUtil.normalizeSourceParameter("@NotNull String a"));
+	}
+
+	@Test
+	public void normalizeSourceParameter_should_keep_array_dimensions() {
+		assertEquals("int[][]",
+				CodeDiffUtil.normalizeSourceParameter("int[][] a"));
+		assertEquals("int[]", CodeDiffUtil.normalizeSourceParameter("int a[]"));
+		assertEquals("String[]",
+				CodeDiffUtil.normalizeSourceParameter("String... args"));
+	}
+
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DiffIndex}.
+ */
+public class DiffIndexTest {
+
+	private List<ClassInfoDto> classInfos;
+
+	@Before
+	public void setup() {
+		classInfos = new ArrayList<ClassInfoDto>();
+	}
+
+	@Test
+	public void empty_index_should_contain_nothing() {
+		final DiffIndex index = new DiffIndex(null);
+
+		assertTrue(index.isEmpty());
+		assertFalse(index.containsClass("Foo"));
+		assertFalse(index.containsMethod("Foo", "foo", "()V"));
+	}
+
+	@Test
+	public void containsClass_should_match_class_and_nested_classes() {
+		addClass("a/Foo", "MODIFY");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertFalse(index.isEmpty());
+		assertTrue(index.containsClass("a/Foo"));
+		assertTrue(index.containsClass("a/Foo$Inner"));
+		assertTrue(index.containsClass("a/Foo$1$2"));
+		assertFalse(index.containsClass("a/FooBar"));
+		assertFalse(index.containsClass("b/Foo"));
+		assertFalse(index.containsClass(null));
+	}
+
+	@Test
+	public void containsMethod_should_match_all_methods_of_added_classes() {
+		addClass("a/Foo", "ADD");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.containsMethod("a/Foo", "any", "(I)V"));
+		assertTrue(index.containsMethod("a/Foo$1", "run", "()V"));
+		assertFalse(index.containsMethod("a/Bar", "any", "(I)V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_name_and_parameters() {
+		final ClassInfoDto foo = addClass("a/Foo", "MODIFY");
+		addMethod(foo, "run");
+		addMethod(foo, "call", "String a", "Map<String, Object> b");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.containsMethod("a/Foo", "run", "()V"));
+		assertTrue(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;Ljava/util/Map;)V"));
+		assertFalse(index.containsMethod("a/Foo", "run", "(I)V"));
+		assertFalse(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;)V"));
+		assertFalse(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;Ljava/util/HashMap;)V"));
+		assertFalse(index.containsMethod("a/Foo", "other", "()V"));
+		assertFalse(index.containsMethod("a/Foo", null, "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_not_match_modified_classes_without_methods() {
+		addClass("a/Foo", "MODIFY");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertFalse(index.containsMethod("a/Foo", "run", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_merge_duplicate_classes() {
+		addMethod(addClass("a/Foo", "MODIFY"), "run");
+		addMethod(addClass("a/Foo", "MODIFY"), "stop");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.containsMethod("a/Foo", "run", "()V"));
+		assertTrue(index.containsMethod("a/Foo", "stop", "()V"));
+	}
+
+	@Test
+	public void without_should_remove_changed_methods() {
+		final ClassInfoDto foo = addClass("a/Foo", "MODIFY");
+		addMethod(foo, "run");
+		addMethod(foo, "stop");
+		addMethod(addClass("a/Bar", "ADD"), "start");
+		addMethod(addClass("a/Baz", "MODIFY"), "call");
+		final DiffIndex index = new DiffIndex(classInfos);
+		classInfos.clear();
+		addMethod(addClass("a/Foo", "MODIFY"), "run");
+		addMethod(addClass("a/Baz", "MODIFY"), "call");
+		final DiffIndex changed = new DiffIndex(classInfos);
+
+		final DiffIndex unchanged = index.without(changed);
+
+		assertFalse(unchanged.containsMethod("a/Foo", "run", "()V"));
+		assertTrue(unchanged.containsMethod("a/Foo", "stop", "()V"));
+		assertTrue(unchanged.containsMethod("a/Bar", "other", "()V"));
+		assertFalse(unchanged.containsClass("a/Baz"));
+	}
+
+	@Test
+	public void containsMethod_should_match_exact_descriptor() {
+		final ClassInfoDto foo = addClass("a/Foo", "MODIFY");
+		addMethodDescriptor(foo, "call", "(Ljava/lang/String;I)V");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;I)V"));
+		assertFalse(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/Object;I)V"));
+		assertFalse(index.containsMethod("a/Foo", "call", "(I)V"));
+		assertFalse(index.containsMethod("a/Foo", "run", "()V"));
+	}
+
+	@Test
+	public void containsMethod_should_match_descriptors_and_parameters() {
+		final ClassInfoDto foo = addClass("a/Foo", "MODIFY");
+		addMethodDescriptor(foo, "call", "(I)V");
+		addMethod(foo, "call", "String a");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.containsMethod("a/Foo", "call", "(I)V"));
+		assertTrue(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;)V"));
+		assertFalse(index.containsMethod("a/Foo", "call", "(J)V"));
+	}
+
+	@Test
+	public void without_should_compare_descriptors_and_parameters() {
+		final ClassInfoDto foo = addClass("a/Foo", "MODIFY");
+		addMethodDescriptor(foo, "call", "(I)V");
+		addMethodDescriptor(foo, "call", "(J)V");
+		addMethod(foo, "run", "String a");
+		addMethod(foo, "stop");
+		final DiffIndex index = new DiffIndex(classInfos);
+		classInfos.clear();
+		final ClassInfoDto changedFoo = addClass("a/Foo", "MODIFY");
+		addMethod(changedFoo, "call", "int a");
+		addMethodDescriptor(changedFoo, "run", "(Ljava/lang/String;)V");
+		final DiffIndex changed = new DiffIndex(classInfos);
+
+		final DiffIndex unchanged = index.without(changed);
+
+		assertFalse(unchanged.containsMethod("a/Foo", "call", "(I)V"));
+		assertTrue(unchanged.containsMethod("a/Foo", "call", "(J)V"));
+		assertFalse(unchanged.containsMethod("a/Foo", "run",
+				"(Ljava/lang/String;)V"));
+		assertTrue(unchanged.containsMethod("a/Foo", "stop", "()V"));
+	}
+
+	@Test
+	public void without_should_drop_classes_without_methods() {
+		addClass("a/Foo", "ADD");
+		final DiffIndex index = new DiffIndex(classInfos);
+
+		assertTrue(index.without(new DiffIndex(null)).isEmpty());
+	}
+
+	private ClassInfoDto addClass(final String classFile, final String type) {
+		final ClassInfoDto classInfo = new ClassInfoDto();
+		classInfo.setClassFile(classFile);
+		classInfo.setType(type);
+		classInfos.add(classInfo);
+		return classInfo;
+	}
+
+	private void addMethod(final ClassInfoDto classInfo, final String name,
+			final String... parameters) {
+		final MethodInfoDto methodInfo = new MethodInfoDto();
+		methodInfo.setMethodName(name);
+		methodInfo.setParameters(Arrays.asList(parameters));
+		classInfo.getMethodInfos().add(methodInfo);
+	}
+
+	private void addMethodDescriptor(final ClassInfoDto classInfo,
+			final String name, final String desc) {
+		final MethodInfoDto methodInfo = new MethodInfoDto();
+		methodInfo.setMethodName(name);
+		methodInfo.setDesc(desc);
+		classInfo.getMethodInfos().add(methodInfo);
+	}
+
+}
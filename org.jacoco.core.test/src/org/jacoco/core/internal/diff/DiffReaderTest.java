@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link DiffReader}.
+ */
+public class DiffReaderTest {
+
+	private static final String DIFF = "[{\"classFile\":\"a/Foo\","
+			+ "\"lines\":[{\"endLineNum\":218,\"startLineNum\":217,\"type\":\"INSERT\"}],"
+			+ "\"methodInfos\":[{\"methodName\":\"run\",\"parameters\":[]},"
+			+ "{\"methodName\":\"call\",\"parameters\":[\"String a\",\"int b\"]}],"
+			+ "\"moduleName\":\"app\",\"type\":\"MODIFY\"},"
+			+ "{\"type\":\"ADD\",\"methodInfos\":[],\"classFile\":\"a/Bar\"}]";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_read_classes_and_methods() throws IOException {
+		assertDiff(DiffReader.read(new StringReader(DIFF)));
+	}
+
+	@Test
+	public void should_read_utf8_stream() throws IOException {
+		assertDiff(DiffReader
+				.read(new ByteArrayInputStream(DIFF.getBytes("UTF-8"))));
+	}
+
+	@Test
+	public void should_read_gzip_compressed_file() throws IOException {
+		final File file = folder.newFile("diff.json.gz");
+		final OutputStream out = new GZIPOutputStream(
+				new FileOutputStream(file));
+		out.write(DIFF.getBytes("UTF-8"));
+		out.close();
+
+		assertDiff(DiffReader.read(file));
+	}
+
+	@Test
+	public void should_ignore_null_values() throws IOException {
+		final DiffIndex index = DiffReader.read(new StringReader(
+				"[null,{\"classFile\":null},{\"classFile\":\"a/Foo\",\"type\":null,"
+						+ "\"methodInfos\":[null,{\"methodName\":\"run\",\"parameters\":null}]}]"));
+
+		assertTrue(index.containsMethod("a/Foo", "run", "()V"));
+		assertFalse(index.containsMethod("a/Foo", "other", "()V"));
+	}
+
+	@Test
+	public void should_read_method_descriptors() throws IOException {
+		final DiffIndex index = DiffReader.read(new StringReader(
+				"[{\"classFile\":\"a/Foo\",\"type\":\"MODIFY\",\"methodInfos\":["
+						+ "{\"desc\":\"(Ljava/lang/String;)V\",\"methodName\":\"call\","
+						+ "\"parameters\":[\"Object a\"]}]}]"));
+
+		assertTrue(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;)V"));
+		assertFalse(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/Object;)V"));
+	}
+
+	@Test
+	public void should_read_empty_diff() throws IOException {
+		assertTrue(DiffReader.read(new StringReader("[]")).isEmpty());
+		assertTrue(DiffReader.read(new StringReader("null")).isEmpty());
+	}
+
+	@Test(expected = IOException.class)
+	public void should_fail_on_invalid_content() throws IOException {
+		DiffReader.read(new ByteArrayInputStream(
+				new ByteArrayOutputStream().toByteArray()));
+	}
+
+	private static void assertDiff(final DiffIndex index) {
+		assertTrue(index.containsMethod("a/Foo", "run", "()V"));
+		assertTrue(index.containsMethod("a/Foo", "call",
+				"(Ljava/lang/String;I)V"));
+		assertFalse(index.containsMethod("a/Foo", "call", "()V"));
+		assertTrue(index.containsMethod("a/Bar", "any", "()V"));
+		assertFalse(index.containsClass("a/Baz"));
+	}
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.jacoco.core.internal.diff.ClassProbeRanges.MethodRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ProbeIndex}.
+ */
+public class ProbeIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void should_read_written_classes() throws IOException {
+		final List<ClassProbeRanges> classes = new ArrayList<ClassProbeRanges>();
+		for (int i = 0; i < 20; i++) {
+			final ClassProbeRanges c = new ClassProbeRanges("pkg/Class" + i,
+					1000 + i);
+			c.setProbeCount(2 * i + 2);
+			c.addMethod("<init>", "()V", 0, 1, i);
+			c.addMethod("run", "(Ljava/lang/String;)I", 1, 2 * i + 2, -i);
+			classes.add(c);
+		}
+		Collections.shuffle(classes);
+
+		final ProbeIndex index = new ProbeIndex(write(classes));
+
+		assertEquals(20, index.getClassCount());
+		for (int i = 0; i < 20; i++) {
+			final ClassProbeRanges c = index.getClassRanges("pkg/Class" + i);
+			assertEquals("pkg/Class" + i, c.getName());
+			assertEquals(1000 + i, c.getId());
+			assertEquals(2 * i + 2, c.getProbeCount());
+			final Iterator<MethodRange> methods = c.getMethods().iterator();
+			assertMethod("<init>", "()V", 0, 1, i, methods.next());
+			assertMethod("run", "(Ljava/lang/String;)I", 1, 2 * i + 2, -i,
+					methods.next());
+		}
+	}
+
+	@Test
+	public void should_return_null_for_unknown_class() throws IOException {
+		final ProbeIndex index = new ProbeIndex(write(
+				Arrays.asList(new ClassProbeRanges("b", 1),
+						new ClassProbeRanges("d", 2))));
+
+		assertNull(index.getClassRanges("a"));
+		assertNull(index.getClassRanges("c"));
+		assertNull(index.getClassRanges("e"));
+	}
+
+	@Test
+	public void should_map_index_file() throws IOException {
+		final ClassProbeRanges c = new ClassProbeRanges("Foo", 42);
+		c.addMethod("a", "()V", 0, 3, 7);
+		final File file = folder.newFile("probes.idx");
+		final OutputStream out = new FileOutputStream(file);
+		ProbeIndex.write(Arrays.asList(c), out);
+		out.close();
+
+		final ProbeIndex index = ProbeIndex.map(file);
+
+		assertMethod("a", "()V", 0, 3, 7,
+				index.getClassRanges("Foo").getMethod("a", "()V"));
+	}
+
+	@Test
+	public void should_reject_invalid_content() {
+		try {
+			new ProbeIndex(ByteBuffer.wrap(new byte[32]));
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Invalid probe index.", e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_reject_unsupported_version() throws IOException {
+		final ByteBuffer buffer = write(
+				Collections.<ClassProbeRanges> emptyList());
+		buffer.putInt(4, 99);
+		try {
+			new ProbeIndex(buffer);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("Unsupported probe index version 99.",
+					e.getMessage());
+		}
+	}
+
+	private static ByteBuffer write(final List<ClassProbeRanges> classes)
+			throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ProbeIndex.write(classes, out);
+		return ByteBuffer.wrap(out.toByteArray());
+	}
+
+	private static void assertMethod(final String name, final String desc,
+			final int start, final int end, final long hash,
+			final MethodRange method) {
+		assertEquals(name, method.getName());
+		assertEquals(desc, method.getDesc());
+		assertEquals(start, method.getStart());
+		assertEquals(end, method.getEnd());
+		assertEquals(hash, method.getBodyHash());
+	}
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.jacoco.core.internal.diff.ProbeRangeAnalyzerTest.createClass;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.diff.ProbeRangeAnalyzerTest.MethodFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ProbeMerger}.
+ */
+public class ProbeMergerTest {
+
+	private byte[] oldClass;
+
+	private byte[] newClass;
+
+	private ExecutionDataStore oldData;
+
+	private ExecutionDataStore newData;
+
+	@Before
+	public void setup() {
+		oldClass = createClass("Foo", "a", "b");
+		newClass = createClass("Foo", "c", "a", "b");
+		oldData = new ExecutionDataStore();
+		oldData.put(new ExecutionData(CRC64.classId(oldClass), "Foo",
+				new boolean[] { true, true }));
+		newData = new ExecutionDataStore();
+	}
+
+	@Test
+	public void should_map_probes_of_unchanged_methods() throws IOException {
+		final MethodFilter unchanged = new MethodFilter("Foo", "a");
+		final ProbeMerger merger = new ProbeMerger(
+				scan(newClass, new MethodFilter("Foo", "a", "b", "c")),
+				newData);
+
+		assertEquals(1, merger.merge(scan(oldClass, unchanged), oldData,
+				unchanged));
+
+		assertArrayEquals(new boolean[] { false, true, false },
+				newData.get(CRC64.classId(newClass)).getProbes());
+		assertTrue(merger.getMismatches().isEmpty());
+	}
+
+	@Test
+	public void should_not_create_execution_data_without_executed_probes()
+			throws IOException {
+		oldData.get(CRC64.classId(oldClass)).reset();
+		final MethodFilter unchanged = new MethodFilter("Foo", "a");
+		final ProbeMerger merger = new ProbeMerger(scan(newClass, unchanged),
+				newData);
+
+		merger.merge(scan(oldClass, unchanged), oldData, unchanged);
+
+		assertNull(newData.get(CRC64.classId(newClass)));
+	}
+
+	@Test
+	public void should_report_methods_with_different_probe_count()
+			throws IOException {
+		final MethodFilter unchanged = new MethodFilter("Foo", "a");
+		final Map<String, ClassProbeRanges> layout = scan(newClass, unchanged);
+		final ClassProbeRanges ranges = layout.get("Foo");
+		ranges.addMethod("a", "()V", 1, 3, ranges.getMethod("a", "()V")
+				.getBodyHash());
+		final ProbeMerger merger = new ProbeMerger(layout, newData);
+
+		assertEquals(0, merger.merge(scan(oldClass, unchanged), oldData,
+				unchanged));
+
+		assertEquals(Arrays.asList("Foo.a()V"), merger.getMismatches());
+		assertNull(newData.get(CRC64.classId(newClass)));
+	}
+
+	@Test
+	public void should_report_methods_with_different_body()
+			throws IOException {
+		final MethodFilter unchanged = new MethodFilter("Foo", "a");
+		final Map<String, ClassProbeRanges> layout = scan(newClass, unchanged);
+		layout.get("Foo").addMethod("a", "()V", 1, 2, 42);
+		final ProbeMerger merger = new ProbeMerger(layout, newData);
+
+		assertEquals(0, merger.merge(scan(oldClass, unchanged), oldData,
+				unchanged));
+
+		assertEquals(Arrays.asList("Foo.a()V"), merger.getMismatches());
+	}
+
+	@Test
+	public void should_map_probes_from_probe_index() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ProbeIndex.write(scan(oldClass, null).values(), buffer);
+		final ProbeIndex index = new ProbeIndex(
+				ByteBuffer.wrap(buffer.toByteArray()));
+		final MethodFilter unchanged = new MethodFilter("Foo", "b");
+		final ProbeMerger merger = new ProbeMerger(
+				scan(newClass, new MethodFilter("Foo", "a", "b", "c")),
+				newData);
+
+		assertEquals(1, merger.merge(index, oldData, unchanged));
+
+		assertArrayEquals(new boolean[] { false, false, true },
+				newData.get(CRC64.classId(newClass)).getProbes());
+	}
+
+	private static Map<String, ClassProbeRanges> scan(final byte[] bytes,
+			final MethodFilter filter) throws IOException {
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(filter);
+		analyzer.analyzeClass(bytes, "Foo");
+		return analyzer.getClasses();
+	}
+
+}
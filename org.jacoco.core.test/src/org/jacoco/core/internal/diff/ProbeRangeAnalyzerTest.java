@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link ProbeRangeAnalyzer}.
+ */
+public class ProbeRangeAnalyzerTest {
+
+	@Test
+	public void should_record_probe_ranges_of_diff_methods()
+			throws IOException {
+		final byte[] bytes = createClass("Foo", "a", "b", "c");
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(
+				new MethodFilter("Foo", "a", "c"));
+
+		analyzer.analyzeClass(bytes, "Foo");
+
+		final ClassProbeRanges ranges = analyzer.getClasses().get("Foo");
+		assertEquals(CRC64.classId(bytes), ranges.getId());
+		assertEquals(3, ranges.getProbeCount());
+		assertEquals(2, ranges.getMethods().size());
+		assertRange(0, 1, ranges.getMethod("a", "()V"));
+		assertNull(ranges.getMethod("b", "()V"));
+		assertRange(2, 3, ranges.getMethod("c", "()V"));
+	}
+
+	@Test
+	public void should_skip_classes_not_contained_in_diff()
+			throws IOException {
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(
+				new MethodFilter("Foo", "a"));
+
+		analyzer.analyzeClass(createClass("Bar", "a"), "Bar");
+
+		assertTrue(analyzer.getClasses().isEmpty());
+	}
+
+	@Test
+	public void should_record_all_methods_without_diff() throws IOException {
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(null);
+
+		analyzer.analyzeClass(createClass("Foo", "a", "b"), "Foo");
+		analyzer.analyzeClass(createClass("Bar", "a"), "Bar");
+
+		assertEquals(2, analyzer.getClasses().get("Foo").getMethods().size());
+		assertEquals(1, analyzer.getClasses().get("Bar").getMethods().size());
+	}
+
+	@Test
+	public void should_calculate_body_hash_independent_of_position()
+			throws IOException {
+		final ProbeRangeAnalyzer analyzer = new ProbeRangeAnalyzer(null);
+		analyzer.analyzeClass(createClass("Foo", "a"), "Foo");
+		analyzer.analyzeClass(createClass("Bar", "c", "a"), "Bar");
+
+		final ClassProbeRanges.MethodRange a1 = analyzer.getClasses()
+				.get("Foo").getMethod("a", "()V");
+		final ClassProbeRanges.MethodRange a2 = analyzer.getClasses()
+				.get("Bar").getMethod("a", "()V");
+		assertEquals(a1.getBodyHash(), a2.getBodyHash());
+		assertRange(1, 2, a2);
+	}
+
+	private static void assertRange(final int start, final int end,
+			final ClassProbeRanges.MethodRange range) {
+		assertEquals(start, range.getStart());
+		assertEquals(end, range.getEnd());
+		assertEquals(end - start, range.getLength());
+	}
+
+	/**
+	 * Creates a class with empty methods, each of them has exactly one probe.
+	 */
+	static byte[] createClass(final String name, final String... methods) {
+		final ClassWriter cw = new ClassWriter(0);
+		cw.visit(Opcodes.V1_5, 0, name, null, "java/lang/Object", null);
+		for (final String method : methods) {
+			final MethodVisitor mv = cw.visitMethod(0, method, "()V", null,
+					null);
+			mv.visitCode();
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 1);
+			mv.visitEnd();
+		}
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	static class MethodFilter implements IDiffFilter {
+
+		private final String className;
+
+		private final String[] methods;
+
+		MethodFilter(final String className, final String... methods) {
+			this.className = className;
+			this.methods = methods;
+		}
+
+		public boolean containsClass(final String name) {
+			return className.equals(name);
+		}
+
+		public boolean containsMethod(final String name,
+				final String methodName, final String desc) {
+			if (!className.equals(name)) {
+				return false;
+			}
+			for (final String method : methods) {
+				if (method.equals(methodName)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
@@ -12,12 +12,16 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import org.jacoco.core.analysis.IDiffFilter;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
 
 /**
  * Unit tests for {@link ClassInstrumenter}.
@@ -26,6 +30,8 @@ public class ClassInstrumenterTest implements IProbeArrayStrategy {
 
 	private ClassInstrumenter instrumenter;
 
+	private int storedInstances;
+
 	@Before
 	public void setup() {
 		instrumenter = new ClassInstrumenter(this,
@@ -61,13 +67,136 @@ public class ClassInstrumenterTest implements IProbeArrayStrategy {
 		assertNull(instrumenter.visitMethod(0, "foo", "()V", null, null));
 	}
 
+	@Test
+	public void should_only_instrument_methods_of_diff() {
+		instrumenter = new ClassInstrumenter(this, new IDiffFilter() {
+			public boolean containsClass(String className) {
+				return true;
+			}
+
+			public boolean containsMethod(String className, String methodName,
+					String desc) {
+				return "Foo".equals(className) && "changed".equals(methodName);
+			}
+		}, new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+			@Override
+			public MethodVisitor visitMethod(int access, String name,
+					String desc, String signature, String[] exceptions) {
+				return new MethodVisitor(InstrSupport.ASM_API_VERSION) {
+				};
+			}
+		});
+		instrumenter.visit(Opcodes.V1_8, 0, "Foo", null, "java/lang/Object",
+				null);
+
+		assertTrue(instrumenter.visitMethod(0, "changed", "()V", null,
+				null) instanceof MethodInstrumenter);
+		assertTrue(instrumenter.visitMethod(0, "other", "()V", null,
+				null) instanceof NoneMethodInstrumenter);
+		assertTrue(instrumenter.visitMethod(Opcodes.ACC_STATIC, "<clinit>",
+				"()V", null, null) instanceof MethodInstrumenter);
+	}
+
+	@Test
+	public void should_only_fetch_probe_array_in_touch_only_mode() {
+		instrumenter = new ClassInstrumenter(this, null, true,
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(
+								InstrSupport.ASM_API_VERSION) {
+						};
+					}
+				});
+		instrumenter.visit(Opcodes.V1_8, 0, "Foo", null, "java/lang/Object",
+				null);
+
+		final MethodVisitor mv = instrumenter.visitMethod(0, "foo", "()V",
+				null, null);
+		assertTrue(mv instanceof NoneMethodInstrumenter);
+		mv.visitCode();
+		assertEquals(1, storedInstances);
+	}
+
+	@Test
+	public void should_instrument_clinit_in_touch_only_mode() {
+		instrumenter = new ClassInstrumenter(this, null, true,
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(
+								InstrSupport.ASM_API_VERSION) {
+						};
+					}
+				});
+		instrumenter.visit(Opcodes.V1_8, 0, "Foo", null, "java/lang/Object",
+				null);
+
+		final MethodVisitor mv = instrumenter.visitMethod(Opcodes.ACC_STATIC,
+				"<clinit>", "()V", null, null);
+		assertTrue(mv instanceof MethodInstrumenter);
+		mv.visitCode();
+		assertEquals(1, storedInstances);
+	}
+
+	@Test
+	public void should_use_initializer_strategy_for_clinit_in_touch_only_mode() {
+		final int[] initializerInstances = new int[1];
+		final IProbeArrayStrategy initializerStrategy = new IProbeArrayStrategy() {
+			public int storeInstance(MethodVisitor mv, boolean clinit,
+					int variable) {
+				initializerInstances[0]++;
+				return 0;
+			}
+
+			public void addMembers(ClassVisitor cv, int probeCount) {
+			}
+
+			public boolean isCounting() {
+				return false;
+			}
+		};
+		instrumenter = new ClassInstrumenter(this, null, true,
+				initializerStrategy,
+				new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+					@Override
+					public MethodVisitor visitMethod(int access, String name,
+							String desc, String signature,
+							String[] exceptions) {
+						return new MethodVisitor(
+								InstrSupport.ASM_API_VERSION) {
+						};
+					}
+				});
+		instrumenter.visit(Opcodes.V1_8, 0, "Foo", null, "java/lang/Object",
+				null);
+
+		final MethodVisitor clinit = instrumenter.visitMethod(
+				Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		assertTrue(clinit instanceof MethodInstrumenter);
+		clinit.visitCode();
+		instrumenter.visitMethod(0, "foo", "()V", null, null).visitCode();
+
+		assertEquals(1, initializerInstances[0]);
+		assertEquals(1, storedInstances);
+	}
+
 	// === IProbeArrayStrategy ===
 
 	public int storeInstance(MethodVisitor mv, boolean clinit, int variable) {
+		storedInstances++;
 		return 0;
 	}
 
 	public void addMembers(ClassVisitor cv, int probeCount) {
 	}
 
+	public boolean isCounting() {
+		return false;
+	}
+
 }
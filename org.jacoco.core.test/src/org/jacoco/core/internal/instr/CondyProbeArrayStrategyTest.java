@@ -16,6 +16,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ConstantDynamic;
@@ -33,7 +34,7 @@ public class CondyProbeArrayStrategyTest {
 
 	@Before
 	public void setup() {
-		strategy = new CondyProbeArrayStrategy("ClassName", true, 1L,
+		strategy = new CondyProbeArrayStrategy("ClassName", true, 1L, false,
 				new OfflineInstrumentationAccessGenerator());
 	}
 
@@ -98,4 +99,24 @@ public class CondyProbeArrayStrategyTest {
 		assertEquals(3, m.maxLocals);
 	}
 
+	@Test
+	public void should_use_int_array_for_counting_probes() {
+		strategy = new CondyProbeArrayStrategy("ClassName", false, 1L, true,
+				new SystemPropertiesRuntime());
+		final MethodNode m = new MethodNode();
+		strategy.storeInstance(m, false, 1);
+
+		final ConstantDynamic constantDynamic = (ConstantDynamic) ((LdcInsnNode) m.instructions
+				.get(0)).cst;
+		assertEquals(
+				"(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)[I",
+				constantDynamic.getBootstrapMethod().getDesc());
+		assertEquals("[I", ((TypeInsnNode) m.instructions.get(1)).desc);
+
+		final ClassNode c = new ClassNode();
+		strategy.addMembers(c, 1);
+		assertEquals(CondyProbeArrayStrategy.COUNTER_B_DESC,
+				c.methods.get(0).desc);
+	}
+
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.instr;
+
+import static org.junit.Assert.assertEquals;
+
+import org.jacoco.core.instr.MethodRecorder;
+import org.jacoco.core.internal.flow.IFrame;
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Unit tests for {@link NoneMethodInstrumenter}.
+ */
+public class NoneMethodInstrumenterTest {
+
+	private NoneMethodInstrumenter instrumenter;
+
+	private MethodRecorder expected, actual;
+
+	private MethodVisitor expectedVisitor;
+
+	private IFrame frame;
+
+	@Before
+	public void setup() {
+		actual = new MethodRecorder();
+		expected = new MethodRecorder();
+		expectedVisitor = expected.getVisitor();
+		instrumenter = new NoneMethodInstrumenter(actual.getVisitor());
+		frame = new IFrame() {
+			public void accept(MethodVisitor mv) {
+				mv.visitFrame(Opcodes.F_FULL, 0, null, 0, null);
+			}
+		};
+	}
+
+	@Test
+	public void testVisitProbe() {
+		instrumenter.visitProbe(33);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitInsnWithProbe() {
+		instrumenter.visitInsnWithProbe(Opcodes.RETURN, 3);
+
+		expectedVisitor.visitInsn(Opcodes.RETURN);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitJumpInsnWithProbe() {
+		final Label label = new Label();
+		instrumenter.visitJumpInsnWithProbe(Opcodes.IFEQ, label, 3, frame);
+
+		expectedVisitor.visitJumpInsn(Opcodes.IFEQ, label);
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitTableSwitchInsnWithProbes() {
+		final Label dflt = new Label();
+		final Label l1 = new Label();
+		instrumenter.visitTableSwitchInsnWithProbes(3, 4, dflt,
+				new Label[] { l1, dflt }, frame);
+
+		expectedVisitor.visitTableSwitchInsn(3, 4, dflt,
+				new Label[] { l1, dflt });
+
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void testVisitLookupSwitchInsnWithProbes() {
+		final Label dflt = new Label();
+		final Label l1 = new Label();
+		instrumenter.visitLookupSwitchInsnWithProbes(dflt, new int[] { 3 },
+				new Label[] { l1 }, frame);
+
+		expectedVisitor.visitLookupSwitchInsn(dflt, new int[] { 3 },
+				new Label[] { l1 });
+
+		assertEquals(expected, actual);
+	}
+
+}
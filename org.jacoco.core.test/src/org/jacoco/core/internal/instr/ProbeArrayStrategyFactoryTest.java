@@ -15,6 +15,7 @@ package org.jacoco.core.internal.instr;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
@@ -22,6 +23,7 @@ import java.util.List;
 
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
 import org.jacoco.core.runtime.OfflineInstrumentationAccessGenerator;
+import org.jacoco.core.runtime.SystemPropertiesRuntime;
 import org.junit.Before;
 import org.junit.Test;
 import org.objectweb.asm.ClassReader;
@@ -264,6 +266,28 @@ public class ProbeArrayStrategyFactoryTest {
 		assertEquals(NoneProbeArrayStrategy.class, strategy.getClass());
 	}
 
+	@Test
+	public void test_counting_class() {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, 0, "Foo", "java/lang/Object", null, null);
+		writer.visitEnd();
+		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
+				.createFor(0, new ClassReader(writer.toByteArray()),
+						new SystemPropertiesRuntime(), true);
+
+		assertEquals(ClassFieldProbeArrayStrategy.class, strategy.getClass());
+		assertTrue(strategy.isCounting());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_counting_not_supported_by_generator() {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_8, 0, "Foo", "java/lang/Object", null, null);
+		writer.visitEnd();
+		ProbeArrayStrategyFactory.createFor(0,
+				new ClassReader(writer.toByteArray()), generator, true);
+	}
+
 	private IProbeArrayStrategy createForModule(int version) {
 		final ClassWriter writer = new ClassWriter(0);
 		writer.visit(version, Opcodes.ACC_MODULE, "module-info", null, null,
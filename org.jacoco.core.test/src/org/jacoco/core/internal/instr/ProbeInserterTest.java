@@ -35,6 +35,8 @@ public class ProbeInserterTest {
 
 	private IProbeArrayStrategy arrayStrategy;
 
+	private boolean counting;
+
 	@Before
 	public void setup() {
 		actual = new MethodRecorder();
@@ -50,6 +52,10 @@ public class ProbeInserterTest {
 
 			public void addMembers(ClassVisitor delegate, int probeCount) {
 			}
+
+			public boolean isCounting() {
+				return counting;
+			}
 		};
 	}
 
@@ -106,6 +112,22 @@ public class ProbeInserterTest {
 		expectedVisitor.visitInsn(Opcodes.BASTORE);
 	}
 
+	@Test
+	public void counting_probe_should_increment_int_array() {
+		counting = true;
+		ProbeInserter pi = new ProbeInserter(0, "m", "()V", actualVisitor,
+				arrayStrategy);
+		pi.insertProbe(7);
+
+		expectedVisitor.visitVarInsn(Opcodes.ALOAD, 1);
+		expectedVisitor.visitIntInsn(Opcodes.BIPUSH, 7);
+		expectedVisitor.visitInsn(Opcodes.DUP2);
+		expectedVisitor.visitInsn(Opcodes.IALOAD);
+		expectedVisitor.visitInsn(Opcodes.ICONST_1);
+		expectedVisitor.visitInsn(Opcodes.IADD);
+		expectedVisitor.visitInsn(Opcodes.IASTORE);
+	}
+
 	@Test
 	public void visitCode_should_call_IProbeArrayStrategy_for_any_methods() {
 		ProbeInserter pi = new ProbeInserter(0, "m", "()V", actualVisitor,
@@ -236,6 +258,19 @@ public class ProbeInserterTest {
 		expectedVisitor.visitMaxs(13, 9);
 	}
 
+	@Test
+	public void new_stack_size_should_be_increased_for_counting_probes() {
+		counting = true;
+		ProbeInserter pi = new ProbeInserter(0, "m", "(II)V", actualVisitor,
+				arrayStrategy);
+		pi.visitCode();
+		pi.visitMaxs(10, 8);
+
+		expectedVisitor.visitLabel(new Label());
+		expectedVisitor.visitLdcInsn("init");
+		expectedVisitor.visitMaxs(14, 9);
+	}
+
 	@Test
 	public void visitFrame_should_insert_probe_variable_between_arguments_and_local_variables() {
 		ProbeInserter pi = new ProbeInserter(0, "m", "(J)V", actualVisitor,
@@ -261,6 +296,18 @@ public class ProbeInserterTest {
 				new Object[0]);
 	}
 
+	@Test
+	public void visitFrame_should_insert_int_array_for_counting_probes() {
+		counting = true;
+		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
+				actualVisitor, arrayStrategy);
+
+		pi.visitFrame(Opcodes.F_NEW, 0, new Object[] {}, 0, new Object[0]);
+
+		expectedVisitor.visitFrame(Opcodes.F_NEW, 1, new Object[] { "[I" }, 0,
+				new Object[0]);
+	}
+
 	@Test
 	public void visitFrame_should_insert_probe_variable_first_when_no_parameters_exist() {
 		ProbeInserter pi = new ProbeInserter(Opcodes.ACC_STATIC, "m", "()V",
@@ -40,6 +40,8 @@ public class AgentOptionsTest {
 		AgentOptions options = new AgentOptions();
 		assertEquals(AgentOptions.DEFAULT_DESTFILE, options.getDestfile());
 		assertTrue(options.getAppend());
+		assertFalse(options.getCompress());
+		assertFalse(options.getDelta());
 		assertEquals("*", options.getIncludes());
 		assertEquals("", options.getExcludes());
 		assertEquals("sun.reflect.DelegatingClassLoader",
@@ -51,7 +53,14 @@ public class AgentOptionsTest {
 		assertEquals(AgentOptions.OutputMode.file, options.getOutput());
 		assertEquals(AgentOptions.DEFAULT_ADDRESS, options.getAddress());
 		assertEquals(AgentOptions.DEFAULT_PORT, options.getPort());
+		assertNull(options.getDiffCode());
+		assertNull(options.getDiffFile());
+		assertFalse(options.getLazy());
+		assertFalse(options.getCounters());
 		assertNull(options.getClassDumpDir());
+		assertNull(options.getInstrCache());
+		assertEquals(AgentOptions.DEFAULT_INSTRCACHESIZE,
+				options.getInstrCacheSize());
 		assertFalse(options.getJmx());
 
 		assertEquals("", options.toString());
@@ -74,6 +83,7 @@ public class AgentOptionsTest {
 		Properties properties = new Properties();
 		properties.put("destfile", "/target/test/test.exec");
 		properties.put("append", "false");
+		properties.put("compress", "true");
 		properties.put("includes", "org.*:com.*");
 		properties.put("excludes", "*Test");
 		properties.put("exclclassloader", "org.jacoco.test.TestLoader");
@@ -91,6 +101,7 @@ public class AgentOptionsTest {
 
 		assertEquals("/target/test/test.exec", options.getDestfile());
 		assertFalse(options.getAppend());
+		assertTrue(options.getCompress());
 		assertEquals("org.*:com.*", options.getIncludes());
 		assertEquals("*Test", options.getExcludes());
 		assertEquals("org.jacoco.test.TestLoader",
@@ -374,6 +385,66 @@ public class AgentOptionsTest {
 		new AgentOptions("port=-1234");
 	}
 
+	@Test
+	public void testGetDiffCode() {
+		AgentOptions options = new AgentOptions(
+				"diffcode=[{\"classFile\":\"a/Foo\",\"methodInfos\":[],"
+						+ "\"type\":\"ADD\"}],destfile=test.exec");
+		assertEquals("[{\"classFile\":\"a/Foo\",\"methodInfos\":[],"
+				+ "\"type\":\"ADD\"}]", options.getDiffCode());
+		assertEquals("test.exec", options.getDestfile());
+	}
+
+	@Test
+	public void testSetDiffCode() {
+		AgentOptions options = new AgentOptions();
+		options.setDiffCode("[]");
+		assertEquals("[]", options.getDiffCode());
+		assertEquals("diffcode=[]", options.toString());
+	}
+
+	@Test
+	public void testGetDiffFile() {
+		AgentOptions options = new AgentOptions("difffile=target/diff.json");
+		assertEquals("target/diff.json", options.getDiffFile());
+	}
+
+	@Test
+	public void testSetDiffFile() {
+		AgentOptions options = new AgentOptions();
+		options.setDiffFile("target/diff.json");
+		assertEquals("target/diff.json", options.getDiffFile());
+		assertEquals("difffile=target/diff.json", options.toString());
+	}
+
+	@Test
+	public void testGetLazy() {
+		AgentOptions options = new AgentOptions("lazy=true");
+		assertTrue(options.getLazy());
+	}
+
+	@Test
+	public void testSetLazy() {
+		AgentOptions options = new AgentOptions();
+		options.setLazy(true);
+		assertTrue(options.getLazy());
+		assertEquals("lazy=true", options.toString());
+	}
+
+	@Test
+	public void testGetCounters() {
+		AgentOptions options = new AgentOptions("counters=true");
+		assertTrue(options.getCounters());
+	}
+
+	@Test
+	public void testSetCounters() {
+		AgentOptions options = new AgentOptions();
+		options.setCounters(true);
+		assertTrue(options.getCounters());
+		assertEquals("counters=true", options.toString());
+	}
+
 	@Test
 	public void testGetClassDumpDir() {
 		AgentOptions options = new AgentOptions("classdumpdir=target/dump");
@@ -388,6 +459,81 @@ public class AgentOptionsTest {
 		assertEquals("classdumpdir=target/dump", options.toString());
 	}
 
+	@Test
+	public void testGetInstrCache() {
+		AgentOptions options = new AgentOptions(
+				"instrcache=target/cache,instrcachesize=16");
+		assertEquals("target/cache", options.getInstrCache());
+		assertEquals(16, options.getInstrCacheSize());
+	}
+
+	@Test
+	public void testSetInstrCache() {
+		AgentOptions options = new AgentOptions();
+		options.setInstrCache("target/cache");
+		options.setInstrCacheSize(16);
+		assertEquals("target/cache", options.getInstrCache());
+		assertEquals(16, options.getInstrCacheSize());
+		assertEquals("instrcache=target/cache,instrcachesize=16",
+				options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidInstrCacheSizeOptionValue() {
+		new AgentOptions("instrcachesize=0");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidInstrCacheSize() {
+		AgentOptions options = new AgentOptions();
+		options.setInstrCacheSize(-1);
+	}
+
+	@Test
+	public void testGetDelta() {
+		AgentOptions options = new AgentOptions("delta=true");
+		assertTrue(options.getDelta());
+	}
+
+	@Test
+	public void testSetDelta() {
+		AgentOptions options = new AgentOptions();
+		options.setDelta(true);
+		assertTrue(options.getDelta());
+		assertEquals("delta=true", options.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCountersWithDelta() {
+		new AgentOptions("counters=true,delta=true");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidDeltaWithCounters() {
+		AgentOptions options = new AgentOptions("counters=true");
+		options.setDelta(true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetInvalidCountersWithDelta() {
+		AgentOptions options = new AgentOptions("delta=true");
+		options.setCounters(true);
+	}
+
+	@Test
+	public void testGetCompress() {
+		AgentOptions options = new AgentOptions("compress=true");
+		assertTrue(options.getCompress());
+	}
+
+	@Test
+	public void testSetCompress() {
+		AgentOptions options = new AgentOptions();
+		options.setCompress(true);
+		assertTrue(options.getCompress());
+		assertEquals("compress=true", options.toString());
+	}
+
 	@Test
 	public void testGetJmx() {
 		AgentOptions options = new AgentOptions("jmx=true");
@@ -12,14 +12,27 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+
+import org.jacoco.core.data.IDeltaVisitor;
 import org.jacoco.core.test.TargetLoader;
 import org.junit.Before;
 import org.junit.Test;
@@ -68,6 +81,62 @@ public class RuntimeDataTest {
 		assertEquals("Foo", storage.getData(123).getName());
 	}
 
+	@Test
+	public void testGetCounters() {
+		Object[] args = new Object[] { Long.valueOf(123), "Foo",
+				Integer.valueOf(3), Boolean.TRUE };
+		data.equals(args);
+
+		final int[] counters = (int[]) args[0];
+		assertEquals(3, counters.length);
+		counters[1] = 7;
+
+		data.collect(storage, storage, false);
+		assertSame(counters, storage.getData(123).getCounters());
+		assertArrayEquals(new int[] { 0, 7, 0 }, counters);
+	}
+
+	@Test
+	public void testCollectSnapshotWithCounters() {
+		final int[] counters = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1, true)
+				.getCounters();
+		counters[0] = 3;
+
+		data.collectSnapshot(storage, storage, true);
+		counters[0]++;
+
+		assertArrayEquals(new int[] { 3 }, storage.getData(123).getCounters());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getExecutionData_should_reject_different_probe_type() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 2);
+		data.getExecutionData(Long.valueOf(123), "Foo", 2, true);
+	}
+
+	@Test
+	public void collect_should_maintain_store_of_subclasses() {
+		final ExecutionDataStore[] view = new ExecutionDataStore[1];
+		@SuppressWarnings("deprecation")
+		final RuntimeData subclass = new RuntimeData() {
+			{
+				view[0] = store;
+			}
+		};
+		final ExecutionData entry = subclass
+				.getExecutionData(Long.valueOf(123), "Foo", 2);
+		assertEquals(0, view[0].size());
+		view[0].put(new ExecutionData(456, "Bar", new boolean[] { true }));
+
+		subclass.collect(storage, storage, false);
+
+		assertSame(entry, view[0].get(123));
+		assertEquals(2, view[0].size());
+		storage.assertSize(2);
+		assertSame(view[0].get(456), storage.getData(456));
+	}
+
 	@Test
 	public void testCollectEmpty() {
 		data.collect(storage, storage, false);
@@ -100,6 +169,252 @@ public class RuntimeDataTest {
 		assertEquals("testsession", storage.getSessionInfo().getId());
 	}
 
+	@Test
+	public void getExecutionData_should_return_same_entry() {
+		final ExecutionData first = data.getExecutionData(Long.valueOf(123),
+				"Foo", 2);
+		assertSame(first, data.getExecutionData(Long.valueOf(123), "Foo", 2));
+	}
+
+	@Test
+	public void getExecutionData_should_notify_registration_listener_once() {
+		final List<ExecutionData> registered = new ArrayList<ExecutionData>();
+		data.setRegistrationListener(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData entry) {
+				registered.add(entry);
+			}
+		});
+		final ExecutionData first = data.getExecutionData(Long.valueOf(123),
+				"Foo", 2);
+		Object[] args = new Object[] { Long.valueOf(123), "Foo",
+				Integer.valueOf(2) };
+		data.equals(args);
+		data.getExecutionData(Long.valueOf(123), "Foo", 2);
+		final ExecutionData second = data
+				.getExecutionData(Long.valueOf(456), "Bar", 1);
+		data.setRegistrationListener(null);
+		data.getExecutionData(Long.valueOf(789), "Baz", 1);
+
+		assertEquals(2, registered.size());
+		assertSame(first, registered.get(0));
+		assertSame(second, registered.get(1));
+	}
+
+	@Test
+	public void getProbes_should_register_class_with_request_after_initializer() {
+		final List<ExecutionData> registered = new ArrayList<ExecutionData>();
+		data.setRegistrationListener(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData entry) {
+				registered.add(entry);
+			}
+		});
+		final Object[] initializerArgs = new Object[] { Long.valueOf(123),
+				"Foo", Integer.valueOf(2), Boolean.TRUE, Boolean.TRUE };
+		data.getProbes(initializerArgs);
+		data.getProbes(new Object[] { Long.valueOf(123), "Foo",
+				Integer.valueOf(2), Boolean.TRUE, Boolean.TRUE });
+		assertEquals(0, registered.size());
+
+		final ExecutionData entry = data.getExecutionData(Long.valueOf(123),
+				"Foo", 2, true);
+		data.getExecutionData(Long.valueOf(123), "Foo", 2, true);
+
+		assertSame(entry.getCounters(), initializerArgs[0]);
+		assertEquals(1, registered.size());
+		assertSame(entry, registered.get(0));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void getExecutionData_should_reject_incompatible_entry() {
+		data.getExecutionData(Long.valueOf(123), "Foo", 2);
+		data.getExecutionData(Long.valueOf(123), "Foo", 3);
+	}
+
+	@Test
+	public void getExecutionData_should_not_block_while_collecting()
+			throws Exception {
+		data.getExecutionData(Long.valueOf(1), "Foo", 1).getProbes()[0] = true;
+		final CountDownLatch collecting = new CountDownLatch(1);
+		final CountDownLatch registered = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Void> collect = executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					data.collect(new IExecutionDataVisitor() {
+						public void visitClassExecution(
+								final ExecutionData d) {
+							collecting.countDown();
+							try {
+								registered.await();
+							} catch (final InterruptedException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					}, storage, false);
+					return null;
+				}
+			});
+			assertTrue(collecting.await(10, TimeUnit.SECONDS));
+
+			data.getExecutionData(Long.valueOf(2), "Bar", 1);
+			registered.countDown();
+
+			collect.get(10, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void getExecutionData_should_register_concurrently()
+			throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<ExecutionData>> results;
+			results = new ArrayList<Future<ExecutionData>>();
+			for (int i = 0; i < 64; i++) {
+				final Long id = Long.valueOf(i % 4);
+				results.add(executor.submit(new Callable<ExecutionData>() {
+					public ExecutionData call() {
+						return data.getExecutionData(id, "C" + id, 2);
+					}
+				}));
+			}
+			for (final Future<ExecutionData> result : results) {
+				final ExecutionData entry = result.get();
+				assertSame(entry, data.getExecutionData(
+						Long.valueOf(entry.getId()), entry.getName(), 2));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		data.collect(storage, storage, false);
+		storage.assertSize(4);
+	}
+
+	@Test
+	public void collectSnapshot_should_copy_executed_probes() {
+		data.setSessionId("testsession");
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 2).getProbes();
+		data.getExecutionData(Long.valueOf(456), "Bar", 1);
+		probes[1] = true;
+
+		data.collectSnapshot(storage, storage, false);
+
+		storage.assertSize(1);
+		final ExecutionData copy = storage.getData(123);
+		assertEquals("Foo", copy.getName());
+		assertEquals("[01]", copy.getProbeBits().toString());
+		probes[0] = true;
+		assertEquals("[01]", copy.getProbeBits().toString());
+		assertEquals("testsession", storage.getSessionInfo().getId());
+	}
+
+	@Test
+	public void collectSnapshot_should_reset_probes() {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes();
+		probes[0] = true;
+
+		data.collectSnapshot(storage, storage, true);
+
+		assertFalse(probes[0]);
+		assertTrue(storage.getData(123).hasHits());
+	}
+
+	@Test
+	public void collectSnapshot_should_call_visitors_outside_lock()
+			throws Exception {
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(123), "Foo", 1).getProbes();
+		probes[0] = true;
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			data.collectSnapshot(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData d) {
+					// Would dead-lock if the lock would still be held:
+					final Future<?> reset = executor.submit(new Runnable() {
+						public void run() {
+							data.reset();
+						}
+					});
+					try {
+						reset.get(10, TimeUnit.SECONDS);
+					} catch (final Exception e) {
+						throw new RuntimeException(e);
+					}
+				}
+			}, storage, false);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertFalse(probes[0]);
+	}
+
+	@Test
+	public void collectDelta_should_only_report_new_probes() {
+		final DeltaTracker tracker = new DeltaTracker();
+		final List<Long> sequences = new ArrayList<Long>();
+		final IDeltaVisitor deltaVisitor = new IDeltaVisitor() {
+			public void visitDelta(final long sequence) {
+				sequences.add(Long.valueOf(sequence));
+			}
+		};
+		boolean[] probes = data.getExecutionData(Long.valueOf(123), "Foo", 3)
+				.getProbes();
+		data.getExecutionData(Long.valueOf(456), "Bar", 1)
+				.getProbes()[0] = true;
+		probes[0] = true;
+
+		data.collectDelta(tracker, storage, storage, deltaVisitor, false);
+		storage.assertSize(2);
+		assertEquals("[100]",
+				storage.getData(123).getProbeBits().toString());
+
+		storage = new TestStorage();
+		probes[2] = true;
+		data.collectDelta(tracker, storage, storage, deltaVisitor, false);
+		storage.assertSize(1);
+		assertEquals("[001]",
+				storage.getData(123).getProbeBits().toString());
+
+		storage = new TestStorage();
+		data.collectDelta(tracker, storage, storage, deltaVisitor, false);
+		storage.assertSize(0);
+		assertNotNull(storage.getSessionInfo());
+
+		assertEquals("[0, 1, 2]", sequences.toString());
+		assertEquals(2, tracker.getSequence());
+		assertTrue(probes[0]);
+	}
+
+	@Test
+	public void collectDelta_should_restart_sequence_after_reset() {
+		final DeltaTracker tracker = new DeltaTracker();
+		final List<Long> sequences = new ArrayList<Long>();
+		final IDeltaVisitor deltaVisitor = new IDeltaVisitor() {
+			public void visitDelta(final long sequence) {
+				sequences.add(Long.valueOf(sequence));
+			}
+		};
+		boolean[] probes = data.getExecutionData(Long.valueOf(123), "Foo", 1)
+				.getProbes();
+		probes[0] = true;
+
+		data.collectDelta(tracker, storage, storage, deltaVisitor, true);
+		assertFalse(probes[0]);
+		probes[0] = true;
+		data.collectDelta(tracker, storage, storage, deltaVisitor, false);
+		data.collect(storage, storage, true);
+		probes[0] = true;
+		storage = new TestStorage();
+		data.collectDelta(tracker, storage, storage, deltaVisitor, false);
+
+		assertEquals("[0, 0, 0]", sequences.toString());
+		storage.assertSize(1);
+	}
+
 	@Test
 	public void testEquals() {
 		assertTrue(data.equals(data));
@@ -148,6 +463,112 @@ public class RuntimeDataTest {
 		assertEquals(Integer.valueOf(15), args[2]);
 	}
 
+	@Test
+	public void testGenerateCounterAccessCall() throws Exception {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "Sample", null,
+				"java/lang/Object",
+				new String[] { Type.getInternalName(Callable.class) });
+
+		// Constructor
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+				"(Ljava/lang/Object;)V", null, new String[0]);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>",
+				"()V", false);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, "Sample", "access",
+				"Ljava/lang/Object;");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+
+		// call()
+		mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "call",
+				"()Ljava/lang/Object;", null, new String[0]);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, "Sample", "access",
+				"Ljava/lang/Object;");
+		RuntimeData.generateCounterAccessCall(1234, "Sample", 5, mv);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(6, 1);
+		mv.visitEnd();
+
+		writer.visitField(Opcodes.ACC_PRIVATE, "access", "Ljava/lang/Object;",
+				null, null);
+
+		writer.visitEnd();
+		final TargetLoader loader = new TargetLoader();
+		Callable<?> callable = (Callable<?>) loader
+				.add("Sample", writer.toByteArray())
+				.getConstructor(Object.class).newInstance(data);
+		final int[] counters = (int[]) callable.call();
+
+		assertSame(data.getExecutionData(Long.valueOf(1234), "Sample", 5, true)
+				.getCounters(), counters);
+	}
+
+	@Test
+	public void testGenerateInitializerAccessCall() throws Exception {
+		final List<ExecutionData> registered = new ArrayList<ExecutionData>();
+		data.setRegistrationListener(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData entry) {
+				registered.add(entry);
+			}
+		});
+
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "Sample", null,
+				"java/lang/Object",
+				new String[] { Type.getInternalName(Callable.class) });
+
+		// Constructor
+		MethodVisitor mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>",
+				"(Ljava/lang/Object;)V", null, new String[0]);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>",
+				"()V", false);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, "Sample", "access",
+				"Ljava/lang/Object;");
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(2, 2);
+		mv.visitEnd();
+
+		// call()
+		mv = writer.visitMethod(Opcodes.ACC_PUBLIC, "call",
+				"()Ljava/lang/Object;", null, new String[0]);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, "Sample", "access",
+				"Ljava/lang/Object;");
+		RuntimeData.generateInitializerAccessCall(1234, "Sample", 5, false,
+				mv);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(6, 1);
+		mv.visitEnd();
+
+		writer.visitField(Opcodes.ACC_PRIVATE, "access", "Ljava/lang/Object;",
+				null, null);
+
+		writer.visitEnd();
+		final TargetLoader loader = new TargetLoader();
+		Callable<?> callable = (Callable<?>) loader
+				.add("Sample", writer.toByteArray())
+				.getConstructor(Object.class).newInstance(data);
+		final boolean[] probes = (boolean[]) callable.call();
+		assertEquals(0, registered.size());
+
+		assertSame(data.getExecutionData(Long.valueOf(1234), "Sample", 5)
+				.getProbes(), probes);
+		assertEquals(1, registered.size());
+	}
+
 	@Test
 	public void testGenerateAccessCall() throws Exception {
 		final boolean[] probes = data
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.runtime.DeltaTracker;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ExecDeltaCombiner}.
+ */
+public class ExecDeltaCombinerTest {
+
+	private ExecDeltaCombiner combiner;
+
+	@Before
+	public void setup() {
+		combiner = new ExecDeltaCombiner();
+	}
+
+	@Test
+	public void should_combine_deltas() {
+		combiner.visitDelta(0);
+		combiner.visitSessionInfo(new SessionInfo("s", 1, 2));
+		combiner.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true, false }));
+		combiner.visitDelta(1);
+		combiner.visitSessionInfo(new SessionInfo("s", 1, 3));
+		combiner.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { false, true }));
+		combiner.visitClassExecution(
+				new ExecutionData(2, "B", new boolean[] { true }));
+
+		assertEquals(1, combiner.getSequence());
+		assertEquals(2, combiner.getSessionInfoStore().getInfos().size());
+		assertEquals(2,
+				combiner.getExecutionDataStore().getContents().size());
+		assertEquals("[11]", combiner.getExecutionDataStore().get(1)
+				.getProbeBits().toString());
+	}
+
+	@Test
+	public void should_replace_content_with_complete_dump() {
+		combiner.visitDelta(0);
+		combiner.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+		combiner.visitDelta(0);
+		combiner.visitClassExecution(
+				new ExecutionData(2, "B", new boolean[] { true }));
+
+		assertEquals(0, combiner.getSequence());
+		assertNull(combiner.getExecutionDataStore().get(1));
+		assertTrue(combiner.getExecutionDataStore().contains("B"));
+	}
+
+	@Test
+	public void should_detect_missing_delta() {
+		combiner.visitDelta(0);
+		combiner.visitDelta(1);
+		try {
+			combiner.visitDelta(3);
+			fail("IllegalStateException expected");
+		} catch (final IllegalStateException e) {
+			assertEquals("Missing delta dump 2, received 3.", e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_reject_data_before_first_dump() {
+		combiner.visitClassExecution(
+				new ExecutionData(1, "A", new boolean[] { true }));
+	}
+
+	@Test
+	public void should_rebuild_snapshots_of_runtime() throws IOException {
+		final RuntimeData data = new RuntimeData();
+		final DeltaTracker tracker = new DeltaTracker();
+		final boolean[] probes = data
+				.getExecutionData(Long.valueOf(1), "A", 3).getProbes();
+		probes[0] = true;
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		data.collectDelta(tracker, writer, writer, writer, false);
+		probes[2] = true;
+		writer = new ExecutionDataWriter(buffer);
+		data.collectDelta(tracker, writer, writer, writer, false);
+		writer = new ExecutionDataWriter(buffer);
+		data.collectDelta(tracker, writer, writer, writer, false);
+
+		final ExecutionDataReader reader = new ExecutionDataReader(
+				new ByteArrayInputStream(buffer.toByteArray()));
+		reader.setSessionInfoVisitor(combiner);
+		reader.setExecutionDataVisitor(combiner);
+		reader.setDeltaVisitor(combiner);
+		assertFalse(reader.read());
+
+		assertEquals(2, combiner.getSequence());
+		assertEquals("[101]", combiner.getExecutionDataStore().get(1)
+				.getProbeBits().toString());
+
+		final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+		combiner.save(snapshot);
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(new ByteArrayInputStream(snapshot.toByteArray()));
+		assertEquals(3, loader.getSessionInfoStore().getInfos().size());
+		assertEquals("[101]", loader.getExecutionDataStore().get(1)
+				.getProbeBits().toString());
+	}
+
+}
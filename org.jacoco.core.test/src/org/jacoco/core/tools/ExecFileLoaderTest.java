@@ -114,6 +114,40 @@ public class ExecFileLoaderTest {
 		assertFileContents(file, "a");
 	}
 
+	@Test
+	public void testSaveIndexedAndMap() throws IOException {
+		final File file = new File(sourceFolder.getRoot(), "x/indexed.exec");
+		loader.load(createFile("a"));
+		loader.load(createFile("bb"));
+		loader.saveIndexed(file);
+
+		assertFileContents(file, "a", "bb");
+		loader = new ExecFileLoader();
+		loader.map(file);
+		assertLoaderContents("a", "bb");
+	}
+
+	@Test
+	public void testMapBlockFormat() throws IOException {
+		loader.map(createFile("a"));
+		loader.map(createFile("bb"));
+
+		assertLoaderContents("a", "bb");
+	}
+
+	@Test
+	public void testMapAfterLoad() throws IOException {
+		final File file = new File(sourceFolder.getRoot(), "indexed.exec");
+		loader.load(createFile("bb"));
+		loader.saveIndexed(file);
+
+		loader = new ExecFileLoader();
+		loader.load(createFile("a"));
+		loader.map(file);
+
+		assertLoaderContents("a", "bb");
+	}
+
 	private File createFile(String id) throws IOException {
 		final File file = new File(sourceFolder.getRoot(), id + ".exec");
 		final FileOutputStream out = new FileOutputStream(file);
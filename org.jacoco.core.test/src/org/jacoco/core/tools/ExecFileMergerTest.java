@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.MappedExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecFileMerger}.
+ */
+public class ExecFileMergerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test(expected = IllegalArgumentException.class)
+	public void should_reject_invalid_thread_count() {
+		new ExecFileMerger(0);
+	}
+
+	@Test
+	public void should_merge_files_concurrently() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(4);
+		for (int i = 0; i < 50; i++) {
+			merger.add(createFile("f" + i, i, new ExecutionData(1, "Shared",
+					probes(4, i % 4)), new ExecutionData(100 + i, "C" + i,
+							probes(1, 0))));
+		}
+		merger.finish();
+
+		assertFalse(merger.isEmpty());
+		assertEquals(50, merger.getSessionInfoStore().getInfos().size());
+		final List<ExecutionData> contents = contents(merger);
+		assertEquals(51, contents.size());
+		assertEquals("Shared", contents.get(0).getName());
+		assertArrayEquals(new boolean[] { true, true, true, true },
+				contents.get(0).getProbes());
+	}
+
+	@Test
+	public void should_emit_contents_ordered_by_id() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 0, new ExecutionData(7, "C7", probes(1, 0)),
+				new ExecutionData(-3, "C-3", probes(1, 0))));
+		merger.add(createFile("b", 0, new ExecutionData(5, "C5", probes(1, 0)),
+				new ExecutionData(Long.MAX_VALUE, "CMax", probes(1, 0))));
+		merger.finish();
+
+		final List<ExecutionData> contents = contents(merger);
+		assertEquals(4, contents.size());
+		assertEquals(-3, contents.get(0).getId());
+		assertEquals(5, contents.get(1).getId());
+		assertEquals(7, contents.get(2).getId());
+		assertEquals(Long.MAX_VALUE, contents.get(3).getId());
+	}
+
+	@Test
+	public void should_merge_streams() throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ExecutionDataWriter writer = new ExecutionDataWriter(buffer);
+		writer.visitClassExecution(new ExecutionData(1, "A", probes(2, 1)));
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		merger.add(new ExecFileMerger.Input() {
+			public InputStream open() {
+				return new ByteArrayInputStream(buffer.toByteArray());
+			}
+		}, "buffer");
+		merger.finish();
+
+		final ExecutionDataStore store = new ExecutionDataStore();
+		merger.accept(store);
+		assertArrayEquals(new boolean[] { false, true },
+				store.get(1).getProbes());
+	}
+
+	@Test
+	public void should_report_location_of_broken_input() throws IOException {
+		final File broken = folder.newFile("broken.exec");
+		final FileOutputStream out = new FileOutputStream(broken);
+		out.write("Invalid Content".getBytes());
+		out.close();
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 0,
+				new ExecutionData(1, "A", probes(1, 0))));
+		merger.add(broken);
+		try {
+			merger.finish();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals(String.format("Unable to read %s.",
+					broken.getAbsolutePath()), e.getMessage());
+		}
+	}
+
+	@Test
+	public void should_report_incompatible_execution_data()
+			throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 0,
+				new ExecutionData(1, "A", probes(1, 0))));
+		merger.add(createFile("b", 0,
+				new ExecutionData(1, "A", probes(2, 0))));
+		try {
+			merger.finish();
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_not_allow_access_before_finish() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		merger.add(createFile("a", 0,
+				new ExecutionData(1, "A", probes(1, 0))));
+		merger.isEmpty();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void should_not_allow_inputs_after_finish() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		merger.finish();
+		merger.add(createFile("a", 0,
+				new ExecutionData(1, "A", probes(1, 0))));
+	}
+
+	@Test
+	public void should_save_merged_files() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 1, new ExecutionData(1, "A", probes(2, 0))));
+		merger.add(createFile("b", 2, new ExecutionData(1, "A", probes(2, 1))));
+		merger.finish();
+		final File dest = new File(folder.getRoot(), "out/merged.exec");
+		merger.save(dest, false);
+
+		final ExecFileLoader loader = new ExecFileLoader();
+		loader.load(dest);
+		assertEquals(2, loader.getSessionInfoStore().getInfos().size());
+		assertArrayEquals(new boolean[] { true, true },
+				loader.getExecutionDataStore().get(1).getProbes());
+	}
+
+	@Test
+	public void should_save_merged_files_indexed() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 1, new ExecutionData(1, "A", probes(2, 0))));
+		merger.add(createFile("b", 2, new ExecutionData(2, "B", probes(2, 1))));
+		merger.finish();
+		final File dest = new File(folder.getRoot(), "merged.exec");
+		merger.saveIndexed(dest);
+
+		assertTrue(MappedExecutionData.isIndexed(dest));
+		final MappedExecutionData mapped = MappedExecutionData.map(dest);
+		assertEquals(2, mapped.getClassCount());
+		assertEquals(2, mapped.getSessionInfos().size());
+	}
+
+	@Test
+	public void should_sum_up_counters() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(2);
+		merger.add(createFile("a", 0,
+				new ExecutionData(1, "A", new int[] { 3, 0, 1 })));
+		merger.add(createFile("b", 0,
+				new ExecutionData(1, "A", new int[] { 2, 0, 0 })));
+		merger.add(createFile("c", 0, new ExecutionData(1, "A", probes(3, 1))));
+		merger.finish();
+
+		final List<ExecutionData> contents = contents(merger);
+		assertEquals(1, contents.size());
+		assertArrayEquals(new int[] { 5, 1, 1 }, contents.get(0).getCounters());
+	}
+
+	@Test
+	public void should_be_empty_without_execution_data() throws IOException {
+		final ExecFileMerger merger = new ExecFileMerger(1);
+		merger.add(createFile("a", 0));
+		merger.finish();
+
+		assertTrue(merger.isEmpty());
+	}
+
+	private File createFile(final String name, final long time,
+			final ExecutionData... contents) throws IOException {
+		final File file = new File(folder.getRoot(), name + ".exec");
+		final FileOutputStream out = new FileOutputStream(file);
+		final ExecutionDataWriter writer = new ExecutionDataWriter(out);
+		writer.visitSessionInfo(new SessionInfo(name, time, time));
+		for (final ExecutionData data : contents) {
+			writer.visitClassExecution(data);
+		}
+		out.close();
+		return file;
+	}
+
+	private static boolean[] probes(final int count, final int hit) {
+		final boolean[] probes = new boolean[count];
+		probes[hit] = true;
+		return probes;
+	}
+
+	private static List<ExecutionData> contents(final ExecFileMerger merger) {
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		merger.accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				contents.add(data);
+			}
+		});
+		return contents;
+	}
+
+}
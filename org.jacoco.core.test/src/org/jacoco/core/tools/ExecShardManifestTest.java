@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ExecShardManifest}.
+ */
+public class ExecShardManifestTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void getDirectory_should_append_suffix() {
+		assertEquals(new File("target/jacoco.exec.shards"),
+				ExecShardManifest.getDirectory(new File("target/jacoco.exec")));
+	}
+
+	@Test
+	public void createShardName_should_replace_unsafe_characters() {
+		assertEquals("host_1_test.a-abc.exec",
+				ExecShardManifest.createShardName("host/1:test.a", "abc"));
+	}
+
+	@Test
+	public void read_should_return_registered_existing_shards()
+			throws IOException {
+		final File dir = folder.getRoot();
+		final File a = folder.newFile("a.exec");
+		final File c = folder.newFile("c.exec");
+		ExecShardManifest.register(dir, "a.exec");
+		ExecShardManifest.register(dir, "b.exec");
+		ExecShardManifest.register(dir, "c.exec");
+
+		assertEquals(Arrays.asList(a, c), ExecShardManifest.read(dir));
+	}
+
+	@Test
+	public void read_should_fail_without_manifest() {
+		try {
+			ExecShardManifest.read(folder.getRoot());
+			fail("IOException expected");
+		} catch (final IOException e) {
+			assertEquals(String.format("No shard manifest in %s.",
+					folder.getRoot()), e.getMessage());
+		}
+	}
+
+}
@@ -24,6 +24,8 @@ import java.util.zip.ZipInputStream;
 import org.jacoco.core.JaCoCo;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ProbeBits;
+import org.jacoco.core.internal.ClassNameReader;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
@@ -31,7 +33,6 @@ import org.jacoco.core.internal.analysis.ClassAnalyzer;
 import org.jacoco.core.internal.analysis.ClassCoverageImpl;
 import org.jacoco.core.internal.analysis.StringPool;
 import org.jacoco.core.internal.data.CRC64;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassReader;
@@ -54,6 +55,10 @@ public class Analyzer {
 
 	private final StringPool stringPool;
 
+	private final IDiffFilter diffFilter;
+
+	private DiffDiagnostics diagnostics;
+
 	/**
 	 * Creates a new analyzer reporting to the given output.
 	 *
@@ -65,67 +70,165 @@ public class Analyzer {
 	 */
 	public Analyzer(final ExecutionDataStore executionData,
 			final ICoverageVisitor coverageVisitor) {
+		this(executionData, coverageVisitor, null);
+	}
+
+	/**
+	 * Creates a new analyzer for incremental coverage reporting to the given
+	 * output. Only classes and methods contained in the given diff are
+	 * analyzed.
+	 *
+	 * @param executionData
+	 *            execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 * @param diffFilter
+	 *            diff to analyze or <code>null</code> for full coverage
+	 */
+	public Analyzer(final ExecutionDataStore executionData,
+			final ICoverageVisitor coverageVisitor,
+			final IDiffFilter diffFilter) {
 		this.executionData = executionData;
 		this.coverageVisitor = coverageVisitor;
 		this.stringPool = new StringPool();
+		this.diffFilter = diffFilter;
+	}
+
+	/**
+	 * Sets the diagnostics which collect statistics about the classes and
+	 * methods selected by the diff. Must be called before the first class is
+	 * analyzed.
+	 *
+	 * @param diagnostics
+	 *            diagnostics to report to or <code>null</code>
+	 */
+	public void setDiffDiagnostics(final DiffDiagnostics diagnostics) {
+		this.diagnostics = diagnostics;
 	}
 
 	/**
 	 * Creates an ASM class visitor for analysis.
 	 *
-	 * @param classid
-	 *            id of the class calculated with {@link CRC64}
-	 * @param className
-	 *            VM name of the class
+	 * @param coverage
+	 *            coverage node to fill with the analysis result
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
 	 * @return ASM visitor to write class definition to
 	 */
-	private ClassVisitor createAnalyzingVisitor(final long classid,
-			final String className) {
-		final ExecutionData data = executionData.get(classid);
-		final boolean[] probes;
-		final boolean noMatch;
-		if (data == null) {
-			probes = null;
-			noMatch = executionData.contains(className);
-		} else {
-			probes = data.getProbes();
-			noMatch = false;
-		}
-		final ClassCoverageImpl coverage = new ClassCoverageImpl(className,
-				classid, noMatch,probes);
+	private ClassVisitor createAnalyzingVisitor(
+			final ClassCoverageImpl coverage, final ProbeBits probes,
+			final int[] counters) {
 		final ClassAnalyzer analyzer = new ClassAnalyzer(coverage, probes,
-				stringPool) {
-			@Override
-			public void visitEnd() {
-				super.visitEnd();
-				coverageVisitor.visitCoverage(coverage);
+				counters, stringPool);
+		return new ClassProbesAdapter(analyzer, false, diffFilter,
+				diagnostics);
+	}
+
+	/**
+	 * Checks whether the given class definition is excluded by the diff. Only
+	 * the class name is extracted from the constant pool, so excluded classes
+	 * are rejected without calculating the class id or parsing the class. This
+	 * method does not modify any state of this analyzer and therefore may be
+	 * called concurrently.
+	 *
+	 * @param source
+	 *            class definition
+	 * @return <code>true</code> if the class doesn't need to be analyzed
+	 */
+	protected boolean isExcludedByDiff(final byte[] source) {
+		if (diffFilter == null) {
+			return false;
+		}
+		final String className = ClassNameReader.read(source);
+		// Malformed classes are left to the full analysis for proper errors:
+		if (className == null || diffFilter.containsClass(className)) {
+			return false;
+		}
+		if (null != diagnostics) {
+			diagnostics.classSkipped(className);
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the archive entry with the given name is a class file
+	 * which is excluded by the diff. Archives may store classes below a prefix
+	 * like <code>BOOT-INF/classes/</code> or
+	 * <code>META-INF/versions/9/</code>, therefore the entry is only excluded
+	 * if no suffix of its path starting at a segment is contained in the diff.
+	 *
+	 * @param entryName
+	 *            name of the archive entry
+	 * @return <code>true</code> if the entry doesn't need to be read
+	 */
+	private boolean isEntryExcludedByDiff(final String entryName) {
+		if (diffFilter == null || !entryName.endsWith(".class")) {
+			return false;
+		}
+		final String path = entryName.substring(0,
+				entryName.length() - ".class".length());
+		int start = 0;
+		do {
+			if (diffFilter.containsClass(path.substring(start))) {
+				return false;
 			}
-		};
-		return new ClassProbesAdapter(analyzer, false);
+			start = path.indexOf('/', start) + 1;
+		} while (start != 0);
+		if (null != diagnostics) {
+			diagnostics.classSkipped(path);
+		}
+		return true;
 	}
 
-	private void analyzeClass(final byte[] source) {
+	/**
+	 * Calculates the coverage of the given class definition without emitting
+	 * it. This method does not modify any state of this analyzer except the
+	 * shared string pool and therefore may be called concurrently.
+	 *
+	 * @param source
+	 *            class definition
+	 * @return coverage of the class or <code>null</code> if the class is
+	 *         ignored
+	 */
+	IClassCoverage analyzeClassCoverage(final byte[] source) {
 		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
 		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
-			return;
+			return null;
 		}
 		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
-			return;
+			return null;
 		}
-		// 字段不为空说明是增量覆盖
-		if (null != CoverageBuilder.classInfos
-				&& !CoverageBuilder.classInfos.isEmpty()) {
-			// 如果没有匹配到增量代码就无需解析类
-			if (!CodeDiffUtil.checkClassIn(reader.getClassName())) {
-				return;
+		final String className = reader.getClassName();
+		// 增量覆盖时，如果没有匹配到增量代码就无需解析类
+		if (null != diffFilter && !diffFilter.containsClass(className)) {
+			if (null != diagnostics) {
+				diagnostics.classSkipped(className);
 			}
+			return null;
+		}
+		if (null != diagnostics) {
+			diagnostics.classMatched(className);
+		}
+		final ExecutionData data = executionData.get(classId);
+		final ProbeBits probes;
+		final int[] counters;
+		final boolean noMatch;
+		if (data == null) {
+			probes = null;
+			counters = null;
+			noMatch = executionData.contains(className);
+		} else {
+			probes = data.getProbeBits();
+			counters = data.getCounters();
+			noMatch = false;
 		}
-		final ClassVisitor visitor = createAnalyzingVisitor(classId,
-				reader.getClassName());
+		final ClassCoverageImpl coverage = new ClassCoverageImpl(className,
+				classId, noMatch, probes);
 		// 访问者模式，传递visitor，这里会调用ClassProbesAdapter的visit方法
-		reader.accept(visitor, 0);
-
+		reader.accept(createAnalyzingVisitor(coverage, probes, counters), 0);
+		return coverage;
 	}
 
 	/**
@@ -141,7 +244,13 @@ public class Analyzer {
 	public void analyzeClass(final byte[] buffer, final String location)
 			throws IOException {
 		try {
-			analyzeClass(buffer);
+			if (isExcludedByDiff(buffer)) {
+				return;
+			}
+			final IClassCoverage coverage = analyzeClassCoverage(buffer);
+			if (coverage != null) {
+				coverageVisitor.visitCoverage(coverage);
+			}
 		} catch (final RuntimeException cause) {
 			throw analyzerError(location, cause);
 		}
@@ -169,7 +278,17 @@ public class Analyzer {
 		analyzeClass(buffer, location);
 	}
 
-	private IOException analyzerError(final String location,
+	/**
+	 * Creates the exception reported when a class at the given location can't
+	 * be analyzed.
+	 *
+	 * @param location
+	 *            a location description of the class
+	 * @param cause
+	 *            the original cause
+	 * @return exception to throw
+	 */
+	protected IOException analyzerError(final String location,
 			final Exception cause) {
 		final IOException ex = new IOException(
 				String.format("Error while analyzing %s with JaCoCo %s/%s.",
@@ -275,6 +394,10 @@ public class Analyzer {
 		ZipEntry entry;
 		int count = 0;
 		while ((entry = nextEntry(zip, location)) != null) {
+			if (isEntryExcludedByDiff(entry.getName())) {
+				count++;
+				continue;
+			}
 			count += analyzeAll(zip, location + "@" + entry.getName());
 		}
 		return count;
@@ -17,6 +17,7 @@ import com.google.gson.reflect.TypeToken;
 import org.jacoco.core.internal.analysis.BundleCoverageImpl;
 import org.jacoco.core.internal.analysis.SourceFileCoverageImpl;
 import org.jacoco.core.internal.diff.ClassInfoDto;
+import org.jacoco.core.internal.diff.DiffIndex;
 
 import java.util.*;
 
@@ -43,27 +44,76 @@ public class CoverageBuilder implements ICoverageVisitor {
 	/**
 	 * 新增代码类
 	 */
-	public static List<ClassInfoDto> classInfos;
+	private final List<ClassInfoDto> classInfos;
+
+	/**
+	 * 新增代码类的索引，解析差异代码时构建一次，分析时按类名和方法签名直接查找
+	 */
+	private final DiffIndex diffIndex;
 
 	/**
 	 * Create a new builder.
 	 */
 	public CoverageBuilder() {
-		this.classes = new HashMap<String, IClassCoverage>();
-		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
+		this((String) null);
+	}
+
+	/**
+	 * Create a new builder for incremental coverage of the given diff.
+	 *
+	 * @param classList
+	 *            diff as JSON array of {@link ClassInfoDto} or
+	 *            <code>null</code> for full coverage
+	 */
+	public CoverageBuilder(final String classList) {
+		this(parseClassInfos(classList));
 	}
 
-	public CoverageBuilder(String classList) {
+	/**
+	 * Create a new builder for incremental coverage of the given diff.
+	 *
+	 * @param classInfos
+	 *            classes of the diff or <code>null</code> for full coverage
+	 */
+	public CoverageBuilder(final List<ClassInfoDto> classInfos) {
 		this.classes = new HashMap<String, IClassCoverage>();
 		this.sourcefiles = new HashMap<String, ISourceFileCoverage>();
-		if (null != classList && !"".equals(classList)) {
-			Gson gson = new Gson();
-			classInfos = gson.fromJson(classList,
-					new TypeToken<List<ClassInfoDto>>() {
-					}.getType());
+		this.classInfos = classInfos;
+		if (null != classInfos && !classInfos.isEmpty()) {
+			this.diffIndex = new DiffIndex(classInfos);
+		} else {
+			this.diffIndex = null;
 		}
 	}
 
+	private static List<ClassInfoDto> parseClassInfos(final String classList) {
+		if (null == classList || "".equals(classList)) {
+			return null;
+		}
+		return new Gson().fromJson(classList,
+				new TypeToken<List<ClassInfoDto>>() {
+				}.getType());
+	}
+
+	/**
+	 * Returns the classes of the diff this builder was created for.
+	 *
+	 * @return classes of the diff or <code>null</code> for full coverage
+	 */
+	public List<ClassInfoDto> getClassInfos() {
+		return classInfos;
+	}
+
+	/**
+	 * Returns the filter for the diff this builder was created for. The filter
+	 * has to be passed to the {@link Analyzer} feeding this builder.
+	 *
+	 * @return diff filter or <code>null</code> for full coverage
+	 */
+	public IDiffFilter getDiffFilter() {
+		return diffIndex;
+	}
+
 	/**
 	 * Returns all class nodes currently contained in this builder.
 	 *
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects statistics about the classes and methods selected by a diff during
+ * analysis. Depending on the {@link Level} only counters are maintained or in
+ * addition every decision is written to a debug output. Instances are thread
+ * safe and can be shared by analyzers working in parallel.
+ */
+public final class DiffDiagnostics {
+
+	/**
+	 * Amount of collected information.
+	 */
+	public enum Level {
+
+		/** Nothing is collected. */
+		OFF,
+
+		/** Counters for the summary are collected. */
+		SUMMARY,
+
+		/** Counters are collected and every decision is written. */
+		DEBUG
+
+	}
+
+	private final Level level;
+
+	private final PrintWriter debugOutput;
+
+	private final AtomicInteger classesMatched = new AtomicInteger();
+
+	private final AtomicInteger classesSkipped = new AtomicInteger();
+
+	private final AtomicInteger methodsMatched = new AtomicInteger();
+
+	private final AtomicInteger methodsSkipped = new AtomicInteger();
+
+	private final AtomicLong probesMatched = new AtomicLong();
+
+	private final AtomicLong probesSkipped = new AtomicLong();
+
+	private final AtomicInteger maxMethodProbes = new AtomicInteger();
+
+	/**
+	 * Creates diagnostics collecting counters only.
+	 */
+	public DiffDiagnostics() {
+		this(Level.SUMMARY, null);
+	}
+
+	/**
+	 * Creates diagnostics with the given level.
+	 *
+	 * @param level
+	 *            amount of collected information
+	 * @param debugOutput
+	 *            output for {@link Level#DEBUG}, may be <code>null</code> for
+	 *            other levels
+	 */
+	public DiffDiagnostics(final Level level, final PrintWriter debugOutput) {
+		if (level == Level.DEBUG && debugOutput == null) {
+			throw new IllegalArgumentException("Debug output required.");
+		}
+		this.level = level;
+		this.debugOutput = debugOutput;
+	}
+
+	/**
+	 * @return level of this instance
+	 */
+	public Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * Records a class which has been selected for analysis.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 */
+	public void classMatched(final String className) {
+		if (level == Level.OFF) {
+			return;
+		}
+		classesMatched.incrementAndGet();
+		if (level == Level.DEBUG) {
+			debugOutput.printf("[DEBUG] Analyzing class %s.%n", className);
+		}
+	}
+
+	/**
+	 * Records a class which is not contained in the diff.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 */
+	public void classSkipped(final String className) {
+		if (level == Level.OFF) {
+			return;
+		}
+		classesSkipped.incrementAndGet();
+		if (level == Level.DEBUG) {
+			debugOutput.printf("[DEBUG] Skipping class %s.%n", className);
+		}
+	}
+
+	/**
+	 * Records a method of an analyzed class and its probe range.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @param methodName
+	 *            name of the method
+	 * @param desc
+	 *            descriptor of the method
+	 * @param probeStart
+	 *            first probe id of the method
+	 * @param probeEnd
+	 *            probe id after the last probe of the method
+	 * @param matched
+	 *            <code>true</code> if the method is contained in the diff
+	 */
+	public void method(final String className, final String methodName,
+			final String desc, final int probeStart, final int probeEnd,
+			final boolean matched) {
+		if (level == Level.OFF) {
+			return;
+		}
+		final int probes = probeEnd - probeStart;
+		if (matched) {
+			methodsMatched.incrementAndGet();
+			probesMatched.addAndGet(probes);
+			int max;
+			while ((max = maxMethodProbes.get()) < probes) {
+				if (maxMethodProbes.compareAndSet(max, probes)) {
+					break;
+				}
+			}
+		} else {
+			methodsSkipped.incrementAndGet();
+			probesSkipped.addAndGet(probes);
+		}
+		if (level == Level.DEBUG) {
+			debugOutput.printf("[DEBUG] %s method %s.%s%s, probes [%s, %s).%n",
+					matched ? "Analyzing" : "Skipping", className, methodName,
+					desc, Integer.valueOf(probeStart),
+					Integer.valueOf(probeEnd));
+		}
+	}
+
+	/**
+	 * @return number of classes selected for analysis
+	 */
+	public int getClassesMatched() {
+		return classesMatched.get();
+	}
+
+	/**
+	 * @return number of classes not contained in the diff
+	 */
+	public int getClassesSkipped() {
+		return classesSkipped.get();
+	}
+
+	/**
+	 * @return number of methods contained in the diff
+	 */
+	public int getMethodsMatched() {
+		return methodsMatched.get();
+	}
+
+	/**
+	 * @return number of methods of analyzed classes not contained in the diff
+	 */
+	public int getMethodsSkipped() {
+		return methodsSkipped.get();
+	}
+
+	/**
+	 * @return total number of probes of matched methods
+	 */
+	public long getProbesMatched() {
+		return probesMatched.get();
+	}
+
+	/**
+	 * @return total number of probes of skipped methods
+	 */
+	public long getProbesSkipped() {
+		return probesSkipped.get();
+	}
+
+	/**
+	 * @return maximum number of probes of a single matched method
+	 */
+	public int getMaxMethodProbes() {
+		return maxMethodProbes.get();
+	}
+
+	/**
+	 * Writes the counters as a JSON object.
+	 *
+	 * @param out
+	 *            writer for the JSON output
+	 * @throws IOException
+	 *             if the output can't be written
+	 */
+	public void writeJson(final Writer out) throws IOException {
+		out.write(String.format("{\"classesMatched\":%s,\"classesSkipped\":%s,"
+				+ "\"methodsMatched\":%s,\"methodsSkipped\":%s,"
+				+ "\"probesMatched\":%s,\"probesSkipped\":%s,"
+				+ "\"maxMethodProbes\":%s}", classesMatched, classesSkipped,
+				methodsMatched, methodsSkipped, probesMatched, probesSkipped,
+				maxMethodProbes));
+		out.flush();
+	}
+
+}
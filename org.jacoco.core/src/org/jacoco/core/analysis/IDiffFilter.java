@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+/**
+ * Selects the classes and methods of a code diff for incremental coverage
+ * analysis. An {@link Analyzer} configured with a filter only calculates
+ * coverage for classes and methods contained in the diff. Implementations
+ * must not hold mutable state so that one instance can be used by multiple
+ * analyzers concurrently.
+ */
+public interface IDiffFilter {
+
+	/**
+	 * Checks whether the given class or its outer class is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return <code>true</code> if the class is contained in the diff
+	 */
+	boolean containsClass(String className);
+
+	/**
+	 * Checks whether the given method is part of the diff.
+	 *
+	 * @param className
+	 *            VM name of the declaring class
+	 * @param methodName
+	 *            name of the method
+	 * @param desc
+	 *            method descriptor
+	 * @return <code>true</code> if the method is contained in the diff
+	 */
+	boolean containsMethod(String className, String methodName, String desc);
+
+}
@@ -45,4 +45,15 @@ public interface ILine {
 	 */
 	int getStatus();
 
+	/**
+	 * Returns the number of executions of this line. The value is only
+	 * available for execution data recorded with counting probes and is the
+	 * maximum number of executions of the instructions of this line which can
+	 * be derived from the hit counters of the probes.
+	 *
+	 * @return number of executions or <code>0</code> if this line has not been
+	 *         executed or the execution data has no hit counters
+	 */
+	int getHits();
+
 }
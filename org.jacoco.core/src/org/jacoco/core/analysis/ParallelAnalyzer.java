@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.analysis;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.data.ExecutionDataStore;
+
+/**
+ * An {@link Analyzer} that distributes the analysis of classes to a
+ * work-stealing thread pool. Class files and archives are read by the calling
+ * thread, while calculating class ids and coverage happens on the pool. The
+ * results are emitted to the {@link ICoverageVisitor} on the calling thread in
+ * the order in which the classes have been read. Therefore the visitor does not
+ * need to be thread safe and the outcome, including the detection of duplicate
+ * classes, is the same as with a sequential {@link Analyzer}.
+ *
+ * As results are emitted with a delay, {@link #finish()} has to be called after
+ * all classes have been passed to this analyzer. Errors of a class analysis
+ * may be reported by any later call of this analyzer or by {@link #finish()}.
+ * If the analysis is aborted {@link #close()} releases the threads without
+ * waiting for scheduled classes, so it should be called in a
+ * <code>finally</code> block.
+ */
+public class ParallelAnalyzer extends Analyzer {
+
+	private static final int PENDING_PER_THREAD = 64;
+
+	private final ICoverageVisitor coverageVisitor;
+
+	private final ForkJoinPool pool;
+
+	private final int maxPending;
+
+	private final Deque<PendingClass> pending;
+
+	/**
+	 * Creates a new analyzer reporting to the given output.
+	 *
+	 * @param executionData
+	 *            execution data
+	 * @param coverageVisitor
+	 *            the output instance that will coverage data for every analyzed
+	 *            class
+	 * @param diffFilter
+	 *            diff to analyze or <code>null</code> for full coverage
+	 * @param threads
+	 *            number of threads used for analysis
+	 */
+	public ParallelAnalyzer(final ExecutionDataStore executionData,
+			final ICoverageVisitor coverageVisitor,
+			final IDiffFilter diffFilter, final int threads) {
+		super(executionData, coverageVisitor, diffFilter);
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Invalid number of threads: " + threads);
+		}
+		this.coverageVisitor = coverageVisitor;
+		this.pool = new ForkJoinPool(threads,
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		this.maxPending = threads * PENDING_PER_THREAD;
+		this.pending = new ArrayDeque<PendingClass>();
+	}
+
+	/**
+	 * Schedules the analysis of the class definition from a given in-memory
+	 * buffer. The result is emitted later by this or a subsequent call.
+	 *
+	 * @param buffer
+	 *            class definitions
+	 * @param location
+	 *            a location description used for exception messages
+	 * @throws IOException
+	 *             if a previously scheduled class can't be analyzed
+	 */
+	@Override
+	public void analyzeClass(final byte[] buffer, final String location)
+			throws IOException {
+		if (isExcludedByDiff(buffer)) {
+			return;
+		}
+		final Future<IClassCoverage> future = pool
+				.submit(new Callable<IClassCoverage>() {
+					public IClassCoverage call() {
+						return analyzeClassCoverage(buffer);
+					}
+				});
+		pending.addLast(new PendingClass(future, location));
+		while (pending.size() > maxPending) {
+			emitNext();
+		}
+	}
+
+	/**
+	 * Waits for all scheduled classes, emits their coverage data and releases
+	 * the threads of this analyzer. The analyzer can't be used afterwards.
+	 *
+	 * @throws IOException
+	 *             if a class can't be analyzed
+	 */
+	public void finish() throws IOException {
+		try {
+			while (!pending.isEmpty()) {
+				emitNext();
+			}
+		} finally {
+			pending.clear();
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Discards all scheduled classes without emitting their coverage data and
+	 * releases the threads of this analyzer. Has no effect if the analyzer has
+	 * already been finished or closed.
+	 */
+	public void close() {
+		for (final PendingClass next : pending) {
+			next.future.cancel(true);
+		}
+		pending.clear();
+		pool.shutdownNow();
+	}
+
+	private void emitNext() throws IOException {
+		final PendingClass next = pending.removeFirst();
+		final IClassCoverage coverage;
+		try {
+			coverage = next.future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw analyzerError(next.location, (Exception) cause);
+		}
+		if (coverage != null) {
+			try {
+				coverageVisitor.visitCoverage(coverage);
+			} catch (final RuntimeException cause) {
+				throw analyzerError(next.location, cause);
+			}
+		}
+	}
+
+	private static class PendingClass {
+
+		final Future<IClassCoverage> future;
+
+		final String location;
+
+		PendingClass(final Future<IClassCoverage> future,
+				final String location) {
+			this.future = future;
+			this.location = location;
+		}
+
+	}
+
+}
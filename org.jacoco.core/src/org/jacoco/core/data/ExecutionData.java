@@ -20,6 +20,19 @@ import java.util.Arrays;
  * Execution data for a single Java class. While instances are immutable care
  * has to be taken about the probe data array of type <code>boolean[]</code>
  * which can be modified.
+ *
+ * Execution data read from files is held as {@link ProbeBits} with one bit per
+ * probe. Such instances only switch to a <code>boolean[]</code> when
+ * {@link #getProbes()} is called, e.g. to hand the probes to instrumented
+ * classes. Merging packed instances works on 64 probes at once. Unpacking is
+ * safe if several threads call {@link #getProbes()} concurrently, all of them
+ * get the same array. Modifications of an instance, e.g. merging or resetting
+ * it, require exclusive access.
+ *
+ * Execution data of classes instrumented with counting probes holds an
+ * <code>int[]</code> with the number of executions of every probe instead.
+ * Such instances are merged by summation, sums saturate at
+ * {@link Integer#MAX_VALUE}.
  */
 public final class ExecutionData {
 
@@ -27,7 +40,12 @@ public final class ExecutionData {
 
 	private final String name;
 
-	private final boolean[] probes;
+	private volatile boolean[] probes;
+
+	/** Packed probes, only valid as long as {@link #probes} is not set. */
+	private ProbeBits bits;
+
+	private int[] counters;
 
 	/**
 	 * Creates a new {@link ExecutionData} object with the given probe data.
@@ -64,6 +82,42 @@ public final class ExecutionData {
 		this.probes = new boolean[probeCount];
 	}
 
+	/**
+	 * Creates a new {@link ExecutionData} object with the given packed probe
+	 * data. The probes are not copied.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param probes
+	 *            packed probe data
+	 */
+	public ExecutionData(final long id, final String name,
+			final ProbeBits probes) {
+		this.id = id;
+		this.name = name;
+		this.bits = probes;
+	}
+
+	/**
+	 * Creates a new {@link ExecutionData} object with the given hit counters.
+	 * The counters are not copied.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name
+	 * @param counters
+	 *            number of executions for every probe
+	 */
+	public ExecutionData(final long id, final String name,
+			final int[] counters) {
+		this.id = id;
+		this.name = name;
+		this.counters = counters;
+	}
+
 	/**
 	 * Return the unique identifier for this class. The identifier is the CRC64
 	 * checksum of the raw class file definition.
@@ -85,19 +139,104 @@ public final class ExecutionData {
 
 	/**
 	 * Returns the execution data probes. A value of <code>true</code> indicates
-	 * that the corresponding probe was executed.
+	 * that the corresponding probe was executed. Packed probe data is unpacked
+	 * by this method, subsequent modifications of the returned array are
+	 * reflected in this object. For execution data with hit counters a new
+	 * array is derived from the counters on every call.
 	 *
 	 * @return probe data
 	 */
 	public boolean[] getProbes() {
-		return probes;
+		if (counters != null) {
+			final boolean[] hits = new boolean[counters.length];
+			for (int i = 0; i < counters.length; i++) {
+				hits[i] = counters[i] != 0;
+			}
+			return hits;
+		}
+		final boolean[] p = probes;
+		return p != null ? p : unpack();
+	}
+
+	private synchronized boolean[] unpack() {
+		boolean[] p = probes;
+		if (p == null) {
+			// Packed bits are kept as concurrent readers might still use them
+			p = bits.toBooleanArray();
+			probes = p;
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the execution data probes in packed form without unpacking
+	 * them. If this object holds a <code>boolean[]</code> a snapshot is
+	 * returned, so the result must be considered as read-only.
+	 *
+	 * @return packed probe data
+	 */
+	public ProbeBits getProbeBits() {
+		if (counters == null && probes == null) {
+			return bits;
+		}
+		return ProbeBits.valueOf(getProbes());
+	}
+
+	/**
+	 * Returns the number of executions of every probe if this object has been
+	 * created with hit counters. Subsequent modifications of the returned
+	 * array are reflected in this object.
+	 *
+	 * @return hit counters or <code>null</code> if only probe flags are
+	 *         recorded
+	 */
+	public int[] getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Returns the number of executions of the given probe. For execution data
+	 * without hit counters this is <code>1</code> for executed probes.
+	 *
+	 * @param index
+	 *            probe id
+	 * @return number of executions
+	 */
+	public int getCount(final int index) {
+		if (counters != null) {
+			return counters[index];
+		}
+		final boolean[] p = probes;
+		if (p == null) {
+			return bits.get(index) ? 1 : 0;
+		}
+		return p[index] ? 1 : 0;
+	}
+
+	/**
+	 * Returns the number of probes.
+	 *
+	 * @return number of probes
+	 */
+	public int getProbeCount() {
+		if (counters != null) {
+			return counters.length;
+		}
+		final boolean[] p = probes;
+		return p == null ? bits.length() : p.length;
 	}
 
 	/**
 	 * Sets all probes to <code>false</code>.
 	 */
 	public void reset() {
-		Arrays.fill(probes, false);
+		if (counters != null) {
+			Arrays.fill(counters, 0);
+		} else if (probes == null) {
+			bits.clear();
+		} else {
+			Arrays.fill(probes, false);
+		}
 	}
 
 	/**
@@ -106,7 +245,19 @@ public final class ExecutionData {
 	 * @return <code>true</code>, if at least one probe has been hit
 	 */
 	public boolean hasHits() {
-		for (final boolean p : probes) {
+		if (counters != null) {
+			for (final int c : counters) {
+				if (c != 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+		final boolean[] data = probes;
+		if (data == null) {
+			return !bits.isEmpty();
+		}
+		for (final boolean p : data) {
 			if (p) {
 				return true;
 			}
@@ -149,6 +300,11 @@ public final class ExecutionData {
 	 * A and not B
 	 * </pre>
 	 *
+	 * If this object or the other object has hit counters the counters are
+	 * summed up for <code>flag==true</code>, an executed probe without counter
+	 * counts as one execution. For <code>flag==false</code> the counters of
+	 * the probes executed in the other object are reset to zero.
+	 *
 	 * The probe array of the other object is not modified.
 	 *
 	 * @param other
@@ -158,15 +314,103 @@ public final class ExecutionData {
 	 */
 	public void merge(final ExecutionData other, final boolean flag) {
 		assertCompatibility(other.getId(), other.getName(),
-				other.getProbes().length);
-		final boolean[] otherData = other.getProbes();
-		for (int i = 0; i < probes.length; i++) {
+				other.getProbeCount());
+		if (flag && other.counters != null && counters == null) {
+			counters = toCounters();
+			probes = null;
+			bits = null;
+		}
+		if (counters != null) {
+			for (int i = 0; i < counters.length; i++) {
+				final int count = other.getCount(i);
+				if (count != 0) {
+					counters[i] = flag ? add(counters[i], count) : 0;
+				}
+			}
+			return;
+		}
+		final boolean[] data = probes;
+		if (data == null) {
+			if (flag) {
+				bits.or(other.getProbeBits());
+			} else {
+				bits.andNot(other.getProbeBits());
+			}
+			return;
+		}
+		final boolean[] otherData = other.probes;
+		if (otherData == null) {
+			final ProbeBits otherBits = other.getProbeBits();
+			for (int i = 0; i < data.length; i++) {
+				if (otherBits.get(i)) {
+					data[i] = flag;
+				}
+			}
+			return;
+		}
+		for (int i = 0; i < data.length; i++) {
 			if (otherData[i]) {
-				probes[i] = flag;
+				data[i] = flag;
+			}
+		}
+	}
+
+	/**
+	 * Merges probes streamed for the class with the given id and name into the
+	 * probe data of this object like {@link #merge(ExecutionData)}, without
+	 * creating an intermediate {@link ExecutionData} instance.
+	 *
+	 * @param id
+	 *            class id of the streamed probes
+	 * @param name
+	 *            VM name of the class of the streamed probes
+	 * @param other
+	 *            streamed probes to merge
+	 * @see IExecutionDataStreamVisitor
+	 */
+	public void merge(final long id, final String name,
+			final ProbeBuffer other) {
+		assertCompatibility(id, name, other.length());
+		if (other.hasCounts() && counters == null) {
+			counters = toCounters();
+			probes = null;
+			bits = null;
+		}
+		if (counters != null) {
+			for (int i = 0; i < counters.length; i++) {
+				counters[i] = add(counters[i], other.getCount(i));
+			}
+			return;
+		}
+		final boolean[] data = probes;
+		if (data == null) {
+			other.orInto(bits);
+			return;
+		}
+		for (int i = 0; i < data.length; i++) {
+			if (other.get(i)) {
+				data[i] = true;
 			}
 		}
 	}
 
+	private int[] toCounters() {
+		final int[] result = new int[getProbeCount()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getCount(i);
+		}
+		return result;
+	}
+
+	private static int add(final int a, final int b) {
+		if (a < 0 || b < 0) {
+			// counter of the instrumented class has overflowed
+			return Integer.MAX_VALUE;
+		}
+		final long sum = (long) a + b;
+		return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+	}
+
 	/**
 	 * Asserts that this execution data object is compatible with the given
 	 * parameters. The purpose of this check is to detect a very unlikely class
@@ -193,7 +437,7 @@ public final class ExecutionData {
 					format("Different class names %s and %s for id %016x.",
 							this.name, name, Long.valueOf(id)));
 		}
-		if (this.probes.length != probecount) {
+		if (getProbeCount() != probecount) {
 			throw new IllegalStateException(format(
 					"Incompatible execution data for class %s with id %016x.",
 					name, Long.valueOf(id)));
@@ -14,13 +14,28 @@ package org.jacoco.core.data;
 
 import static java.lang.String.format;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.jacoco.core.internal.data.CompactDataInput;
+import org.jacoco.core.internal.data.NameTable;
 
 /**
- * Deserialization of execution data from binary streams.
+ * Deserialization of execution data from binary streams. Streams with
+ * compressed blocks written by {@link ExecutionDataWriter} are detected by
+ * their header and decompressed transparently.
+ *
+ * Delta dumps are reported to an optional {@link IDeltaVisitor}. Without such
+ * a visitor the deltas are passed on like regular execution data, merging all
+ * deltas of a sequence results in the complete execution data.
+ *
+ * Consumers which do not keep the execution data can register an
+ * {@link IExecutionDataStreamVisitor} instead of or in addition to an
+ * {@link IExecutionDataVisitor}. Such visitors get the probes in a reused
+ * buffer and pooled class names, so streams can be processed without
+ * allocations per class.
  */
 public class ExecutionDataReader {
 
@@ -31,6 +46,14 @@ public class ExecutionDataReader {
 
 	private IExecutionDataVisitor executionDataVisitor = null;
 
+	private IDeltaVisitor deltaVisitor = null;
+
+	private IExecutionDataStreamVisitor streamVisitor = null;
+
+	private ProbeBuffer probeBuffer = null;
+
+	private NameTable names = null;
+
 	private boolean firstBlock = true;
 
 	/**
@@ -65,6 +88,32 @@ public class ExecutionDataReader {
 		this.executionDataVisitor = visitor;
 	}
 
+	/**
+	 * Sets an listener for execution data which is called with reused probe
+	 * buffers.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve execution data events
+	 */
+	public void setExecutionDataStreamVisitor(
+			final IExecutionDataStreamVisitor visitor) {
+		this.streamVisitor = visitor;
+		if (visitor != null && probeBuffer == null) {
+			probeBuffer = new ProbeBuffer();
+			names = new NameTable();
+		}
+	}
+
+	/**
+	 * Sets an optional listener for the start of delta dumps.
+	 *
+	 * @param visitor
+	 *            visitor to retrieve delta dump events
+	 */
+	public void setDeltaVisitor(final IDeltaVisitor visitor) {
+		this.deltaVisitor = visitor;
+	}
+
 	/**
 	 * Reads all data and reports it to the corresponding visitors. The stream
 	 * is read until its end or a command confirmation has been sent.
@@ -115,6 +164,15 @@ public class ExecutionDataReader {
 		case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
 			readExecutionData();
 			return true;
+		case ExecutionDataWriter.BLOCK_COMPRESSED:
+			readCompressed();
+			return true;
+		case ExecutionDataWriter.BLOCK_DELTA:
+			readDelta();
+			return true;
+		case ExecutionDataWriter.BLOCK_COUNTERS:
+			readCounters();
+			return true;
 		default:
 			throw new IOException(
 					format("Unknown block type %x.", Byte.valueOf(blocktype)));
@@ -126,7 +184,12 @@ public class ExecutionDataReader {
 			throw new IOException("Invalid execution data file.");
 		}
 		final char version = in.readChar();
-		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+		if (version == MappedExecutionData.FORMAT_VERSION) {
+			MappedExecutionData.read(in, sessionInfoVisitor, mappedVisitor());
+			return;
+		}
+		if (version != ExecutionDataWriter.FORMAT_VERSION
+				&& version != ExecutionDataWriter.COMPRESSED_FORMAT_VERSION) {
 			throw new IncompatibleExecDataVersionException(version);
 		}
 	}
@@ -142,14 +205,95 @@ public class ExecutionDataReader {
 	}
 
 	private void readExecutionData() throws IOException {
+		if (streamVisitor != null) {
+			readExecutionDataStream();
+			return;
+		}
 		if (executionDataVisitor == null) {
 			throw new IOException("No execution data visitor.");
 		}
 		final long id = in.readLong();
 		final String name = in.readUTF();
-		final boolean[] probes = in.readBooleanArray();
+		final ProbeBits probes = in.readProbeBits();
 		executionDataVisitor
 				.visitClassExecution(new ExecutionData(id, name, probes));
 	}
 
+	private void readExecutionDataStream() throws IOException {
+		final long id = in.readLong();
+		final String name = names.read(in);
+		probeBuffer.read(in);
+		streamVisitor.visitClassExecution(id, name, probeBuffer);
+		if (executionDataVisitor != null) {
+			executionDataVisitor.visitClassExecution(
+					new ExecutionData(id, name, probeBuffer.toProbeBits()));
+		}
+	}
+
+	private void readCounters() throws IOException {
+		if (streamVisitor != null) {
+			final long id = in.readLong();
+			final String name = names.read(in);
+			probeBuffer.readCounts(in);
+			streamVisitor.visitClassExecution(id, name, probeBuffer);
+			if (executionDataVisitor != null) {
+				executionDataVisitor.visitClassExecution(new ExecutionData(id,
+						name, probeBuffer.toCounters()));
+			}
+			return;
+		}
+		if (executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		final long id = in.readLong();
+		final String name = in.readUTF();
+		final int[] counters = new int[in.readVarInt()];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = in.readVarInt();
+		}
+		executionDataVisitor
+				.visitClassExecution(new ExecutionData(id, name, counters));
+	}
+
+	private IExecutionDataVisitor mappedVisitor() {
+		if (streamVisitor == null) {
+			return executionDataVisitor;
+		}
+		// Indexed files are decoded by MappedExecutionData, so the probes have
+		// to be copied to the buffer:
+		return new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				probeBuffer.load(data.getProbeBits());
+				streamVisitor.visitClassExecution(data.getId(), data.getName(),
+						probeBuffer);
+				if (executionDataVisitor != null) {
+					executionDataVisitor.visitClassExecution(data);
+				}
+			}
+		};
+	}
+
+	private void readDelta() throws IOException {
+		final long sequence = in.readLong();
+		if (deltaVisitor != null) {
+			deltaVisitor.visitDelta(sequence);
+		}
+	}
+
+	private void readCompressed() throws IOException {
+		final byte[] compressed = new byte[in.readVarInt()];
+		in.readFully(compressed);
+		// The block only contains session info and execution data blocks:
+		final ExecutionDataReader block = new ExecutionDataReader(
+				new InflaterInputStream(new ByteArrayInputStream(compressed)));
+		block.firstBlock = false;
+		block.setSessionInfoVisitor(sessionInfoVisitor);
+		block.setExecutionDataVisitor(executionDataVisitor);
+		block.setDeltaVisitor(deltaVisitor);
+		block.streamVisitor = streamVisitor;
+		block.probeBuffer = probeBuffer;
+		block.names = names;
+		block.read();
+	}
+
 }
@@ -14,32 +14,97 @@ package org.jacoco.core.data;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
+
+import org.jacoco.core.internal.data.LongHashMap;
+import org.jacoco.core.internal.data.NameIndex;
 
 /**
  * In-memory data store for execution data. The data can be added through its
  * {@link IExecutionDataVisitor} interface. If execution data is provided
  * multiple times for the same class the data is merged, i.e. a probe is marked
- * as executed if it is reported as executed at least once. This allows to merge
- * coverage date from multiple runs. A instance of this class is not thread
- * safe.
+ * as executed if it is reported as executed at least once. Hit counters of
+ * classes instrumented with counting probes are summed up. This allows to
+ * merge coverage date from multiple runs. The entries and the indexes of a
+ * store are guarded by a single lock, the {@link ExecutionData} instances
+ * returned by a store are not thread safe.
+ * <p>
+ * Entries are indexed by their primitive class id and the class names are held
+ * in a separate index, so lookups by id or name do not allocate.
+ * <p>
+ * A store can be backed by an execution data file in the indexed format.
+ * Entries of such a file are loaded lazily when they are requested by id, so
+ * only the classes actually looked up are held in memory. Operations on all
+ * entries load the remaining entries of the file first. As lookups modify
+ * such a store, all access is synchronized so it can be shared by parallel
+ * analyzers.
  */
 public final class ExecutionDataStore implements IExecutionDataVisitor {
 
-	public Map<Long, ExecutionData> getEntries() {
-		return entries;
+	private final LongHashMap<ExecutionData> entries = new LongHashMap<ExecutionData>();
+
+	private final NameIndex names = new NameIndex();
+
+	/**
+	 * Backing file with entries not loaded yet, if any. Guarded by
+	 * <code>entries</code> like the indexes.
+	 */
+	private MappedExecutionData file;
+
+	/**
+	 * Creates a new empty store.
+	 */
+	public ExecutionDataStore() {
+		this.file = null;
 	}
 
-	public Set<String> getNames() {
-		return names;
+	/**
+	 * Creates a new store with the content of the given indexed execution data
+	 * file. Entries are loaded from the file when they are accessed.
+	 *
+	 * @param file
+	 *            execution data file in the indexed format
+	 */
+	public ExecutionDataStore(final MappedExecutionData file) {
+		this.file = file;
 	}
 
-	private final Map<Long, ExecutionData> entries = new HashMap<Long, ExecutionData>();
+	/**
+	 * Must be called while holding the lock on <code>entries</code>.
+	 */
+	private ExecutionData lookup(final long id) {
+		ExecutionData entry = entries.get(id);
+		if (entry == null && file != null) {
+			entry = file.get(id);
+			if (entry != null) {
+				add(entry);
+			}
+		}
+		return entry;
+	}
+
+	private void add(final ExecutionData data) {
+		entries.put(data.getId(), data);
+		names.add(data.getName());
+	}
 
-	private final Set<String> names = new HashSet<String>();
+	/**
+	 * Must be called while holding the lock on <code>entries</code>.
+	 */
+	private void loadAll() {
+		if (file != null) {
+			final MappedExecutionData f = file;
+			file = null;
+			f.accept(new IExecutionDataVisitor() {
+				public void visitClassExecution(final ExecutionData data) {
+					// Entries loaded before may have been modified already:
+					if (entries.get(data.getId()) == null) {
+						add(data);
+					}
+				}
+			});
+		}
+	}
 
 	/**
 	 * Adds the given {@link ExecutionData} object into the store. If there is
@@ -54,14 +119,63 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @see ExecutionData#assertCompatibility(long, String, int)
 	 */
 	public void put(final ExecutionData data) throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
-		final ExecutionData entry = entries.get(id);
-		if (entry == null) {
-			// 将所有类放入这个map中，并记录类名
-			entries.put(id, data);
-			names.add(data.getName());
-		} else {
-			entry.merge(data);
+		synchronized (entries) {
+			final ExecutionData entry = lookup(data.getId());
+			if (entry == null) {
+				// 将所有类放入这个map中，并记录类名
+				add(data);
+			} else {
+				entry.merge(data);
+			}
+		}
+	}
+
+	/**
+	 * Sets the given {@link ExecutionData} object as the entry for its class
+	 * id. Unlike {@link #put(ExecutionData)} an existing entry is not merged
+	 * but replaced, e.g. to inject execution data computed for another version
+	 * of the class.
+	 *
+	 * @param data
+	 *            execution data to set
+	 * @return replaced entry or <code>null</code>
+	 */
+	public ExecutionData replace(final ExecutionData data) {
+		synchronized (entries) {
+			final ExecutionData previous = remove(data.getId());
+			add(data);
+			return previous;
+		}
+	}
+
+	/**
+	 * Removes the entry with the given class id from the store.
+	 *
+	 * @param id
+	 *            class id
+	 * @return removed entry or <code>null</code> if there is no entry with this
+	 *         id
+	 */
+	public ExecutionData remove(final long id) {
+		synchronized (entries) {
+			loadAll();
+			final ExecutionData previous = entries.remove(id);
+			if (previous != null) {
+				names.remove(previous.getName());
+			}
+			return previous;
+		}
+	}
+
+	/**
+	 * Returns the number of entries in this store.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		synchronized (entries) {
+			loadAll();
+			return entries.size();
 		}
 	}
 
@@ -80,10 +194,11 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public void subtract(final ExecutionData data)
 			throws IllegalStateException {
-		final Long id = Long.valueOf(data.getId());
-		final ExecutionData entry = entries.get(id);
-		if (entry != null) {
-			entry.merge(data, false);
+		synchronized (entries) {
+			final ExecutionData entry = lookup(data.getId());
+			if (entry != null) {
+				entry.merge(data, false);
+			}
 		}
 	}
 
@@ -109,7 +224,9 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return execution data or <code>null</code>
 	 */
 	public ExecutionData get(final long id) {
-		return entries.get(Long.valueOf(id));
+		synchronized (entries) {
+			return lookup(id);
+		}
 	}
 
 	/**
@@ -122,7 +239,10 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 *         contained.
 	 */
 	public boolean contains(final String name) {
-		return names.contains(name);
+		synchronized (entries) {
+			return names.contains(name)
+					|| (file != null && file.contains(name));
+		}
 	}
 
 	/**
@@ -139,15 +259,16 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 */
 	public ExecutionData get(final Long id, final String name,
 			final int probecount) {
-		ExecutionData entry = entries.get(id);
-		if (entry == null) {
-			entry = new ExecutionData(id.longValue(), name, probecount);
-			entries.put(id, entry);
-			names.add(name);
-		} else {
-			entry.assertCompatibility(id.longValue(), name, probecount);
+		synchronized (entries) {
+			ExecutionData entry = lookup(id.longValue());
+			if (entry == null) {
+				entry = new ExecutionData(id.longValue(), name, probecount);
+				add(entry);
+			} else {
+				entry.assertCompatibility(id.longValue(), name, probecount);
+			}
+			return entry;
 		}
-		return entry;
 	}
 
 	/**
@@ -155,7 +276,7 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * execution data objects itself are not removed.
 	 */
 	public void reset() {
-		for (final ExecutionData executionData : this.entries.values()) {
+		for (final ExecutionData executionData : getContents()) {
 			executionData.reset();
 		}
 	}
@@ -166,7 +287,13 @@ public final class ExecutionDataStore implements IExecutionDataVisitor {
 	 * @return current contents
 	 */
 	public Collection<ExecutionData> getContents() {
-		return new ArrayList<ExecutionData>(entries.values());
+		synchronized (entries) {
+			loadAll();
+			final List<ExecutionData> contents = new ArrayList<ExecutionData>(
+					entries.size());
+			entries.values(contents);
+			return contents;
+		}
 	}
 
 	/**
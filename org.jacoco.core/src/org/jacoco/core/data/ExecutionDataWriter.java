@@ -15,14 +15,19 @@ package org.jacoco.core.data;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import org.jacoco.core.internal.data.CompactDataOutput;
 
 /**
- * Serialization of execution data into binary streams.
+ * Serialization of execution data into binary streams. Optionally session
+ * infos and execution data are written in deflate compressed blocks. Such
+ * streams start with a header of version {@link #COMPRESSED_FORMAT_VERSION}
+ * and are read transparently by {@link ExecutionDataReader}.
  */
 public class ExecutionDataWriter
-		implements ISessionInfoVisitor, IExecutionDataVisitor {
+		implements ISessionInfoVisitor, IExecutionDataVisitor, IDeltaVisitor {
 
 	/**
 	 * File format version, will be incremented for each incompatible change.
@@ -34,6 +39,13 @@ public class ExecutionDataWriter
 		FORMAT_VERSION = 0x1007;
 	}
 
+	/**
+	 * Version in the header of streams with compressed blocks. Such streams
+	 * can be appended to files of version {@link #FORMAT_VERSION} and vice
+	 * versa.
+	 */
+	public static final char COMPRESSED_FORMAT_VERSION = 0x1207;
+
 	/** Magic number in header for file format identification. */
 	public static final char MAGIC_NUMBER = 0xC0C0;
 
@@ -46,9 +58,33 @@ public class ExecutionDataWriter
 	/** Block identifier for execution data of a single class. */
 	public static final byte BLOCK_EXECUTIONDATA = 0x11;
 
+	/**
+	 * Block identifier for deflate compressed session info and execution data
+	 * blocks.
+	 */
+	public static final byte BLOCK_COMPRESSED = 0x12;
+
+	/** Block identifier for the start of a delta dump. */
+	public static final byte BLOCK_DELTA = 0x13;
+
+	/**
+	 * Block identifier for execution data of a single class with hit counters
+	 * instead of probe flags.
+	 */
+	public static final byte BLOCK_COUNTERS = 0x14;
+
+	/** Uncompressed size after which a compressed block is written. */
+	private static final int COMPRESSED_BLOCK_SIZE = 256 * 1024;
+
 	/** Underlying data output */
 	protected final CompactDataOutput out;
 
+	/** Uncompressed content of the current block or <code>null</code> */
+	private final ByteArrayOutputStream blockBuffer;
+
+	/** Output for session infos and execution data */
+	private final CompactDataOutput blockOut;
+
 	/**
 	 * Creates a new writer based on the given output stream. Depending on the
 	 * nature of the underlying stream output should be buffered as most data is
@@ -60,7 +96,32 @@ public class ExecutionDataWriter
 	 *             if the header can't be written
 	 */
 	public ExecutionDataWriter(final OutputStream output) throws IOException {
+		this(output, false);
+	}
+
+	/**
+	 * Creates a new writer based on the given output stream which optionally
+	 * compresses the written data. Compressed data is only written to the
+	 * underlying stream in blocks, therefore {@link #flush()} has to be called
+	 * after the last data has been written.
+	 *
+	 * @param output
+	 *            binary stream to write execution data to
+	 * @param compress
+	 *            <code>true</code> to write deflate compressed blocks
+	 * @throws IOException
+	 *             if the header can't be written
+	 */
+	public ExecutionDataWriter(final OutputStream output,
+			final boolean compress) throws IOException {
 		this.out = new CompactDataOutput(output);
+		if (compress) {
+			this.blockBuffer = new ByteArrayOutputStream();
+			this.blockOut = new CompactDataOutput(blockBuffer);
+		} else {
+			this.blockBuffer = null;
+			this.blockOut = out;
+		}
 		writeHeader();
 	}
 
@@ -73,25 +134,66 @@ public class ExecutionDataWriter
 	private void writeHeader() throws IOException {
 		out.writeByte(BLOCK_HEADER);
 		out.writeChar(MAGIC_NUMBER);
-		out.writeChar(FORMAT_VERSION);
+		out.writeChar(blockBuffer == null ? FORMAT_VERSION
+				: COMPRESSED_FORMAT_VERSION);
 	}
 
 	/**
-	 * Flushes the underlying stream.
+	 * Writes pending compressed data and flushes the underlying stream.
 	 *
 	 * @throws IOException
 	 *             if the underlying stream can't be flushed
 	 */
 	public void flush() throws IOException {
+		writeCompressedBlock();
 		out.flush();
 	}
 
+	private void writeCompressedBlock() throws IOException {
+		if (blockBuffer == null || blockBuffer.size() == 0) {
+			return;
+		}
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+				blockBuffer.size() / 4);
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			final DeflaterOutputStream stream = new DeflaterOutputStream(
+					compressed, deflater);
+			blockBuffer.writeTo(stream);
+			stream.finish();
+		} finally {
+			deflater.end();
+		}
+		blockBuffer.reset();
+		out.writeByte(BLOCK_COMPRESSED);
+		out.writeVarInt(compressed.size());
+		compressed.writeTo(out);
+	}
+
+	private void blockWritten() throws IOException {
+		if (blockBuffer != null
+				&& blockBuffer.size() >= COMPRESSED_BLOCK_SIZE) {
+			writeCompressedBlock();
+		}
+	}
+
 	public void visitSessionInfo(final SessionInfo info) {
 		try {
-			out.writeByte(BLOCK_SESSIONINFO);
-			out.writeUTF(info.getId());
-			out.writeLong(info.getStartTimeStamp());
-			out.writeLong(info.getDumpTimeStamp());
+			blockOut.writeByte(BLOCK_SESSIONINFO);
+			blockOut.writeUTF(info.getId());
+			blockOut.writeLong(info.getStartTimeStamp());
+			blockOut.writeLong(info.getDumpTimeStamp());
+			blockWritten();
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public void visitDelta(final long sequence) {
+		try {
+			blockOut.writeByte(BLOCK_DELTA);
+			blockOut.writeLong(sequence);
+			blockWritten();
 		} catch (final IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -100,10 +202,22 @@ public class ExecutionDataWriter
 	public void visitClassExecution(final ExecutionData data) {
 		if (data.hasHits()) {
 			try {
-				out.writeByte(BLOCK_EXECUTIONDATA);
-				out.writeLong(data.getId());
-				out.writeUTF(data.getName());
-				out.writeBooleanArray(data.getProbes());
+				final int[] counters = data.getCounters();
+				if (counters == null) {
+					blockOut.writeByte(BLOCK_EXECUTIONDATA);
+					blockOut.writeLong(data.getId());
+					blockOut.writeUTF(data.getName());
+					blockOut.writeProbeBits(data.getProbeBits());
+				} else {
+					blockOut.writeByte(BLOCK_COUNTERS);
+					blockOut.writeLong(data.getId());
+					blockOut.writeUTF(data.getName());
+					blockOut.writeVarInt(counters.length);
+					for (final int c : counters) {
+						blockOut.writeVarInt(c);
+					}
+				}
+				blockWritten();
 			} catch (final IOException e) {
 				throw new RuntimeException(e);
 			}
@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Interface for data output of delta dumps. A delta dump only contains the
+ * probes which have been executed since the previous dump of the same sequence.
+ * The session info and execution data of a dump follow the call of this
+ * method.
+ */
+public interface IDeltaVisitor {
+
+	/**
+	 * Announces a new delta dump. The sequence number starts with
+	 * <code>0</code> for a dump which contains the complete execution data and
+	 * is incremented by one for every subsequent delta.
+	 *
+	 * @param sequence
+	 *            sequence number of the dump
+	 */
+	void visitDelta(long sequence);
+
+}
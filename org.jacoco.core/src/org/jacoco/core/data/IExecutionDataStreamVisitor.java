@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+/**
+ * Allocation free variant of {@link IExecutionDataVisitor} for consumers
+ * which process execution data while it is read, e.g. to print or filter it.
+ *
+ * @see ExecutionDataReader#setExecutionDataStreamVisitor(IExecutionDataStreamVisitor)
+ */
+public interface IExecutionDataStreamVisitor {
+
+	/**
+	 * Provides execution data for a class. The probe buffer is reused for all
+	 * classes of a stream and only valid during this call. Equal class names
+	 * are passed as the same {@link String} instance.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probes
+	 *            view on the probes of the class
+	 */
+	void visitClassExecution(long id, String name, ProbeBuffer probes);
+
+}
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read-only view on an execution data file in the indexed format. Unlike the
+ * block format written by {@link ExecutionDataWriter} the indexed format allows
+ * random access by class id: the file is memory mapped and only the entries
+ * which are requested are decoded. An {@link ExecutionDataStore} created with
+ * {@link ExecutionDataStore#ExecutionDataStore(MappedExecutionData)} uses such
+ * a view to load entries lazily.
+ *
+ * <pre>
+ * header:   byte 0x01, char 0xC0C0, char 0x1107,
+ *           int classCount, int sessionCount,
+ *           long tableOffset, long namesOffset, long probesOffset
+ * sessions: sessionCount * (UTF id, long start, long dump)
+ * table:    classCount * (long id, int probeCount,
+ *                         int nameOffset, long probesOffset)
+ * names:    classCount * UTF name
+ * probes:   classCount * ((probeCount + 7) / 8) bytes
+ * </pre>
+ *
+ * The table is sorted by class id. Offsets in the header are absolute, offsets
+ * in the table are relative to the respective region. Names and probes are
+ * stored in table order so that {@link ExecutionDataReader} can also read the
+ * format sequentially. Probes are packed into bytes, least significant bit
+ * first. All values are big endian. Hit counters are not stored in this
+ * format, only whether a probe has been executed.
+ */
+public final class MappedExecutionData {
+
+	/** File format version of the indexed format. */
+	public static final char FORMAT_VERSION = 0x1107;
+
+	private static final int HEADER_SIZE = 37;
+
+	private static final int TABLE_ENTRY_SIZE = 24;
+
+	/** Files are mapped in segments which overlap by a primitive value. */
+	private static final int SEGMENT_SHIFT = 30;
+
+	private static final int SEGMENT_OVERLAP = 8;
+
+	private final ByteBuffer[] segments;
+
+	private final int shift;
+
+	private final long mask;
+
+	private final int classCount;
+
+	private final long tableOffset;
+
+	private final long namesOffset;
+
+	private final long probesOffset;
+
+	private final List<SessionInfo> sessionInfos;
+
+	private volatile Set<String> names;
+
+	/**
+	 * Creates a view on the given buffer.
+	 *
+	 * @param buffer
+	 *            buffer with the content of an indexed execution data file
+	 * @throws IOException
+	 *             if the buffer does not contain valid execution data
+	 */
+	public MappedExecutionData(final ByteBuffer buffer) throws IOException {
+		this(new ByteBuffer[] { buffer }, 31);
+	}
+
+	private MappedExecutionData(final ByteBuffer[] segments, final int shift)
+			throws IOException {
+		this.segments = segments;
+		this.shift = shift;
+		this.mask = (1L << shift) - 1;
+		if (segments[0].limit() < HEADER_SIZE || !isIndexed(segments[0])) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		classCount = getInt(5);
+		final int sessionCount = getInt(9);
+		tableOffset = getLong(13);
+		namesOffset = getLong(21);
+		probesOffset = getLong(29);
+		final ByteBuffer last = segments[segments.length - 1];
+		final long size = ((long) (segments.length - 1) << shift)
+				+ last.limit();
+		if (classCount < 0 || sessionCount < 0 || tableOffset < HEADER_SIZE
+				|| namesOffset - tableOffset != (long) classCount
+						* TABLE_ENTRY_SIZE
+				|| probesOffset < namesOffset || probesOffset > size) {
+			throw new IOException("Invalid indexed execution data file.");
+		}
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(read(HEADER_SIZE,
+						(int) (tableOffset - HEADER_SIZE))));
+		final List<SessionInfo> infos = new ArrayList<SessionInfo>();
+		for (int i = 0; i < sessionCount; i++) {
+			infos.add(new SessionInfo(in.readUTF(), in.readLong(),
+					in.readLong()));
+		}
+		sessionInfos = Collections.unmodifiableList(infos);
+	}
+
+	private static boolean isIndexed(final ByteBuffer buffer) {
+		return buffer.get(0) == ExecutionDataWriter.BLOCK_HEADER
+				&& buffer.getChar(1) == ExecutionDataWriter.MAGIC_NUMBER
+				&& buffer.getChar(3) == FORMAT_VERSION;
+	}
+
+	/**
+	 * Checks whether the given file is an execution data file in the indexed
+	 * format.
+	 *
+	 * @param file
+	 *            file to check
+	 * @return <code>true</code> if the file has the indexed format
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static boolean isIndexed(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] header = new byte[5];
+			return new DataInputStream(in).read(header) == header.length
+					&& isIndexed(ByteBuffer.wrap(header));
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps the given file into memory. Files larger than 2 GB are mapped in
+	 * multiple segments.
+	 *
+	 * @param file
+	 *            execution data file in the indexed format
+	 * @return view on the file
+	 * @throws IOException
+	 *             if the file can't be read or has not the indexed format
+	 */
+	public static MappedExecutionData map(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			final long segmentSize = 1L << SEGMENT_SHIFT;
+			final ByteBuffer[] segments = new ByteBuffer[(int) Math
+					.max(1, (size + segmentSize - 1) / segmentSize)];
+			for (int i = 0; i < segments.length; i++) {
+				final long start = i * segmentSize;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(segmentSize + SEGMENT_OVERLAP, size - start));
+			}
+			return new MappedExecutionData(segments, SEGMENT_SHIFT);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return session infos contained in the file
+	 */
+	public List<SessionInfo> getSessionInfos() {
+		return sessionInfos;
+	}
+
+	/**
+	 * @return number of classes contained in the file
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Looks up the execution data of the class with the given id. Every call
+	 * decodes a new instance.
+	 *
+	 * @param id
+	 *            class id
+	 * @return execution data or <code>null</code> if the class is not
+	 *         contained
+	 */
+	public ExecutionData get(final long id) {
+		int low = 0;
+		int high = classCount - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long midId = getLong(tableOffset
+					+ (long) mid * TABLE_ENTRY_SIZE);
+			if (midId < id) {
+				low = mid + 1;
+			} else if (midId > id) {
+				high = mid - 1;
+			} else {
+				return readEntry(mid);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Checks whether execution data for classes with the given name are
+	 * contained. The names of all classes are loaded on the first call.
+	 *
+	 * @param name
+	 *            VM name
+	 * @return <code>true</code> if a class with the name is contained
+	 */
+	public boolean contains(final String name) {
+		Set<String> n = names;
+		if (n == null) {
+			n = new HashSet<String>();
+			for (int i = 0; i < classCount; i++) {
+				n.add(readName(tableOffset + (long) i * TABLE_ENTRY_SIZE));
+			}
+			names = n;
+		}
+		return n.contains(name);
+	}
+
+	/**
+	 * Decodes all entries and passes them to the given visitor in the order of
+	 * their ids.
+	 *
+	 * @param visitor
+	 *            visitor for the execution data
+	 */
+	public void accept(final IExecutionDataVisitor visitor) {
+		for (int i = 0; i < classCount; i++) {
+			visitor.visitClassExecution(readEntry(i));
+		}
+	}
+
+	private ExecutionData readEntry(final int index) {
+		final long entry = tableOffset + (long) index * TABLE_ENTRY_SIZE;
+		final int probeCount = getInt(entry + 8);
+		final byte[] packed = read(probesOffset + getLong(entry + 16),
+				(probeCount + 7) / 8);
+		return new ExecutionData(getLong(entry), readName(entry),
+				ProbeBits.valueOf(packed, probeCount));
+	}
+
+	private String readName(final long entry) {
+		final long pos = namesOffset + getInt(entry + 12);
+		final int length = getChar(pos);
+		try {
+			return new DataInputStream(
+					new ByteArrayInputStream(read(pos, length + 2))).readUTF();
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ByteBuffer segment(final long pos) {
+		return segments[(int) (pos >>> shift)];
+	}
+
+	private int getInt(final long pos) {
+		return segment(pos).getInt((int) (pos & mask));
+	}
+
+	private long getLong(final long pos) {
+		return segment(pos).getLong((int) (pos & mask));
+	}
+
+	private char getChar(final long pos) {
+		return segment(pos).getChar((int) (pos & mask));
+	}
+
+	private byte[] read(long pos, final int length) {
+		final byte[] bytes = new byte[length];
+		int done = 0;
+		while (done < length) {
+			final ByteBuffer b = segment(pos).duplicate();
+			final int offset = (int) (pos & mask);
+			final int chunk = (int) Math.min(length - done,
+					Math.min(mask + 1 - offset, b.limit() - offset));
+			b.position(offset);
+			b.get(bytes, done, chunk);
+			done += chunk;
+			pos += chunk;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Writes the given execution data in the indexed format.
+	 *
+	 * @param sessionInfos
+	 *            session infos to write
+	 * @param contents
+	 *            execution data to write, ids must be unique
+	 * @param output
+	 *            stream to write to
+	 * @throws IOException
+	 *             if the data can't be written
+	 */
+	public static void write(final Collection<SessionInfo> sessionInfos,
+			final Collection<ExecutionData> contents, final OutputStream output)
+			throws IOException {
+		final List<ExecutionData> sorted = new ArrayList<ExecutionData>(
+				contents);
+		Collections.sort(sorted, new Comparator<ExecutionData>() {
+			public int compare(final ExecutionData d1, final ExecutionData d2) {
+				return d1.getId() < d2.getId() ? -1
+						: (d1.getId() == d2.getId() ? 0 : 1);
+			}
+		});
+		final ByteArrayOutputStream sessionBuffer = new ByteArrayOutputStream();
+		final DataOutputStream sessions = new DataOutputStream(sessionBuffer);
+		for (final SessionInfo info : sessionInfos) {
+			sessions.writeUTF(info.getId());
+			sessions.writeLong(info.getStartTimeStamp());
+			sessions.writeLong(info.getDumpTimeStamp());
+		}
+		final ByteArrayOutputStream nameBuffer = new ByteArrayOutputStream();
+		final DataOutputStream names = new DataOutputStream(nameBuffer);
+		final long tableOffset = HEADER_SIZE + sessions.size();
+		final long namesOffset = tableOffset
+				+ (long) sorted.size() * TABLE_ENTRY_SIZE;
+
+		final DataOutputStream out = new DataOutputStream(output);
+		out.writeByte(ExecutionDataWriter.BLOCK_HEADER);
+		out.writeChar(ExecutionDataWriter.MAGIC_NUMBER);
+		out.writeChar(FORMAT_VERSION);
+		out.writeInt(sorted.size());
+		out.writeInt(sessionInfos.size());
+		out.writeLong(tableOffset);
+		out.writeLong(namesOffset);
+		// The names region is only known after the table has been built:
+		final ByteArrayOutputStream tableBuffer = new ByteArrayOutputStream();
+		final DataOutputStream table = new DataOutputStream(tableBuffer);
+		long probes = 0;
+		long previousId = 0;
+		for (int i = 0; i < sorted.size(); i++) {
+			final ExecutionData data = sorted.get(i);
+			if (i > 0 && data.getId() == previousId) {
+				throw new IllegalArgumentException(String.format(
+						"Duplicate class id %016x.", Long.valueOf(previousId)));
+			}
+			previousId = data.getId();
+			table.writeLong(data.getId());
+			table.writeInt(data.getProbeCount());
+			table.writeInt(names.size());
+			table.writeLong(probes);
+			names.writeUTF(data.getName());
+			probes += (data.getProbeCount() + 7) / 8;
+		}
+		out.writeLong(namesOffset + names.size());
+		sessionBuffer.writeTo(out);
+		tableBuffer.writeTo(out);
+		nameBuffer.writeTo(out);
+		for (final ExecutionData data : sorted) {
+			out.write(data.getProbeBits().toByteArray());
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads the content following the header of an indexed file sequentially.
+	 */
+	static void read(final DataInputStream in,
+			final ISessionInfoVisitor sessionInfoVisitor,
+			final IExecutionDataVisitor executionDataVisitor)
+			throws IOException {
+		final int classCount = in.readInt();
+		final int sessionCount = in.readInt();
+		// Offsets are not required as all regions are read in order:
+		in.readLong();
+		in.readLong();
+		in.readLong();
+		for (int i = 0; i < sessionCount; i++) {
+			final SessionInfo info = new SessionInfo(in.readUTF(),
+					in.readLong(), in.readLong());
+			if (sessionInfoVisitor == null) {
+				throw new IOException("No session info visitor.");
+			}
+			sessionInfoVisitor.visitSessionInfo(info);
+		}
+		final long[] ids = new long[classCount];
+		final int[] probeCounts = new int[classCount];
+		for (int i = 0; i < classCount; i++) {
+			ids[i] = in.readLong();
+			probeCounts[i] = in.readInt();
+			in.readInt();
+			in.readLong();
+		}
+		final String[] classNames = new String[classCount];
+		for (int i = 0; i < classCount; i++) {
+			classNames[i] = in.readUTF();
+		}
+		if (classCount > 0 && executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		for (int i = 0; i < classCount; i++) {
+			final byte[] packed = new byte[(probeCounts[i] + 7) / 8];
+			in.readFully(packed);
+			executionDataVisitor.visitClassExecution(new ExecutionData(ids[i],
+					classNames[i], ProbeBits.valueOf(packed, probeCounts[i])));
+		}
+	}
+
+}
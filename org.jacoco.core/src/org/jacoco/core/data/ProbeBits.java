@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size set of probe flags packed into <code>long</code> words. Probe
+ * <code>i</code> is stored in bit <code>i % 64</code> of word
+ * <code>i / 64</code>, so a probe costs one bit instead of the byte of a
+ * <code>boolean[]</code> and bulk operations work on 64 probes at once. Bits
+ * beyond the length are always zero.
+ */
+public final class ProbeBits {
+
+	private static final int ADDRESS_BITS = 6;
+
+	private final long[] words;
+
+	private final int length;
+
+	/**
+	 * Creates a new instance with the given number of probes which are all
+	 * not executed.
+	 *
+	 * @param length
+	 *            number of probes
+	 */
+	public ProbeBits(final int length) {
+		this(new long[wordCount(length)], length);
+	}
+
+	private ProbeBits(final long[] words, final int length) {
+		this.words = words;
+		this.length = length;
+	}
+
+	/**
+	 * Creates a packed copy of the given probes.
+	 *
+	 * @param probes
+	 *            probe flags
+	 * @return packed probes
+	 */
+	public static ProbeBits valueOf(final boolean[] probes) {
+		final ProbeBits bits = new ProbeBits(probes.length);
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i]) {
+				bits.words[i >>> ADDRESS_BITS] |= 1L << i;
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Creates an instance from probes packed into bytes, least significant bit
+	 * first. This is the layout used in execution data files.
+	 *
+	 * @param bytes
+	 *            packed probes, at least <code>(length + 7) / 8</code> bytes
+	 * @param length
+	 *            number of probes
+	 * @return packed probes
+	 */
+	public static ProbeBits valueOf(final byte[] bytes, final int length) {
+		final ProbeBits bits = new ProbeBits(length);
+		pack(bytes, length, bits.words);
+		return bits;
+	}
+
+	/**
+	 * Packs bytes with probes, least significant bit first, into the given
+	 * words. Padding bits of the last byte are cleared.
+	 */
+	static void pack(final byte[] bytes, final int length,
+			final long[] words) {
+		final int wordCount = wordCount(length);
+		for (int i = 0; i < wordCount; i++) {
+			words[i] = 0;
+		}
+		final int byteCount = (length + 7) >>> 3;
+		for (int i = 0; i < byteCount; i++) {
+			words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) << 3);
+		}
+		if ((length & 63) != 0) {
+			words[wordCount - 1] &= -1L >>> (64 - (length & 63));
+		}
+	}
+
+	static int wordCount(final int length) {
+		return (length + 63) >>> ADDRESS_BITS;
+	}
+
+	/**
+	 * Returns the number of probes.
+	 *
+	 * @return number of probes
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Checks whether the given probe has been executed.
+	 *
+	 * @param index
+	 *            probe id
+	 * @return <code>true</code> if the probe has been executed
+	 */
+	public boolean get(final int index) {
+		checkIndex(index);
+		return (words[index >>> ADDRESS_BITS] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Marks the given probe as executed.
+	 *
+	 * @param index
+	 *            probe id
+	 */
+	public void set(final int index) {
+		checkIndex(index);
+		words[index >>> ADDRESS_BITS] |= 1L << index;
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+	}
+
+	/**
+	 * Marks all probes as not executed.
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Checks whether any probe has been executed.
+	 *
+	 * @return <code>true</code> if at least one probe has been executed
+	 */
+	public boolean isEmpty() {
+		for (final long w : words) {
+			if (w != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of executed probes.
+	 *
+	 * @return number of executed probes
+	 */
+	public int cardinality() {
+		int count = 0;
+		for (final long w : words) {
+			count += Long.bitCount(w);
+		}
+		return count;
+	}
+
+	/**
+	 * Marks all probes as executed which are executed in the given instance.
+	 *
+	 * @param other
+	 *            probes of the same length
+	 */
+	public void or(final ProbeBits other) {
+		checkLength(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other.words[i];
+		}
+	}
+
+	/**
+	 * Marks all probes as executed which are set in the given words.
+	 */
+	void or(final long[] other) {
+		for (int i = 0; i < words.length; i++) {
+			words[i] |= other[i];
+		}
+	}
+
+	/**
+	 * Marks all probes as not executed which are executed in the given
+	 * instance.
+	 *
+	 * @param other
+	 *            probes of the same length
+	 */
+	public void andNot(final ProbeBits other) {
+		checkLength(other);
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= ~other.words[i];
+		}
+	}
+
+	private void checkLength(final ProbeBits other) {
+		if (other.length != length) {
+			throw new IllegalArgumentException(String.format(
+					"Different probe counts %s and %s.",
+					Integer.valueOf(length), Integer.valueOf(other.length)));
+		}
+	}
+
+	/**
+	 * Returns the probes packed into bytes, least significant bit first.
+	 *
+	 * @return new array of <code>(length + 7) / 8</code> bytes
+	 */
+	public byte[] toByteArray() {
+		final byte[] bytes = new byte[(length + 7) >>> 3];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the probes as a new <code>boolean[]</code>.
+	 *
+	 * @return probe flags
+	 */
+	public boolean[] toBooleanArray() {
+		final boolean[] probes = new boolean[length];
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+			while (word != 0) {
+				final int bit = Long.numberOfTrailingZeros(word);
+				probes[(w << ADDRESS_BITS) + bit] = true;
+				word &= word - 1;
+			}
+		}
+		return probes;
+	}
+
+	/**
+	 * Creates an independent copy of this instance.
+	 *
+	 * @return copy
+	 */
+	public ProbeBits copy() {
+		return new ProbeBits(words.clone(), length);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof ProbeBits)) {
+			return false;
+		}
+		final ProbeBits other = (ProbeBits) obj;
+		return length == other.length && Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * length + Arrays.hashCode(words);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(length + 2).append('[');
+		for (int i = 0; i < length; i++) {
+			sb.append(get(i) ? '1' : '0');
+		}
+		return sb.append(']').toString();
+	}
+
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.data;
+
+import java.io.IOException;
+
+import org.jacoco.core.internal.data.CompactDataInput;
+
+/**
+ * Reusable view on the probes of a single class while execution data is
+ * streamed by {@link ExecutionDataReader}. The probes are packed into
+ * <code>long</code> words like in {@link ProbeBits}. The content of a buffer
+ * is replaced by every block read, so it must not be kept beyond the visitor
+ * call. Use {@link #toProbeBits()} to retain the probes.
+ *
+ * For classes instrumented with counting probes the buffer additionally holds
+ * the number of executions of every probe, see {@link #hasCounts()}.
+ *
+ * @see IExecutionDataStreamVisitor
+ */
+public final class ProbeBuffer {
+
+	private long[] words;
+
+	private byte[] bytes;
+
+	private int length;
+
+	private int[] counts;
+
+	private boolean counting;
+
+	/**
+	 * Creates a new empty buffer.
+	 */
+	public ProbeBuffer() {
+		words = new long[16];
+		bytes = new byte[128];
+		length = 0;
+		counts = new int[0];
+		counting = false;
+	}
+
+	/**
+	 * Replaces the content with the next boolean array of the given input.
+	 *
+	 * @param in
+	 *            input positioned at a boolean array
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	void read(final CompactDataInput in) throws IOException {
+		final int newLength = in.readVarInt();
+		final int byteCount = (newLength + 7) >>> 3;
+		if (byteCount > bytes.length) {
+			bytes = new byte[Math.max(byteCount, bytes.length * 2)];
+			words = new long[ProbeBits.wordCount(bytes.length << 3)];
+		}
+		in.readFully(bytes, 0, byteCount);
+		ProbeBits.pack(bytes, newLength, words);
+		length = newLength;
+		counting = false;
+	}
+
+	/**
+	 * Replaces the content with the next hit counters of the given input.
+	 *
+	 * @param in
+	 *            input positioned at hit counters
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	void readCounts(final CompactDataInput in) throws IOException {
+		final int newLength = in.readVarInt();
+		ensureCapacity(newLength);
+		for (int i = 0; i < newLength; i++) {
+			counts[i] = in.readVarInt();
+		}
+		setCounts(newLength);
+	}
+
+	/**
+	 * Replaces the content with the given hit counters.
+	 *
+	 * @param counters
+	 *            counters to copy
+	 */
+	void load(final int[] counters) {
+		ensureCapacity(counters.length);
+		System.arraycopy(counters, 0, counts, 0, counters.length);
+		setCounts(counters.length);
+	}
+
+	private void ensureCapacity(final int newLength) {
+		if (newLength > counts.length) {
+			counts = new int[Math.max(newLength, counts.length * 2)];
+		}
+		final int byteCount = (newLength + 7) >>> 3;
+		if (byteCount > bytes.length) {
+			bytes = new byte[Math.max(byteCount, bytes.length * 2)];
+			words = new long[ProbeBits.wordCount(bytes.length << 3)];
+		}
+	}
+
+	private void setCounts(final int newLength) {
+		final int byteCount = (newLength + 7) >>> 3;
+		for (int i = 0; i < byteCount; i++) {
+			bytes[i] = 0;
+		}
+		for (int i = 0; i < newLength; i++) {
+			if (counts[i] != 0) {
+				bytes[i >>> 3] |= 1 << (i & 7);
+			}
+		}
+		ProbeBits.pack(bytes, newLength, words);
+		length = newLength;
+		counting = true;
+	}
+
+	/**
+	 * Replaces the content with the given probes.
+	 *
+	 * @param probes
+	 *            probes to copy
+	 */
+	void load(final ProbeBits probes) {
+		final byte[] packed = probes.toByteArray();
+		if (packed.length > bytes.length) {
+			bytes = new byte[Math.max(packed.length, bytes.length * 2)];
+			words = new long[ProbeBits.wordCount(bytes.length << 3)];
+		}
+		System.arraycopy(packed, 0, bytes, 0, packed.length);
+		ProbeBits.pack(bytes, probes.length(), words);
+		length = probes.length();
+		counting = false;
+	}
+
+	/**
+	 * Returns the number of probes.
+	 *
+	 * @return number of probes
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Checks whether the given probe has been executed.
+	 *
+	 * @param index
+	 *            probe id
+	 * @return <code>true</code> if the probe has been executed
+	 */
+	public boolean get(final int index) {
+		if (index < 0 || index >= length) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Checks whether this buffer holds hit counters.
+	 *
+	 * @return <code>true</code> if the probes have been recorded with hit
+	 *         counters
+	 */
+	public boolean hasCounts() {
+		return counting;
+	}
+
+	/**
+	 * Returns the number of executions of the given probe. Without hit
+	 * counters this is <code>1</code> for executed probes.
+	 *
+	 * @param index
+	 *            probe id
+	 * @return number of executions
+	 */
+	public int getCount(final int index) {
+		if (!get(index)) {
+			return 0;
+		}
+		return counting ? counts[index] : 1;
+	}
+
+	/**
+	 * Returns the number of executed probes.
+	 *
+	 * @return number of executed probes
+	 */
+	public int cardinality() {
+		final int wordCount = ProbeBits.wordCount(length);
+		int count = 0;
+		for (int i = 0; i < wordCount; i++) {
+			count += Long.bitCount(words[i]);
+		}
+		return count;
+	}
+
+	/**
+	 * Marks all probes of this buffer as executed in the given instance.
+	 *
+	 * @param target
+	 *            probes of the same length
+	 */
+	void orInto(final ProbeBits target) {
+		target.or(words);
+	}
+
+	/**
+	 * Creates an independent copy of the current content.
+	 *
+	 * @return copy of the probes
+	 */
+	public ProbeBits toProbeBits() {
+		return ProbeBits.valueOf(bytes, length);
+	}
+
+	/**
+	 * Creates an independent copy of the current hit counters.
+	 *
+	 * @return copy of the counters or <code>null</code> if this buffer does
+	 *         not hold hit counters
+	 */
+	public int[] toCounters() {
+		if (!counting) {
+			return null;
+		}
+		final int[] copy = new int[length];
+		System.arraycopy(counts, 0, copy, 0, length);
+		return copy;
+	}
+
+}
@@ -12,10 +12,19 @@
  *******************************************************************************/
 package org.jacoco.core.instr;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -24,6 +33,7 @@ import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.jacoco.core.JaCoCo;
+import org.jacoco.core.analysis.IDiffFilter;
 import org.jacoco.core.internal.ContentTypeDetector;
 import org.jacoco.core.internal.InputStreams;
 import org.jacoco.core.internal.Pack200Streams;
@@ -34,7 +44,9 @@ import org.jacoco.core.internal.instr.IProbeArrayStrategy;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.jacoco.core.internal.instr.ProbeArrayStrategyFactory;
 import org.jacoco.core.internal.instr.SignatureRemover;
+import org.jacoco.core.runtime.ICounterAccessorGenerator;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IInitializerAccessorGenerator;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -44,10 +56,21 @@ import org.objectweb.asm.ClassWriter;
  */
 public class Instrumenter {
 
+	/** Maximum number of archive entries in flight per thread. */
+	private static final int PENDING_PER_THREAD = 4;
+
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
 	private final SignatureRemover signatureRemover;
 
+	private IDiffFilter diffFilter;
+
+	private boolean touchOnly;
+
+	private boolean counting;
+
+	private int threads;
+
 	/**
 	 * Creates a new instance based on the given runtime.
 	 *
@@ -57,6 +80,7 @@ public class Instrumenter {
 	public Instrumenter(final IExecutionDataAccessorGenerator runtime) {
 		this.accessorGenerator = runtime;
 		this.signatureRemover = new SignatureRemover();
+		this.threads = 1;
 	}
 
 	/**
@@ -72,9 +96,88 @@ public class Instrumenter {
 		signatureRemover.setActive(flag);
 	}
 
+	/**
+	 * Restricts instrumentation to the classes and methods of the given diff.
+	 * Classes not contained in the diff are returned unmodified, methods not
+	 * contained in the diff are emitted without probes. Probe ids are the same
+	 * as for full instrumentation, so the execution data can be analyzed with
+	 * the same diff. Default is <code>null</code>.
+	 *
+	 * @param diffFilter
+	 *            diff to instrument or <code>null</code> to instrument all
+	 *            classes and methods
+	 */
+	public void setDiffFilter(final IDiffFilter diffFilter) {
+		this.diffFilter = diffFilter;
+	}
+
+	/**
+	 * Determines whether classes are only instrumented to detect their first
+	 * execution. In this mode methods fetch the probe array on entry, which
+	 * registers the class at the runtime, but record no probes. The added
+	 * members are the same as for full instrumentation, so a class can be
+	 * replaced with its fully instrumented version by retransformation.
+	 * Static initializers are fully instrumented as they do not run again
+	 * after retransformation. If the runtime implements
+	 * {@link IInitializerAccessorGenerator} they record their probes without
+	 * registering the class, otherwise the class registers with its
+	 * initialization. Default is <code>false</code>.
+	 *
+	 * @param touchOnly
+	 *            <code>true</code> if classes should only register at the
+	 *            runtime on first execution
+	 */
+	public void setTouchOnly(final boolean touchOnly) {
+		this.touchOnly = touchOnly;
+	}
+
+	/**
+	 * Determines whether classes are instrumented with counting probes. Such
+	 * probes record the number of executions in an <code>int[]</code> instead
+	 * of a <code>boolean[]</code>, which costs more memory and time for every
+	 * executed probe. The runtime has to implement
+	 * {@link ICounterAccessorGenerator}. Default is <code>false</code>.
+	 *
+	 * @param counting
+	 *            <code>true</code> if probes should count their executions
+	 * @throws IllegalArgumentException
+	 *             if counting probes are not supported by the runtime
+	 */
+	public void setCounting(final boolean counting) {
+		if (counting
+				&& !(accessorGenerator instanceof ICounterAccessorGenerator)) {
+			throw new IllegalArgumentException(
+					"Counting probes are not supported by the runtime.");
+		}
+		this.counting = counting;
+	}
+
+	/**
+	 * Sets the number of threads used to instrument the entries of archive
+	 * files in {@link #instrumentAll(InputStream, OutputStream, String)}. With
+	 * more than one thread entries are instrumented concurrently, the entries
+	 * of the resulting archive are still written in their original order.
+	 * Archives nested in other archives are always processed by a single
+	 * thread. Default is <code>1</code>.
+	 *
+	 * @param threads
+	 *            number of threads, at least <code>1</code>
+	 */
+	public void setThreads(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Invalid number of threads: " + threads);
+		}
+		this.threads = threads;
+	}
+
 	private byte[] instrument(final byte[] source) {
-		final long classId = CRC64.classId(source);
 		final ClassReader reader = InstrSupport.classReaderFor(source);
+		if (diffFilter != null
+				&& !diffFilter.containsClass(reader.getClassName())) {
+			return source;
+		}
+		final long classId = CRC64.classId(source);
 		final ClassWriter writer = new ClassWriter(reader, 0) {
 			@Override
 			protected String getCommonSuperClass(final String type1,
@@ -83,10 +186,15 @@ public class Instrumenter {
 			}
 		};
 		final IProbeArrayStrategy strategy = ProbeArrayStrategyFactory
-				.createFor(classId, reader, accessorGenerator);
+				.createFor(classId, reader, accessorGenerator, counting);
+		final IProbeArrayStrategy initializerStrategy = touchOnly
+				? ProbeArrayStrategyFactory.createForInitializer(classId,
+						reader, accessorGenerator, counting)
+				: null;
 		final int version = InstrSupport.getMajorVersion(reader);
 		final ClassVisitor visitor = new ClassProbesAdapter(
-				new ClassInstrumenter(strategy, writer),
+				new ClassInstrumenter(strategy, diffFilter, touchOnly,
+						initializerStrategy, writer),
 				InstrSupport.needsFrames(version));
 		reader.accept(visitor, ClassReader.EXPAND_FRAMES);
 		return writer.toByteArray();
@@ -99,9 +207,11 @@ public class Instrumenter {
 	 *            definition of the class
 	 * @param name
 	 *            a name used for exception messages
-	 * @return instrumented definition
+	 * @return instrumented definition, the given array itself if the class is
+	 *         not contained in the diff filter
 	 * @throws IOException
 	 *             if the class can't be instrumented
+	 * @see #setDiffFilter(IDiffFilter)
 	 */
 	public byte[] instrument(final byte[] buffer, final String name)
 			throws IOException {
@@ -185,6 +295,12 @@ public class Instrumenter {
 	 */
 	public int instrumentAll(final InputStream input, final OutputStream output,
 			final String name) throws IOException {
+		return instrumentAll(input, output, name, threads > 1);
+	}
+
+	private int instrumentAll(final InputStream input,
+			final OutputStream output, final String name,
+			final boolean parallel) throws IOException {
 		final ContentTypeDetector detector;
 		try {
 			detector = new ContentTypeDetector(input);
@@ -196,11 +312,17 @@ public class Instrumenter {
 			instrument(detector.getInputStream(), output, name);
 			return 1;
 		case ContentTypeDetector.ZIPFILE:
+			if (parallel) {
+				return instrumentZipParallel(detector.getInputStream(), output,
+						name);
+			}
 			return instrumentZip(detector.getInputStream(), output, name);
 		case ContentTypeDetector.GZFILE:
-			return instrumentGzip(detector.getInputStream(), output, name);
+			return instrumentGzip(detector.getInputStream(), output, name,
+					parallel);
 		case ContentTypeDetector.PACK200FILE:
-			return instrumentPack200(detector.getInputStream(), output, name);
+			return instrumentPack200(detector.getInputStream(), output, name,
+					parallel);
 		default:
 			copy(detector.getInputStream(), output, name);
 			return 0;
@@ -247,12 +369,99 @@ public class Instrumenter {
 		return count;
 	}
 
+	/**
+	 * Variant of {@link #instrumentZip(InputStream, OutputStream, String)}
+	 * where entries are read by the calling thread, instrumented on a thread
+	 * pool and written by the calling thread in their original order. The
+	 * number of entries in flight is limited, so memory consumption does not
+	 * depend on the size of the archive.
+	 */
+	private int instrumentZipParallel(final InputStream input,
+			final OutputStream output, final String name) throws IOException {
+		final ZipInputStream zipin = new ZipInputStream(input);
+		final ZipOutputStream zipout = new ZipOutputStream(output);
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		final Deque<PendingEntry> pending = new ArrayDeque<PendingEntry>();
+		int count = 0;
+		try {
+			ZipEntry entry;
+			while ((entry = nextEntry(zipin, name)) != null) {
+				final String entryName = entry.getName();
+				if (signatureRemover.removeEntry(entryName)) {
+					continue;
+				}
+				final byte[] content = readEntry(zipin,
+						name + "@" + entryName);
+				final Future<EntryResult> future = pool
+						.submit(new Callable<EntryResult>() {
+							public EntryResult call() throws IOException {
+								return process(content, name, entryName);
+							}
+						});
+				pending.addLast(
+						new PendingEntry(entryName, entry.getMethod(), future));
+				if (pending.size() >= threads * PENDING_PER_THREAD) {
+					count += writeEntry(zipout, pending.removeFirst());
+				}
+			}
+			while (!pending.isEmpty()) {
+				count += writeEntry(zipout, pending.removeFirst());
+			}
+		} finally {
+			for (final PendingEntry p : pending) {
+				p.future.cancel(true);
+			}
+			pool.shutdownNow();
+		}
+		zipout.finish();
+		return count;
+	}
+
+	private byte[] readEntry(final InputStream in, final String location)
+			throws IOException {
+		try {
+			return InputStreams.readFully(in);
+		} catch (final IOException e) {
+			throw instrumentError(location, e);
+		}
+	}
+
+	private EntryResult process(final byte[] content, final String name,
+			final String entryName) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final int count = filterOrInstrument(new ByteArrayInputStream(content),
+				buffer, name, entryName);
+		return new EntryResult(buffer.toByteArray(), count);
+	}
+
+	private int writeEntry(final ZipOutputStream zipout,
+			final PendingEntry pending) throws IOException {
+		final EntryResult result = pending.get();
+		final ZipEntry newEntry = new ZipEntry(pending.entryName);
+		newEntry.setMethod(pending.method);
+		switch (pending.method) {
+		case ZipEntry.DEFLATED:
+			break;
+		case ZipEntry.STORED:
+			newEntry.setSize(result.content.length);
+			newEntry.setCompressedSize(result.content.length);
+			newEntry.setCrc(crc(result.content));
+			break;
+		default:
+			throw new AssertionError(pending.method);
+		}
+		zipout.putNextEntry(newEntry);
+		zipout.write(result.content);
+		zipout.closeEntry();
+		return result.count;
+	}
+
 	private int filterOrInstrument(final InputStream in, final OutputStream out,
 			final String name, final String entryName) throws IOException {
 		if (signatureRemover.filterEntry(entryName, in, out)) {
 			return 0;
 		} else {
-			return instrumentAll(in, out, name + "@" + entryName);
+			return instrumentAll(in, out, name + "@" + entryName, false);
 		}
 	}
 
@@ -272,7 +481,8 @@ public class Instrumenter {
 	}
 
 	private int instrumentGzip(final InputStream input,
-			final OutputStream output, final String name) throws IOException {
+			final OutputStream output, final String name,
+			final boolean parallel) throws IOException {
 		final GZIPInputStream gzipInputStream;
 		try {
 			gzipInputStream = new GZIPInputStream(input);
@@ -280,13 +490,15 @@ public class Instrumenter {
 			throw instrumentError(name, e);
 		}
 		final GZIPOutputStream gzout = new GZIPOutputStream(output);
-		final int count = instrumentAll(gzipInputStream, gzout, name);
+		final int count = instrumentAll(gzipInputStream, gzout, name,
+				parallel);
 		gzout.finish();
 		return count;
 	}
 
 	private int instrumentPack200(final InputStream input,
-			final OutputStream output, final String name) throws IOException {
+			final OutputStream output, final String name,
+			final boolean parallel) throws IOException {
 		final InputStream unpackedInput;
 		try {
 			unpackedInput = Pack200Streams.unpack(input);
@@ -294,7 +506,8 @@ public class Instrumenter {
 			throw instrumentError(name, e);
 		}
 		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-		final int count = instrumentAll(unpackedInput, buffer, name);
+		final int count = instrumentAll(unpackedInput, buffer, name,
+				parallel);
 		Pack200Streams.pack(buffer.toByteArray(), output);
 		return count;
 	}
@@ -317,4 +530,52 @@ public class Instrumenter {
 		}
 	}
 
+	private static class PendingEntry {
+
+		final String entryName;
+
+		final int method;
+
+		final Future<EntryResult> future;
+
+		PendingEntry(final String entryName, final int method,
+				final Future<EntryResult> future) {
+			this.entryName = entryName;
+			this.method = method;
+			this.future = future;
+		}
+
+		EntryResult get() throws IOException {
+			try {
+				return future.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw (Error) cause;
+			}
+		}
+
+	}
+
+	private static class EntryResult {
+
+		final byte[] content;
+
+		final int count;
+
+		EntryResult(final byte[] content, final int count) {
+			this.content = content;
+			this.count = count;
+		}
+
+	}
+
 }
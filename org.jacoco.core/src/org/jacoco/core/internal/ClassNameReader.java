@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Minimal class file parser which only extracts the name of the class. The
+ * constant pool is skipped entry by entry without creating any objects, so the
+ * name is available much cheaper than with a full ASM
+ * {@link org.objectweb.asm.ClassReader}. The class file version is not checked.
+ */
+public final class ClassNameReader {
+
+	private static final int HEADER_SIZE = 10;
+
+	private ClassNameReader() {
+	}
+
+	/**
+	 * Reads the VM name of the class defined by the given class file.
+	 *
+	 * @param b
+	 *            class file content
+	 * @return VM name of the class or <code>null</code> if the content is not
+	 *         a well-formed class file
+	 */
+	public static String read(final byte[] b) {
+		if (b.length < HEADER_SIZE || readInt(b, 0) != 0xCAFEBABE) {
+			return null;
+		}
+		final int count = readUnsignedShort(b, 8);
+		// Offsets of the constant pool entries for index lookups:
+		final int[] offsets = new int[count];
+		int pos = HEADER_SIZE;
+		for (int i = 1; i < count; i++) {
+			if (pos >= b.length) {
+				return null;
+			}
+			offsets[i] = pos + 1;
+			switch (b[pos]) {
+			case 1: // Utf8
+				if (pos + 3 > b.length) {
+					return null;
+				}
+				pos += 3 + readUnsignedShort(b, pos + 1);
+				break;
+			case 7: // Class
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				pos += 3;
+				break;
+			case 15: // MethodHandle
+				pos += 4;
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				pos += 5;
+				break;
+			case 5: // Long
+			case 6: // Double
+				pos += 9;
+				i++;
+				break;
+			default:
+				return null;
+			}
+		}
+		// access_flags followed by this_class
+		if (pos + 4 > b.length) {
+			return null;
+		}
+		final int thisClass = readUnsignedShort(b, pos + 2);
+		if (!hasTag(b, offsets, thisClass, 7)) {
+			return null;
+		}
+		final int nameIndex = readUnsignedShort(b, offsets[thisClass]);
+		if (!hasTag(b, offsets, nameIndex, 1)) {
+			return null;
+		}
+		return readUtf8(b, offsets[nameIndex]);
+	}
+
+	private static boolean hasTag(final byte[] b, final int[] offsets,
+			final int index, final int tag) {
+		// Unused slots after Long and Double entries have no offset:
+		return index < offsets.length && offsets[index] != 0
+				&& b[offsets[index] - 1] == tag;
+	}
+
+	private static String readUtf8(final byte[] b, final int offset) {
+		final int length = readUnsignedShort(b, offset);
+		if (offset + 2 + length > b.length) {
+			return null;
+		}
+		final char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			final byte c = b[offset + 2 + i];
+			if (c <= 0) {
+				// Non-ASCII names are rare, decode modified UTF-8 the slow way:
+				try {
+					return new DataInputStream(new ByteArrayInputStream(b,
+							offset, length + 2)).readUTF();
+				} catch (final IOException e) {
+					return null;
+				}
+			}
+			chars[i] = (char) c;
+		}
+		return new String(chars);
+	}
+
+	private static int readUnsignedShort(final byte[] b, final int offset) {
+		return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+	}
+
+	private static int readInt(final byte[] b, final int offset) {
+		return (readUnsignedShort(b, offset) << 16)
+				| readUnsignedShort(b, offset + 2);
+	}
+
+}
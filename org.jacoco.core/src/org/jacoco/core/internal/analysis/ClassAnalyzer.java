@@ -15,6 +15,7 @@ package org.jacoco.core.internal.analysis;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.jacoco.core.data.ProbeBits;
 import org.jacoco.core.internal.analysis.filter.Filters;
 import org.jacoco.core.internal.analysis.filter.IFilter;
 import org.jacoco.core.internal.analysis.filter.IFilterContext;
@@ -36,7 +37,8 @@ public class ClassAnalyzer extends ClassProbesVisitor
         implements IFilterContext {
 
     private final ClassCoverageImpl coverage;
-    private final boolean[] probes;
+    private final ProbeBits probes;
+    private final int[] counters;
     private final StringPool stringPool;
 
     private final Set<String> classAnnotations = new HashSet<String>();
@@ -56,9 +58,25 @@ public class ClassAnalyzer extends ClassProbesVisitor
      * @param stringPool shared pool to minimize the number of {@link String} instances
      */
     public ClassAnalyzer(final ClassCoverageImpl coverage,
-                         final boolean[] probes, final StringPool stringPool) {
+                         final ProbeBits probes, final StringPool stringPool) {
+        this(coverage, probes, null, stringPool);
+    }
+
+    /**
+     * Creates a new analyzer that builds coverage data for a class from
+     * execution data with hit counters.
+     *
+     * @param coverage   coverage node for the analyzed class data
+     * @param probes     execution data for this class or <code>null</code>
+     * @param counters   hit counters for this class or <code>null</code>
+     * @param stringPool shared pool to minimize the number of {@link String} instances
+     */
+    public ClassAnalyzer(final ClassCoverageImpl coverage,
+                         final ProbeBits probes, final int[] counters,
+                         final StringPool stringPool) {
         this.coverage = coverage;
         this.probes = probes;
+        this.counters = counters;
         this.stringPool = stringPool;
         this.filter = Filters.all();
     }
@@ -97,8 +115,8 @@ public class ClassAnalyzer extends ClassProbesVisitor
 
         InstrSupport.assertNotInstrumented(name, coverage.getName());
 
-        final InstructionsBuilder builder = new InstructionsBuilder(probes);
-        System.out.println("xianyu3 start name: " + name);
+        final InstructionsBuilder builder = new InstructionsBuilder(probes,
+                counters);
         return new InnerMethodAnalyzer(builder) {
 
             @Override
@@ -110,14 +128,6 @@ public class ClassAnalyzer extends ClassProbesVisitor
                 addMethodCoverage(stringPool.get(name), stringPool.get(desc),
                         stringPool.get(signature), builder, methodNode, getCounterStart(), probeEnd);
             }
-
-            @Override
-            public void visitEnd() {
-                super.visitEnd();
-                // 根据diff产生的差异方法签名，在根据第一阶段获取的probes数据，bundle数据
-
-                System.out.println("xianyu3 end name: " + name);
-            }
         };
     }
 
@@ -132,8 +142,6 @@ public class ClassAnalyzer extends ClassProbesVisitor
                 signature, probes);
         mc.setProbeStart(probeStart);
         mc.setProbeEnd(probeEnd);
-        this.coverage.getName();
-        System.out.println("xianyu3 " + "class: " + this.coverage.getName() + "  method:  " + name + "  start： " + probeStart + "   end: " + probeEnd);
 
         mcc.calculate(mc);
 
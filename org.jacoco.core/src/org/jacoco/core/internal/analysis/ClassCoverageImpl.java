@@ -17,6 +17,7 @@ import java.util.Collection;
 
 import org.jacoco.core.analysis.IClassCoverage;
 import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ProbeBits;
 
 /**
  * Implementation of {@link IClassCoverage}.
@@ -42,7 +43,7 @@ public class ClassCoverageImpl extends SourceNodeImpl
 
 	private int probesCount;
 
-	public  boolean[] probes;
+	public  ProbeBits probes;
 
 	/**
 	 * Creates a class coverage data object with the given parameters.
@@ -56,7 +57,25 @@ public class ClassCoverageImpl extends SourceNodeImpl
 	 *            data
 	 */
 	public ClassCoverageImpl(final String name, final long id,
-			final boolean noMatch,final boolean[] probes) {
+			final boolean noMatch) {
+		this(name, id, noMatch, null);
+	}
+
+	/**
+	 * Creates a class coverage data object with the given parameters.
+	 *
+	 * @param name
+	 *            VM name of the class
+	 * @param id
+	 *            class identifier
+	 * @param noMatch
+	 *            <code>true</code>, if class id does not match with execution
+	 *            data
+	 * @param probes
+	 *            execution data for this class or <code>null</code>
+	 */
+	public ClassCoverageImpl(final String name, final long id,
+			final boolean noMatch,final ProbeBits probes) {
 		super(ElementType.CLASS, name);
 		this.id = id;
 		this.noMatch = noMatch;
@@ -31,7 +31,10 @@ import org.jacoco.core.analysis.ICounter;
  * other with the <code>addBranch()</code> methods. The executions status is
  * either directly derived from a probe which has been inserted in the execution
  * flow ({@link #addBranch(boolean, int)}) or indirectly propagated along the
- * CFG edges ({@link #addBranch(Instruction, int)}).
+ * CFG edges ({@link #addBranch(Instruction, int)}). For execution data with hit
+ * counters probes are added with {@link #addCountedBranch(int, int)} and the
+ * maximum number of executions is propagated along with the status, which is a
+ * lower bound for the number of executions of every instruction.
  *
  * <h2>Step 2: Querying the Coverage Status</h2>
  *
@@ -42,6 +45,7 @@ import org.jacoco.core.analysis.ICounter;
  * <li>{@link #getLine()}</li>
  * <li>{@link #getInstructionCounter()}</li>
  * <li>{@link #getBranchCounter()}</li>
+ * <li>{@link #getHits()}</li>
  * </ul>
  *
  * For the purpose of filtering instructions can be combined to new
@@ -65,6 +69,8 @@ public class Instruction {
 
 	private int predecessorBranch;
 
+	private int hits;
+
 	/**
 	 * New instruction at the given line.
 	 *
@@ -96,7 +102,7 @@ public class Instruction {
 		target.predecessor = this;
 		target.predecessorBranch = branch;
 		if (!target.coveredBranches.isEmpty()) {
-			propagateExecutedBranch(this, branch);
+			propagateExecutedBranch(this, branch, target.hits);
 		}
 	}
 
@@ -116,18 +122,39 @@ public class Instruction {
 	public void addBranch(final boolean executed, final int branch) {
 		branches++;
 		if (executed) {
-			propagateExecutedBranch(this, branch);
+			propagateExecutedBranch(this, branch, 0);
+		}
+	}
+
+	/**
+	 * Adds a branch to this instruction which execution status is directly
+	 * derived from a probe with a hit counter. In case the branch is covered
+	 * the status and the number of executions is propagated through the
+	 * predecessors of this instruction.
+	 *
+	 * @param hits
+	 *            number of executions of the corresponding probe
+	 * @param branch
+	 *            branch identifier unique for this instruction
+	 */
+	public void addCountedBranch(final int hits, final int branch) {
+		branches++;
+		if (hits != 0) {
+			propagateExecutedBranch(this, branch, hits);
 		}
 	}
 
-	private static void propagateExecutedBranch(Instruction insn, int branch) {
+	private static void propagateExecutedBranch(Instruction insn, int branch,
+			final int hits) {
 		// No recursion here, as there can be very long chains of instructions
 		while (insn != null) {
-			if (!insn.coveredBranches.isEmpty()) {
-				insn.coveredBranches.set(branch);
+			final boolean covered = !insn.coveredBranches.isEmpty();
+			insn.coveredBranches.set(branch);
+			if (covered && insn.hits >= hits) {
+				// Predecessors have been updated with at least these hits
 				break;
 			}
-			insn.coveredBranches.set(branch);
+			insn.hits = Math.max(insn.hits, hits);
 			branch = insn.predecessorBranch;
 			insn = insn.predecessor;
 		}
@@ -144,7 +171,7 @@ public class Instruction {
 
 	/**
 	 * Merges information about covered branches of this instruction with
-	 * another instruction.
+	 * another instruction. The numbers of executions are summed up.
 	 *
 	 * @param other
 	 *            instruction to merge with
@@ -155,6 +182,8 @@ public class Instruction {
 		result.branches = this.branches;
 		result.coveredBranches.or(this.coveredBranches);
 		result.coveredBranches.or(other.coveredBranches);
+		result.hits = (int) Math.min(Integer.MAX_VALUE,
+				(long) this.hits + other.hits);
 		return result;
 	}
 
@@ -177,9 +206,21 @@ public class Instruction {
 				result.coveredBranches.set(idx++);
 			}
 		}
+		result.hits = this.hits;
 		return result;
 	}
 
+	/**
+	 * Returns the number of executions of this instruction derived from hit
+	 * counters.
+	 *
+	 * @return number of executions or <code>0</code> if this instruction has
+	 *         not been executed or the execution data has no hit counters
+	 */
+	public int getHits() {
+		return hits;
+	}
+
 	/**
 	 * Returns the instruction coverage counter of this instruction. It is
 	 * always 1 instruction which is covered or not.
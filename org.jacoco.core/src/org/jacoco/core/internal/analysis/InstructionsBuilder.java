@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ProbeBits;
 import org.jacoco.core.internal.flow.LabelInfo;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -30,8 +31,11 @@ import org.objectweb.asm.tree.AbstractInsnNode;
  */
 class InstructionsBuilder {
 
-	/** Probe array of the class the analyzed method belongs to. */
-	private final boolean[] probes;
+	/** Probes of the class the analyzed method belongs to. */
+	private final ProbeBits probes;
+
+	/** Hit counters of the probes or <code>null</code>. */
+	private final int[] counters;
 
 	/** The line which belong to subsequently added instructions. */
 	private int currentLine;
@@ -63,11 +67,26 @@ class InstructionsBuilder {
 	 * method.
 	 *
 	 * @param probes
-	 *            probe array of the corresponding class used to determine the
+	 *            probes of the corresponding class used to determine the
+	 *            coverage status of every instruction.
+	 */
+	InstructionsBuilder(final ProbeBits probes) {
+		this(probes, null);
+	}
+
+	/**
+	 * Creates a new builder instance which can be used to analyze a single
+	 * method with execution data from counting probes.
+	 *
+	 * @param probes
+	 *            probes of the corresponding class used to determine the
 	 *            coverage status of every instruction.
+	 * @param counters
+	 *            hit counters of the probes or <code>null</code>
 	 */
-	InstructionsBuilder(final boolean[] probes) {
+	InstructionsBuilder(final ProbeBits probes, final int[] counters) {
 		this.probes = probes;
+		this.counters = counters;
 		this.currentLine = ISourceNode.UNKNOWN_LINE;
 		this.currentInsn = null;
 		this.instructions = new HashMap<AbstractInsnNode, Instruction>();
@@ -146,7 +165,14 @@ class InstructionsBuilder {
 	 *            unique branch number for the last instruction
 	 */
 	void addProbe(final int probeId, final int branch) {
-		final boolean executed = probes != null && probes[probeId];
+		if (counters != null) {
+			final int hits = counters[probeId];
+			// Negative values are counters which have overflowed at runtime
+			currentInsn.addCountedBranch(hits < 0 ? Integer.MAX_VALUE : hits,
+					branch);
+			return;
+		}
+		final boolean executed = probes != null && probes.get(probeId);
 		currentInsn.addBranch(executed, branch);
 	}
 
@@ -77,6 +77,12 @@ public abstract class LineImpl implements ILine {
 			this.branches = this.branches.increment(branches);
 			return this;
 		}
+
+		@Override
+		public LineImpl mergeHits(final int hits) {
+			this.hits = Math.max(this.hits, hits);
+			return this;
+		}
 	}
 
 	/**
@@ -94,6 +100,14 @@ public abstract class LineImpl implements ILine {
 			return getInstance(this.instructions.increment(instructions),
 					this.branches.increment(branches));
 		}
+
+		@Override
+		public LineImpl mergeHits(final int hits) {
+			if (hits == 0) {
+				return this;
+			}
+			return new Var(instructions, branches).mergeHits(hits);
+		}
 	}
 
 	/** instruction counter */
@@ -102,6 +116,9 @@ public abstract class LineImpl implements ILine {
 	/** branch counter */
 	protected CounterImpl branches;
 
+	/** number of executions */
+	protected int hits;
+
 	private LineImpl(final CounterImpl instructions,
 			final CounterImpl branches) {
 		this.instructions = instructions;
@@ -120,6 +137,16 @@ public abstract class LineImpl implements ILine {
 	public abstract LineImpl increment(final ICounter instructions,
 			final ICounter branches);
 
+	/**
+	 * Sets the number of executions of this line to the given value if it is
+	 * larger than the current value.
+	 *
+	 * @param hits
+	 *            number of executions
+	 * @return instance with new number of executions
+	 */
+	public abstract LineImpl mergeHits(final int hits);
+
 	// === ILine implementation ===
 
 	public int getStatus() {
@@ -134,9 +161,13 @@ public abstract class LineImpl implements ILine {
 		return branches;
 	}
 
+	public int getHits() {
+		return hits;
+	}
+
 	@Override
 	public int hashCode() {
-		return 23 * instructions.hashCode() ^ branches.hashCode();
+		return (23 * instructions.hashCode() ^ branches.hashCode()) + hits;
 	}
 
 	@Override
@@ -144,7 +175,8 @@ public abstract class LineImpl implements ILine {
 		if (obj instanceof ILine) {
 			final ILine that = (ILine) obj;
 			return this.instructions.equals(that.getInstructionCounter())
-					&& this.branches.equals(that.getBranchCounter());
+					&& this.branches.equals(that.getBranchCounter())
+					&& this.hits == that.getHits();
 		}
 		return false;
 	}
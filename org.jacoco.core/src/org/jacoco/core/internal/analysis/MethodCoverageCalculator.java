@@ -76,6 +76,8 @@ class MethodCoverageCalculator implements IFilterOutput {
 				final Instruction instruction = entry.getValue();
 				coverage.increment(instruction.getInstructionCounter(),
 						instruction.getBranchCounter(), instruction.getLine());
+				coverage.mergeHits(instruction.getHits(),
+						instruction.getLine());
 			}
 		}
 
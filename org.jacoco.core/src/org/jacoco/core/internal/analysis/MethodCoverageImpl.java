@@ -14,6 +14,7 @@ package org.jacoco.core.internal.analysis;
 
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ProbeBits;
 
 /**
  * Implementation of {@link IMethodCoverage}.
@@ -29,7 +30,7 @@ public class MethodCoverageImpl extends SourceNodeImpl
 
     private int probeEnd;
 
-    public  boolean[] probes;
+    public  ProbeBits probes;
 
     /**
      * Creates a method coverage data object with the given parameters.
@@ -39,7 +40,20 @@ public class MethodCoverageImpl extends SourceNodeImpl
      * @param signature generic signature or <code>null</code>
      */
     public MethodCoverageImpl(final String name, final String desc,
-                              final String signature, boolean[] probes) {
+                              final String signature) {
+        this(name, desc, signature, null);
+    }
+
+    /**
+     * Creates a method coverage data object with the given parameters.
+     *
+     * @param name      name of the method
+     * @param desc      method descriptor
+     * @param signature generic signature or <code>null</code>
+     * @param probes    execution data of the declaring class or <code>null</code>
+     */
+    public MethodCoverageImpl(final String name, final String desc,
+                              final String signature, ProbeBits probes) {
         super(ElementType.METHOD, name);
         this.desc = desc;
         this.signature = signature;
@@ -96,7 +110,7 @@ public class MethodCoverageImpl extends SourceNodeImpl
         this.probeEnd = probeEnd;
     }
 
-    public boolean[] getProbes() {
+    public ProbeBits getProbes() {
         return probes;
     }
 }
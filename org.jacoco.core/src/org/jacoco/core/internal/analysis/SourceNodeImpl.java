@@ -96,6 +96,7 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 				final ILine line = child.getLine(i);
 				incrementLine(line.getInstructionCounter(),
 						line.getBranchCounter(), i);
+				mergeHits(line.getHits(), i);
 			}
 		}
 	}
@@ -121,6 +122,23 @@ public class SourceNodeImpl extends CoverageNodeImpl implements ISourceNode {
 		branchCounter = branchCounter.increment(branches);
 	}
 
+	/**
+	 * Sets the number of executions of the given line to the given value if it
+	 * is larger than the current value.
+	 *
+	 * @param hits
+	 *            number of executions derived from hit counters
+	 * @param line
+	 *            optional line number or {@link ISourceNode#UNKNOWN_LINE}
+	 */
+	public void mergeHits(final int hits, final int line) {
+		if (hits == 0 || line == UNKNOWN_LINE) {
+			return;
+		}
+		ensureCapacity(line, line);
+		lines[line - offset] = getLine(line).mergeHits(hits);
+	}
+
 	private void incrementLine(final ICounter instructions,
 			final ICounter branches, final int line) {
 		ensureCapacity(line, line);
@@ -16,6 +16,8 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import org.jacoco.core.data.ProbeBits;
+
 /**
  * Additional data input methods for compact storage of data structures.
  *
@@ -69,4 +71,20 @@ public class CompactDataInput extends DataInputStream {
 		return value;
 	}
 
+	/**
+	 * Reads a boolean array written by
+	 * {@link CompactDataOutput#writeBooleanArray(boolean[])} into its packed
+	 * representation.
+	 *
+	 * @return packed boolean values
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public ProbeBits readProbeBits() throws IOException {
+		final int length = readVarInt();
+		final byte[] bytes = new byte[(length + 7) >>> 3];
+		readFully(bytes);
+		return ProbeBits.valueOf(bytes, length);
+	}
+
 }
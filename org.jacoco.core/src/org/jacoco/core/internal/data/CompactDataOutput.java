@@ -16,6 +16,8 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.jacoco.core.data.ProbeBits;
+
 /**
  * Additional data output methods for compact storage of data structures.
  *
@@ -81,4 +83,18 @@ public class CompactDataOutput extends DataOutputStream {
 		}
 	}
 
+	/**
+	 * Writes packed boolean values in the same format as
+	 * {@link #writeBooleanArray(boolean[])}.
+	 *
+	 * @param value
+	 *            packed boolean values
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public void writeProbeBits(final ProbeBits value) throws IOException {
+		writeVarInt(value.length());
+		write(value.toByteArray());
+	}
+
 }
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import java.util.Collection;
+
+/**
+ * Map with primitive <code>long</code> keys based on open addressing with
+ * linear probing. Keys are neither boxed nor wrapped in entry objects, which
+ * keeps lookups cheap for large numbers of class ids. <code>null</code> values
+ * are not supported. An instance of this class is not thread safe.
+ *
+ * @param <V>
+ *            type of the values
+ */
+public final class LongHashMap<V> {
+
+	private long[] keys;
+
+	private Object[] values;
+
+	private int size;
+
+	/**
+	 * Creates a new empty map.
+	 */
+	public LongHashMap() {
+		keys = new long[16];
+		values = new Object[16];
+		size = 0;
+	}
+
+	private static int hash(final long key) {
+		final int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int slotOf(final long key) {
+		final int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (values[slot] != null && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Returns the value for the given key.
+	 *
+	 * @param key
+	 *            key to look up
+	 * @return value or <code>null</code> if the key is not contained
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(final long key) {
+		return (V) values[slotOf(key)];
+	}
+
+	/**
+	 * Associates the given value with the given key.
+	 *
+	 * @param key
+	 *            key of the value
+	 * @param value
+	 *            value, must not be <code>null</code>
+	 * @return previous value of the key or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(final long key, final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values not supported.");
+		}
+		final int slot = slotOf(key);
+		final V previous = (V) values[slot];
+		keys[slot] = key;
+		values[slot] = value;
+		if (previous == null && ++size * 2 > keys.length) {
+			grow();
+		}
+		return previous;
+	}
+
+	/**
+	 * Removes the value for the given key.
+	 *
+	 * @param key
+	 *            key to remove
+	 * @return removed value or <code>null</code> if the key is not contained
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(final long key) {
+		int slot = slotOf(key);
+		final V previous = (V) values[slot];
+		if (previous == null) {
+			return null;
+		}
+		size--;
+		// Shift following entries of the same cluster back, so lookups don't
+		// need tombstones:
+		final int mask = keys.length - 1;
+		int next = (slot + 1) & mask;
+		while (values[next] != null) {
+			final int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[slot] = null;
+		return previous;
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds all values of this map to the given collection.
+	 *
+	 * @param target
+	 *            collection to add values to
+	 */
+	@SuppressWarnings("unchecked")
+	public void values(final Collection<? super V> target) {
+		for (final Object value : values) {
+			if (value != null) {
+				target.add((V) value);
+			}
+		}
+	}
+
+	private void grow() {
+		final long[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new Object[oldValues.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				final int slot = slotOf(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+/**
+ * Counted set of class names based on open addressing. Every distinct name is
+ * held once, together with the number of entries using it, so a name is only
+ * dropped when the last entry with this name is removed. An instance of this
+ * class is not thread safe.
+ */
+public final class NameIndex {
+
+	private String[] names;
+
+	private int[] counts;
+
+	private int size;
+
+	/**
+	 * Creates a new empty index.
+	 */
+	public NameIndex() {
+		names = new String[16];
+		counts = new int[16];
+		size = 0;
+	}
+
+	private static int hash(final String name) {
+		final int h = name.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private int slotOf(final String name) {
+		final int mask = names.length - 1;
+		int slot = hash(name) & mask;
+		while (names[slot] != null && !names[slot].equals(name)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Adds a reference to the given name.
+	 *
+	 * @param name
+	 *            name to add
+	 * @return instance of the name held by this index
+	 */
+	public String add(final String name) {
+		final int slot = slotOf(name);
+		if (names[slot] != null) {
+			counts[slot]++;
+			return names[slot];
+		}
+		names[slot] = name;
+		counts[slot] = 1;
+		if (++size * 2 > names.length) {
+			grow();
+		}
+		return name;
+	}
+
+	/**
+	 * Removes a reference to the given name. The name is removed from the
+	 * index when no references are left.
+	 *
+	 * @param name
+	 *            name to remove
+	 */
+	public void remove(final String name) {
+		int slot = slotOf(name);
+		if (names[slot] == null || --counts[slot] > 0) {
+			return;
+		}
+		size--;
+		final int mask = names.length - 1;
+		int next = (slot + 1) & mask;
+		while (names[next] != null) {
+			final int home = hash(names[next]) & mask;
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				names[slot] = names[next];
+				counts[slot] = counts[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		names[slot] = null;
+		counts[slot] = 0;
+	}
+
+	/**
+	 * Checks whether the given name is contained.
+	 *
+	 * @param name
+	 *            name to look up
+	 * @return <code>true</code> if the name has at least one reference
+	 */
+	public boolean contains(final String name) {
+		return names[slotOf(name)] != null;
+	}
+
+	/**
+	 * Returns the number of distinct names.
+	 *
+	 * @return number of names
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void grow() {
+		final String[] oldNames = names;
+		final int[] oldCounts = counts;
+		names = new String[oldNames.length * 2];
+		counts = new int[oldCounts.length * 2];
+		for (int i = 0; i < oldNames.length; i++) {
+			if (oldNames[i] != null) {
+				final int slot = slotOf(oldNames[i]);
+				names[slot] = oldNames[i];
+				counts[slot] = oldCounts[i];
+			}
+		}
+	}
+
+}
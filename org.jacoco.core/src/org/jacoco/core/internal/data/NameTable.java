@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Pool for strings read from a data input, e.g. class names of execution data
+ * streams. Strings are looked up by their encoded form, so a string which has
+ * been read before is neither decoded nor allocated again.
+ */
+public final class NameTable {
+
+	private byte[] buffer;
+
+	private byte[][] keys;
+
+	private String[] values;
+
+	private int size;
+
+	/**
+	 * Creates a new empty table.
+	 */
+	public NameTable() {
+		buffer = new byte[256];
+		keys = new byte[64][];
+		values = new String[64];
+		size = 0;
+	}
+
+	/**
+	 * Reads a string written by {@link java.io.DataOutput#writeUTF(String)}.
+	 *
+	 * @param in
+	 *            input to read from
+	 * @return pooled string instance
+	 * @throws IOException
+	 *             if thrown by the underlying stream
+	 */
+	public String read(final DataInput in) throws IOException {
+		final int length = in.readUnsignedShort();
+		if (length + 2 > buffer.length) {
+			buffer = new byte[Math.max(length + 2, buffer.length * 2)];
+		}
+		buffer[0] = (byte) (length >>> 8);
+		buffer[1] = (byte) length;
+		in.readFully(buffer, 2, length);
+		final int hash = hash(buffer, length + 2);
+		int slot = hash & (keys.length - 1);
+		while (keys[slot] != null) {
+			if (equal(keys[slot], buffer)) {
+				return values[slot];
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		final byte[] key = new byte[length + 2];
+		System.arraycopy(buffer, 0, key, 0, key.length);
+		final String value = DataInputStream
+				.readUTF(new DataInputStream(new ByteArrayInputStream(key)));
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * 2 > keys.length) {
+			grow();
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of distinct strings in this table.
+	 *
+	 * @return number of strings
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void grow() {
+		final byte[][] oldKeys = keys;
+		final String[] oldValues = values;
+		keys = new byte[oldKeys.length * 2][];
+		values = new String[oldValues.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int slot = hash(oldKeys[i], oldKeys[i].length)
+						& (keys.length - 1);
+				while (keys[slot] != null) {
+					slot = (slot + 1) & (keys.length - 1);
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static int hash(final byte[] bytes, final int length) {
+		int h = 0;
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + bytes[i];
+		}
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Compares a key with the encoded string at the beginning of the buffer.
+	 */
+	private static boolean equal(final byte[] key, final byte[] buffer) {
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buffer[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
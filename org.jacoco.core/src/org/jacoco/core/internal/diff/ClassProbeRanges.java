@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Probe layout of a single class: the total number of probes and the range of
+ * probe ids used by each method. Ranges are half-open, i.e. a method owns the
+ * probes from <code>start</code> inclusive to <code>end</code> exclusive. For
+ * every method also a hash of its body is recorded.
+ */
+public final class ClassProbeRanges {
+
+	private final String name;
+
+	private final long id;
+
+	private int probeCount;
+
+	private final Map<String, MethodRange> methods = new LinkedHashMap<String, MethodRange>();
+
+	/**
+	 * Creates an empty layout for the given class.
+	 *
+	 * @param name
+	 *            VM name of the class
+	 * @param id
+	 *            class id
+	 */
+	public ClassProbeRanges(final String name, final long id) {
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * @return VM name of the class
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return class id
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return total number of probes of the class
+	 */
+	public int getProbeCount() {
+		return probeCount;
+	}
+
+	void setProbeCount(final int probeCount) {
+		this.probeCount = probeCount;
+	}
+
+	void addMethod(final String methodName, final String desc,
+			final int start, final int end, final long bodyHash) {
+		methods.put(methodName + desc,
+				new MethodRange(methodName, desc, start, end, bodyHash));
+	}
+
+	/**
+	 * @return all recorded methods in the order of the class file
+	 */
+	public Collection<MethodRange> getMethods() {
+		return methods.values();
+	}
+
+	/**
+	 * Returns the range of the given method.
+	 *
+	 * @param methodName
+	 *            name of the method
+	 * @param desc
+	 *            descriptor of the method
+	 * @return probe range or <code>null</code> if the method was not recorded
+	 */
+	public MethodRange getMethod(final String methodName, final String desc) {
+		return methods.get(methodName + desc);
+	}
+
+	/**
+	 * Probe range of a single method.
+	 */
+	public static final class MethodRange {
+
+		private final String name;
+
+		private final String desc;
+
+		private final int start;
+
+		private final int end;
+
+		private final long bodyHash;
+
+		MethodRange(final String name, final String desc, final int start,
+				final int end, final long bodyHash) {
+			this.name = name;
+			this.desc = desc;
+			this.start = start;
+			this.end = end;
+			this.bodyHash = bodyHash;
+		}
+
+		/**
+		 * @return name of the method
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return descriptor of the method
+		 */
+		public String getDesc() {
+			return desc;
+		}
+
+		/**
+		 * @return first probe id of the method
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return probe id after the last probe of the method
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		/**
+		 * @return number of probes of the method
+		 */
+		public int getLength() {
+			return end - start;
+		}
+
+		/**
+		 * @return hash of the method body, ignoring line numbers
+		 */
+		public long getBodyHash() {
+			return bodyHash;
+		}
+
+	}
+
+}
@@ -12,11 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.diff;
 
-import org.jacoco.core.analysis.CoverageBuilder;
-import org.objectweb.asm.Type;
-
 import java.util.List;
-import java.util.stream.Stream;
 
 /**
  * @ProjectName: root
@@ -30,101 +26,187 @@ import java.util.stream.Stream;
  */
 public class CodeDiffUtil {
 
-	private final static String OPERATE_ADD = "ADD";
+	/**
+	 * 新增类的修改类型，新增类中所有方法都视为差异代码
+	 */
+	public static final String OPERATE_ADD = "ADD";
+
+	private CodeDiffUtil() {
+		// no instances
+	}
 
 	/**
-	 * 检测类是否在差异代码中
+	 * 将差异代码中的源码参数列表转换为匹配用的key，格式：String,int[],Map
 	 *
-	 * @param className
-	 * @return Boolean
+	 * @param params
+	 *            源码参数，格式：final @NotNull String a，可以为
+	 *            <code>null</code>
+	 * @return 参数key
 	 */
-	public static Boolean checkClassIn(String className) {
-		if (null == CoverageBuilder.classInfos
-				|| CoverageBuilder.classInfos.isEmpty() || null == className) {
-			return Boolean.FALSE;
+	public static String sourceParametersKey(final List<String> params) {
+		if (params == null || params.isEmpty()) {
+			return "";
+		}
+		final StringBuilder key = new StringBuilder();
+		for (final String param : params) {
+			if (key.length() > 0) {
+				key.append(',');
+			}
+			key.append(normalizeSourceParameter(param));
 		}
-		// 这里要考虑匿名内部类的问题
-		return CoverageBuilder.classInfos.stream()
-				.anyMatch(c -> className.equals(c.getClassFile())
-						|| className.split("\\$")[0].equals(c.getClassFile()));
+		return key.toString();
 	}
 
 	/**
-	 * 检测方法是否在差异代码中
+	 * 将ASM方法描述符转换为匹配用的key，只保留参数类型的简单类名，格式同
+	 * {@link #sourceParametersKey(List)}
 	 *
-	 * @param className
-	 * @param methodName
-	 * @return Boolean
+	 * @param desc
+	 *            方法描述符，格式：(ILjava/lang/String;[I)V
+	 * @return 参数key
 	 */
-	public static Boolean checkMethodIn(String className, String methodName,
-			String desc, List<ClassInfoDto> classInfos) {
-		// 参数校验
-		if (null == classInfos
-				|| classInfos.isEmpty() || null == methodName
-				|| null == className) {
-			return Boolean.FALSE;
-		}
-		ClassInfoDto classInfoDto = classInfos.stream()
-				.filter(c -> className.equals(c.getClassFile())
-						|| className.split("\\$")[0].equals(c.getClassFile()))
-				.findFirst().orElse(null);
-		if (null == classInfoDto) {
-			return Boolean.FALSE;
+	public static String descriptorParametersKey(final String desc) {
+		if (desc == null || desc.length() < 2 || desc.charAt(1) == ')') {
+			return "";
 		}
-		// 如果是新增类，不用匹配方法，直接运行
-		if (OPERATE_ADD.equals(classInfoDto.getType())) {
-			return Boolean.TRUE;
-		}
-		if (null == classInfoDto.getMethodInfos()
-				|| classInfoDto.getMethodInfos().isEmpty()) {
-			return Boolean.FALSE;
-		}
-		// 匹配了方法，参数也需要校验
-		return classInfoDto.getMethodInfos().stream().anyMatch(m -> {
-			if (methodName.equals(m.getMethodName())) {
-				return checkParamsIn(m.getParameters(), desc);
+		final StringBuilder key = new StringBuilder();
+		int pos = 1;
+		while (desc.charAt(pos) != ')') {
+			if (pos > 1) {
+				key.append(',');
+			}
+			int dims = 0;
+			while (desc.charAt(pos) == '[') {
+				dims++;
+				pos++;
+			}
+			if (desc.charAt(pos) == 'L') {
+				final int end = desc.indexOf(';', pos);
+				// 去掉包名和外部类名，只保留最后一段
+				int begin = pos + 1;
+				for (int i = begin; i < end; i++) {
+					final char c = desc.charAt(i);
+					if (c == '/' || c == '$') {
+						begin = i + 1;
+					}
+				}
+				key.append(desc, begin, end);
+				pos = end + 1;
 			} else {
-				return Boolean.FALSE;
+				key.append(primitiveName(desc.charAt(pos)));
+				pos++;
 			}
-		});
-
+			for (int i = 0; i < dims; i++) {
+				key.append("[]");
+			}
+		}
+		return key.toString();
 	}
 
 	/**
-	 * 匹配餐数
+	 * 规范化单个源码参数：去掉注解、泛型、修饰符、参数名以及包名，可变参数按数组处理
 	 *
-	 * @param params
-	 *            格式：String a
-	 * @param desc
-	 *            转换后格式： java.lang.String
-	 * @return
+	 * @param param
+	 *            源码参数，格式：@RequestParam(value = "a") final
+	 *            java.util.Map&lt;String, Object&gt; a
+	 * @return 规范化的类型，格式：Map
 	 */
-	public static Boolean checkParamsIn(List<String> params, String desc) {
-		// 解析ASM获取的参数
-		Type[] argumentTypes = Type.getArgumentTypes(desc);
-		// 说明是无参数的方法，匹配成功
-		if (params.size() == 0 && argumentTypes.length == 0) {
-			return Boolean.TRUE;
+	static String normalizeSourceParameter(final String param) {
+		if (param == null) {
+			return "";
 		}
-		String[] diffParams = params.toArray(new String[params.size()]);
-		// 只有参数数量完全相等才做下一次比较，Type格式：I C Ljava/lang/String;
-		if (diffParams.length > 0
-				&& argumentTypes.length == diffParams.length) {
-			for (int i = 0; i < argumentTypes.length; i++) {
-				// 去掉包名只保留最后一位匹配,getClassName格式： int java/lang/String
-				String[] args = argumentTypes[i].getClassName().split("\\.");
-				String arg = args[args.length - 1];
-				// 如果参数是内部类类型，再截取下
-				if (arg.contains("$")) {
-					arg = arg.split("\\$")[arg.split("\\$").length - 1];
-				}
-				if (!diffParams[i].contains(arg)) {
-					return Boolean.FALSE;
-				}
+		final StringBuilder stripped = new StringBuilder(param.length());
+		final int length = param.length();
+		int i = 0;
+		while (i < length) {
+			final char c = param.charAt(i);
+			if (c == '@') {
+				i = skipAnnotation(param, i + 1);
+			} else if (c == '<') {
+				i = skipBalanced(param, i, '<', '>');
+			} else {
+				stripped.append(c);
+				i++;
+			}
+		}
+		String type = null;
+		int dims = 0;
+		for (final String token : stripped.toString().replace("...", " [] ")
+				.replace("[", " [").trim().split("\\s+")) {
+			if (token.length() == 0 || "final".equals(token)) {
+				continue;
+			}
+			if (token.startsWith("[")) {
+				dims++;
+			} else if (type == null) {
+				type = token;
+			}
+		}
+		if (type == null) {
+			return "";
+		}
+		type = type.substring(Math.max(type.lastIndexOf('.'),
+				type.lastIndexOf('$')) + 1);
+		final StringBuilder result = new StringBuilder(type);
+		for (int d = 0; d < dims; d++) {
+			result.append("[]");
+		}
+		return result.toString();
+	}
+
+	private static int skipAnnotation(final String s, int pos) {
+		while (pos < s.length() && (Character.isJavaIdentifierPart(s.charAt(pos))
+				|| s.charAt(pos) == '.')) {
+			pos++;
+		}
+		int next = pos;
+		while (next < s.length() && Character.isWhitespace(s.charAt(next))) {
+			next++;
+		}
+		if (next < s.length() && s.charAt(next) == '(') {
+			return skipBalanced(s, next, '(', ')');
+		}
+		return pos;
+	}
+
+	private static int skipBalanced(final String s, int pos, final char open,
+			final char close) {
+		int depth = 0;
+		boolean quoted = false;
+		for (; pos < s.length(); pos++) {
+			final char c = s.charAt(pos);
+			if (c == '"' && s.charAt(pos - 1) != '\\') {
+				quoted = !quoted;
+			} else if (!quoted && c == open) {
+				depth++;
+			} else if (!quoted && c == close && --depth == 0) {
+				return pos + 1;
 			}
-			// 只有个数和类型全匹配到才算匹配
-			return Boolean.TRUE;
 		}
-		return Boolean.FALSE;
+		return pos;
+	}
+
+	private static String primitiveName(final char descriptor) {
+		switch (descriptor) {
+		case 'Z':
+			return "boolean";
+		case 'C':
+			return "char";
+		case 'B':
+			return "byte";
+		case 'S':
+			return "short";
+		case 'I':
+			return "int";
+		case 'F':
+			return "float";
+		case 'J':
+			return "long";
+		case 'D':
+			return "double";
+		default:
+			throw new IllegalArgumentException(
+					"Invalid descriptor type " + descriptor);
+		}
 	}
 }
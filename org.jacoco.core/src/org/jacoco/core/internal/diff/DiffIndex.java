@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jacoco.core.analysis.IDiffFilter;
+
+/**
+ * Precompiled lookup structure for a code diff. Classes are indexed by the VM
+ * name of their outer class. Methods are indexed by name and either their exact
+ * JVM descriptor, if the diff provides one, or their normalized source
+ * parameter list. Descriptors of visited methods are converted to parameter
+ * lists only once and cached, so checks during analysis are simple hash
+ * lookups. The cache is thread safe.
+ *
+ * An index is filled by its constructor or, while a diff is read, by
+ * {@link DiffReader} through the package private add methods. It must not be
+ * modified afterwards. From then on it may be used concurrently.
+ */
+public final class DiffIndex implements IDiffFilter {
+
+	private final Map<String, ClassEntry> classes;
+
+	private final ConcurrentHashMap<String, String> parameterKeys;
+
+	/**
+	 * Creates a new index for the given diff.
+	 *
+	 * @param classInfos
+	 *            classes of the diff, may be <code>null</code>
+	 */
+	public DiffIndex(final List<ClassInfoDto> classInfos) {
+		this();
+		if (classInfos != null) {
+			for (final ClassInfoDto classInfo : classInfos) {
+				add(classInfo);
+			}
+		}
+	}
+
+	/**
+	 * Creates an empty index to be filled with {@link #addClass},
+	 * {@link #addMethod} and {@link #addMethodDescriptor} before it is used.
+	 */
+	DiffIndex() {
+		this.classes = new HashMap<String, ClassEntry>();
+		this.parameterKeys = new ConcurrentHashMap<String, String>();
+	}
+
+	private void add(final ClassInfoDto classInfo) {
+		final String classFile = classInfo.getClassFile();
+		if (classFile == null) {
+			return;
+		}
+		addClass(classFile,
+				CodeDiffUtil.OPERATE_ADD.equals(classInfo.getType()));
+		final List<MethodInfoDto> methodInfos = classInfo.getMethodInfos();
+		if (methodInfos != null) {
+			for (final MethodInfoDto methodInfo : methodInfos) {
+				if (methodInfo.getMethodName() == null) {
+					continue;
+				}
+				if (methodInfo.getDesc() != null) {
+					addMethodDescriptor(classFile, methodInfo.getMethodName(),
+							methodInfo.getDesc());
+				} else {
+					addMethod(classFile, methodInfo.getMethodName(),
+							CodeDiffUtil.sourceParametersKey(
+									methodInfo.getParameters()));
+				}
+			}
+		}
+	}
+
+	void addClass(final String classFile, final boolean added) {
+		ClassEntry entry = classes.get(classFile);
+		if (entry == null) {
+			entry = new ClassEntry();
+			classes.put(classFile, entry);
+		}
+		if (added) {
+			entry.added = true;
+		}
+	}
+
+	void addMethod(final String classFile, final String methodName,
+			final String parametersKey) {
+		add(classes.get(classFile).methods, methodName, parametersKey);
+	}
+
+	void addMethodDescriptor(final String classFile, final String methodName,
+			final String desc) {
+		add(classes.get(classFile).descriptors, methodName, desc);
+	}
+
+	/**
+	 * Creates a new index with the methods of this index which are not
+	 * contained in the given index. Classes of this index which are not
+	 * contained in the given index at all are taken over unchanged, including
+	 * their type. Classes without remaining methods are dropped.
+	 *
+	 * @param changed
+	 *            methods to remove
+	 * @return new index with the remaining methods
+	 */
+	public DiffIndex without(final DiffIndex changed) {
+		final DiffIndex result = new DiffIndex();
+		for (final Map.Entry<String, ClassEntry> c : classes.entrySet()) {
+			final ClassEntry other = changed.classes.get(c.getKey());
+			final ClassEntry entry = new ClassEntry();
+			for (final Map.Entry<String, Set<String>> m : c.getValue().methods
+					.entrySet()) {
+				for (final String parametersKey : m.getValue()) {
+					if (other == null || !changed.containsSourceMethod(other,
+							m.getKey(), parametersKey)) {
+						add(entry.methods, m.getKey(), parametersKey);
+					}
+				}
+			}
+			for (final Map.Entry<String, Set<String>> m : c
+					.getValue().descriptors.entrySet()) {
+				for (final String desc : m.getValue()) {
+					if (other == null
+							|| !changed.containsMethod(other, m.getKey(), desc)) {
+						add(entry.descriptors, m.getKey(), desc);
+					}
+				}
+			}
+			if (!entry.methods.isEmpty() || !entry.descriptors.isEmpty()) {
+				entry.added = other == null && c.getValue().added;
+				result.classes.put(c.getKey(), entry);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether this index contains no class at all.
+	 *
+	 * @return <code>true</code> if the diff is empty
+	 */
+	public boolean isEmpty() {
+		return classes.isEmpty();
+	}
+
+	public boolean containsClass(final String className) {
+		return getClassEntry(className) != null;
+	}
+
+	public boolean containsMethod(final String className,
+			final String methodName, final String desc) {
+		final ClassEntry entry = getClassEntry(className);
+		if (entry == null || methodName == null) {
+			return false;
+		}
+		// All methods of added classes are part of the diff:
+		if (entry.added) {
+			return true;
+		}
+		return containsMethod(entry, methodName, desc);
+	}
+
+	private boolean containsMethod(final ClassEntry entry,
+			final String methodName, final String desc) {
+		final Set<String> descriptors = entry.descriptors.get(methodName);
+		if (descriptors != null && descriptors.contains(desc)) {
+			return true;
+		}
+		final Set<String> overloads = entry.methods.get(methodName);
+		return overloads != null && overloads.contains(parametersKey(desc));
+	}
+
+	private boolean containsSourceMethod(final ClassEntry entry,
+			final String methodName, final String parametersKey) {
+		final Set<String> overloads = entry.methods.get(methodName);
+		if (overloads != null && overloads.contains(parametersKey)) {
+			return true;
+		}
+		final Set<String> descriptors = entry.descriptors.get(methodName);
+		if (descriptors != null) {
+			for (final String desc : descriptors) {
+				if (parametersKey(desc).equals(parametersKey)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private String parametersKey(final String desc) {
+		String key = parameterKeys.get(desc);
+		if (key == null) {
+			key = CodeDiffUtil.descriptorParametersKey(desc);
+			parameterKeys.putIfAbsent(desc, key);
+		}
+		return key;
+	}
+
+	private ClassEntry getClassEntry(final String className) {
+		if (className == null) {
+			return null;
+		}
+		final ClassEntry entry = classes.get(className);
+		if (entry != null) {
+			return entry;
+		}
+		// Nested and anonymous classes belong to the source of their outer
+		// class:
+		final int idx = className.indexOf('$');
+		if (idx == -1) {
+			return null;
+		}
+		return classes.get(className.substring(0, idx));
+	}
+
+	private static void add(final Map<String, Set<String>> map,
+			final String name, final String value) {
+		Set<String> values = map.get(name);
+		if (values == null) {
+			values = new HashSet<String>();
+			map.put(name, values);
+		}
+		values.add(value);
+	}
+
+	private static class ClassEntry {
+
+		boolean added;
+
+		/** Normalized source parameter lists by method name. */
+		final Map<String, Set<String>> methods = new HashMap<String, Set<String>>();
+
+		/** Exact JVM descriptors by method name. */
+		final Map<String, Set<String>> descriptors = new HashMap<String, Set<String>>();
+
+	}
+
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads a diff in the JSON format of {@link ClassInfoDto} directly into a
+ * {@link DiffIndex}. The JSON document is processed token by token, so neither
+ * the document nor the DTOs are held in memory. Unknown attributes like the
+ * changed lines are skipped. Methods with a <code>desc</code> attribute are
+ * matched by their exact JVM descriptor, all others by their parameters.
+ */
+public final class DiffReader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private DiffReader() {
+	}
+
+	/**
+	 * Reads the diff from the given file. Files compressed with gzip are
+	 * detected automatically.
+	 *
+	 * @param file
+	 *            UTF-8 encoded JSON file, optionally gzip compressed
+	 * @return index of the diff
+	 * @throws IOException
+	 *             if the file can't be read or does not contain a valid diff
+	 */
+	public static DiffIndex read(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the diff from the given stream. Streams compressed with gzip are
+	 * detected automatically. The stream is not closed by this method.
+	 *
+	 * @param input
+	 *            UTF-8 encoded JSON, optionally gzip compressed
+	 * @return index of the diff
+	 * @throws IOException
+	 *             if the stream can't be read or does not contain a valid diff
+	 */
+	public static DiffIndex read(final InputStream input) throws IOException {
+		InputStream in = new BufferedInputStream(input, BUFFER_SIZE);
+		if (isGzip(in)) {
+			in = new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		return read(new InputStreamReader(in, "UTF-8"));
+	}
+
+	private static boolean isGzip(final InputStream in) throws IOException {
+		in.mark(2);
+		final int b1 = in.read();
+		final int b2 = in.read();
+		in.reset();
+		return b1 == 0x1f && b2 == 0x8b;
+	}
+
+	/**
+	 * Reads the diff from the given reader. The reader is not closed by this
+	 * method.
+	 *
+	 * @param input
+	 *            JSON array of classes
+	 * @return index of the diff
+	 * @throws IOException
+	 *             if the reader fails or does not contain a valid diff
+	 */
+	public static DiffIndex read(final Reader input) throws IOException {
+		final DiffIndex index = new DiffIndex();
+		final JsonReader reader = new JsonReader(input);
+		reader.setLenient(true);
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return index;
+		}
+		reader.beginArray();
+		while (reader.hasNext()) {
+			readClass(reader, index);
+		}
+		reader.endArray();
+		return index;
+	}
+
+	private static void readClass(final JsonReader reader,
+			final DiffIndex index) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return;
+		}
+		String classFile = null;
+		String type = null;
+		// Attribute order is not defined, so methods are buffered per class:
+		final List<String[]> methods = new ArrayList<String[]>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if ("classFile".equals(name)) {
+				classFile = nextString(reader);
+			} else if ("type".equals(name)) {
+				type = nextString(reader);
+			} else if ("methodInfos".equals(name)
+					&& reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readMethod(reader, methods);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		if (classFile == null) {
+			return;
+		}
+		index.addClass(classFile, CodeDiffUtil.OPERATE_ADD.equals(type));
+		for (final String[] method : methods) {
+			if (method[1] != null) {
+				index.addMethodDescriptor(classFile, method[0], method[1]);
+			} else {
+				index.addMethod(classFile, method[0], method[2]);
+			}
+		}
+	}
+
+	private static void readMethod(final JsonReader reader,
+			final List<String[]> methods) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return;
+		}
+		String methodName = null;
+		String desc = null;
+		List<String> parameters = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			final String name = reader.nextName();
+			if ("methodName".equals(name)) {
+				methodName = nextString(reader);
+			} else if ("desc".equals(name)) {
+				desc = nextString(reader);
+			} else if ("parameters".equals(name)
+					&& reader.peek() == JsonToken.BEGIN_ARRAY) {
+				parameters = new ArrayList<String>();
+				reader.beginArray();
+				while (reader.hasNext()) {
+					parameters.add(nextString(reader));
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		if (methodName != null) {
+			methods.add(new String[] { methodName, desc, desc != null ? null
+					: CodeDiffUtil.sourceParametersKey(parameters) });
+		}
+	}
+
+	private static String nextString(final JsonReader reader)
+			throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+
+}
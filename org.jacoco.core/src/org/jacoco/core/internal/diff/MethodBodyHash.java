@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Calculates a 64 bit FNV-1a hash over the instructions and exception handlers
+ * of a method. Line numbers and stackmap frames are not considered, so a method
+ * keeps its hash if only code before it has been changed. Bootstrap arguments of
+ * <code>invokedynamic</code> are ignored as they contain the names of
+ * synthetic lambda methods which change with unrelated lambdas of the class.
+ */
+final class MethodBodyHash {
+
+	private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+	private static final long PRIME = 0x100000001b3L;
+
+	private final Map<LabelNode, Integer> labels = new IdentityHashMap<LabelNode, Integer>();
+
+	private long hash = OFFSET_BASIS;
+
+	private MethodBodyHash() {
+	}
+
+	/**
+	 * Calculates the hash of the given method body.
+	 *
+	 * @param method
+	 *            method to hash
+	 * @return hash value
+	 */
+	static long hash(final MethodNode method) {
+		final MethodBodyHash h = new MethodBodyHash();
+		for (final AbstractInsnNode i : method.instructions) {
+			if (i.getType() == AbstractInsnNode.LABEL) {
+				h.labels.put((LabelNode) i,
+						Integer.valueOf(h.labels.size()));
+			}
+		}
+		for (final AbstractInsnNode i : method.instructions) {
+			h.update(i);
+		}
+		for (final TryCatchBlockNode t : method.tryCatchBlocks) {
+			h.update(t.start);
+			h.update(t.end);
+			h.update(t.handler);
+			h.update(t.type);
+		}
+		return h.hash;
+	}
+
+	private void update(final AbstractInsnNode i) {
+		switch (i.getType()) {
+		case AbstractInsnNode.LINE:
+		case AbstractInsnNode.FRAME:
+			return;
+		case AbstractInsnNode.LABEL:
+			update(-1);
+			return;
+		default:
+			update(i.getOpcode());
+		}
+		switch (i.getType()) {
+		case AbstractInsnNode.INT_INSN:
+			update(((IntInsnNode) i).operand);
+			break;
+		case AbstractInsnNode.VAR_INSN:
+			update(((VarInsnNode) i).var);
+			break;
+		case AbstractInsnNode.TYPE_INSN:
+			update(((TypeInsnNode) i).desc);
+			break;
+		case AbstractInsnNode.FIELD_INSN:
+			final FieldInsnNode f = (FieldInsnNode) i;
+			update(f.owner);
+			update(f.name);
+			update(f.desc);
+			break;
+		case AbstractInsnNode.METHOD_INSN:
+			final MethodInsnNode m = (MethodInsnNode) i;
+			update(m.owner);
+			update(m.name);
+			update(m.desc);
+			break;
+		case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+			final InvokeDynamicInsnNode d = (InvokeDynamicInsnNode) i;
+			update(d.name);
+			update(d.desc);
+			break;
+		case AbstractInsnNode.JUMP_INSN:
+			update(((JumpInsnNode) i).label);
+			break;
+		case AbstractInsnNode.LDC_INSN:
+			update(String.valueOf(((LdcInsnNode) i).cst));
+			break;
+		case AbstractInsnNode.IINC_INSN:
+			final IincInsnNode n = (IincInsnNode) i;
+			update(n.var);
+			update(n.incr);
+			break;
+		case AbstractInsnNode.TABLESWITCH_INSN:
+			final TableSwitchInsnNode t = (TableSwitchInsnNode) i;
+			update(t.min);
+			update(t.max);
+			update(t.dflt);
+			for (final LabelNode l : t.labels) {
+				update(l);
+			}
+			break;
+		case AbstractInsnNode.LOOKUPSWITCH_INSN:
+			final LookupSwitchInsnNode s = (LookupSwitchInsnNode) i;
+			update(s.dflt);
+			for (final Integer key : s.keys) {
+				update(key.intValue());
+			}
+			for (final LabelNode l : s.labels) {
+				update(l);
+			}
+			break;
+		case AbstractInsnNode.MULTIANEWARRAY_INSN:
+			final MultiANewArrayInsnNode a = (MultiANewArrayInsnNode) i;
+			update(a.desc);
+			update(a.dims);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void update(final LabelNode label) {
+		final Integer index = labels.get(label);
+		update(index == null ? -1 : index.intValue());
+	}
+
+	private void update(final String s) {
+		if (s == null) {
+			update(-1);
+			return;
+		}
+		update(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			update(s.charAt(i));
+		}
+	}
+
+	private void update(final int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash ^= (value >>> shift) & 0xff;
+			hash *= PRIME;
+		}
+	}
+
+}
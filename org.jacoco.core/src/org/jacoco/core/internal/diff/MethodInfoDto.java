@@ -27,6 +27,10 @@ public class MethodInfoDto {
 	 * 方法参数
 	 */
 	public List<String> parameters;
+	/**
+	 * 方法的JVM描述符，例如(Ljava/lang/String;I)V，可选。提供时按描述符精确匹配，不再比较参数
+	 */
+	public String desc;
 
 	public String getMethodName() {
 		return methodName;
@@ -44,6 +48,14 @@ public class MethodInfoDto {
 		this.parameters = parameters;
 	}
 
+	public String getDesc() {
+		return desc;
+	}
+
+	public void setDesc(String desc) {
+		this.desc = desc;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if(obj instanceof MethodInfoDto){
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.internal.diff.ClassProbeRanges.MethodRange;
+
+/**
+ * Persistent form of the {@link ClassProbeRanges} of a build. Merges with
+ * older builds can use the index instead of scanning their class files again.
+ * The binary format is designed to be memory mapped: a directory sorted by
+ * class name allows binary search and only the records of requested classes
+ * are decoded.
+ *
+ * <pre>
+ * header:    int magic, int version, int classCount, int stringsBase
+ * directory: classCount * (int nameOffset, int recordOffset)
+ * records:   long id, int probeCount, int methodCount,
+ *            methodCount * (int nameOffset, int descOffset,
+ *                           int start, int end, long bodyHash)
+ * strings:   int length, UTF-8 bytes
+ * </pre>
+ *
+ * Record offsets are absolute, string offsets are relative to
+ * <code>stringsBase</code>. All values are big endian.
+ */
+public final class ProbeIndex {
+
+	private static final int MAGIC = 0x4A504958;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int DIRECTORY_ENTRY_SIZE = 8;
+
+	private static final int METHOD_SIZE = 24;
+
+	private static final String CHARSET = "UTF-8";
+
+	private final ByteBuffer buffer;
+
+	private final int classCount;
+
+	private final int stringsBase;
+
+	/**
+	 * Creates an index view on the given buffer.
+	 *
+	 * @param buffer
+	 *            buffer with the content of an index file
+	 * @throws IOException
+	 *             if the buffer does not contain a valid index
+	 */
+	public ProbeIndex(final ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Invalid probe index.");
+		}
+		final int version = buffer.getInt(4);
+		if (version != FORMAT_VERSION) {
+			throw new IOException(
+					String.format("Unsupported probe index version %s.",
+							Integer.valueOf(version)));
+		}
+		this.buffer = buffer;
+		this.classCount = buffer.getInt(8);
+		this.stringsBase = buffer.getInt(12);
+	}
+
+	/**
+	 * Maps the given index file into memory.
+	 *
+	 * @param file
+	 *            index file
+	 * @return index view on the file
+	 * @throws IOException
+	 *             if the file can't be read or is not a valid index
+	 */
+	public static ProbeIndex map(final File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			return new ProbeIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * @return number of classes in this index
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * Looks up the probe layout of the given class.
+	 *
+	 * @param className
+	 *            VM name of the class
+	 * @return layout or <code>null</code> if the class is not contained
+	 * @throws IOException
+	 *             if the index is corrupt
+	 */
+	public ClassProbeRanges getClassRanges(final String className)
+			throws IOException {
+		int low = 0;
+		int high = classCount - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int entry = HEADER_SIZE + mid * DIRECTORY_ENTRY_SIZE;
+			final int cmp = readString(buffer.getInt(entry))
+					.compareTo(className);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return readRecord(className, buffer.getInt(entry + 4));
+			}
+		}
+		return null;
+	}
+
+	private ClassProbeRanges readRecord(final String className, int pos)
+			throws IOException {
+		final ClassProbeRanges ranges = new ClassProbeRanges(className,
+				buffer.getLong(pos));
+		ranges.setProbeCount(buffer.getInt(pos + 8));
+		final int methodCount = buffer.getInt(pos + 12);
+		pos += 16;
+		for (int i = 0; i < methodCount; i++) {
+			ranges.addMethod(readString(buffer.getInt(pos)),
+					readString(buffer.getInt(pos + 4)), buffer.getInt(pos + 8),
+					buffer.getInt(pos + 12), buffer.getLong(pos + 16));
+			pos += METHOD_SIZE;
+		}
+		return ranges;
+	}
+
+	private String readString(final int offset) throws IOException {
+		final ByteBuffer b = buffer.duplicate();
+		b.position(stringsBase + offset);
+		final byte[] bytes = new byte[b.getInt()];
+		b.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Writes an index for the given classes.
+	 *
+	 * @param classes
+	 *            probe layouts of all classes of a build
+	 * @param out
+	 *            stream to write the index to
+	 * @throws IOException
+	 *             if the index can't be written
+	 */
+	public static void write(final Collection<ClassProbeRanges> classes,
+			final OutputStream out) throws IOException {
+		final List<ClassProbeRanges> sorted = new ArrayList<ClassProbeRanges>(
+				classes);
+		Collections.sort(sorted, new Comparator<ClassProbeRanges>() {
+			public int compare(final ClassProbeRanges c1,
+					final ClassProbeRanges c2) {
+				return c1.getName().compareTo(c2.getName());
+			}
+		});
+		final StringTable strings = new StringTable();
+		final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+		final DataOutputStream records = new DataOutputStream(recordBuffer);
+		final int recordsBase = HEADER_SIZE
+				+ sorted.size() * DIRECTORY_ENTRY_SIZE;
+		final int[] directory = new int[sorted.size() * 2];
+		for (int i = 0; i < sorted.size(); i++) {
+			final ClassProbeRanges c = sorted.get(i);
+			directory[2 * i] = strings.offset(c.getName());
+			directory[2 * i + 1] = recordsBase + records.size();
+			records.writeLong(c.getId());
+			records.writeInt(c.getProbeCount());
+			records.writeInt(c.getMethods().size());
+			for (final MethodRange m : c.getMethods()) {
+				records.writeInt(strings.offset(m.getName()));
+				records.writeInt(strings.offset(m.getDesc()));
+				records.writeInt(m.getStart());
+				records.writeInt(m.getEnd());
+				records.writeLong(m.getBodyHash());
+			}
+		}
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(FORMAT_VERSION);
+		data.writeInt(sorted.size());
+		data.writeInt(recordsBase + records.size());
+		for (final int value : directory) {
+			data.writeInt(value);
+		}
+		recordBuffer.writeTo(data);
+		strings.buffer.writeTo(data);
+		data.flush();
+	}
+
+	private static class StringTable {
+
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+		private final DataOutputStream out = new DataOutputStream(buffer);
+
+		private final Map<String, Integer> offsets = new HashMap<String, Integer>();
+
+		int offset(final String s) throws IOException {
+			Integer offset = offsets.get(s);
+			if (offset == null) {
+				offset = Integer.valueOf(out.size());
+				final byte[] bytes = s.getBytes(CHARSET);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				offsets.put(s, offset);
+			}
+			return offset.intValue();
+		}
+
+	}
+
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ProbeBits;
+import org.jacoco.core.internal.diff.ClassProbeRanges.MethodRange;
+
+/**
+ * Maps the probes of unchanged methods recorded for an older version of the
+ * classes into the execution data of the current version. Methods are matched
+ * by class name, method name and descriptor, verified by their body hash and
+ * their probes are copied range by range, so the current classes only have to
+ * be analyzed once after all older versions have been merged.
+ */
+public final class ProbeMerger {
+
+	private final Map<String, ClassProbeRanges> layout;
+
+	private final ExecutionDataStore target;
+
+	private final List<String> mismatches;
+
+	/**
+	 * Creates a merger writing to the given execution data.
+	 *
+	 * @param layout
+	 *            probe layout of the current classes by VM class name
+	 * @param target
+	 *            execution data of the current classes
+	 */
+	public ProbeMerger(final Map<String, ClassProbeRanges> layout,
+			final ExecutionDataStore target) {
+		this.layout = layout;
+		this.target = target;
+		this.mismatches = new ArrayList<String>();
+	}
+
+	/**
+	 * Merges the executed probes of all unchanged methods of an older version.
+	 *
+	 * @param source
+	 *            probe layout of the older classes by VM class name
+	 * @param sourceData
+	 *            execution data of the older classes
+	 * @param unchanged
+	 *            methods which are identical in both versions
+	 * @return number of methods mapped to the current classes
+	 */
+	public int merge(final Map<String, ClassProbeRanges> source,
+			final ExecutionDataStore sourceData, final IDiffFilter unchanged) {
+		int mapped = 0;
+		for (final ClassProbeRanges targetClass : layout.values()) {
+			final ClassProbeRanges sourceClass = source
+					.get(targetClass.getName());
+			if (sourceClass != null) {
+				mapped += mergeClass(targetClass, sourceClass, sourceData,
+						unchanged);
+			}
+		}
+		return mapped;
+	}
+
+	/**
+	 * Merges the executed probes of all unchanged methods of an older version
+	 * described by a persistent index.
+	 *
+	 * @param source
+	 *            probe index of the older build
+	 * @param sourceData
+	 *            execution data of the older classes
+	 * @param unchanged
+	 *            methods which are identical in both versions
+	 * @return number of methods mapped to the current classes
+	 * @throws IOException
+	 *             if the index is corrupt
+	 */
+	public int merge(final ProbeIndex source,
+			final ExecutionDataStore sourceData, final IDiffFilter unchanged)
+			throws IOException {
+		int mapped = 0;
+		for (final ClassProbeRanges targetClass : layout.values()) {
+			if (!unchanged.containsClass(targetClass.getName())) {
+				continue;
+			}
+			final ClassProbeRanges sourceClass = source
+					.getClassRanges(targetClass.getName());
+			if (sourceClass != null) {
+				mapped += mergeClass(targetClass, sourceClass, sourceData,
+						unchanged);
+			}
+		}
+		return mapped;
+	}
+
+	private int mergeClass(final ClassProbeRanges targetClass,
+			final ClassProbeRanges sourceClass,
+			final ExecutionDataStore sourceData, final IDiffFilter unchanged) {
+		final ExecutionData data = sourceData.get(sourceClass.getId());
+		if (data == null) {
+			return 0;
+		}
+		int mapped = 0;
+		for (final MethodRange sourceMethod : sourceClass.getMethods()) {
+			if (!unchanged.containsMethod(sourceClass.getName(),
+					sourceMethod.getName(), sourceMethod.getDesc())) {
+				continue;
+			}
+			final MethodRange targetMethod = targetClass
+					.getMethod(sourceMethod.getName(), sourceMethod.getDesc());
+			if (targetMethod == null) {
+				continue;
+			}
+			if (targetMethod.getLength() != sourceMethod.getLength()
+					|| targetMethod.getBodyHash() != sourceMethod.getBodyHash()
+					|| sourceMethod.getEnd() > data.getProbeCount()) {
+				mismatches.add(sourceClass.getName() + "."
+						+ sourceMethod.getName() + sourceMethod.getDesc());
+				continue;
+			}
+			mergeRange(targetClass, targetMethod.getStart(),
+					data.getProbeBits(), sourceMethod.getStart(),
+					sourceMethod.getLength());
+			mapped++;
+		}
+		return mapped;
+	}
+
+	private void mergeRange(final ClassProbeRanges targetClass,
+			final int targetStart, final ProbeBits sourceProbes,
+			final int sourceStart, final int length) {
+		ProbeBits carried = null;
+		for (int i = 0; i < length; i++) {
+			if (sourceProbes.get(sourceStart + i)) {
+				if (carried == null) {
+					carried = new ProbeBits(targetClass.getProbeCount());
+				}
+				carried.set(targetStart + i);
+			}
+		}
+		if (carried != null) {
+			// Classes not executed in the current version have no execution
+			// data yet, otherwise the probes are merged word by word:
+			target.put(new ExecutionData(targetClass.getId(),
+					targetClass.getName(), carried));
+		}
+	}
+
+	/**
+	 * Returns the methods which are unchanged according to the diff but whose
+	 * probe counts or bodies differ between the versions. Such methods are not
+	 * merged.
+	 *
+	 * @return qualified names of the mismatching methods
+	 */
+	public List<String> getMismatches() {
+		return mismatches;
+	}
+
+}
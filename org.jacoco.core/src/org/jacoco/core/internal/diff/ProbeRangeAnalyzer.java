@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.internal.diff;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IDiffFilter;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Collects the {@link ClassProbeRanges} of the classes and methods contained in
+ * a diff or of all classes. Only probe ids and method hashes are calculated, no
+ * coverage, which makes this much cheaper than a full analysis. All sources
+ * supported by {@link Analyzer} can be scanned.
+ */
+public class ProbeRangeAnalyzer extends Analyzer {
+
+	private final IDiffFilter diffFilter;
+
+	private final Map<String, ClassProbeRanges> classes;
+
+	/**
+	 * Creates a new analyzer recording the methods of the given diff.
+	 *
+	 * @param diffFilter
+	 *            classes and methods to record or <code>null</code> to record
+	 *            all methods
+	 */
+	public ProbeRangeAnalyzer(final IDiffFilter diffFilter) {
+		super(new ExecutionDataStore(), null, diffFilter);
+		this.diffFilter = diffFilter;
+		this.classes = new HashMap<String, ClassProbeRanges>();
+	}
+
+	/**
+	 * Returns the layouts recorded so far.
+	 *
+	 * @return layouts by VM class name
+	 */
+	public Map<String, ClassProbeRanges> getClasses() {
+		return classes;
+	}
+
+	@Override
+	public void analyzeClass(final byte[] buffer, final String location)
+			throws IOException {
+		if (isExcludedByDiff(buffer)) {
+			return;
+		}
+		try {
+			final ClassProbeRanges ranges = scan(buffer);
+			if (ranges != null) {
+				classes.put(ranges.getName(), ranges);
+			}
+		} catch (final RuntimeException cause) {
+			throw analyzerError(location, cause);
+		}
+	}
+
+	private ClassProbeRanges scan(final byte[] source) {
+		final ClassReader reader = InstrSupport.classReaderFor(source);
+		if ((reader.getAccess()
+				& (Opcodes.ACC_MODULE | Opcodes.ACC_SYNTHETIC)) != 0) {
+			return null;
+		}
+		final String className = reader.getClassName();
+		if (diffFilter != null && !diffFilter.containsClass(className)) {
+			return null;
+		}
+		final ClassProbeRanges ranges = new ClassProbeRanges(className,
+				CRC64.classId(source));
+		final RangeVisitor visitor = new RangeVisitor(ranges);
+		final ClassProbesAdapter adapter = new ClassProbesAdapter(visitor,
+				false);
+		visitor.adapter = adapter;
+		reader.accept(adapter, 0);
+		return ranges;
+	}
+
+	private class RangeVisitor extends ClassProbesVisitor {
+
+		private final ClassProbeRanges ranges;
+
+		ClassProbesAdapter adapter;
+
+		RangeVisitor(final ClassProbeRanges ranges) {
+			this.ranges = ranges;
+		}
+
+		@Override
+		public MethodProbesVisitor visitMethod(final int access,
+				final String name, final String desc, final String signature,
+				final String[] exceptions) {
+			if (diffFilter != null && !diffFilter.containsMethod(
+					ranges.getName(), name, desc)) {
+				return null;
+			}
+			return new MethodProbesVisitor() {
+				@Override
+				public void accept(final MethodNode methodNode,
+						final MethodVisitor methodVisitor) {
+					final int start = adapter.getCounter();
+					super.accept(methodNode, methodVisitor);
+					ranges.addMethod(name, desc, start, adapter.getCounter(),
+							MethodBodyHash.hash(methodNode));
+				}
+			};
+		}
+
+		@Override
+		public void visitTotalProbeCount(final int count) {
+			ranges.setProbeCount(count);
+		}
+
+	}
+
+}
@@ -12,9 +12,9 @@
  *******************************************************************************/
 package org.jacoco.core.internal.flow;
 
-import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.DiffDiagnostics;
+import org.jacoco.core.analysis.IDiffFilter;
 import org.jacoco.core.internal.analysis.ClassAnalyzer;
-import org.jacoco.core.internal.diff.CodeDiffUtil;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.MethodVisitor;
@@ -35,6 +35,10 @@ public class ClassProbesAdapter extends ClassVisitor
 
     private final boolean trackFrames;
 
+    private final IDiffFilter diffFilter;
+
+    private final DiffDiagnostics diagnostics;
+
     private int counter = 0;
 
     private String name;
@@ -47,9 +51,42 @@ public class ClassProbesAdapter extends ClassVisitor
      */
     public ClassProbesAdapter(final ClassProbesVisitor cv,
                               final boolean trackFrames) {
+        this(cv, trackFrames, null);
+    }
+
+    /**
+     * Creates a new adapter that delegates to the given visitor. Methods not
+     * contained in the given diff are not passed to the visitor, but their
+     * probes are still counted.
+     *
+     * @param cv          instance to delegate to
+     * @param trackFrames if <code>true</code> stackmap frames are tracked and provided
+     * @param diffFilter  diff to select methods or <code>null</code> for all methods
+     */
+    public ClassProbesAdapter(final ClassProbesVisitor cv,
+                              final boolean trackFrames, final IDiffFilter diffFilter) {
+        this(cv, trackFrames, diffFilter, null);
+    }
+
+    /**
+     * Creates a new adapter that delegates to the given visitor. Methods not
+     * contained in the given diff are not passed to the visitor, but their
+     * probes are still counted. The probe range of every method is reported to
+     * the given diagnostics.
+     *
+     * @param cv          instance to delegate to
+     * @param trackFrames if <code>true</code> stackmap frames are tracked and provided
+     * @param diffFilter  diff to select methods or <code>null</code> for all methods
+     * @param diagnostics diagnostics to report to or <code>null</code>
+     */
+    public ClassProbesAdapter(final ClassProbesVisitor cv,
+                              final boolean trackFrames, final IDiffFilter diffFilter,
+                              final DiffDiagnostics diagnostics) {
         super(InstrSupport.ASM_API_VERSION, cv);
         this.cv = cv;
         this.trackFrames = trackFrames;
+        this.diffFilter = diffFilter;
+        this.diagnostics = diagnostics;
     }
 
     @Override
@@ -64,28 +101,16 @@ public class ClassProbesAdapter extends ClassVisitor
     public final MethodVisitor visitMethod(final int access, final String name,
                                            final String desc, final String signature,
                                            final String[] exceptions) {
-        final MethodProbesVisitor methodProbes;
         final MethodProbesVisitor mv = cv.visitMethod(access, name, desc,
                 signature, exceptions);
-        if (null != mv) {
-            // 增量代码，有点绕，由于参数定义成final,无法第二次指定,代码无法简化
-            if (null != CoverageBuilder.classInfos
-                    && !CoverageBuilder.classInfos.isEmpty()) {
-                if (CodeDiffUtil.checkMethodIn(this.name, name, desc, CoverageBuilder.classInfos)) {
-                    System.out.println("xianyu0 classname: " + this.name + "    methodName: " + name + "   start count: " + counter);
-                    methodProbes = mv;
-                    if (methodProbes instanceof ClassAnalyzer.InnerMethodAnalyzer) {
-                        ((ClassAnalyzer.InnerMethodAnalyzer) methodProbes).setCounterStart(counter);
-                    }
-                } else {
-                    methodProbes = EMPTY_METHOD_PROBES_VISITOR;
-                    System.out.println("xianyu0 classname: " + this.name + "    methodName: " + name + "   start count: " + counter);
-                    if (methodProbes instanceof ClassAnalyzer.InnerMethodAnalyzer) {
-                        ((ClassAnalyzer.InnerMethodAnalyzer) methodProbes).setCounterStart(counter);
-                    }
-                }
-            } else {
-                methodProbes = mv;
+        // 增量代码只分析diff中的方法，其他方法的探针仍然需要计数
+        final boolean matched = null != mv && (null == diffFilter
+                || diffFilter.containsMethod(this.name, name, desc));
+        final MethodProbesVisitor methodProbes;
+        if (matched) {
+            methodProbes = mv;
+            if (methodProbes instanceof ClassAnalyzer.InnerMethodAnalyzer) {
+                ((ClassAnalyzer.InnerMethodAnalyzer) methodProbes).setCounterStart(counter);
             }
         } else {
             methodProbes = EMPTY_METHOD_PROBES_VISITOR;
@@ -97,6 +122,7 @@ public class ClassProbesAdapter extends ClassVisitor
             @Override
             public void visitEnd() {
                 super.visitEnd();
+                final int probeStart = counter;
                 LabelFlowAnalyzer.markLabels(this);
                 final MethodProbesAdapter probesAdapter = new MethodProbesAdapter(
                         methodProbes, ClassProbesAdapter.this);
@@ -109,6 +135,10 @@ public class ClassProbesAdapter extends ClassVisitor
                 } else {
                     methodProbes.accept(this, probesAdapter);
                 }
+                if (null != diagnostics) {
+                    diagnostics.method(ClassProbesAdapter.this.name, name,
+                            desc, probeStart, counter, matched);
+                }
             }
 
         };
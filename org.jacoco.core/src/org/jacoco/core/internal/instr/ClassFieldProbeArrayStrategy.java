@@ -25,12 +25,6 @@ import org.objectweb.asm.Opcodes;
  */
 class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 
-	/**
-	 * Frame stack with a single boolean array.
-	 */
-	private static final Object[] FRAME_STACK_ARRZ = new Object[] {
-			InstrSupport.DATAFIELD_DESC };
-
 	/**
 	 * Empty frame locals.
 	 */
@@ -39,21 +33,29 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 	private final String className;
 	private final long classId;
 	private final boolean withFrames;
+	private final boolean counting;
+	private final String dataDesc;
+	private final String initDesc;
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
 	ClassFieldProbeArrayStrategy(final String className, final long classId,
-			final boolean withFrames,
+			final boolean withFrames, final boolean counting,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
 		this.className = className;
 		this.classId = classId;
 		this.withFrames = withFrames;
+		this.counting = counting;
+		this.dataDesc = counting ? InstrSupport.COUNTERFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC;
+		this.initDesc = counting ? InstrSupport.COUNTERINITMETHOD_DESC
+				: InstrSupport.INITMETHOD_DESC;
 		this.accessorGenerator = accessorGenerator;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className,
-				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				InstrSupport.INITMETHOD_NAME, initDesc,
 				false);
 		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
@@ -64,20 +66,24 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		createInitMethod(cv, probeCount);
 	}
 
+	public boolean isCounting() {
+		return counting;
+	}
+
 	private void createDataField(final ClassVisitor cv) {
 		cv.visitField(InstrSupport.DATAFIELD_ACC, InstrSupport.DATAFIELD_NAME,
-				InstrSupport.DATAFIELD_DESC, null, null);
+				dataDesc, null, null);
 	}
 
 	private void createInitMethod(final ClassVisitor cv, final int probeCount) {
 		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
-				InstrSupport.INITMETHOD_NAME, InstrSupport.INITMETHOD_DESC,
+				InstrSupport.INITMETHOD_NAME, initDesc,
 				null, null);
 		mv.visitCode();
 
 		// Load the value of the static data field:
 		mv.visitFieldInsn(Opcodes.GETSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataDesc);
 		mv.visitInsn(Opcodes.DUP);
 
 		// Stack[1]: [Z
@@ -97,7 +103,7 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		// Return the class' probe array:
 		if (withFrames) {
 			mv.visitFrame(Opcodes.F_NEW, 0, FRAME_LOCALS_EMPTY, 1,
-					FRAME_STACK_ARRZ);
+					new Object[] { dataDesc });
 		}
 		mv.visitLabel(alreadyInitialized);
 		mv.visitInsn(Opcodes.ARETURN);
@@ -128,7 +134,7 @@ class ClassFieldProbeArrayStrategy implements IProbeArrayStrategy {
 		// Stack[0]: [Z
 
 		mv.visitFieldInsn(Opcodes.PUTSTATIC, className,
-				InstrSupport.DATAFIELD_NAME, InstrSupport.DATAFIELD_DESC);
+				InstrSupport.DATAFIELD_NAME, dataDesc);
 
 		// Stack[0]: [Z
 
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.jacoco.core.internal.instr;
 
+import org.jacoco.core.analysis.IDiffFilter;
 import org.jacoco.core.internal.flow.ClassProbesVisitor;
 import org.jacoco.core.internal.flow.MethodProbesVisitor;
 import org.objectweb.asm.ClassVisitor;
@@ -25,6 +26,12 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 
 	private final IProbeArrayStrategy probeArrayStrategy;
 
+	private final IDiffFilter diffFilter;
+
+	private final boolean touchOnly;
+
+	private final IProbeArrayStrategy initializerStrategy;
+
 	private String className;
 
 	/**
@@ -38,8 +45,89 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 	 */
 	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
 			final ClassVisitor cv) {
+		this(probeArrayStrategy, null, cv);
+	}
+
+	/**
+	 * Emits a version of this class to the given class visitor where only the
+	 * methods contained in the given diff are instrumented. All other methods
+	 * are emitted without probes, but their probes are still counted, so the
+	 * probe ids are the same as for a fully instrumented class. Static
+	 * initializers are always instrumented as some probe array strategies
+	 * rely on them.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param diffFilter
+	 *            diff to select methods or <code>null</code> for all methods
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final IDiffFilter diffFilter, final ClassVisitor cv) {
+		this(probeArrayStrategy, diffFilter, false, cv);
+	}
+
+	/**
+	 * Emits a version of this class like
+	 * {@link #ClassInstrumenter(IProbeArrayStrategy, IDiffFilter, ClassVisitor)}.
+	 * In touch only mode the selected methods do not record probes, they only
+	 * fetch the probe array. So the class registers at the runtime when it is
+	 * executed for the first time, while the added members are the same as
+	 * for full instrumentation. Static initializers are always fully
+	 * instrumented as they are not executed again after the class has been
+	 * replaced, so the class registers with its initialization.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param diffFilter
+	 *            diff to select methods or <code>null</code> for all methods
+	 * @param touchOnly
+	 *            <code>true</code> if the selected methods should only fetch
+	 *            the probe array
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final IDiffFilter diffFilter, final boolean touchOnly,
+			final ClassVisitor cv) {
+		this(probeArrayStrategy, diffFilter, touchOnly, null, cv);
+	}
+
+	/**
+	 * Emits a version of this class like
+	 * {@link #ClassInstrumenter(IProbeArrayStrategy, IDiffFilter, boolean, ClassVisitor)}.
+	 * In touch only mode the static initializer accesses the probe array with
+	 * the given strategy, which does not register the class, if available.
+	 *
+	 * @param probeArrayStrategy
+	 *            this strategy will be used to access the probe array
+	 * @param diffFilter
+	 *            diff to select methods or <code>null</code> for all methods
+	 * @param touchOnly
+	 *            <code>true</code> if the selected methods should only fetch
+	 *            the probe array
+	 * @param initializerStrategy
+	 *            strategy for the static initializer in touch only mode or
+	 *            <code>null</code> to use <code>probeArrayStrategy</code>
+	 * @param cv
+	 *            next delegate in the visitor chain will receive the
+	 *            instrumented class
+	 * @see ProbeArrayStrategyFactory#createForInitializer(long,
+	 *      org.objectweb.asm.ClassReader,
+	 *      org.jacoco.core.runtime.IExecutionDataAccessorGenerator, boolean)
+	 */
+	public ClassInstrumenter(final IProbeArrayStrategy probeArrayStrategy,
+			final IDiffFilter diffFilter, final boolean touchOnly,
+			final IProbeArrayStrategy initializerStrategy,
+			final ClassVisitor cv) {
 		super(cv);
 		this.probeArrayStrategy = probeArrayStrategy;
+		this.diffFilter = diffFilter;
+		this.touchOnly = touchOnly;
+		this.initializerStrategy = initializerStrategy;
 	}
 
 	@Override
@@ -70,9 +158,25 @@ public class ClassInstrumenter extends ClassProbesVisitor {
 		if (mv == null) {
 			return null;
 		}
+		final boolean clinit = InstrSupport.CLINIT_NAME.equals(name);
+		if (diffFilter != null && !clinit
+				&& !diffFilter.containsMethod(className, name, desc)) {
+			return new NoneMethodInstrumenter(mv);
+		}
+		final IProbeArrayStrategy strategy;
+		if (touchOnly && clinit && initializerStrategy != null) {
+			// Class initialization is not considered as execution
+			strategy = initializerStrategy;
+		} else {
+			strategy = probeArrayStrategy;
+		}
 		final MethodVisitor frameEliminator = new DuplicateFrameEliminator(mv);
 		final ProbeInserter probeVariableInserter = new ProbeInserter(access,
-				name, desc, frameEliminator, probeArrayStrategy);
+				name, desc, frameEliminator, strategy);
+		if (touchOnly && !clinit) {
+			// The probe inserter still fetches the probe array on method entry
+			return new NoneMethodInstrumenter(probeVariableInserter);
+		}
 		return new MethodInstrumenter(probeVariableInserter,
 				probeVariableInserter);
 	}
@@ -31,39 +31,50 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 	 */
 	public static final String B_DESC = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)[Z";
 
+	/**
+	 * Descriptor of the bootstrap method for counting probes.
+	 */
+	public static final String COUNTER_B_DESC = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)[I";
+
 	private final String className;
 
 	private final boolean isInterface;
 
 	private final long classId;
 
+	private final boolean counting;
+
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
 	CondyProbeArrayStrategy(final String className, final boolean isInterface,
-			final long classId,
+			final long classId, final boolean counting,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
 		this.className = className;
 		this.isInterface = isInterface;
 		this.classId = classId;
+		this.counting = counting;
 		this.accessorGenerator = accessorGenerator;
 	}
 
 	public int storeInstance(final MethodVisitor mv, final boolean clinit,
 			final int variable) {
 		final Handle bootstrapMethod = new Handle(Opcodes.H_INVOKESTATIC,
-				className, InstrSupport.INITMETHOD_NAME, B_DESC, isInterface);
+				className, InstrSupport.INITMETHOD_NAME, getBootstrapDesc(),
+				isInterface);
 		// As a workaround for https://bugs.openjdk.java.net/browse/JDK-8216970
 		// constant should have type Object
 		mv.visitLdcInsn(new ConstantDynamic(InstrSupport.DATAFIELD_NAME,
 				"Ljava/lang/Object;", bootstrapMethod));
-		mv.visitTypeInsn(Opcodes.CHECKCAST, "[Z");
+		mv.visitTypeInsn(Opcodes.CHECKCAST, counting
+				? InstrSupport.COUNTERFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC);
 		mv.visitVarInsn(Opcodes.ASTORE, variable);
 		return 1;
 	}
 
 	public void addMembers(final ClassVisitor cv, final int probeCount) {
 		final MethodVisitor mv = cv.visitMethod(InstrSupport.INITMETHOD_ACC,
-				InstrSupport.INITMETHOD_NAME, B_DESC, null, null);
+				InstrSupport.INITMETHOD_NAME, getBootstrapDesc(), null, null);
 		final int maxStack = accessorGenerator.generateDataAccessor(classId,
 				className, probeCount, mv);
 		mv.visitInsn(Opcodes.ARETURN);
@@ -71,4 +82,12 @@ public class CondyProbeArrayStrategy implements IProbeArrayStrategy {
 		mv.visitEnd();
 	}
 
+	public boolean isCounting() {
+		return counting;
+	}
+
+	private String getBootstrapDesc() {
+		return counting ? COUNTER_B_DESC : B_DESC;
+	}
+
 }
@@ -46,4 +46,13 @@ public interface IProbeArrayStrategy {
 	 */
 	void addMembers(ClassVisitor cv, int probeCount);
 
+	/**
+	 * Checks whether the probe array contains hit counters. In this case the
+	 * probe array is of type <code>int[]</code> and every probe increments its
+	 * slot, otherwise the probe array is of type <code>boolean[]</code>.
+	 *
+	 * @return <code>true</code> for probe arrays with hit counters
+	 */
+	boolean isCounting();
+
 }
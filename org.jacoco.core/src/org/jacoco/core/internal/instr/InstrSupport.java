@@ -80,6 +80,12 @@ public final class InstrSupport {
 	 */
 	public static final String DATAFIELD_DESC = "[Z";
 
+	/**
+	 * Data type of the field that stores the hit counters of a class
+	 * instrumented with counting probes (<code>int[]</code>).
+	 */
+	public static final String COUNTERFIELD_DESC = "[I";
+
 	// === Init Method ===
 
 	/**
@@ -92,6 +98,12 @@ public final class InstrSupport {
 	 */
 	public static final String INITMETHOD_DESC = "()[Z";
 
+	/**
+	 * Descriptor of the initialization method of classes instrumented with
+	 * counting probes.
+	 */
+	public static final String COUNTERINITMETHOD_DESC = "()[I";
+
 	/**
 	 * Access modifiers of the initialization method.
 	 */
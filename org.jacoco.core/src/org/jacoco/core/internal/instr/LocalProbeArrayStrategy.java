@@ -28,14 +28,16 @@ class LocalProbeArrayStrategy implements IProbeArrayStrategy {
 	private final String className;
 	private final long classId;
 	private final int probeCount;
+	private final boolean counting;
 	private final IExecutionDataAccessorGenerator accessorGenerator;
 
 	LocalProbeArrayStrategy(final String className, final long classId,
-			final int probeCount,
+			final int probeCount, final boolean counting,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
 		this.className = className;
 		this.classId = classId;
 		this.probeCount = probeCount;
+		this.counting = counting;
 		this.accessorGenerator = accessorGenerator;
 	}
 
@@ -51,4 +53,8 @@ class LocalProbeArrayStrategy implements IProbeArrayStrategy {
 		// nothing to do
 	}
 
+	public boolean isCounting() {
+		return counting;
+	}
+
 }
@@ -30,4 +30,8 @@ class NoneProbeArrayStrategy implements IProbeArrayStrategy {
 		// nothing to do
 	}
 
+	public boolean isCounting() {
+		return false;
+	}
+
 }
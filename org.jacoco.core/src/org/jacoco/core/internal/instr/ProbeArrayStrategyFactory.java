@@ -13,8 +13,12 @@
 package org.jacoco.core.internal.instr;
 
 import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.runtime.ICounterAccessorGenerator;
 import org.jacoco.core.runtime.IExecutionDataAccessorGenerator;
+import org.jacoco.core.runtime.IInitializerAccessorGenerator;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 /**
@@ -42,7 +46,36 @@ public final class ProbeArrayStrategyFactory {
 	public static IProbeArrayStrategy createFor(final long classId,
 			final ClassReader reader,
 			final IExecutionDataAccessorGenerator accessorGenerator) {
+		return createFor(classId, reader, accessorGenerator, false);
+	}
 
+	/**
+	 * Creates a suitable strategy instance for the class described by the given
+	 * reader which optionally uses hit counters of type <code>int[]</code> as
+	 * probe array. Created instance must be used only to process a class or
+	 * interface for which it has been created and must be used only once.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime, must implement
+	 *            {@link ICounterAccessorGenerator} for counting probes
+	 * @param counting
+	 *            <code>true</code> for a probe array with hit counters
+	 * @return strategy instance
+	 * @throws IllegalArgumentException
+	 *             if counting probes are not supported by the given accessor
+	 */
+	public static IProbeArrayStrategy createFor(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counting) {
+
+		final IExecutionDataAccessorGenerator generator = counting
+				? counterAccessor(accessorGenerator)
+				: accessorGenerator;
 		final String className = reader.getClassName();
 		final int version = InstrSupport.getMajorVersion(reader);
 
@@ -53,23 +86,87 @@ public final class ProbeArrayStrategyFactory {
 			}
 			if (version >= Opcodes.V11 && counter.hasMethods()) {
 				return new CondyProbeArrayStrategy(className, true, classId,
-						accessorGenerator);
+						counting, generator);
 			}
 			if (version >= Opcodes.V1_8 && counter.hasMethods()) {
 				return new InterfaceFieldProbeArrayStrategy(className, classId,
-						counter.getCount(), accessorGenerator);
+						counter.getCount(), counting, generator);
 			} else {
 				return new LocalProbeArrayStrategy(className, classId,
-						counter.getCount(), accessorGenerator);
+						counter.getCount(), counting, generator);
 			}
 		} else {
 			if (version >= Opcodes.V11) {
 				return new CondyProbeArrayStrategy(className, false, classId,
-						accessorGenerator);
+						counting, generator);
 			}
 			return new ClassFieldProbeArrayStrategy(className, classId,
-					InstrSupport.needsFrames(version), accessorGenerator);
+					InstrSupport.needsFrames(version), counting, generator);
+		}
+	}
+
+	/**
+	 * Creates a strategy for the static initializer of a class which is only
+	 * instrumented to detect its first execution. The static initializer
+	 * obtains the probe array directly from the runtime without registering
+	 * the class, so its probes are recorded while class initialization does
+	 * not count as execution of the class.
+	 *
+	 * @param classId
+	 *            class identifier
+	 * @param reader
+	 *            reader to get information about the class
+	 * @param accessorGenerator
+	 *            accessor to the coverage runtime
+	 * @param counting
+	 *            <code>true</code> for a probe array with hit counters
+	 * @return strategy instance or <code>null</code> if the static
+	 *         initializer has to use the strategy created by
+	 *         {@link #createFor(long, ClassReader, IExecutionDataAccessorGenerator, boolean)}
+	 */
+	public static IProbeArrayStrategy createForInitializer(final long classId,
+			final ClassReader reader,
+			final IExecutionDataAccessorGenerator accessorGenerator,
+			final boolean counting) {
+		if (!(accessorGenerator instanceof IInitializerAccessorGenerator)) {
+			return null;
+		}
+		if (isInterfaceOrModule(reader)
+				&& InstrSupport.getMajorVersion(reader) < Opcodes.V11) {
+			// The probe array field of interfaces is assigned in <clinit>
+			return null;
 		}
+		if (!hasInitializer(reader)) {
+			return null;
+		}
+		final int probeCount = getProbeCounter(reader).getCount();
+		final IInitializerAccessorGenerator initializerGenerator = (IInitializerAccessorGenerator) accessorGenerator;
+		return new LocalProbeArrayStrategy(reader.getClassName(), classId,
+				probeCount, counting, new IExecutionDataAccessorGenerator() {
+					public int generateDataAccessor(final long classid,
+							final String classname, final int probecount,
+							final MethodVisitor mv) {
+						return initializerGenerator.generateInitializerAccessor(
+								classid, classname, probecount, counting, mv);
+					}
+				});
+	}
+
+	private static IExecutionDataAccessorGenerator counterAccessor(
+			final IExecutionDataAccessorGenerator accessorGenerator) {
+		if (!(accessorGenerator instanceof ICounterAccessorGenerator)) {
+			throw new IllegalArgumentException(
+					"Counting probes are not supported by the runtime.");
+		}
+		final ICounterAccessorGenerator counterGenerator = (ICounterAccessorGenerator) accessorGenerator;
+		return new IExecutionDataAccessorGenerator() {
+			public int generateDataAccessor(final long classid,
+					final String classname, final int probecount,
+					final MethodVisitor mv) {
+				return counterGenerator.generateCounterAccessor(classid,
+						classname, probecount, mv);
+			}
+		};
 	}
 
 	private static boolean isInterfaceOrModule(final ClassReader reader) {
@@ -77,6 +174,22 @@ public final class ProbeArrayStrategyFactory {
 				& (Opcodes.ACC_INTERFACE | Opcodes.ACC_MODULE)) != 0;
 	}
 
+	private static boolean hasInitializer(final ClassReader reader) {
+		final boolean[] found = new boolean[1];
+		reader.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+			@Override
+			public MethodVisitor visitMethod(final int access,
+					final String name, final String descriptor,
+					final String signature, final String[] exceptions) {
+				if (InstrSupport.CLINIT_NAME.equals(name)) {
+					found[0] = true;
+				}
+				return null;
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
+		return found[0];
+	}
+
 	private static ProbeCounter getProbeCounter(final ClassReader reader) {
 		final ProbeCounter counter = new ProbeCounter();
 		reader.accept(new ClassProbesAdapter(counter, false), 0);
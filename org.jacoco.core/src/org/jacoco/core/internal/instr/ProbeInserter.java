@@ -21,14 +21,18 @@ import org.objectweb.asm.TypePath;
 
 /**
  * Internal utility to add probes into the control flow of a method. The code
- * for a probe simply sets a certain slot of a boolean array to true. In
- * addition the probe array has to be retrieved at the beginning of the method
- * and stored in a local variable.
+ * for a probe simply sets a certain slot of a boolean array to true, or for
+ * counting probes increments a certain slot of an int array. In addition the
+ * probe array has to be retrieved at the beginning of the method and stored in
+ * a local variable.
  */
 class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	private final IProbeArrayStrategy arrayStrategy;
 
+	/** <code>true</code> if the probe array contains hit counters. */
+	private final boolean counting;
+
 	/**
 	 * <code>true</code> if method is a class or interface initialization
 	 * method.
@@ -64,6 +68,7 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		super(InstrSupport.ASM_API_VERSION, mv);
 		this.clinit = InstrSupport.CLINIT_NAME.equals(name);
 		this.arrayStrategy = arrayStrategy;
+		this.counting = arrayStrategy.isCounting();
 		int pos = (Opcodes.ACC_STATIC & access) == 0 ? 1 : 0;
 		for (final Type t : Type.getArgumentTypes(desc)) {
 			pos += t.getSize();
@@ -73,6 +78,10 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 	}
 
 	public void insertProbe(final int id) {
+		if (counting) {
+			insertCountingProbe(id);
+			return;
+		}
 
 		// For a probe we set the corresponding position in the boolean[] array
 		// to true.
@@ -95,6 +104,29 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		mv.visitInsn(Opcodes.BASTORE);
 	}
 
+	private void insertCountingProbe(final int id) {
+
+		// For a counting probe we increment the corresponding position in the
+		// int[] array.
+
+		mv.visitVarInsn(Opcodes.ALOAD, variable);
+		InstrSupport.push(mv, id);
+
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.DUP2);
+		mv.visitInsn(Opcodes.IALOAD);
+
+		// Stack[2]: I
+		// Stack[1]: I
+		// Stack[0]: [I
+
+		mv.visitInsn(Opcodes.ICONST_1);
+		mv.visitInsn(Opcodes.IADD);
+		mv.visitInsn(Opcodes.IASTORE);
+	}
+
 	@Override
 	public void visitCode() {
 		mv.visitLabel(beginLabel);
@@ -140,11 +172,14 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 
 	@Override
 	public void visitMaxs(final int maxStack, final int maxLocals) {
-		// Max stack size of the probe code is 3 which can add to the
-		// original stack size depending on the probe locations. The accessor
-		// stack size is an absolute maximum, as the accessor code is inserted
-		// at the very beginning of each method when the stack size is empty.
-		final int increasedStack = Math.max(maxStack + 3, accessorStackSize);
+		// Max stack size of the probe code is 3, or 4 for counting probes,
+		// which can add to the original stack size depending on the probe
+		// locations. The accessor stack size is an absolute maximum, as the
+		// accessor code is inserted at the very beginning of each method when
+		// the stack size is empty.
+		final int probeStack = counting ? 4 : 3;
+		final int increasedStack = Math.max(maxStack + probeStack,
+				accessorStackSize);
 		mv.visitMaxs(increasedStack, maxLocals + 1);
 	}
 
@@ -171,7 +206,8 @@ class ProbeInserter extends MethodVisitor implements IProbeInserter {
 		int pos = 0; // Current variable position
 		while (idx < nLocal || pos <= variable) {
 			if (pos == variable) {
-				newLocal[newIdx++] = InstrSupport.DATAFIELD_DESC;
+				newLocal[newIdx++] = counting ? InstrSupport.COUNTERFIELD_DESC
+						: InstrSupport.DATAFIELD_DESC;
 				pos++;
 			} else {
 				if (idx < nLocal) {
@@ -51,6 +51,14 @@ public final class AgentOptions {
 	 */
 	public static final String APPEND = "append";
 
+	/**
+	 * Specifies whether execution data written to the output file should be
+	 * compressed. Default is <code>false</code>.
+	 *
+	 * @see org.jacoco.core.data.ExecutionDataWriter#COMPRESSED_FORMAT_VERSION
+	 */
+	public static final String COMPRESS = "compress";
+
 	/**
 	 * Wildcard expression for class names that should be included for code
 	 * coverage. Default is <code>*</code> (all classes included).
@@ -109,6 +117,7 @@ public final class AgentOptions {
 	 * Specifies the output mode. Default is {@link OutputMode#file}.
 	 *
 	 * @see OutputMode#file
+	 * @see OutputMode#shards
 	 * @see OutputMode#tcpserver
 	 * @see OutputMode#tcpclient
 	 * @see OutputMode#none
@@ -130,6 +139,15 @@ public final class AgentOptions {
 		 */
 		file,
 
+		/**
+		 * Value for the {@link AgentOptions#OUTPUT} parameter: Execution data
+		 * is written to a separate shard file for every VM in the directory
+		 * <code>{@link AgentOptions#DESTFILE}.shards</code>. The shards are
+		 * written by a background thread without file locks and can be merged
+		 * later.
+		 */
+		shards,
+
 		/**
 		 * Value for the {@link AgentOptions#OUTPUT} parameter: The agent
 		 * listens for incoming connections on a TCP port specified by
@@ -176,6 +194,51 @@ public final class AgentOptions {
 	 */
 	public static final int DEFAULT_PORT = 6300;
 
+	/**
+	 * Specifies whether dumps over TCP connections only contain the probes
+	 * which have been executed since the previous dump of the same connection.
+	 * Can't be combined with {@link #COUNTERS}. Default is <code>false</code>.
+	 *
+	 * @see DeltaTracker
+	 */
+	public static final String DELTA = "delta";
+
+	/**
+	 * Code diff as JSON string which restricts instrumentation to the classes
+	 * and methods of the diff. Execution data is only recorded for these
+	 * methods, the probe ids are the same as with full instrumentation. Default
+	 * is <code>null</code> (instrument everything).
+	 *
+	 * @see #DIFFFILE
+	 */
+	public static final String DIFFCODE = "diffcode";
+
+	/**
+	 * File with a code diff in JSON format, optionally gzip compressed, which
+	 * restricts instrumentation like {@link #DIFFCODE}. Default is
+	 * <code>null</code> (instrument everything).
+	 */
+	public static final String DIFFFILE = "difffile";
+
+	/**
+	 * Specifies whether classes are instrumented in two steps. Classes are
+	 * first loaded with instrumentation which only detects their first
+	 * execution and are retransformed with full instrumentation in the
+	 * background afterwards. Probes executed before the retransformation
+	 * completes are not recorded, except the probes of static initializers
+	 * which are always recorded. Class initialization alone does not count
+	 * as execution. Default is <code>false</code>.
+	 */
+	public static final String LAZY = "lazy";
+
+	/**
+	 * Specifies whether probes count their executions. The execution data then
+	 * contains hit counters which are summed up when execution data is merged,
+	 * therefore dumps must reset the counters to give correct sums. Can't be
+	 * combined with {@link #DELTA}. Default is <code>false</code>.
+	 */
+	public static final String COUNTERS = "counters";
+
 	/**
 	 * Specifies where the agent dumps all class files it encounters. The
 	 * location is specified as a relative path to the working directory.
@@ -183,6 +246,28 @@ public final class AgentOptions {
 	 */
 	public static final String CLASSDUMPDIR = "classdumpdir";
 
+	/**
+	 * Directory where instrumented classes are cached across JVM runs. The
+	 * cache can be shared by concurrent JVMs, entries are only reused by
+	 * agents of the same version with the same instrumentation options.
+	 * Default is <code>null</code> (no cache).
+	 *
+	 * @see #INSTRCACHESIZE
+	 */
+	public static final String INSTRCACHE = "instrcache";
+
+	/**
+	 * Maximum size of the cache of instrumented classes in megabytes. The
+	 * least recently used entries are removed if the cache gets larger.
+	 * Default is defined by {@link #DEFAULT_INSTRCACHESIZE}.
+	 */
+	public static final String INSTRCACHESIZE = "instrcachesize";
+
+	/**
+	 * Default maximum size of the cache of instrumented classes in megabytes.
+	 */
+	public static final int DEFAULT_INSTRCACHESIZE = 256;
+
 	/**
 	 * Specifies whether the agent should expose functionality via JMX under the
 	 * name "org.jacoco:type=Runtime". Default is <code>false</code>.
@@ -190,9 +275,10 @@ public final class AgentOptions {
 	public static final String JMX = "jmx";
 
 	private static final Collection<String> VALID_OPTIONS = Arrays.asList(
-			DESTFILE, APPEND, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
+			DESTFILE, APPEND, COMPRESS, INCLUDES, EXCLUDES, EXCLCLASSLOADER,
 			INCLBOOTSTRAPCLASSES, INCLNOLOCATIONCLASSES, SESSIONID, DUMPONEXIT,
-			OUTPUT, ADDRESS, PORT, CLASSDUMPDIR, JMX);
+			OUTPUT, ADDRESS, PORT, DELTA, DIFFCODE, DIFFFILE, LAZY, COUNTERS,
+			CLASSDUMPDIR, INSTRCACHE, INSTRCACHESIZE, JMX);
 
 	private final Map<String, String> options;
 
@@ -250,6 +336,8 @@ public final class AgentOptions {
 
 	private void validateAll() {
 		validatePort(getPort());
+		validateInstrCacheSize(getInstrCacheSize());
+		validateCounters(getCounters(), getDelta());
 		getOutput();
 	}
 
@@ -259,6 +347,21 @@ public final class AgentOptions {
 		}
 	}
 
+	private void validateInstrCacheSize(final int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException(
+					"instrcachesize must be positive");
+		}
+	}
+
+	private void validateCounters(final boolean counters,
+			final boolean delta) {
+		if (counters && delta) {
+			throw new IllegalArgumentException(
+					"counters can't be combined with delta");
+		}
+	}
+
 	/**
 	 * Returns the output file location.
 	 *
@@ -297,6 +400,25 @@ public final class AgentOptions {
 		setOption(APPEND, append);
 	}
 
+	/**
+	 * Returns whether execution data written to the output file is compressed.
+	 *
+	 * @return <code>true</code>, when the output should be compressed
+	 */
+	public boolean getCompress() {
+		return getOption(COMPRESS, false);
+	}
+
+	/**
+	 * Sets whether execution data written to the output file is compressed.
+	 *
+	 * @param compress
+	 *            <code>true</code>, when the output should be compressed
+	 */
+	public void setCompress(final boolean compress) {
+		setOption(COMPRESS, compress);
+	}
+
 	/**
 	 * Returns the wildcard expression for classes to include.
 	 *
@@ -465,6 +587,26 @@ public final class AgentOptions {
 		setOption(PORT, port);
 	}
 
+	/**
+	 * Returns whether dumps over TCP connections are delta dumps.
+	 *
+	 * @return <code>true</code>, when only new probes should be dumped
+	 */
+	public boolean getDelta() {
+		return getOption(DELTA, false);
+	}
+
+	/**
+	 * Sets whether dumps over TCP connections are delta dumps.
+	 *
+	 * @param delta
+	 *            <code>true</code>, when only new probes should be dumped
+	 */
+	public void setDelta(final boolean delta) {
+		validateCounters(getCounters(), delta);
+		setOption(DELTA, delta);
+	}
+
 	/**
 	 * Gets the hostname or IP address to listen to when output is
 	 * <code>tcpserver</code> or connect to when output is
@@ -518,6 +660,89 @@ public final class AgentOptions {
 		setOption(OUTPUT, output.name());
 	}
 
+	/**
+	 * Returns the code diff which restricts instrumentation.
+	 *
+	 * @return diff as JSON string or <code>null</code> (instrument everything)
+	 */
+	public String getDiffCode() {
+		return getOption(DIFFCODE, null);
+	}
+
+	/**
+	 * Sets the code diff which restricts instrumentation.
+	 *
+	 * @param diffCode
+	 *            diff as JSON string or <code>null</code> (instrument
+	 *            everything)
+	 */
+	public void setDiffCode(final String diffCode) {
+		setOption(DIFFCODE, diffCode);
+	}
+
+	/**
+	 * Returns the location of the file with the code diff which restricts
+	 * instrumentation.
+	 *
+	 * @return diff file location or <code>null</code> (instrument everything)
+	 */
+	public String getDiffFile() {
+		return getOption(DIFFFILE, null);
+	}
+
+	/**
+	 * Sets the location of the file with the code diff which restricts
+	 * instrumentation.
+	 *
+	 * @param location
+	 *            diff file location or <code>null</code> (instrument
+	 *            everything)
+	 */
+	public void setDiffFile(final String location) {
+		setOption(DIFFFILE, location);
+	}
+
+	/**
+	 * Returns whether classes are instrumented in two steps.
+	 *
+	 * @return <code>true</code> if classes are fully instrumented on first
+	 *         execution only
+	 */
+	public boolean getLazy() {
+		return getOption(LAZY, false);
+	}
+
+	/**
+	 * Sets whether classes are instrumented in two steps.
+	 *
+	 * @param lazy
+	 *            <code>true</code> if classes should be fully instrumented on
+	 *            first execution only
+	 */
+	public void setLazy(final boolean lazy) {
+		setOption(LAZY, lazy);
+	}
+
+	/**
+	 * Returns whether probes count their executions.
+	 *
+	 * @return <code>true</code> if hit counters are recorded
+	 */
+	public boolean getCounters() {
+		return getOption(COUNTERS, false);
+	}
+
+	/**
+	 * Sets whether probes count their executions.
+	 *
+	 * @param counters
+	 *            <code>true</code> if hit counters should be recorded
+	 */
+	public void setCounters(final boolean counters) {
+		validateCounters(counters, getDelta());
+		setOption(COUNTERS, counters);
+	}
+
 	/**
 	 * Returns the location of the directory where class files should be dumped
 	 * to.
@@ -538,6 +763,46 @@ public final class AgentOptions {
 		setOption(CLASSDUMPDIR, location);
 	}
 
+	/**
+	 * Returns the location of the directory where instrumented classes are
+	 * cached.
+	 *
+	 * @return cache location or <code>null</code> (no cache)
+	 */
+	public String getInstrCache() {
+		return getOption(INSTRCACHE, null);
+	}
+
+	/**
+	 * Sets the directory where instrumented classes are cached.
+	 *
+	 * @param location
+	 *            cache location or <code>null</code> (no cache)
+	 */
+	public void setInstrCache(final String location) {
+		setOption(INSTRCACHE, location);
+	}
+
+	/**
+	 * Returns the maximum size of the cache of instrumented classes.
+	 *
+	 * @return maximum size in megabytes
+	 */
+	public int getInstrCacheSize() {
+		return getOption(INSTRCACHESIZE, DEFAULT_INSTRCACHESIZE);
+	}
+
+	/**
+	 * Sets the maximum size of the cache of instrumented classes.
+	 *
+	 * @param size
+	 *            maximum size in megabytes
+	 */
+	public void setInstrCacheSize(final int size) {
+		validateInstrCacheSize(size);
+		setOption(INSTRCACHESIZE, size);
+	}
+
 	/**
 	 * Returns whether the agent exposes functionality via JMX.
 	 *
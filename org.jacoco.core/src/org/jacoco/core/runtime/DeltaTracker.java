@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ProbeBits;
+
+/**
+ * State of a sequence of delta dumps for a single consumer, e.g. a remote
+ * connection. The tracker remembers the probes which have already been
+ * reported, so subsequent dumps with {@link RuntimeData#collectDelta} only
+ * contain newly executed probes. Whenever the runtime data is reset a new
+ * sequence is started with a complete dump. Instances are not thread safe and
+ * must only be used with a single {@link RuntimeData} instance.
+ */
+public final class DeltaTracker {
+
+	private final Map<Long, ProbeBits> reported;
+
+	private long sequence;
+
+	private long epoch;
+
+	/**
+	 * Creates a new tracker whose first dump contains the complete execution
+	 * data.
+	 */
+	public DeltaTracker() {
+		reported = new HashMap<Long, ProbeBits>();
+		sequence = 0;
+		epoch = -1;
+	}
+
+	/**
+	 * Starts the next dump of the sequence.
+	 *
+	 * @param currentEpoch
+	 *            reset counter of the runtime data
+	 * @return sequence number of the dump
+	 */
+	long next(final long currentEpoch) {
+		if (currentEpoch != epoch) {
+			reported.clear();
+			sequence = 0;
+			epoch = currentEpoch;
+			return sequence;
+		}
+		return ++sequence;
+	}
+
+	/**
+	 * Passes the probes of the given execution data which have not been
+	 * reported before to the given visitor.
+	 *
+	 * @param data
+	 *            current execution data of a class
+	 * @param visitor
+	 *            visitor for new probes
+	 */
+	void report(final ExecutionData data,
+			final IExecutionDataVisitor visitor) {
+		final Long id = Long.valueOf(data.getId());
+		final ProbeBits delta = ProbeBits.valueOf(data.getProbes());
+		final ProbeBits previous = reported.get(id);
+		if (previous == null) {
+			reported.put(id, delta.copy());
+		} else {
+			delta.andNot(previous);
+			previous.or(delta);
+		}
+		if (!delta.isEmpty()) {
+			visitor.visitClassExecution(
+					new ExecutionData(data.getId(), data.getName(), delta));
+		}
+	}
+
+	/**
+	 * Returns the sequence number of the last dump.
+	 *
+	 * @return last sequence number or <code>0</code> if no dump has been
+	 *         created yet
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Classes instrumented with counting probes obtain an <code>int[]</code> with
+ * a hit counter for every probe from the runtime. Runtimes which support
+ * counting probes implement this interface in addition to
+ * {@link IExecutionDataAccessorGenerator}.
+ */
+public interface ICounterAccessorGenerator {
+
+	/**
+	 * This method generates the byte code required to obtain the hit counters
+	 * for the class with the given id. Like
+	 * {@link IExecutionDataAccessorGenerator#generateDataAccessor(long, String, int, MethodVisitor)}
+	 * this method can be called at any time even outside the target VM.
+	 *
+	 * The generated code must push an <code>int[]</code> instance to the
+	 * operand stack. Except this result object the generated code must not make
+	 * any assumptions about the structure of the embedding method or class. The
+	 * generated code must not use or allocate local variables.
+	 *
+	 * @param classid
+	 *            identifier of the class
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param mv
+	 *            code output
+	 * @return additional stack size required by the implementation, including
+	 *         the instance pushed to the stack
+	 */
+	int generateCounterAccessor(long classid, String classname, int probecount,
+			MethodVisitor mv);
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.runtime;
+
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Static initializers of classes which are only instrumented to detect their
+ * first execution record their probes into the probe array of the class, but
+ * class initialization must not count as execution of the class. Runtimes
+ * which support this implement this interface in addition to
+ * {@link IExecutionDataAccessorGenerator}.
+ *
+ * @see RuntimeData#setRegistrationListener(IExecutionDataVisitor)
+ */
+public interface IInitializerAccessorGenerator {
+
+	/**
+	 * This method generates the byte code required to obtain the probe array
+	 * for the class with the given id like
+	 * {@link IExecutionDataAccessorGenerator#generateDataAccessor(long, String, int, MethodVisitor)}
+	 * or {@link ICounterAccessorGenerator}, but without registering the class
+	 * as executed. The class registers with the first regular request of its
+	 * probe array.
+	 *
+	 * The generated code must push the probe array to the operand stack. It
+	 * must not use or allocate local variables.
+	 *
+	 * @param classid
+	 *            identifier of the class
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param counting
+	 *            <code>true</code> to obtain the hit counters of type
+	 *            <code>int[]</code> instead of a <code>boolean[]</code>
+	 * @param mv
+	 *            code output
+	 * @return additional stack size required by the implementation, including
+	 *         the instance pushed to the stack
+	 */
+	int generateInitializerAccessor(long classid, String classname,
+			int probecount, boolean counting, MethodVisitor mv);
+
+}
@@ -22,7 +22,9 @@ import org.objectweb.asm.Opcodes;
  * 9. Module where class will be defined must be opened to at least module of
  * this class.
  */
-public class InjectedClassRuntime extends AbstractRuntime {
+public class InjectedClassRuntime extends AbstractRuntime
+		implements ICounterAccessorGenerator,
+		IInitializerAccessorGenerator {
 
 	private static final String FIELD_NAME = "data";
 
@@ -72,6 +74,30 @@ public class InjectedClassRuntime extends AbstractRuntime {
 		return 6;
 	}
 
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, injectedClassName, FIELD_NAME,
+				FIELD_TYPE);
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		return 6;
+	}
+
+	public int generateInitializerAccessor(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final MethodVisitor mv) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, injectedClassName, FIELD_NAME,
+				FIELD_TYPE);
+
+		RuntimeData.generateInitializerAccessCall(classid, classname,
+				probecount, counting, mv);
+
+		return 6;
+	}
+
 	private static byte[] createClass(final String name) {
 		final ClassWriter cw = new ClassWriter(0);
 		cw.visit(Opcodes.V9, Opcodes.ACC_SYNTHETIC | Opcodes.ACC_PUBLIC,
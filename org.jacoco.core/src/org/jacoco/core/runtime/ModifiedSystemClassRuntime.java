@@ -33,7 +33,9 @@ import org.objectweb.asm.Opcodes;
  * instrumented classes. As the system class itself needs to be instrumented
  * this runtime requires a Java agent.
  */
-public class ModifiedSystemClassRuntime extends AbstractRuntime {
+public class ModifiedSystemClassRuntime extends AbstractRuntime
+		implements ICounterAccessorGenerator,
+		IInitializerAccessorGenerator {
 
 	private static final String ACCESS_FIELD_TYPE = "Ljava/lang/Object;";
 
@@ -82,6 +84,31 @@ public class ModifiedSystemClassRuntime extends AbstractRuntime {
 		return 6;
 	}
 
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+
+		mv.visitFieldInsn(Opcodes.GETSTATIC, systemClassName, accessFieldName,
+				ACCESS_FIELD_TYPE);
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		return 6;
+	}
+
+	public int generateInitializerAccessor(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final MethodVisitor mv) {
+		mv.visitFieldInsn(Opcodes.GETSTATIC, systemClassName, accessFieldName,
+				ACCESS_FIELD_TYPE);
+
+		RuntimeData.generateInitializerAccessCall(classid, classname,
+				probecount, counting, mv);
+
+		return 6;
+	}
+
 	/**
 	 * Creates a new {@link ModifiedSystemClassRuntime} using the given class as
 	 * the data container. Member is created with internal default name. The
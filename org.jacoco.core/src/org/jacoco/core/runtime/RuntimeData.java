@@ -12,10 +12,17 @@
  *******************************************************************************/
 package org.jacoco.core.runtime;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IDeltaVisitor;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.ProbeBits;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.internal.instr.InstrSupport;
 import org.objectweb.asm.MethodVisitor;
@@ -23,22 +30,54 @@ import org.objectweb.asm.Opcodes;
 
 /**
  * Container for runtime execution and meta data. All access to the runtime data
- * is thread safe.
+ * is thread safe. Classes are registered without locking, so class
+ * initialization neither waits for other classes nor for running dumps.
+ * Collecting and resetting execution data is serialized among each other only.
  */
 public class RuntimeData {
 
-	/** store for execution data */
+	/**
+	 * Store for execution data, only kept for compatibility with existing
+	 * subclasses. Registered classes are not added on registration but when
+	 * execution data is collected or reset, so classes registered since then
+	 * may be missing. Execution data put into this store by subclasses is
+	 * collected and reset like the data of registered classes.
+	 *
+	 * @deprecated collect the execution data with
+	 *             {@link #collect(IExecutionDataVisitor, ISessionInfoVisitor, boolean)}
+	 */
+	@Deprecated
 	protected final ExecutionDataStore store;
 
+	/** execution data by class id */
+	private final ConcurrentMap<Long, ExecutionData> entries;
+
+	/** entries created by static initializers, not registered yet */
+	private final ConcurrentMap<Long, ExecutionData> unregistered;
+
+	/** monitor for collect and reset operations */
+	private final Object lock;
+
+	/** whether {@link #store} has to be maintained for a subclass */
+	private final boolean subclassed;
+
 	private long startTimeStamp;
 
 	private String sessionId;
 
+	private long epoch;
+
+	private volatile IExecutionDataVisitor registrationListener;
+
 	/**
 	 * Creates a new runtime.
 	 */
 	public RuntimeData() {
 		store = new ExecutionDataStore();
+		entries = new ConcurrentHashMap<Long, ExecutionData>();
+		unregistered = new ConcurrentHashMap<Long, ExecutionData>();
+		lock = new Object();
+		subclassed = getClass() != RuntimeData.class;
 		sessionId = "<none>";
 		startTimeStamp = System.currentTimeMillis();
 	}
@@ -67,9 +106,29 @@ public class RuntimeData {
 		return sessionId;
 	}
 
+	/**
+	 * Sets a listener which is called when a class registers at this runtime,
+	 * i.e. when the entry for its class id is created on the first request of
+	 * its probe array. Subsequent requests do not call the listener. Requests
+	 * of static initializers in touch only mode create the entry without
+	 * registering the class, it registers with its next request. The
+	 * listener is called in the thread of the class, it must not block and
+	 * must not execute instrumented code.
+	 *
+	 * @see IInitializerAccessorGenerator
+	 *
+	 * @param listener
+	 *            listener for registered classes or <code>null</code>
+	 */
+	public void setRegistrationListener(
+			final IExecutionDataVisitor listener) {
+		registrationListener = listener;
+	}
+
 	/**
 	 * Collects the current execution data and writes it to the given
-	 * {@link IExecutionDataVisitor} object.
+	 * {@link IExecutionDataVisitor} object. Classes registered while the data
+	 * is collected may or may not be contained in the dump.
 	 *
 	 * @param executionDataVisitor
 	 *            handler to write coverage data to
@@ -81,31 +140,175 @@ public class RuntimeData {
 	 */
 	public final void collect(final IExecutionDataVisitor executionDataVisitor,
 			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
-		synchronized (store) {
+		synchronized (lock) {
+			syncStore();
 			final SessionInfo info = new SessionInfo(sessionId, startTimeStamp,
 					System.currentTimeMillis());
 			sessionInfoVisitor.visitSessionInfo(info);
-			store.accept(executionDataVisitor);
+			for (final ExecutionData data : entries.values()) {
+				executionDataVisitor.visitClassExecution(data);
+			}
+			if (reset) {
+				resetEntries();
+			}
+		}
+	}
+
+	/**
+	 * Collects a copy of the current execution data and writes it to the given
+	 * visitors. Other than {@link #collect(IExecutionDataVisitor,
+	 * ISessionInfoVisitor, boolean)} this method only holds the lock of this
+	 * runtime while the probes of the executed classes are copied and
+	 * optionally reset. The visitors are called afterwards, so slow output
+	 * does not delay other dumps or resets. The visitors receive new
+	 * {@link ExecutionData} instances for classes with executed probes only.
+	 *
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is also
+	 *            cleared
+	 */
+	public final void collectSnapshot(
+			final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor, final boolean reset) {
+		final SessionInfo info;
+		final List<ExecutionData> snapshot = new ArrayList<ExecutionData>();
+		synchronized (lock) {
+			syncStore();
+			info = new SessionInfo(sessionId, startTimeStamp,
+					System.currentTimeMillis());
+			for (final ExecutionData data : entries.values()) {
+				final int[] counters = data.getCounters();
+				if (counters != null) {
+					if (data.hasHits()) {
+						snapshot.add(new ExecutionData(data.getId(),
+								data.getName(), counters.clone()));
+					}
+					continue;
+				}
+				final ProbeBits probes = ProbeBits.valueOf(data.getProbes());
+				if (!probes.isEmpty()) {
+					snapshot.add(new ExecutionData(data.getId(),
+							data.getName(), probes));
+				}
+			}
+			if (reset) {
+				resetEntries();
+			}
+		}
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : snapshot) {
+			executionDataVisitor.visitClassExecution(data);
+		}
+	}
+
+	/**
+	 * Collects the execution data which has been executed since the last dump
+	 * of the given tracker and writes it to the given visitors. The first dump
+	 * of a tracker and the first dump after any reset of this runtime contain
+	 * the complete execution data and have the sequence number <code>0</code>.
+	 * Like {@link #collectSnapshot(IExecutionDataVisitor, ISessionInfoVisitor,
+	 * boolean)} the visitors are called after the lock of this runtime has
+	 * been released, therefore dumps with the same tracker must not be
+	 * collected concurrently.
+	 *
+	 * @param tracker
+	 *            state of the delta sequence of the consumer
+	 * @param executionDataVisitor
+	 *            handler to write coverage data to
+	 * @param sessionInfoVisitor
+	 *            handler to write session information to
+	 * @param deltaVisitor
+	 *            handler to write the sequence number to
+	 * @param reset
+	 *            if <code>true</code> the current coverage information is also
+	 *            cleared
+	 */
+	public final void collectDelta(final DeltaTracker tracker,
+			final IExecutionDataVisitor executionDataVisitor,
+			final ISessionInfoVisitor sessionInfoVisitor,
+			final IDeltaVisitor deltaVisitor, final boolean reset) {
+		final long sequence;
+		final SessionInfo info;
+		final List<ExecutionData> delta = new ArrayList<ExecutionData>();
+		final IExecutionDataVisitor collector = new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				delta.add(data);
+			}
+		};
+		synchronized (lock) {
+			syncStore();
+			sequence = tracker.next(epoch);
+			info = new SessionInfo(sessionId, startTimeStamp,
+					System.currentTimeMillis());
+			for (final ExecutionData data : entries.values()) {
+				tracker.report(data, collector);
+			}
 			if (reset) {
-				reset();
+				resetEntries();
 			}
 		}
+		deltaVisitor.visitDelta(sequence);
+		sessionInfoVisitor.visitSessionInfo(info);
+		for (final ExecutionData data : delta) {
+			executionDataVisitor.visitClassExecution(data);
+		}
 	}
 
 	/**
 	 * Resets all coverage information.
 	 */
 	public final void reset() {
-		synchronized (store) {
-			store.reset();
-			startTimeStamp = System.currentTimeMillis();
+		synchronized (lock) {
+			syncStore();
+			resetEntries();
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock.
+	 */
+	private void resetEntries() {
+		epoch++;
+		for (final ExecutionData data : entries.values()) {
+			data.reset();
+		}
+		startTimeStamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * Adds the registered classes to the deprecated store and takes over the
+	 * execution data put into it by subclasses. Must be called while holding
+	 * the lock.
+	 */
+	@SuppressWarnings("deprecation")
+	private void syncStore() {
+		if (!subclassed) {
+			return;
+		}
+		for (final ExecutionData data : store.getContents()) {
+			final ExecutionData entry = entries
+					.putIfAbsent(Long.valueOf(data.getId()), data);
+			if (entry != null && entry != data) {
+				// put by the subclass before the class registered
+				entry.merge(data);
+			}
+		}
+		for (final ExecutionData data : entries.values()) {
+			if (store.get(data.getId()) != data) {
+				store.replace(data);
+			}
 		}
 	}
 
 	/**
 	 * Returns the coverage data for the class with the given identifier. If
 	 * there is no data available under the given id a new entry is created.
-	 * This is a synchronized access to the underlying store.
+	 * This method does not block, if multiple threads register the same class
+	 * concurrently all of them get the same entry.
 	 *
 	 * @param id
 	 *            class identifier
@@ -117,8 +320,73 @@ public class RuntimeData {
 	 */
 	public ExecutionData getExecutionData(final Long id, final String name,
 			final int probecount) {
-		synchronized (store) {
-			return store.get(id, name, probecount);
+		return getExecutionData(id, name, probecount, false);
+	}
+
+	/**
+	 * Returns the coverage data for the class with the given identifier like
+	 * {@link #getExecutionData(Long, String, int)}. New entries for classes
+	 * instrumented with counting probes are created with hit counters.
+	 *
+	 * @param id
+	 *            class identifier
+	 * @param name
+	 *            VM name of the class
+	 * @param probecount
+	 *            probe data length
+	 * @param counting
+	 *            <code>true</code> if the class requires hit counters
+	 * @return execution data
+	 * @throws IllegalStateException
+	 *             if an existing entry has been created with a different kind
+	 *             of probes
+	 */
+	public ExecutionData getExecutionData(final Long id, final String name,
+			final int probecount, final boolean counting) {
+		return getExecutionData(id, name, probecount, counting, true);
+	}
+
+	private ExecutionData getExecutionData(final Long id, final String name,
+			final int probecount, final boolean counting,
+			final boolean register) {
+		ExecutionData entry = entries.get(id);
+		if (entry == null) {
+			final ExecutionData created = counting
+					? new ExecutionData(id.longValue(), name,
+							new int[probecount])
+					: new ExecutionData(id.longValue(), name, probecount);
+			if (!register) {
+				// must be visible before the entry to not miss registration
+				unregistered.put(id, created);
+			}
+			entry = entries.putIfAbsent(id, created);
+			if (entry == null) {
+				if (register) {
+					register(created);
+				}
+				return created;
+			}
+			if (!register) {
+				unregistered.remove(id, created);
+			}
+		}
+		if (register && !unregistered.isEmpty()
+				&& unregistered.remove(id) != null) {
+			register(entry);
+		}
+		entry.assertCompatibility(id.longValue(), name, probecount);
+		if (counting != (entry.getCounters() != null)) {
+			throw new IllegalStateException(String.format(
+					"Incompatible probe type for class %s with id %016x.",
+					name, id));
+		}
+		return entry;
+	}
+
+	private void register(final ExecutionData data) {
+		final IExecutionDataVisitor listener = registrationListener;
+		if (listener != null) {
+			listener.visitClassExecution(data);
 		}
 	}
 
@@ -131,22 +399,32 @@ public class RuntimeData {
 	 * <li>args[0]: class id ({@link Long})
 	 * <li>args[1]: vm class name ({@link String})
 	 * <li>args[2]: probe count ({@link Integer})
+	 * <li>args[3]: optional, {@link Boolean#TRUE} to request hit counters
+	 * <li>args[4]: optional, {@link Boolean#TRUE} for a request of a static
+	 * initializer which must not register the class
 	 * </ul>
 	 *
 	 * Return value:
 	 *
 	 * <ul>
-	 * <li>args[0]: probe array (<code>boolean[]</code>)
+	 * <li>args[0]: probe array (<code>boolean[]</code>) or hit counters
+	 * (<code>int[]</code>)
 	 * </ul>
 	 *
 	 * @param args
-	 *            parameter array of length 3
+	 *            parameter array of length 3, 4 or 5
 	 */
 	public void getProbes(final Object[] args) {
 		final Long classid = (Long) args[0];
 		final String name = (String) args[1];
 		final int probecount = ((Integer) args[2]).intValue();
-		args[0] = getExecutionData(classid, name, probecount).getProbes();
+		final boolean counting = args.length > 3
+				&& Boolean.TRUE.equals(args[3]);
+		final boolean register = args.length < 5
+				|| !Boolean.TRUE.equals(args[4]);
+		final ExecutionData data = getExecutionData(classid, name, probecount,
+				counting, register);
+		args[0] = counting ? data.getCounters() : data.getProbes();
 	}
 
 	/**
@@ -182,7 +460,21 @@ public class RuntimeData {
 	public static void generateArgumentArray(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
-		mv.visitInsn(Opcodes.ICONST_3);
+		generateArgumentArray(classid, classname, probecount, false, false,
+				mv);
+	}
+
+	private static void generateArgumentArray(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final boolean initializer,
+			final MethodVisitor mv) {
+		final int lengthOpcode;
+		if (initializer) {
+			lengthOpcode = Opcodes.ICONST_5;
+		} else {
+			lengthOpcode = counting ? Opcodes.ICONST_4 : Opcodes.ICONST_3;
+		}
+		mv.visitInsn(lengthOpcode);
 		mv.visitTypeInsn(Opcodes.ANEWARRAY, "java/lang/Object");
 
 		// Class Id:
@@ -206,6 +498,24 @@ public class RuntimeData {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Integer", "valueOf",
 				"(I)Ljava/lang/Integer;", false);
 		mv.visitInsn(Opcodes.AASTORE);
+
+		// Request for hit counters:
+		if (counting || initializer) {
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitInsn(Opcodes.ICONST_3);
+			mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/Boolean",
+					counting ? "TRUE" : "FALSE", "Ljava/lang/Boolean;");
+			mv.visitInsn(Opcodes.AASTORE);
+		}
+
+		// Request of a static initializer:
+		if (initializer) {
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitInsn(Opcodes.ICONST_4);
+			mv.visitFieldInsn(Opcodes.GETSTATIC, "java/lang/Boolean", "TRUE",
+					"Ljava/lang/Boolean;");
+			mv.visitInsn(Opcodes.AASTORE);
+		}
 	}
 
 	/**
@@ -227,9 +537,63 @@ public class RuntimeData {
 	public static void generateAccessCall(final long classid,
 			final String classname, final int probecount,
 			final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, false, false, mv);
+	}
+
+	/**
+	 * Generates the code that calls a {@link RuntimeData} instance like
+	 * {@link #generateAccessCall(long, String, int, MethodVisitor)} but
+	 * pushes the hit counters of type <code>int[]</code> on the operand stack.
+	 * The generated code requires a stack size of 6.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param mv
+	 *            visitor to emit generated code
+	 */
+	public static void generateCounterAccessCall(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, true, false, mv);
+	}
+
+	/**
+	 * Generates the code that calls a {@link RuntimeData} instance like
+	 * {@link #generateAccessCall(long, String, int, MethodVisitor)} for a
+	 * static initializer, i.e. the class does not register with this call.
+	 * The generated code requires a stack size of 6.
+	 *
+	 * @param classid
+	 *            class identifier
+	 * @param classname
+	 *            VM class name
+	 * @param probecount
+	 *            probe count for this class
+	 * @param counting
+	 *            <code>true</code> to push the hit counters of type
+	 *            <code>int[]</code> instead of the probe array
+	 * @param mv
+	 *            visitor to emit generated code
+	 * @see IInitializerAccessorGenerator
+	 */
+	public static void generateInitializerAccessCall(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final MethodVisitor mv) {
+		generateAccessCall(classid, classname, probecount, counting, true, mv);
+	}
+
+	private static void generateAccessCall(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final boolean initializer,
+			final MethodVisitor mv) {
 		// stack[0]: Ljava/lang/Object;
 
-		generateArgumentArray(classid, classname, probecount, mv);
+		generateArgumentArray(classid, classname, probecount, counting,
+				initializer, mv);
 
 		// stack[1]: [Ljava/lang/Object;
 		// stack[0]: Ljava/lang/Object;
@@ -249,9 +613,11 @@ public class RuntimeData {
 		mv.visitInsn(Opcodes.ICONST_0);
 		mv.visitInsn(Opcodes.AALOAD);
 
-		// stack[0]: [Z
+		// stack[0]: [Z or [I
 
-		mv.visitTypeInsn(Opcodes.CHECKCAST, InstrSupport.DATAFIELD_DESC);
+		mv.visitTypeInsn(Opcodes.CHECKCAST, counting
+				? InstrSupport.COUNTERFIELD_DESC
+				: InstrSupport.DATAFIELD_DESC);
 	}
 
 }
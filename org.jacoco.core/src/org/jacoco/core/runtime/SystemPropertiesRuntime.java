@@ -25,7 +25,9 @@ import org.objectweb.asm.Opcodes;
  * in applications that replace the system properties or in applications that
  * fail if non-String values are placed in the system properties.
  */
-public class SystemPropertiesRuntime extends AbstractRuntime {
+public class SystemPropertiesRuntime extends AbstractRuntime
+		implements ICounterAccessorGenerator,
+		IInitializerAccessorGenerator {
 
 	private static final String KEYPREFIX = "jacoco-";
 
@@ -41,6 +43,48 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 	public int generateDataAccessor(final long classid, final String classname,
 			final int probecount, final MethodVisitor mv) {
+		generateRuntimeAccess(mv);
+
+		// Stack[0]: Ljava/lang/Object;
+
+		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
+
+		// Stack[0]: [Z
+
+		return 6; // Maximum local stack size is 3
+	}
+
+	public int generateCounterAccessor(final long classid,
+			final String classname, final int probecount,
+			final MethodVisitor mv) {
+		generateRuntimeAccess(mv);
+
+		// Stack[0]: Ljava/lang/Object;
+
+		RuntimeData.generateCounterAccessCall(classid, classname, probecount,
+				mv);
+
+		// Stack[0]: [I
+
+		return 6; // Maximum local stack size is 3
+	}
+
+	public int generateInitializerAccessor(final long classid,
+			final String classname, final int probecount,
+			final boolean counting, final MethodVisitor mv) {
+		generateRuntimeAccess(mv);
+
+		// Stack[0]: Ljava/lang/Object;
+
+		RuntimeData.generateInitializerAccessCall(classid, classname,
+				probecount, counting, mv);
+
+		// Stack[0]: [Z or [I
+
+		return 6; // Maximum local stack size is 3
+	}
+
+	private void generateRuntimeAccess(final MethodVisitor mv) {
 		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System",
 				"getProperties", "()Ljava/util/Properties;", false);
 
@@ -53,14 +97,6 @@ public class SystemPropertiesRuntime extends AbstractRuntime {
 
 		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/util/Properties", "get",
 				"(Ljava/lang/Object;)Ljava/lang/Object;", false);
-
-		// Stack[0]: Ljava/lang/Object;
-
-		RuntimeData.generateAccessCall(classid, classname, probecount, mv);
-
-		// Stack[0]: [Z
-
-		return 6; // Maximum local stack size is 3
 	}
 
 	@Override
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IDeltaVisitor;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Rebuilds complete execution data from a sequence of delta dumps received
+ * from a single runtime, e.g. over a remote connection. An instance is
+ * registered as session info, execution data and delta visitor of a reader.
+ * A dump with sequence number <code>0</code> replaces all previous content,
+ * every subsequent delta is merged into it. Missing deltas are detected by
+ * their sequence numbers.
+ */
+public class ExecDeltaCombiner
+		implements IDeltaVisitor, ISessionInfoVisitor, IExecutionDataVisitor {
+
+	private SessionInfoStore sessionInfos;
+
+	private ExecutionDataStore executionData;
+
+	private long sequence;
+
+	/**
+	 * Creates a new combiner which expects a dump with sequence number
+	 * <code>0</code> first.
+	 */
+	public ExecDeltaCombiner() {
+		sessionInfos = new SessionInfoStore();
+		executionData = new ExecutionDataStore();
+		sequence = -1;
+	}
+
+	/**
+	 * Returns the sequence number of the last received dump.
+	 *
+	 * @return last sequence number or <code>-1</code> if no dump has been
+	 *         received yet
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the session infos of all dumps since the last complete dump.
+	 *
+	 * @return session info store
+	 */
+	public SessionInfoStore getSessionInfoStore() {
+		return sessionInfos;
+	}
+
+	/**
+	 * Returns the combined execution data.
+	 *
+	 * @return execution data store
+	 */
+	public ExecutionDataStore getExecutionDataStore() {
+		return executionData;
+	}
+
+	/**
+	 * Writes the combined content to the given stream.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream) throws IOException {
+		final ExecutionDataWriter writer = new ExecutionDataWriter(stream);
+		sessionInfos.accept(writer);
+		executionData.accept(writer);
+	}
+
+	// === IDeltaVisitor ===
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the sequence number does not follow the previous one
+	 */
+	public void visitDelta(final long sequence) {
+		if (sequence == 0) {
+			sessionInfos = new SessionInfoStore();
+			executionData = new ExecutionDataStore();
+		} else if (sequence != this.sequence + 1) {
+			throw new IllegalStateException(String.format(
+					"Missing delta dump %s, received %s.",
+					Long.valueOf(this.sequence + 1), Long.valueOf(sequence)));
+		}
+		this.sequence = sequence;
+	}
+
+	// === ISessionInfoVisitor ===
+
+	public void visitSessionInfo(final SessionInfo info) {
+		checkStarted();
+		sessionInfos.visitSessionInfo(info);
+	}
+
+	// === IExecutionDataVisitor ===
+
+	public void visitClassExecution(final ExecutionData data) {
+		checkStarted();
+		executionData.put(data);
+	}
+
+	private void checkStarted() {
+		if (sequence == -1) {
+			throw new IllegalStateException("No delta dump started.");
+		}
+	}
+
+}
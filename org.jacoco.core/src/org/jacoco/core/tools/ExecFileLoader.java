@@ -20,10 +20,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 
+import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.MappedExecutionData;
+import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.data.SessionInfoStore;
 
 /**
@@ -33,7 +37,8 @@ import org.jacoco.core.data.SessionInfoStore;
 public class ExecFileLoader {
 
 	private final SessionInfoStore sessionInfos;
-	private final ExecutionDataStore executionData;
+	private ExecutionDataStore executionData;
+	private boolean empty;
 
 	/**
 	 * New instance to combine session infos and execution data from multiple
@@ -42,6 +47,7 @@ public class ExecFileLoader {
 	public ExecFileLoader() {
 		sessionInfos = new SessionInfoStore();
 		executionData = new ExecutionDataStore();
+		empty = true;
 	}
 
 	/**
@@ -57,6 +63,7 @@ public class ExecFileLoader {
 				new BufferedInputStream(stream));
 		reader.setExecutionDataVisitor(executionData);
 		reader.setSessionInfoVisitor(sessionInfos);
+		empty = false;
 		// 核心，解析并合并需要合并的exec文件流
 		reader.read();
 	}
@@ -78,6 +85,32 @@ public class ExecFileLoader {
 		}
 	}
 
+	/**
+	 * Reads all data from the given file like {@link #load(File)}. If the file
+	 * has the indexed format and is the first file of this loader, it is
+	 * memory mapped instead and execution data is only loaded for the classes
+	 * which are requested from the execution data store. In this case the file
+	 * must not be modified while this loader is in use.
+	 *
+	 * @param file
+	 *            file to read data from
+	 * @throws IOException
+	 *             in case of problems while reading the file
+	 * @see MappedExecutionData
+	 */
+	public void map(final File file) throws IOException {
+		if (!empty || !MappedExecutionData.isIndexed(file)) {
+			load(file);
+			return;
+		}
+		final MappedExecutionData mapped = MappedExecutionData.map(file);
+		for (final SessionInfo info : mapped.getSessionInfos()) {
+			sessionInfos.visitSessionInfo(info);
+		}
+		executionData = new ExecutionDataStore(mapped);
+		empty = false;
+	}
+
 	/**
 	 * Saves the current content into the given output stream.
 	 *
@@ -122,6 +155,34 @@ public class ExecFileLoader {
 		}
 	}
 
+	/**
+	 * Saves the current content into the given file in the indexed format
+	 * which allows random access by class id. An existing file is
+	 * overwritten. Parent directories are created as needed.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 * @see MappedExecutionData
+	 */
+	public void saveIndexed(final File file) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		// Load all entries before a mapped source file is overwritten:
+		final Collection<ExecutionData> contents = executionData.getContents();
+		final OutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			MappedExecutionData.write(sessionInfos.getInfos(), contents,
+					stream);
+		} finally {
+			stream.close();
+		}
+	}
+
 	/**
 	 * Returns the session info store with all loaded sessions.
 	 *
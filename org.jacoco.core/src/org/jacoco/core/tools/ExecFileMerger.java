@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.IExecutionDataStreamVisitor;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.MappedExecutionData;
+import org.jacoco.core.data.ProbeBuffer;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+/**
+ * Merges many *.exec files concurrently. Inputs are read and decoded on a
+ * thread pool, the execution data is merged into partitions of the class id
+ * space which are locked independently. The merged result is written by a
+ * k-way merge over the sorted partitions, so no combined store is built and
+ * the output is ordered by class id independently of the number of threads
+ * and the order in which the inputs have been read. Execution data is
+ * streamed from the inputs, so only the first occurrence of a class creates
+ * a new {@link ExecutionData} instance. Hit counters of classes instrumented
+ * with counting probes are summed up.
+ *
+ * All inputs have to be added before {@link #finish()} is called, afterwards
+ * the merged content can be written.
+ */
+public class ExecFileMerger {
+
+	/**
+	 * Source of an execution data stream which is opened by one of the merge
+	 * threads.
+	 */
+	public interface Input {
+
+		/**
+		 * Opens the stream to read. The stream is closed by the merger.
+		 *
+		 * @return stream with execution data
+		 * @throws IOException
+		 *             if the stream can't be opened
+		 */
+		InputStream open() throws IOException;
+
+	}
+
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private static final Comparator<ExecutionData> BY_ID = new Comparator<ExecutionData>() {
+		public int compare(final ExecutionData d1, final ExecutionData d2) {
+			return d1.getId() < d2.getId() ? -1
+					: (d1.getId() == d2.getId() ? 0 : 1);
+		}
+	};
+
+	private final ForkJoinPool pool;
+
+	private final ExecutionDataStore[] partitions;
+
+	private final SessionInfoStore sessionInfos;
+
+	private final Deque<PendingInput> pending;
+
+	private boolean finished;
+
+	/**
+	 * Creates a new merger which reads the given number of inputs at a time.
+	 *
+	 * @param threads
+	 *            number of threads used for reading
+	 */
+	public ExecFileMerger(final int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException(
+					"Invalid number of threads: " + threads);
+		}
+		this.pool = new ForkJoinPool(threads,
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		this.partitions = new ExecutionDataStore[threads
+				* PARTITIONS_PER_THREAD];
+		for (int i = 0; i < partitions.length; i++) {
+			partitions[i] = new ExecutionDataStore();
+		}
+		this.sessionInfos = new SessionInfoStore();
+		this.pending = new ArrayDeque<PendingInput>();
+	}
+
+	/**
+	 * Schedules reading the given file.
+	 *
+	 * @param file
+	 *            exec file to merge
+	 */
+	public void add(final File file) {
+		add(new Input() {
+			public InputStream open() throws IOException {
+				return new FileInputStream(file);
+			}
+		}, file.getAbsolutePath());
+	}
+
+	/**
+	 * Schedules reading the given input.
+	 *
+	 * @param input
+	 *            execution data to merge
+	 * @param location
+	 *            description of the input used for exception messages
+	 */
+	public void add(final Input input, final String location) {
+		if (finished) {
+			throw new IllegalStateException("Merger already finished.");
+		}
+		final Future<Void> future = pool.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				read(input);
+				return null;
+			}
+		});
+		pending.addLast(new PendingInput(future, location));
+	}
+
+	private void read(final Input input) throws IOException {
+		final InputStream stream = input.open();
+		try {
+			final ExecutionDataReader reader = new ExecutionDataReader(
+					new BufferedInputStream(stream));
+			reader.setSessionInfoVisitor(new ISessionInfoVisitor() {
+				public void visitSessionInfo(final SessionInfo info) {
+					synchronized (sessionInfos) {
+						sessionInfos.visitSessionInfo(info);
+					}
+				}
+			});
+			reader.setExecutionDataStreamVisitor(
+					new IExecutionDataStreamVisitor() {
+						public void visitClassExecution(final long id,
+								final String name, final ProbeBuffer probes) {
+							merge(id, name, probes);
+						}
+					});
+			reader.read();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void merge(final long id, final String name,
+			final ProbeBuffer probes) {
+		final ExecutionDataStore partition = partitionOf(id);
+		synchronized (partition) {
+			final ExecutionData entry = partition.get(id);
+			if (entry == null) {
+				partition.put(probes.hasCounts()
+						? new ExecutionData(id, name, probes.toCounters())
+						: new ExecutionData(id, name, probes.toProbeBits()));
+			} else {
+				entry.merge(id, name, probes);
+			}
+		}
+	}
+
+	private ExecutionDataStore partitionOf(final long id) {
+		final int hash = (int) (id ^ (id >>> 32));
+		return partitions[(hash & 0x7FFFFFFF) % partitions.length];
+	}
+
+	/**
+	 * Waits until all inputs have been read and releases the threads of this
+	 * merger. No inputs can be added afterwards.
+	 *
+	 * @throws IOException
+	 *             if an input can't be read or contains incompatible execution
+	 *             data, the message contains the location of the input
+	 */
+	public void finish() throws IOException {
+		finished = true;
+		try {
+			while (!pending.isEmpty()) {
+				final PendingInput next = pending.removeFirst();
+				try {
+					next.future.get();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					final IOException ex = new IOException(String.format(
+							"Unable to read %s.", next.location));
+					ex.initCause(cause);
+					throw ex;
+				}
+			}
+		} finally {
+			for (final PendingInput p : pending) {
+				p.future.cancel(true);
+			}
+			pending.clear();
+			pool.shutdownNow();
+		}
+	}
+
+	private void checkFinished() {
+		if (!finished) {
+			throw new IllegalStateException("Merger not finished.");
+		}
+	}
+
+	/**
+	 * Returns the session infos of all inputs.
+	 *
+	 * @return session info store
+	 */
+	public SessionInfoStore getSessionInfoStore() {
+		checkFinished();
+		return sessionInfos;
+	}
+
+	/**
+	 * Checks whether any execution data has been merged.
+	 *
+	 * @return <code>true</code> if no input contained execution data
+	 */
+	public boolean isEmpty() {
+		checkFinished();
+		for (final ExecutionDataStore partition : partitions) {
+			if (!partition.getContents().isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the merged execution data to the given visitor in the order of
+	 * the class ids.
+	 *
+	 * @param visitor
+	 *            visitor for the merged execution data
+	 */
+	public void accept(final IExecutionDataVisitor visitor) {
+		checkFinished();
+		final PriorityQueue<Cursor> heads = new PriorityQueue<Cursor>(
+				partitions.length);
+		for (final ExecutionDataStore partition : partitions) {
+			final List<ExecutionData> sorted = new ArrayList<ExecutionData>(
+					partition.getContents());
+			if (!sorted.isEmpty()) {
+				Collections.sort(sorted, BY_ID);
+				heads.add(new Cursor(sorted));
+			}
+		}
+		while (!heads.isEmpty()) {
+			final Cursor head = heads.poll();
+			visitor.visitClassExecution(head.current());
+			if (head.next()) {
+				heads.add(head);
+			}
+		}
+	}
+
+	/**
+	 * Writes the merged content to the given stream.
+	 *
+	 * @param stream
+	 *            stream to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final OutputStream stream) throws IOException {
+		final ExecutionDataWriter dataWriter = new ExecutionDataWriter(stream);
+		getSessionInfoStore().accept(dataWriter);
+		accept(dataWriter);
+	}
+
+	/**
+	 * Writes the merged content to the given file. Parent directories are
+	 * created as needed. Also a files system lock is acquired to avoid
+	 * concurrent write access.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @param append
+	 *            <code>true</code> if the content should be appended, otherwise
+	 *            the file is overwritten.
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 */
+	public void save(final File file, final boolean append) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final FileOutputStream fileStream = new FileOutputStream(file, append);
+		// Avoid concurrent writes from other processes:
+		fileStream.getChannel().lock();
+		final OutputStream bufferedStream = new BufferedOutputStream(
+				fileStream);
+		try {
+			save(bufferedStream);
+		} finally {
+			bufferedStream.close();
+		}
+	}
+
+	/**
+	 * Writes the merged content to the given file in the indexed format. An
+	 * existing file is overwritten. Parent directories are created as needed.
+	 *
+	 * @param file
+	 *            file to save content to
+	 * @throws IOException
+	 *             in case of problems while writing to the stream
+	 * @see MappedExecutionData
+	 */
+	public void saveIndexed(final File file) throws IOException {
+		final File folder = file.getParentFile();
+		if (folder != null) {
+			folder.mkdirs();
+		}
+		final List<ExecutionData> contents = new ArrayList<ExecutionData>();
+		accept(new IExecutionDataVisitor() {
+			public void visitClassExecution(final ExecutionData data) {
+				contents.add(data);
+			}
+		});
+		final OutputStream stream = new BufferedOutputStream(
+				new FileOutputStream(file));
+		try {
+			MappedExecutionData.write(getSessionInfoStore().getInfos(),
+					contents, stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	private static class PendingInput {
+
+		final Future<Void> future;
+
+		final String location;
+
+		PendingInput(final Future<Void> future, final String location) {
+			this.future = future;
+			this.location = location;
+		}
+
+	}
+
+	private static class Cursor implements Comparable<Cursor> {
+
+		private final List<ExecutionData> entries;
+
+		private int position;
+
+		Cursor(final List<ExecutionData> entries) {
+			this.entries = entries;
+		}
+
+		ExecutionData current() {
+			return entries.get(position);
+		}
+
+		boolean next() {
+			return ++position < entries.size();
+		}
+
+		public int compareTo(final Cursor other) {
+			return BY_ID.compare(current(), other.current());
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2009, 2022 Mountainminds GmbH & Co. KG and Contributors
+ * This program and the accompanying materials are made available under
+ * the terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *    Marc R. Hoffmann - initial API and implementation
+ *
+ *******************************************************************************/
+package org.jacoco.core.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of execution data written in shards. Every process writes its own
+ * shard file into a directory next to the destination file, so no file locks
+ * are required while execution data is written. The shard files are listed
+ * in a manifest in the same directory, which is only locked when a new shard
+ * is registered. The shards can be consolidated with {@link ExecFileMerger}.
+ */
+public final class ExecShardManifest {
+
+	/** Suffix appended to the destination file for the shard directory. */
+	public static final String DIRECTORY_SUFFIX = ".shards";
+
+	/** Name of the manifest file in the shard directory. */
+	public static final String MANIFEST = "manifest";
+
+	private static final String CHARSET = "UTF-8";
+
+	private ExecShardManifest() {
+	}
+
+	/**
+	 * Returns the directory which contains the shards for the given
+	 * destination file.
+	 *
+	 * @param destfile
+	 *            destination file for execution data
+	 * @return shard directory
+	 */
+	public static File getDirectory(final File destfile) {
+		return new File(destfile.getPath() + DIRECTORY_SUFFIX);
+	}
+
+	/**
+	 * Creates a file name for a new shard. Characters of the session id which
+	 * are not safe in file names are replaced.
+	 *
+	 * @param sessionId
+	 *            session id of the process writing the shard
+	 * @param uniqueId
+	 *            id which distinguishes processes with the same session id
+	 * @return file name of the shard
+	 */
+	public static String createShardName(final String sessionId,
+			final String uniqueId) {
+		final StringBuilder name = new StringBuilder();
+		for (final char c : sessionId.toCharArray()) {
+			name.append(Character.isLetterOrDigit(c) || c == '-' || c == '.'
+					? c
+					: '_');
+		}
+		return name.append('-').append(uniqueId).append(".exec").toString();
+	}
+
+	/**
+	 * Adds a shard to the manifest of the given directory. The manifest is
+	 * locked while the entry is written.
+	 *
+	 * @param directory
+	 *            shard directory
+	 * @param shardName
+	 *            file name of the shard
+	 * @throws IOException
+	 *             if the manifest can't be written
+	 */
+	public static void register(final File directory, final String shardName)
+			throws IOException {
+		final FileOutputStream out = new FileOutputStream(
+				new File(directory, MANIFEST), true);
+		try {
+			out.getChannel().lock();
+			out.write((shardName + "\n").getBytes(CHARSET));
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the shards listed in the manifest of the given directory. Shards
+	 * which have not been created yet are omitted.
+	 *
+	 * @param directory
+	 *            shard directory
+	 * @return existing shard files in the order of registration
+	 * @throws IOException
+	 *             if the manifest can't be read
+	 */
+	public static List<File> read(final File directory) throws IOException {
+		final BufferedReader reader;
+		try {
+			reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(new File(directory, MANIFEST)),
+					CHARSET));
+		} catch (final FileNotFoundException e) {
+			throw new IOException(
+					String.format("No shard manifest in %s.", directory));
+		}
+		final List<File> shards = new ArrayList<File>();
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final File shard = new File(directory, line.trim());
+				if (line.trim().length() > 0 && shard.isFile()) {
+					shards.add(shard);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return shards;
+	}
+
+}
@@ -73,6 +73,7 @@ public class ReportStructureTestDriver {
 		m.increment(CounterImpl.getInstance(3, 5),
 				CounterImpl.getInstance(1, 2), 2);
 		m.increment(CounterImpl.getInstance(4, 5), CounterImpl.COUNTER_0_0, 4);
+		m.mergeHits(12, 4);
 		m.incrementMethodCounter();
 		methodCoverage = m;
 
@@ -142,6 +142,39 @@ public class SourceHighlighterTest {
 				htmlSupport.findStr(doc, "//pre/span/@title"));
 	}
 
+	@Test
+	public void testHighlightHits() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 1);
+		source.mergeHits(1234, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1);
+		final Document doc = parseDoc();
+		assertEquals("fc heat4", htmlSupport.findStr(doc, "//pre/span/@class"));
+		assertEquals("Executed 1,234 times.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
+	@Test
+	public void testHighlightBranchesWithHits() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.getInstance(0, 2),
+				1);
+		source.mergeHits(1, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1);
+		final Document doc = parseDoc();
+		assertEquals("fc bfc heat1",
+				htmlSupport.findStr(doc, "//pre/span/@class"));
+		assertEquals("All 2 branches covered. Executed once.",
+				htmlSupport.findStr(doc, "//pre/span/@title"));
+	}
+
+	@Test
+	public void testHighlightHitsMaximumHeat() throws Exception {
+		source.increment(CounterImpl.COUNTER_0_1, CounterImpl.COUNTER_0_0, 1);
+		source.mergeHits(Integer.MAX_VALUE, 1);
+		sourceHighlighter.highlight(parent.pre(null), source.getLine(1), 1);
+		final Document doc = parseDoc();
+		assertEquals("fc heat5", htmlSupport.findStr(doc, "//pre/span/@class"));
+	}
+
 	private Document parseDoc() throws Exception {
 		html.close();
 		return htmlSupport.parse(buffer);
@@ -186,6 +186,9 @@ public class XMLFormatterTest {
 				"report/package/sourcefile[@name='FooClass.java']/line[3]/@nr");
 		assertPathMatches("4",
 				"report/package/sourcefile[@name='FooClass.java']/line[3]/@mi");
+		assertPathMatches("12",
+				"report/package/sourcefile[@name='FooClass.java']/line[3]/@hits");
+		assertPathMatches("1", "count(report/package/sourcefile/line/@hits)");
 
 		assertPathMatches("0", "count(/report/package[@name='empty']/counter)");
 
@@ -103,30 +103,64 @@ final class SourceHighlighter {
 		}
 
 		final String lineId = "L" + Integer.toString(lineNr);
+		final int hits = line.getHits();
 		final ICounter branches = line.getBranchCounter();
 		switch (branches.getStatus()) {
 		case ICounter.NOT_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_NOT_COVERED,
-					"All %2$d branches missed.", branches);
+					"All %2$d branches missed.", branches, hits);
 		case ICounter.FULLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_FULLY_COVERED,
-					"All %2$d branches covered.", branches);
+					"All %2$d branches covered.", branches, hits);
 		case ICounter.PARTLY_COVERED:
 			return span(pre, lineId, style, Styles.BRANCH_PARTLY_COVERED,
-					"%1$d of %2$d branches missed.", branches);
+					"%1$d of %2$d branches missed.", branches, hits);
 		default:
-			return pre.span(style, lineId);
+			if (hits == 0) {
+				return pre.span(style, lineId);
+			}
+			final HTMLElement span = pre.span(style + heat(hits), lineId);
+			span.attr("title", hitsTitle(hits));
+			return span;
 		}
 	}
 
 	private HTMLElement span(final HTMLElement parent, final String id,
 			final String style1, final String style2, final String title,
-			final ICounter branches) throws IOException {
-		final HTMLElement span = parent.span(style1 + " " + style2, id);
+			final ICounter branches, final int hits) throws IOException {
+		final HTMLElement span = parent.span(style1 + " " + style2 + heat(hits),
+				id);
 		final Integer missed = Integer.valueOf(branches.getMissedCount());
 		final Integer total = Integer.valueOf(branches.getTotalCount());
-		span.attr("title", String.format(locale, title, missed, total));
+		String text = String.format(locale, title, missed, total);
+		if (hits > 0) {
+			text += " " + hitsTitle(hits);
+		}
+		span.attr("title", text);
 		return span;
 	}
 
+	/**
+	 * Returns the heat style for lines with the given number of executions.
+	 * The heat level increases with every order of magnitude.
+	 */
+	private static String heat(final int hits) {
+		if (hits == 0) {
+			return "";
+		}
+		int level = 1;
+		for (int h = hits; h >= 10 && level < 5; h /= 10) {
+			level++;
+		}
+		return " " + Styles.HEAT + level;
+	}
+
+	private String hitsTitle(final int hits) {
+		if (hits == 1) {
+			return "Executed once.";
+		}
+		return String.format(locale, "Executed %,d times.",
+				Integer.valueOf(hits));
+	}
+
 }
@@ -98,6 +98,9 @@ public final class Styles {
 	/** Part of source code where branches are fully covered */
 	public static final String BRANCH_FULLY_COVERED = "bfc";
 
+	/** Prefix of the heat level 1 to 5 of lines with hit counters */
+	public static final String HEAT = "heat";
+
 	/**
 	 * Returns a combined style from the given styles.
 	 *
@@ -158,7 +158,8 @@ public class ReportElement extends XMLElement {
 	}
 
 	/**
-	 * Creates a 'line' element.
+	 * Creates a 'line' element. The number of executions is only written for
+	 * lines with hit counters.
 	 *
 	 * @param nr
 	 *            line number
@@ -173,6 +174,9 @@ public class ReportElement extends XMLElement {
 		element.attr("nr", nr);
 		counterAttributes(element, "mi", "ci", line.getInstructionCounter());
 		counterAttributes(element, "mb", "cb", line.getBranchCounter());
+		if (line.getHits() > 0) {
+			element.attr("hits", line.getHits());
+		}
 	}
 
 	/**